@@ -0,0 +1,50 @@
+package library.benchmark;
+
+import java.util.Random;
+
+/**
+ * The distribution of keys that a benchmark looks up. Splay trees are designed to do well when a few keys are much
+ * more popular than the rest, so benchmarks should be run under both patterns.
+ */
+public enum AccessPattern {
+
+    /**
+     * Every book is equally likely to be looked up.
+     */
+    UNIFORM,
+
+    /**
+     * The popularity of books follows a Zipf distribution with exponent 0.99 (as in YCSB), with the popular books
+     * scattered throughout the catalog rather than all at one end of it.
+     */
+    ZIPFIAN;
+
+    private static final double ZIPF_EXPONENT = 0.99;
+    // A prime larger than any catalog size, so multiplying by it modulo the catalog size is a permutation
+    private static final long SCATTER_PRIME = 1_000_000_007L;
+
+    /**
+     * Generate a sequence of indices into a catalog to be looked up in turn.
+     *
+     * @param catalogSize the number of books in the catalog
+     * @param count the length of the sequence
+     * @param seed the seed for the sequence, so that runs are repeatable
+     * @return the sequence of indices, each between 0 and catalogSize - 1
+     */
+    public int[] indices(int catalogSize, int count, long seed) {
+        Random random = new Random(seed);
+        int[] indices = new int[count];
+        if (this == UNIFORM) {
+            for (int i = 0; i < count; i++) {
+                indices[i] = random.nextInt(catalogSize);
+            }
+        } else {
+            ZipfSampler sampler = new ZipfSampler(catalogSize, ZIPF_EXPONENT);
+            for (int i = 0; i < count; i++) {
+                long rank = sampler.sample(random) - 1;
+                indices[i] = (int) (rank * SCATTER_PRIME % catalogSize);
+            }
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,77 @@
+package library.benchmark;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares descending the author tree using the cached author key in {@link Book#compareByAuthor(Book)} against the
+ * previous comparison, which lower-cased both author names on every call. Run with {@code -prof gc} to see the
+ * allocation rate of each.
+ *
+ * Both benchmarks use non-splaying lookups so that they search exactly the same tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorComparisonBenchmark {
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private SplayTreeNode<Book> authorTree;
+    private Book[] searchKeys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildTree() {
+        Book[] books = BenchmarkCatalog.randomBooks(catalogSize, 42);
+        for (Book book : books) {
+            authorTree = bookSplayTreeService.insertByAuthor(authorTree, new SplayTreeNode<>(book));
+        }
+        searchKeys = BenchmarkCatalog.searchKeys(BenchmarkCatalog.randomBooks(catalogSize, 7));
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> cachedAuthorKey() {
+        // A fresh key per search, as LibraryService creates one per request
+        Book key = searchKeys[nextIndex()];
+        return bookSplayTreeService.findByAuthor(authorTree, new Book(null, key.getAuthor(), 0));
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> lowerCasingEveryComparison() {
+        Book key = searchKeys[nextIndex()];
+        return findByLowerCasedAuthor(authorTree, new Book(null, key.getAuthor(), 0));
+    }
+
+    private int nextIndex() {
+        next = next + 1 == searchKeys.length ? 0 : next + 1;
+        return next;
+    }
+
+    /**
+     * The lookup as it was before authors keys were cached on {@link Book}.
+     */
+    private static SplayTreeNode<Book> findByLowerCasedAuthor(SplayTreeNode<Book> root, Book searchKey) {
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            int comparison = searchKey.getAuthor().toLowerCase().compareTo(current.data.getAuthor().toLowerCase());
+            if (comparison < 0) {
+                current = current.left;
+            } else if (comparison > 0) {
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+}
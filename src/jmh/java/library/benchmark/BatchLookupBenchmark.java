@@ -0,0 +1,85 @@
+package library.benchmark;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up a sorted batch of ISBNs with a single finger search against descending from the root once per
+ * ISBN. Batches are either spread over the whole catalog or drawn from a narrow range of it, e.g. one publisher's
+ * ISBNs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchLookupBenchmark {
+
+    private static final int BATCH_COUNT = 1024;
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    @Param({"16", "256"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean clustered;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private SplayTreeNode<Book> isbnTree;
+    private long[][] batches;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildTree() {
+        Book[] books = BenchmarkCatalog.randomBooks(catalogSize, 42);
+        isbnTree = bookSplayTreeService.buildByIsbn(Arrays.asList(books));
+        long[] isbns = new long[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            isbns[i] = books[i].getIsbn();
+        }
+        Arrays.sort(isbns);
+
+        Random random = new Random(7);
+        batches = new long[BATCH_COUNT][];
+        for (int b = 0; b < BATCH_COUNT; b++) {
+            int range = clustered ? batchSize * 4 : catalogSize;
+            int start = random.nextInt(catalogSize - range + 1);
+            long[] batch = new long[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = isbns[start + random.nextInt(range)];
+            }
+            Arrays.sort(batch);
+            batches[b] = batch;
+        }
+    }
+
+    @Benchmark
+    public Book[] fingerSearch() {
+        return bookSplayTreeService.findAllByIsbn(isbnTree, nextBatch());
+    }
+
+    @Benchmark
+    public Book[] searchFromRoot() {
+        long[] batch = nextBatch();
+        Book[] found = new Book[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            SplayTreeNode<Book> node = bookSplayTreeService.findByIsbn(isbnTree, new Book(null, null, batch[i]));
+            found[i] = node == null ? null : node.data;
+        }
+        return found;
+    }
+
+    private long[] nextBatch() {
+        next = next + 1 == batches.length ? 0 : next + 1;
+        return batches[next];
+    }
+}
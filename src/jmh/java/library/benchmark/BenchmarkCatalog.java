@@ -0,0 +1,119 @@
+package library.benchmark;
+
+import library.model.Book;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic catalogs for the benchmarks, since the base library is far too small to measure anything.
+ *
+ * Book i has ISBN {@code FIRST_ISBN + i} and an author name that sorts in the same position, so a catalog in
+ * {@link InsertionOrder#SORTED} order is sorted by both keys at once.
+ */
+public final class BenchmarkCatalog {
+
+    private static final long FIRST_ISBN = 9780000000000L;
+    private static final int AUTHOR_LETTERS = 6; // 26^6 is comfortably more than 10M
+
+    public enum InsertionOrder {
+        SORTED,
+        RANDOM
+    }
+
+    private BenchmarkCatalog() {
+    }
+
+    /**
+     * Generate books with distinct, mixed-case author names and distinct ISBNs, in random order.
+     *
+     * @param size the number of books to generate
+     * @param seed the seed for the random order, so that runs are repeatable
+     * @return the books
+     */
+    public static Book[] randomBooks(int size, long seed) {
+        return books(size, InsertionOrder.RANDOM, seed);
+    }
+
+    /**
+     * Generate books with distinct, mixed-case author names and distinct ISBNs.
+     *
+     * @param size the number of books to generate
+     * @param order the order to return the books in
+     * @param seed the seed for the random order, so that runs are repeatable
+     * @return the books
+     */
+    public static Book[] books(int size, InsertionOrder order, long seed) {
+        Book[] books = new Book[size];
+        for (int i = 0; i < size; i++) {
+            books[i] = new Book("Title " + i, authorName(i), FIRST_ISBN + i);
+        }
+        if (order == InsertionOrder.RANDOM) {
+            shuffle(books, new Random(seed));
+        }
+        return books;
+    }
+
+    /**
+     * Copy the given books as search keys, i.e. books with only the author and ISBN set, as the controller would
+     * receive them.
+     *
+     * @param books the books to copy
+     * @return the search keys, in the same order
+     */
+    public static Book[] searchKeys(Book[] books) {
+        Book[] keys = new Book[books.length];
+        for (int i = 0; i < books.length; i++) {
+            keys[i] = new Book(null, books[i].getAuthor(), books[i].getIsbn());
+        }
+        return keys;
+    }
+
+    /**
+     * Write the given books to a temporary file in the same tab-separated format as the base library.
+     *
+     * @param books the books to write
+     * @return the path of the file, which is deleted when the JVM exits
+     * @throws IOException if the file cannot be written
+     */
+    public static Path writeTsv(Book[] books) throws IOException {
+        Path path = Files.createTempFile("benchmark_library", ".tsv");
+        path.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("Title\tAuthor\tISBN\n");
+            for (Book book : books) {
+                writer.write(book.getTitle());
+                writer.write('\t');
+                writer.write(book.getAuthor());
+                writer.write('\t');
+                writer.write(Long.toString(book.getIsbn()));
+                writer.write('\n');
+            }
+        }
+        return path;
+    }
+
+    private static String authorName(int i) {
+        char[] letters = new char[AUTHOR_LETTERS];
+        int remaining = i;
+        for (int position = AUTHOR_LETTERS - 1; position >= 0; position--) {
+            letters[position] = (char) ('a' + remaining % 26);
+            remaining /= 26;
+        }
+        letters[0] = Character.toUpperCase(letters[0]);
+        return new String(letters) + " Surname";
+    }
+
+    private static void shuffle(Book[] items, Random random) {
+        for (int i = items.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Book swap = items[i];
+            items[i] = items[j];
+            items[j] = swap;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fuzzy author searches, each for the name of a random author with one character changed, as a typo would.
+ *
+ * The authors of {@link BenchmarkCatalog} all end in the same surname and start with one of a few letters, so most of
+ * their trigrams are shared by everyone and the index can rule out few of them: a worst case. The varied names are
+ * made up of a first name, drawn from a short Zipfian list as real first names are, a middle initial and a surname
+ * of random syllables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FuzzyAuthorBenchmark {
+
+    private static final int QUERY_COUNT = 1 << 16;
+    private static final int LIMIT = 20;
+
+    @Param({"10000", "100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"1", "2"})
+    private int maxDistance;
+
+    @Param({"VARIED", "CATALOG"})
+    private AuthorNames authorNames;
+
+    public enum AuthorNames {
+        VARIED,
+        CATALOG
+    }
+
+    private static final String[] FIRST_NAMES = {
+            "John", "David", "Michael", "Robert", "James", "Peter", "Mary", "Richard", "Thomas", "William", "Paul",
+            "Susan", "Daniel", "Andrew", "Mark", "Steven", "Brian", "Martin", "Charles", "Anna", "Christopher",
+            "Elizabeth", "Kenneth", "Donald", "Barbara", "Edward", "Jennifer", "George", "Linda", "Joseph"};
+    private static final String[] SYLLABLES = {
+            "an", "ber", "ca", "dor", "el", "fi", "gan", "ho", "is", "jo", "ka", "lin", "mar", "ne", "o", "pe", "qui",
+            "ro", "sa", "ton", "u", "va", "wi", "xe", "ya", "zu"};
+
+    private LibraryService libraryService;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadLibrary() throws IOException {
+        Book[] books = BenchmarkCatalog.books(catalogSize, InsertionOrder.RANDOM, 42);
+        if (authorNames == AuthorNames.VARIED) {
+            Random random = new Random(42);
+            ZipfSampler firstNames = new ZipfSampler(FIRST_NAMES.length, 1.0);
+            for (int i = 0; i < books.length; i++) {
+                books[i] = new Book(books[i].getTitle(), variedName(random, firstNames), books[i].getIsbn());
+            }
+        }
+        Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+        libraryService = new LibraryService(new BookSplayTreeService(),
+                LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+
+        Random random = new Random(7);
+        queries = new String[QUERY_COUNT];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            char[] name = books[random.nextInt(catalogSize)].getAuthor().toCharArray();
+            name[random.nextInt(name.length)] = (char) ('a' + random.nextInt(26));
+            queries[q] = new String(name);
+        }
+    }
+
+    private static String variedName(Random random, ZipfSampler firstNames) {
+        StringBuilder name = new StringBuilder(FIRST_NAMES[firstNames.sample(random) - 1])
+                .append(' ').append((char) ('A' + random.nextInt(26))).append(". ");
+        int surnameStart = name.length();
+        for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(surnameStart, Character.toUpperCase(name.charAt(surnameStart)));
+        return name.toString();
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthorFuzzy() {
+        next = next + 1 == queries.length ? 0 : next + 1;
+        return libraryService.searchByAuthorFuzzy(queries[next], maxDistance, LIMIT);
+    }
+}
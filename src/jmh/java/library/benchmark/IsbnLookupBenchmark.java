@@ -0,0 +1,96 @@
+package library.benchmark;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up ISBNs by primitive {@code long} against the previous lookup, which created a book to search for
+ * and compared it to each node with {@link Book#compareByISBN(Book)}. Run with {@code -prof gc} to see the allocation
+ * rate of each, and of a whole {@link LibraryService#searchByIsbn(long)}.
+ *
+ * The tree benchmarks use non-splaying lookups so that they search exactly the same tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IsbnLookupBenchmark {
+
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private AccessPattern accessPattern;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private SplayTreeNode<Book> isbnTree;
+    private LibraryService libraryService;
+    private long[] isbns;
+    private int[] accessSequence;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildTree() throws IOException {
+        Book[] books = BenchmarkCatalog.randomBooks(catalogSize, 42);
+        isbnTree = bookSplayTreeService.buildByIsbn(Arrays.asList(books));
+        isbns = new long[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            isbns[i] = books[i].getIsbn();
+        }
+        accessSequence = accessPattern.indices(catalogSize, ACCESS_SEQUENCE_LENGTH, 7);
+
+        Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+        libraryService = new LibraryService(bookSplayTreeService, LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> findByPrimitiveIsbn() {
+        return bookSplayTreeService.findByIsbn(isbnTree, isbns[nextIndex()]);
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> findByBookKey() {
+        // A fresh key per search, as LibraryService created one per request
+        return findByComparingBooks(isbnTree, new Book(null, null, isbns[nextIndex()]));
+    }
+
+    @Benchmark
+    public Book searchLibraryByIsbn() {
+        return libraryService.searchByIsbn(isbns[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = next + 1 == accessSequence.length ? 0 : next + 1;
+        return accessSequence[next];
+    }
+
+    /**
+     * The lookup as it was before ISBNs could be searched for directly.
+     */
+    private static SplayTreeNode<Book> findByComparingBooks(SplayTreeNode<Book> root, Book searchKey) {
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            int comparison = searchKey.compareByISBN(current.data);
+            if (comparison < 0) {
+                current = current.left;
+            } else if (comparison > 0) {
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+}
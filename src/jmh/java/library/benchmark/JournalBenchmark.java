@@ -0,0 +1,85 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.FileService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures borrowing and returning books with and without the borrowing journal. Every borrow and return waits for
+ * its journal entry to be synced to disk, so run with several threads, e.g. {@code -t 16}, to see how many requests
+ * group commit fits into each sync.
+ *
+ * Each thread borrows and returns books from its own slice of the catalog so that requests never fail.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int MAX_THREADS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Library {
+
+        @Param({"false", "true"})
+        private boolean journal;
+
+        private LibraryService libraryService;
+        private Book[] books;
+        private Path journalFile;
+
+        @Setup(Level.Trial)
+        public void loadLibrary() throws IOException {
+            books = BenchmarkCatalog.books(CATALOG_SIZE, InsertionOrder.RANDOM, 42);
+            Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+            journalFile = Files.createTempFile("library", ".journal");
+            FileService fileService = new FileService(baseLibrary.toString(), null,
+                    journal ? journalFile.toString() : null);
+            libraryService = new LibraryService(new BookSplayTreeService(), fileService);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteJournal() throws IOException {
+            libraryService.shutdown();
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Slice {
+
+        private int start;
+        private int size;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void chooseSlice(ThreadParams threadParams) {
+            size = CATALOG_SIZE / Math.max(threadParams.getThreadCount(), MAX_THREADS);
+            start = threadParams.getThreadIndex() * size;
+        }
+
+        private int nextIndex() {
+            next = next + 1 == size ? 0 : next + 1;
+            return start + next;
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook(Library library, Slice slice) {
+        Book book = library.books[slice.nextIndex()];
+        library.libraryService.borrowBook(book);
+        library.libraryService.returnBook(book);
+    }
+}
@@ -0,0 +1,79 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.FileService;
+import library.service.LibraryService;
+import library.service.TreeStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the public operations of {@link LibraryService} end to end, with the library loaded from a generated
+ * base library file through the normal start-up path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LibraryServiceBenchmark {
+
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int catalogSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private AccessPattern accessPattern;
+
+    @Param({"RANDOM", "SORTED"})
+    private InsertionOrder insertionOrder;
+
+    @Param({"NODES", "ARRAYS", "OFF_HEAP"})
+    private TreeStorage treeStorage;
+
+    private LibraryService libraryService;
+    private Book[] books;
+    private int[] accessSequence;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadLibrary() throws IOException {
+        books = BenchmarkCatalog.books(catalogSize, insertionOrder, 42);
+        Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+        libraryService = new LibraryService(new BookSplayTreeService(treeStorage), fileServiceFor(baseLibrary));
+        accessSequence = accessPattern.indices(catalogSize, ACCESS_SEQUENCE_LENGTH, 7);
+    }
+
+    @Benchmark
+    public Book searchByAuthor() {
+        return libraryService.searchByAuthor(books[nextIndex()].getAuthor());
+    }
+
+    @Benchmark
+    public Book searchByIsbn() {
+        return libraryService.searchByIsbn(books[nextIndex()].getIsbn());
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook() {
+        Book book = books[nextIndex()];
+        libraryService.borrowBook(book);
+        libraryService.returnBook(book);
+    }
+
+    private int nextIndex() {
+        next = next + 1 == accessSequence.length ? 0 : next + 1;
+        return accessSequence[next];
+    }
+
+    /*package*/ static FileService fileServiceFor(Path baseLibrary) {
+        return new FileService(baseLibrary.toString(), null, null);
+    }
+}
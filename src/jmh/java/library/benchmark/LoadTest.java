@@ -0,0 +1,407 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the HTTP API, to compare the tail latency and throughput of the servlet stack (Tomcat, a thread per
+ * request) with the reactive stack (Netty's event loops, with a single thread owning the trees) as the number of
+ * connections grows. Runs locally: for each stack it starts the application in a separate JVM on a synthetic catalog,
+ * drives it over HTTP/1.1 with each number of connections in turn, and stops it again. Run it with e.g.
+ * {@code mvn -Pbenchmark,reactive test-compile exec:exec@load-test -Dload.args="--connections 16,256"}, which needs
+ * the reactive profile for the reactive stack.
+ *
+ * Each connection is a virtual user which sends its next request as soon as the last one is answered, or with
+ * {@code --rate}, at fixed intervals, with the latency measured from when the request should have been sent, so that a
+ * server which stalls can't hide it by holding up the users (coordinated omission). Requests are searches by author
+ * and ISBN following a Zipfian access pattern, with {@code --lending-percent} of them borrowing a book and the next
+ * returning it. Each user lends books from its own slice of the catalog so that no request is refused.
+ *
+ * Options, with their defaults:
+ * <ul>
+ *     <li>{@code --stacks servlet,reactive}: the stacks to test, in turn</li>
+ *     <li>{@code --connections 16,64,256}: the numbers of connections to test each stack with, in turn. Each is a
+ *     file descriptor on both sides, so large numbers may need a higher {@code ulimit -n}</li>
+ *     <li>{@code --seconds 20} and {@code --warmup-seconds 5}: how long to measure and to warm up for, for each
+ *     number of connections</li>
+ *     <li>{@code --rate 0}: the total requests per second to send, or 0 to send them back to back</li>
+ *     <li>{@code --lending-percent 10}: the percentage of requests which borrow or return a book</li>
+ *     <li>{@code --catalog-size 100000}: the number of books in the library</li>
+ *     <li>{@code --server-cores 0}: the number of cores the server's JVM is told it has, to work out the requests
+ *     and connections per core, or 0 for all the cores of the machine. It doesn't pin the server to them, so leave
+ *     cores for the load test itself, e.g. with {@code taskset}</li>
+ *     <li>{@code --port 18080}: the port to start the server on</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+    private static final Duration SERVER_START_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * The web stacks the application can be started with.
+     */
+    private enum Stack {
+        SERVLET,
+        REACTIVE
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Book[] books = BenchmarkCatalog.books(options.catalogSize, InsertionOrder.RANDOM, 42);
+        Path catalog = BenchmarkCatalog.writeTsv(books);
+        int[] accessSequence = AccessPattern.ZIPFIAN.indices(options.catalogSize, ACCESS_SEQUENCE_LENGTH, 7);
+        int serverCores = options.serverCores > 0 ? options.serverCores : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-9s %11s %10s %10s %10s %7s %8s %8s %8s %8s %8s%n", "stack", "connections",
+                "conns/core", "requests/s", "req/s/core", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms",
+                "max ms");
+        for (Stack stack : options.stacks) {
+            Process server = startServer(stack, catalog, options);
+            try {
+                String baseUrl = "http://localhost:" + options.port + "/api/library";
+                awaitServer(baseUrl, server);
+                for (int connections : options.connections) {
+                    Result result = run(baseUrl, books, accessSequence, connections, options);
+                    System.out.printf(Locale.ROOT, "%-9s %11d %10.1f %10.0f %10.0f %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                            stack.name().toLowerCase(Locale.ROOT), connections, (double) connections / serverCores,
+                            result.throughput, result.throughput / serverCores, result.failures,
+                            result.percentile(0.5), result.percentile(0.9), result.percentile(0.99),
+                            result.percentile(0.999), result.percentile(1));
+                }
+            } finally {
+                server.destroy();
+                server.waitFor();
+            }
+        }
+    }
+
+    /**
+     * Start the application in a separate JVM with the same classpath as this one.
+     *
+     * @param stack the web stack to start it with
+     * @param catalog the base library to load
+     * @param options the options of the load test
+     * @return the server's process
+     * @throws IOException if the process cannot be started
+     */
+    private static Process startServer(Stack stack, Path catalog, Options options) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (options.serverCores > 0) {
+            command.add("-XX:ActiveProcessorCount=" + options.serverCores);
+        }
+        // As system properties rather than arguments, since arguments can't be empty
+        command.addAll(Arrays.asList(
+                "-Dserver.port=" + options.port,
+                "-Dspring.main.web-application-type=" + stack.name().toLowerCase(Locale.ROOT),
+                "-Dlibrary.base-library-path=" + catalog,
+                "-Dlibrary.snapshot-path=",
+                "-Dlibrary.journal-path=",
+                "-Dlogging.level.root=WARN",
+                "-classpath", System.getProperty("java.class.path"),
+                "library.DepartmentLibraryApplication"));
+        File log = File.createTempFile("load_test_" + stack.name().toLowerCase(Locale.ROOT), ".log");
+        System.out.println("Starting the " + stack.name().toLowerCase(Locale.ROOT) + " stack, logging to " + log);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    /**
+     * Wait until the server answers a search.
+     *
+     * @param baseUrl the URL of the library API
+     * @param server the server's process
+     */
+    private static void awaitServer(String baseUrl, Process server) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/searchByISBN?isbn=0")).build();
+        long deadline = System.nanoTime() + SERVER_START_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("The server exited with status " + server.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("The server didn't start within " + SERVER_START_TIMEOUT);
+    }
+
+    /**
+     * Warm the server up and then measure it with the given number of connections.
+     *
+     * @return the latencies of the requests sent after warming up
+     */
+    private static Result run(String baseUrl, Book[] books, int[] accessSequence, int connections, Options options)
+            throws InterruptedException {
+        int sliceSize = books.length / connections;
+        if (options.lendingPercent > 0 && sliceSize == 0) {
+            throw new IllegalArgumentException("The catalog is too small to give each connection books to lend");
+        }
+        // A client per run, so that its connections aren't reused by the next run
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(options.seconds);
+        long interval = options.rate > 0 ? (long) (connections * 1e9 / options.rate) : 0;
+
+        List<VirtualUser> users = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            VirtualUser user = new VirtualUser(client, scheduler, baseUrl, books, accessSequence, options.lendingPercent,
+                    i * (accessSequence.length / connections), i * sliceSize, sliceSize, interval, measureStart,
+                    measureEnd);
+            users.add(user);
+            // Spread the users' first requests over an interval, so that they don't all arrive at once
+            user.start(interval * i / connections);
+        }
+        CompletableFuture.allOf(users.stream().map(user -> user.done).toArray(CompletableFuture[]::new)).join();
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+
+        int sampleCount = users.stream().mapToInt(user -> user.sampleCount).sum();
+        long[] latencies = new long[sampleCount];
+        int failures = 0;
+        int offset = 0;
+        for (VirtualUser user : users) {
+            System.arraycopy(user.latencies, 0, latencies, offset, user.sampleCount);
+            offset += user.sampleCount;
+            failures += user.failures;
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies, failures, sampleCount / (double) options.seconds);
+    }
+
+    /**
+     * A connection's worth of requests, sending one at a time.
+     */
+    private static class VirtualUser {
+        private final HttpClient client;
+        private final ScheduledExecutorService scheduler;
+        private final String baseUrl;
+        private final Book[] books;
+        private final int[] accessSequence;
+        private final int lendingPercent;
+        private final int sliceStart;
+        private final int sliceSize;
+        private final long interval;
+        private final long measureStart;
+        private final long measureEnd;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private int next;
+        private int nextInSlice;
+        // The book borrowed by the last request, to return with the next one
+        private Book lentBook;
+        private long nextIntendedStart;
+
+        // Only touched by one request's completion at a time, which happens before the next request is sent
+        private long[] latencies = new long[1024];
+        private int sampleCount;
+        private int failures;
+
+        private VirtualUser(HttpClient client, ScheduledExecutorService scheduler, String baseUrl, Book[] books,
+                            int[] accessSequence, int lendingPercent, int firstAccess, int sliceStart, int sliceSize,
+                            long interval, long measureStart, long measureEnd) {
+            this.client = client;
+            this.scheduler = scheduler;
+            this.baseUrl = baseUrl;
+            this.books = books;
+            this.accessSequence = accessSequence;
+            this.lendingPercent = lendingPercent;
+            this.next = firstAccess;
+            this.sliceStart = sliceStart;
+            this.sliceSize = sliceSize;
+            this.interval = interval;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+        }
+
+        private void start(long delay) {
+            nextIntendedStart = System.nanoTime() + delay;
+            sendNext();
+        }
+
+        private void sendNext() {
+            long now = System.nanoTime();
+            // Return any book borrowed before stopping, so that the next run can borrow it again
+            if (now >= measureEnd && lentBook == null) {
+                done.complete(null);
+                return;
+            }
+            long intendedStart = interval == 0 ? now : nextIntendedStart;
+            if (intendedStart > now) {
+                scheduler.schedule(this::sendNext, intendedStart - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+            nextIntendedStart = intendedStart + interval;
+
+            boolean borrowing = lentBook == null && next % 100 < lendingPercent;
+            HttpRequest request = nextRequest(borrowing);
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                boolean successful = error == null && response.statusCode() == 200;
+                if (borrowing && !successful) {
+                    lentBook = null;
+                }
+                if (intendedStart >= measureStart) {
+                    record(System.nanoTime() - intendedStart, successful);
+                }
+                sendNext();
+            });
+        }
+
+        private HttpRequest nextRequest(boolean borrowing) {
+            if (lentBook != null) {
+                Book book = lentBook;
+                lentBook = null;
+                return post("/return", book);
+            }
+            next = next + 1 == accessSequence.length ? 0 : next + 1;
+            if (borrowing) {
+                nextInSlice = nextInSlice + 1 == sliceSize ? 0 : nextInSlice + 1;
+                lentBook = books[sliceStart + nextInSlice];
+                return post("/borrow", lentBook);
+            }
+            Book book = books[accessSequence[next]];
+            String query = next % 2 == 0
+                    ? "/searchByAuthor?authorName="
+                    + URLEncoder.encode(book.getAuthor(), StandardCharsets.UTF_8).replace("+", "%20")
+                    : "/searchByISBN?isbn=" + book.getIsbn();
+            return HttpRequest.newBuilder(URI.create(baseUrl + query)).build();
+        }
+
+        private HttpRequest post(String path, Book book) {
+            // The generated authors have nothing to escape
+            String json = "{\"author\":\"" + book.getAuthor() + "\",\"isbn\":" + book.getIsbn() + "}";
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+        }
+
+        private void record(long latency, boolean successful) {
+            if (sampleCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, sampleCount * 2);
+            }
+            latencies[sampleCount++] = latency;
+            if (!successful) {
+                failures++;
+            }
+        }
+    }
+
+    /**
+     * The latencies measured with a number of connections.
+     */
+    private static class Result {
+        private final long[] sortedLatencies;
+        private final int failures;
+        private final double throughput;
+
+        private Result(long[] sortedLatencies, int failures, double throughput) {
+            this.sortedLatencies = sortedLatencies;
+            this.failures = failures;
+            this.throughput = throughput;
+        }
+
+        /**
+         * @param fraction the fraction of requests, e.g. 0.99
+         * @return the latency within which that fraction of the requests were answered, in milliseconds
+         */
+        private double percentile(double fraction) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(fraction * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    /**
+     * The options of the load test, parsed from {@code --name value} pairs.
+     */
+    private static class Options {
+        private List<Stack> stacks = Arrays.asList(Stack.SERVLET, Stack.REACTIVE);
+        private int[] connections = {16, 64, 256};
+        private int seconds = 20;
+        private int warmupSeconds = 5;
+        private double rate = 0;
+        private int lendingPercent = 10;
+        private int catalogSize = 100_000;
+        private int serverCores = 0;
+        private int port = 18080;
+
+        private Options(String[] args) {
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("Options must be given as --name value pairs");
+            }
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--stacks":
+                        stacks = new ArrayList<>();
+                        for (String stack : value.split(",")) {
+                            stacks.add(Stack.valueOf(stack.trim().toUpperCase(Locale.ROOT)));
+                        }
+                        break;
+                    case "--connections":
+                        connections = Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt)
+                                .toArray();
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(value);
+                        break;
+                    case "--warmup-seconds":
+                        warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "--lending-percent":
+                        lendingPercent = Integer.parseInt(value);
+                        break;
+                    case "--catalog-size":
+                        catalogSize = Integer.parseInt(value);
+                        break;
+                    case "--server-cores":
+                        serverCores = Integer.parseInt(value);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        }
+    }
+}
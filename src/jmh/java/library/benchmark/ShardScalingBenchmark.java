@@ -0,0 +1,133 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.AvailabilityTracking;
+import library.service.BookSplayTreeService;
+import library.service.LibraryMetrics;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of a shared library scales from 1 to 32 threads with different numbers of shards, for
+ * searches by author and ISBN mixed with some borrowing and returning. Each thread count is a separate benchmark, e.g.
+ * run {@code ShardScalingBenchmark -p shards=1,16 -p lendingPercent=10} to compare a single shard with sixteen.
+ * Throughput can only scale up to the number of cores of the machine. With {@code -p availabilityTracking=BITMAP} or
+ * {@code COPIES}, the trees are never modified and borrowing and returning only flip a bit or count a copy, so nothing
+ * is locked at all.
+ *
+ * Searches follow each thread's own Zipfian access sequence over the whole catalog, while each thread borrows and
+ * returns books from its own slice of the catalog so that requests never fail.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardScalingBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+    private static final int MAX_THREADS = 32;
+
+    @State(Scope.Benchmark)
+    public static class Library {
+
+        @Param({"1", "4", "16", "64"})
+        private int shards;
+
+        // The percentage of operations which borrow and return a book rather than search for one
+        @Param({"0", "10"})
+        private int lendingPercent;
+
+        @Param({"TREES", "BITMAP", "COPIES"})
+        private AvailabilityTracking availabilityTracking;
+
+        private LibraryService libraryService;
+        private Book[] books;
+
+        @Setup(Level.Trial)
+        public void loadLibrary() throws IOException {
+            books = BenchmarkCatalog.books(CATALOG_SIZE, InsertionOrder.RANDOM, 42);
+            Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+            libraryService = new LibraryService(new BookSplayTreeService(),
+                    LibraryServiceBenchmark.fileServiceFor(baseLibrary), new LibraryMetrics(), shards,
+                    availabilityTracking);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accesses {
+
+        private int[] accessSequence;
+        private int next;
+        private int sliceStart;
+        private int sliceSize;
+        private int nextInSlice;
+
+        @Setup(Level.Trial)
+        public void generateAccesses(ThreadParams threadParams) {
+            accessSequence = AccessPattern.ZIPFIAN.indices(CATALOG_SIZE, ACCESS_SEQUENCE_LENGTH,
+                    7 + threadParams.getThreadIndex());
+            sliceSize = CATALOG_SIZE / Math.max(threadParams.getThreadCount(), MAX_THREADS);
+            sliceStart = threadParams.getThreadIndex() * sliceSize;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object threads02(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads04(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads08(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object threads32(Library library, Accesses accesses) {
+        return operate(library, accesses);
+    }
+
+    private static Object operate(Library library, Accesses accesses) {
+        accesses.next = accesses.next + 1 == accesses.accessSequence.length ? 0 : accesses.next + 1;
+        int operation = accesses.next % 100;
+        if (operation < library.lendingPercent) {
+            accesses.nextInSlice = accesses.nextInSlice + 1 == accesses.sliceSize ? 0 : accesses.nextInSlice + 1;
+            Book book = library.books[accesses.sliceStart + accesses.nextInSlice];
+            library.libraryService.borrowBook(book);
+            library.libraryService.returnBook(book);
+            return book;
+        }
+        Book book = library.books[accesses.accessSequence[accesses.next]];
+        return operation % 2 == 0
+                ? library.libraryService.searchByAuthor(book.getAuthor())
+                : library.libraryService.searchByIsbn(book.getIsbn());
+    }
+}
@@ -0,0 +1,56 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.service.BookSplayTreeService;
+import library.service.FileService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures restarting the library from a snapshot against loading it from the base library file.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    private int catalogSize;
+
+    @Param({"RANDOM"})
+    private InsertionOrder insertionOrder;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private Path baseLibrary;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void saveSnapshot() throws IOException {
+        baseLibrary = BenchmarkCatalog.writeTsv(BenchmarkCatalog.books(catalogSize, insertionOrder, 42));
+        snapshot = Files.createTempFile("benchmark_library", ".snapshot");
+        snapshot.toFile().deleteOnExit();
+
+        FileService fileService = new FileService(baseLibrary.toString(), snapshot.toString(), null);
+        Files.delete(snapshot);
+        new LibraryService(bookSplayTreeService, fileService).saveSnapshot();
+    }
+
+    @Benchmark
+    public LibraryService loadFromBaseLibrary() {
+        return new LibraryService(bookSplayTreeService, new FileService(baseLibrary.toString(), null, null));
+    }
+
+    @Benchmark
+    public LibraryService loadFromSnapshot() {
+        return new LibraryService(bookSplayTreeService,
+                new FileService(baseLibrary.toString(), snapshot.toString(), null));
+    }
+}
@@ -0,0 +1,75 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import library.service.SplayEngine;
+import library.service.TreeStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bottom-up and top-down splaying of node trees through {@link LibraryService}. Searches splay one tree;
+ * borrowing a book deletes it from the author and ISBN trees and inserts it into the borrowed tree, and returning it
+ * does the reverse, so {@link #borrowAndReturnBook()} measures three deletes and three inserts along with the
+ * searches which find the books to delete.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SplayEngineBenchmark {
+
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private AccessPattern accessPattern;
+
+    @Param({"BOTTOM_UP", "TOP_DOWN"})
+    private SplayEngine splayEngine;
+
+    private LibraryService libraryService;
+    private Book[] books;
+    private int[] accessSequence;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadLibrary() throws IOException {
+        books = BenchmarkCatalog.books(catalogSize, InsertionOrder.RANDOM, 42);
+        Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+        libraryService = new LibraryService(new BookSplayTreeService(TreeStorage.NODES, splayEngine),
+                LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+        accessSequence = accessPattern.indices(catalogSize, ACCESS_SEQUENCE_LENGTH, 7);
+    }
+
+    @Benchmark
+    public Book searchByAuthor() {
+        return libraryService.searchByAuthor(books[nextIndex()].getAuthor());
+    }
+
+    @Benchmark
+    public Book searchByIsbn() {
+        return libraryService.searchByIsbn(books[nextIndex()].getIsbn());
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook() {
+        Book book = books[nextIndex()];
+        libraryService.borrowBook(book);
+        libraryService.returnBook(book);
+    }
+
+    private int nextIndex() {
+        next = next + 1 == accessSequence.length ? 0 : next + 1;
+        return accessSequence[next];
+    }
+}
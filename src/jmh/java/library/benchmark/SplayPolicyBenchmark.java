@@ -0,0 +1,81 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import library.service.SplayEngine;
+import library.service.SplayPolicy;
+import library.service.TreeStorage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searching a shared library with each {@link SplayPolicy}. Run with several threads, e.g. {@code -t 8}, to
+ * see how well searches which don't splay run in parallel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplayPolicyBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+
+    @State(Scope.Benchmark)
+    public static class Library {
+
+        @Param({"ALWAYS", "DEPTH_THRESHOLD", "PROBABILISTIC"})
+        private SplayPolicy splayPolicy;
+
+        @Param({"UNIFORM", "ZIPFIAN"})
+        private AccessPattern accessPattern;
+
+        private LibraryService libraryService;
+        private Book[] books;
+
+        @Setup(Level.Trial)
+        public void loadLibrary() throws IOException {
+            books = BenchmarkCatalog.books(CATALOG_SIZE, InsertionOrder.RANDOM, 42);
+            Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+            BookSplayTreeService bookSplayTreeService = new BookSplayTreeService(TreeStorage.NODES,
+                    SplayEngine.BOTTOM_UP, splayPolicy, 16, 0.05);
+            libraryService = new LibraryService(bookSplayTreeService,
+                    LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accesses {
+
+        private int[] accessSequence;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void generateAccesses(Library library, ThreadParams threadParams) {
+            accessSequence = library.accessPattern.indices(CATALOG_SIZE, ACCESS_SEQUENCE_LENGTH,
+                    7 + threadParams.getThreadIndex());
+        }
+
+        private int nextIndex() {
+            next = next + 1 == accessSequence.length ? 0 : next + 1;
+            return accessSequence[next];
+        }
+    }
+
+    @Benchmark
+    public Book searchByIsbn(Library library, Accesses accesses) {
+        return library.libraryService.searchByIsbn(library.books[accesses.nextIndex()].getIsbn());
+    }
+
+    @Benchmark
+    public Book searchByAuthor(Library library, Accesses accesses) {
+        return library.libraryService.searchByAuthor(library.books[accesses.nextIndex()].getAuthor());
+    }
+}
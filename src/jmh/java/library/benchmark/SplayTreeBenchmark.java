@@ -0,0 +1,107 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searching and deleting in author and ISBN trees holding the whole catalog, built by inserting the
+ * catalog in the given order.
+ *
+ * Deletes are measured together with re-inserting the deleted node so that the tree keeps its size; subtract the
+ * matching {@link SplayTreeInsertBenchmark} score for the cost of the delete alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SplayTreeBenchmark {
+
+    private static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int catalogSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private AccessPattern accessPattern;
+
+    @Param({"RANDOM", "SORTED"})
+    private InsertionOrder insertionOrder;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private Book[] searchKeys;
+    private SplayTreeNode<Book>[] authorNodes;
+    private SplayTreeNode<Book>[] isbnNodes;
+    private SplayTreeNode<Book> authorTree;
+    private SplayTreeNode<Book> isbnTree;
+    private int[] accessSequence;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildTrees() {
+        Book[] books = BenchmarkCatalog.books(catalogSize, insertionOrder, 42);
+        authorNodes = newNodes(catalogSize);
+        isbnNodes = newNodes(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            authorNodes[i] = new SplayTreeNode<>(books[i]);
+            authorTree = bookSplayTreeService.insertByAuthor(authorTree, authorNodes[i]);
+            isbnNodes[i] = new SplayTreeNode<>(books[i]);
+            isbnTree = bookSplayTreeService.insertByISBN(isbnTree, isbnNodes[i]);
+        }
+        searchKeys = BenchmarkCatalog.searchKeys(books);
+        accessSequence = accessPattern.indices(catalogSize, ACCESS_SEQUENCE_LENGTH, 7);
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> searchByAuthor() {
+        authorTree = bookSplayTreeService.searchByAuthor(authorTree, searchKeys[nextIndex()]);
+        return authorTree;
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> searchByIsbn() {
+        isbnTree = bookSplayTreeService.searchByIsbn(isbnTree, searchKeys[nextIndex()]);
+        return isbnTree;
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> deleteAndReinsertByAuthor() {
+        SplayTreeNode<Book> node = authorNodes[nextIndex()];
+        authorTree = bookSplayTreeService.delete(authorTree, node);
+        detach(node);
+        authorTree = bookSplayTreeService.insertByAuthor(authorTree, node);
+        return authorTree;
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> deleteAndReinsertByIsbn() {
+        SplayTreeNode<Book> node = isbnNodes[nextIndex()];
+        isbnTree = bookSplayTreeService.delete(isbnTree, node);
+        detach(node);
+        isbnTree = bookSplayTreeService.insertByISBN(isbnTree, node);
+        return isbnTree;
+    }
+
+    private int nextIndex() {
+        next = next + 1 == accessSequence.length ? 0 : next + 1;
+        return accessSequence[next];
+    }
+
+    private static void detach(SplayTreeNode<Book> node) {
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SplayTreeNode<Book>[] newNodes(int size) {
+        // Arrays of a generic type can't be created directly
+        return (SplayTreeNode<Book>[]) new SplayTreeNode<?>[size];
+    }
+}
@@ -0,0 +1,64 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the average cost of inserting a book into the author and ISBN trees while growing them from empty to
+ * the full catalog size. Once the whole catalog has been inserted the tree is thrown away and built again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SplayTreeInsertBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int catalogSize;
+
+    @Param({"RANDOM", "SORTED"})
+    private InsertionOrder insertionOrder;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private Book[] books;
+    private SplayTreeNode<Book> root;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generateBooks() {
+        books = BenchmarkCatalog.books(catalogSize, insertionOrder, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTree() {
+        root = null;
+        next = 0;
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> insertByAuthor() {
+        root = bookSplayTreeService.insertByAuthor(root, new SplayTreeNode<>(nextBook()));
+        return root;
+    }
+
+    @Benchmark
+    public SplayTreeNode<Book> insertByISBN() {
+        root = bookSplayTreeService.insertByISBN(root, new SplayTreeNode<>(nextBook()));
+        return root;
+    }
+
+    private Book nextBook() {
+        if (next == books.length) {
+            root = null;
+            next = 0;
+        }
+        return books[next++];
+    }
+}
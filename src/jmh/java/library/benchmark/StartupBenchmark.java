@@ -0,0 +1,67 @@
+package library.benchmark;
+
+import library.benchmark.BenchmarkCatalog.InsertionOrder;
+import library.model.Book;
+import library.model.SplayTreeNode;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the author and ISBN trees for a whole catalog at start-up, by inserting the books one at a time
+ * (as LibraryService used to) against bulk-building balanced trees, as well as the whole of loading the library.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class StartupBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int catalogSize;
+
+    @Param({"RANDOM", "SORTED"})
+    private InsertionOrder insertionOrder;
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+    private List<Book> books;
+    private Path baseLibrary;
+
+    @Setup(Level.Trial)
+    public void generateBooks() throws IOException {
+        Book[] generatedBooks = BenchmarkCatalog.books(catalogSize, insertionOrder, 42);
+        books = Arrays.asList(generatedBooks);
+        baseLibrary = BenchmarkCatalog.writeTsv(generatedBooks);
+    }
+
+    @Benchmark
+    public Object insertOneAtATime() {
+        SplayTreeNode<Book> authorTree = null;
+        SplayTreeNode<Book> isbnTree = null;
+        for (Book book : books) {
+            authorTree = bookSplayTreeService.insertByAuthor(authorTree, new SplayTreeNode<>(book));
+            isbnTree = bookSplayTreeService.insertByISBN(isbnTree, new SplayTreeNode<>(book));
+        }
+        return new Object[]{authorTree, isbnTree};
+    }
+
+    @Benchmark
+    public Object bulkBuild() {
+        SplayTreeNode<Book> authorTree = bookSplayTreeService.buildByAuthor(books);
+        SplayTreeNode<Book> isbnTree = bookSplayTreeService.buildByIsbn(books);
+        return new Object[]{authorTree, isbnTree};
+    }
+
+    @Benchmark
+    public LibraryService loadLibrary() {
+        return new LibraryService(bookSplayTreeService, LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+    }
+}
@@ -0,0 +1,90 @@
+package library.benchmark;
+
+import library.model.Book;
+import library.service.BookSplayTreeService;
+import library.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searching a million titles by words. The titles are made up of words drawn from a Zipfian vocabulary, as
+ * in natural language, so the postings of a few words are very long and most are short. Each query takes its words
+ * from the title of a random book, so every query matches at least one book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TitleSearchBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int MIN_WORDS_PER_TITLE = 2;
+    private static final int MAX_WORDS_PER_TITLE = 6;
+    private static final int QUERY_COUNT = 1 << 16;
+    private static final int LIMIT = 20;
+
+    @Param({"1", "2", "3"})
+    private int termsPerQuery;
+
+    private LibraryService libraryService;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadLibrary() throws IOException {
+        Random random = new Random(42);
+        ZipfSampler vocabulary = new ZipfSampler(VOCABULARY_SIZE, 1.0);
+        Book[] books = BenchmarkCatalog.books(CATALOG_SIZE, BenchmarkCatalog.InsertionOrder.RANDOM, 42);
+        String[][] titleWords = new String[CATALOG_SIZE][];
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            String[] words = new String[MIN_WORDS_PER_TITLE
+                    + random.nextInt(MAX_WORDS_PER_TITLE - MIN_WORDS_PER_TITLE + 1)];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = word(vocabulary.sample(random));
+            }
+            titleWords[i] = words;
+            books[i] = new Book(String.join(" ", words), books[i].getAuthor(), books[i].getIsbn());
+        }
+
+        Path baseLibrary = BenchmarkCatalog.writeTsv(books);
+        libraryService = new LibraryService(new BookSplayTreeService(),
+                LibraryServiceBenchmark.fileServiceFor(baseLibrary));
+
+        queries = new String[QUERY_COUNT];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            String[] words = titleWords[random.nextInt(CATALOG_SIZE)];
+            StringBuilder query = new StringBuilder();
+            for (int w = 0; w < termsPerQuery; w++) {
+                query.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            queries[q] = query.toString();
+        }
+    }
+
+    /**
+     * @param rank the rank of the word in the vocabulary, from 1
+     * @return a distinct, capitalised word for each rank
+     */
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        for (int remaining = rank; remaining > 0; remaining /= 26) {
+            word.append((char) ('a' + remaining % 26));
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        next = next + 1 == queries.length ? 0 : next + 1;
+        return libraryService.searchByTitle(queries[next], LIMIT);
+    }
+}
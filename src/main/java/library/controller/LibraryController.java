@@ -1,12 +1,17 @@
 package library.controller;
 
 import library.model.Book;
+import library.model.BorrowingOutcome;
 import library.service.LibraryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/library")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class LibraryController {
 
     private final LibraryService libraryService;
@@ -21,11 +26,52 @@ public class LibraryController {
         return libraryService.searchByAuthor(authorName);
     }
 
+    @RequestMapping("/searchAllByAuthor")
+    public List<Book> searchAllByAuthor(@RequestParam(value = "authorName") String authorName) {
+        return libraryService.searchAllByAuthor(authorName);
+    }
+
+    @RequestMapping("/searchByAuthorPrefix")
+    public List<Book> searchByAuthorPrefix(@RequestParam(value = "prefix") String prefix,
+                                           @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return libraryService.searchByAuthorPrefix(prefix, limit);
+    }
+
+    @RequestMapping("/searchByAuthorRange")
+    public List<Book> searchByAuthorRange(@RequestParam(value = "from") String fromAuthor,
+                                          @RequestParam(value = "to", required = false) String toAuthor,
+                                          @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return libraryService.searchByAuthorRange(fromAuthor, toAuthor, limit);
+    }
+
+    @RequestMapping("/searchByAuthorFuzzy")
+    public List<Book> searchByAuthorFuzzy(@RequestParam(value = "author") String authorName,
+                                          @RequestParam(value = "maxDistance", defaultValue = "2") int maxDistance,
+                                          @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return libraryService.searchByAuthorFuzzy(authorName, maxDistance, limit);
+    }
+
+    @RequestMapping("/searchByTitle")
+    public List<Book> searchByTitle(@RequestParam(value = "query") String query,
+                                    @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return libraryService.searchByTitle(query, limit);
+    }
+
     @RequestMapping("/searchByISBN")
-    public Book searchByIsbn(@RequestParam(value = "isbn") Long isbn) {
+    public Book searchByIsbn(@RequestParam(value = "isbn") long isbn) {
         return libraryService.searchByIsbn(isbn);
     }
 
+    @RequestMapping("/searchByISBNs")
+    public List<Book> searchByIsbns(@RequestParam(value = "isbns") List<Long> isbns) {
+        return libraryService.searchByIsbns(isbns);
+    }
+
+    @RequestMapping("/borrowed")
+    public List<Book> listBorrowed(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return libraryService.listBorrowed(limit);
+    }
+
     @PostMapping("/borrow")
     public void borrowBook(@RequestBody Book book) {
         libraryService.borrowBook(book);
@@ -35,4 +81,14 @@ public class LibraryController {
     public void returnBook(@RequestBody Book book) {
         libraryService.returnBook(book);
     }
+
+    @PostMapping("/borrow/batch")
+    public List<BorrowingOutcome> borrowBooks(@RequestBody List<Book> books) {
+        return libraryService.borrowBooks(books);
+    }
+
+    @PostMapping("/return/batch")
+    public List<BorrowingOutcome> returnBooks(@RequestBody List<Book> books) {
+        return libraryService.returnBooks(books);
+    }
 }
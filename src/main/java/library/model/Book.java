@@ -1,20 +1,19 @@
 package library.model;
 
-import com.opencsv.bean.CsvBindByName;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class Book implements Comparable<Book> {
 
-    @CsvBindByName(column = "Title")
     private String title;
-
-    @CsvBindByName(column = "Author")
     private String author;
-
-    @CsvBindByName(column = "ISBN")
     private long isbn;
 
+    // Lower-cased author used for comparisons. Computed on first use rather than in a constructor since the JSON
+    // parser sets the fields directly, and cached so that tree descents don't allocate a String per comparison
+    private String authorKey;
+
     /**
-     * Used by CSV and JSON parsers
+     * Used by the JSON parser
      */
     public Book() {
     }
@@ -43,13 +42,62 @@ public class Book implements Comparable<Book> {
     }
 
     public int compareByAuthor(Book o) {
-        return author.toLowerCase().compareTo(o.author.toLowerCase());
+        return getAuthorKey().compareTo(o.getAuthorKey());
+    }
+
+    /**
+     * Order books by author as {@link #compareByAuthor(Book)} does, then by ISBN, so that the books by an author are
+     * kept together in a consistent order, then as {@link #compareByTitleAndAuthor(Book)} so that any one of them can be
+     * told apart from the others.
+     */
+    public int compareByAuthorAndIsbn(Book o) {
+        int comparison = compareByAuthor(o);
+        if (comparison == 0) {
+            comparison = Long.compare(isbn, o.isbn);
+        }
+        return comparison != 0 ? comparison : compareByTitleAndAuthor(o);
     }
 
     public int compareByISBN(Book o) {
         return Long.compare(isbn, o.isbn);
     }
 
+    /**
+     * Order books by ISBN, then by author as {@link #compareByAuthor(Book)} does, then as
+     * {@link #compareByTitleAndAuthor(Book)}, so that books which share an ISBN can be told apart.
+     */
+    public int compareByIsbnAndAuthor(Book o) {
+        int comparison = compareByISBN(o);
+        if (comparison == 0) {
+            comparison = compareByAuthor(o);
+        }
+        return comparison != 0 ? comparison : compareByTitleAndAuthor(o);
+    }
+
+    /**
+     * Order books with the same author, ignoring case, and ISBN by title, then by the exact author. A book without a
+     * title, e.g. one given to borrow, is equal to every one of them, so that it can be used to search for any of them.
+     */
+    public int compareByTitleAndAuthor(Book o) {
+        if (title == null || o.title == null) {
+            return 0;
+        }
+        int comparison = title.compareTo(o.title);
+        return comparison != 0 ? comparison : author.compareTo(o.author);
+    }
+
+    /**
+     * @return the lower-cased author, by which books are ordered in {@link #compareByAuthor(Book)}
+     */
+    @JsonIgnore
+    public String getAuthorKey() {
+        if (authorKey == null) {
+            // Racy but harmless: every thread computes the same immutable String
+            authorKey = author.toLowerCase();
+        }
+        return authorKey;
+    }
+
     @Override
     public String toString() {
         return String.format("%s, %s, %d", title, author, isbn);
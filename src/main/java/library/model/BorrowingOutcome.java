@@ -0,0 +1,43 @@
+package library.model;
+
+/**
+ * The outcome of borrowing or returning one book in a batch: either it succeeded, or it failed with a message
+ * explaining why. The outcome of one book does not affect the others in the batch.
+ */
+public class BorrowingOutcome {
+
+    private final Book book;
+    private final boolean successful;
+    private final String message;
+
+    private BorrowingOutcome(Book book, boolean successful, String message) {
+        this.book = book;
+        this.successful = successful;
+        this.message = message;
+    }
+
+    public static BorrowingOutcome success(Book book) {
+        return new BorrowingOutcome(book, true, null);
+    }
+
+    public static BorrowingOutcome failure(Book book, String message) {
+        return new BorrowingOutcome(book, false, message);
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return successful ? String.format("%s: OK", book) : String.format("%s: %s", book, message);
+    }
+}
@@ -0,0 +1,506 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link BookTree} stored in parallel arrays rather than as node objects. Node {@code i} holds the book
+ * {@code books.get(i)} and is linked to its children and parent by their indices in {@code left}, {@code right} and
+ * {@code parent}, with {@link #NIL} for none. Slots freed by deletes are kept in a free list, threaded through
+ * {@code left}, and reused by the next insert, so a library which borrows and returns books doesn't grow.
+ *
+ * Each node costs a book reference and three ints, about half of a {@link SplayTreeNode}, and the whole tree is four
+ * objects for the garbage collector to trace however many books it holds. With an {@link OffHeapBookStore}, the books
+ * themselves are kept outside the heap as well, and the tree is only arrays of primitives.
+ *
+ * The splaying is the same bottom-up splaying as in {@link BookSplayTreeService}, so both storages give the same
+ * tree shapes.
+ */
+/*package*/ class ArrayBookTree implements BookTree {
+
+    private static final int NIL = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final boolean orderedByIsbn;
+
+    private final BookStore books;
+    private int capacity;
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+
+    private int root = NIL;
+    // Slots from here on have never been used
+    private int allocated = 0;
+    // First slot freed by a delete, or NIL if there is none
+    private int freeList = NIL;
+    private long rotationCount = 0;
+
+    /*package*/ ArrayBookTree(boolean orderedByIsbn, int capacity) {
+        this(orderedByIsbn, capacity, new HeapBookStore());
+    }
+
+    /*package*/ ArrayBookTree(boolean orderedByIsbn, int capacity, BookStore books) {
+        this.orderedByIsbn = orderedByIsbn;
+        this.books = books;
+        int initialCapacity = Math.max(capacity, MIN_CAPACITY);
+        this.capacity = initialCapacity;
+        books.resize(initialCapacity);
+        left = new int[initialCapacity];
+        right = new int[initialCapacity];
+        parent = new int[initialCapacity];
+    }
+
+    /*package*/ static ArrayBookTree copyOf(SplayTreeNode<Book> root, boolean orderedByIsbn,
+                                           BookSplayTreeService bookSplayTreeService) {
+        return copyOf(root, orderedByIsbn, bookSplayTreeService, new HeapBookStore());
+    }
+
+    /**
+     * Copy a tree of nodes into arrays. The books are stored in the order of the tree and linked into a balanced
+     * tree, whatever the shape of the original.
+     *
+     * @param root the root of the tree to copy, which may be null
+     * @param orderedByIsbn whether the tree is ordered by ISBN rather than author
+     * @param bookSplayTreeService the service to walk the tree with
+     * @param books where to store the books
+     * @return the new tree
+     */
+    /*package*/ static ArrayBookTree copyOf(SplayTreeNode<Book> root, boolean orderedByIsbn,
+                                           BookSplayTreeService bookSplayTreeService, BookStore books) {
+        int count = 0;
+        for (SplayTreeNode<Book> node = bookSplayTreeService.locateMin(root); node != null;
+             node = bookSplayTreeService.locateSuccessor(node)) {
+            count++;
+        }
+
+        ArrayBookTree tree = new ArrayBookTree(orderedByIsbn, count, books);
+        for (SplayTreeNode<Book> node = bookSplayTreeService.locateMin(root); node != null;
+             node = bookSplayTreeService.locateSuccessor(node)) {
+            tree.books.set(tree.allocated++, node.data);
+        }
+        tree.root = tree.linkBalanced(0, count, NIL);
+        return tree;
+    }
+
+    /**
+     * Link the slots {@code start} to {@code start + count - 1}, which hold books in order, into a balanced subtree.
+     *
+     * @return the index of the root of the subtree, or NIL if count is zero
+     */
+    private int linkBalanced(int start, int count, int parentIndex) {
+        if (count == 0) {
+            return NIL;
+        }
+        int leftCount = (count - 1) / 2;
+        int middle = start + leftCount;
+        parent[middle] = parentIndex;
+        left[middle] = linkBalanced(start, leftCount, middle);
+        right[middle] = linkBalanced(middle + 1, count - leftCount - 1, middle);
+        return middle;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    @Override
+    public Book getRoot() {
+        return root == NIL ? null : books.get(root);
+    }
+
+    @Override
+    public void search(Book searchKey) {
+        if (orderedByIsbn) {
+            searchByIsbn(searchKey.getIsbn());
+            return;
+        }
+        int lastSearched = NIL;
+        int current = root;
+        while (current != NIL) {
+            lastSearched = current;
+            int comparison = books.compareByAuthor(searchKey, current);
+            if (comparison < 0) {
+                current = left[current];
+            } else if (comparison > 0) {
+                current = right[current];
+            } else {
+                break;
+            }
+        }
+        if (lastSearched != NIL) {
+            splay(lastSearched);
+        }
+    }
+
+    @Override
+    public void searchByIsbn(long isbn) {
+        int lastSearched = NIL;
+        int current = root;
+        while (current != NIL) {
+            lastSearched = current;
+            long currentIsbn = books.getIsbn(current);
+            if (isbn < currentIsbn) {
+                current = left[current];
+            } else if (isbn > currentIsbn) {
+                current = right[current];
+            } else {
+                break;
+            }
+        }
+        if (lastSearched != NIL) {
+            splay(lastSearched);
+        }
+    }
+
+    @Override
+    public void searchExactly(Book book) {
+        int lastSearched = NIL;
+        int current = root;
+        while (current != NIL) {
+            lastSearched = current;
+            int comparison = compareExactly(book, current);
+            if (comparison < 0) {
+                current = left[current];
+            } else if (comparison > 0) {
+                current = right[current];
+            } else {
+                break;
+            }
+        }
+        if (lastSearched != NIL) {
+            splay(lastSearched);
+        }
+    }
+
+    @Override
+    public Book find(Book searchKey) {
+        if (orderedByIsbn) {
+            return findByIsbn(searchKey.getIsbn());
+        }
+        int current = root;
+        while (current != NIL) {
+            int comparison = books.compareByAuthor(searchKey, current);
+            if (comparison < 0) {
+                current = left[current];
+            } else if (comparison > 0) {
+                current = right[current];
+            } else {
+                return books.get(current);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Book findByIsbn(long isbn) {
+        int current = root;
+        while (current != NIL) {
+            long currentIsbn = books.getIsbn(current);
+            if (isbn < currentIsbn) {
+                current = left[current];
+            } else if (isbn > currentIsbn) {
+                current = right[current];
+            } else {
+                return books.get(current);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Book[] findAllByIsbn(long[] sortedIsbns) {
+        // The same finger search as BookSplayTreeService#findAllByIsbn
+        Book[] found = new Book[sortedIsbns.length];
+        int finger = root;
+        for (int i = 0; i < sortedIsbns.length && finger != NIL; i++) {
+            long isbn = sortedIsbns[i];
+
+            int current = finger;
+            while (parent[current] != NIL
+                    && !(current == left[parent[current]] && books.getIsbn(parent[current]) > isbn)) {
+                current = parent[current];
+            }
+
+            while (current != NIL) {
+                finger = current;
+                long currentIsbn = books.getIsbn(current);
+                if (isbn < currentIsbn) {
+                    current = left[current];
+                } else if (isbn > currentIsbn) {
+                    current = right[current];
+                } else {
+                    found[i] = books.get(current);
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int searchDepth(Book searchKey) {
+        if (orderedByIsbn) {
+            return searchDepthByIsbn(searchKey.getIsbn());
+        }
+        int depth = 0;
+        int current = root;
+        while (current != NIL) {
+            depth++;
+            int comparison = books.compareByAuthor(searchKey, current);
+            if (comparison == 0) {
+                break;
+            }
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        return depth;
+    }
+
+    @Override
+    public int searchDepthByIsbn(long isbn) {
+        int depth = 0;
+        int current = root;
+        while (current != NIL) {
+            depth++;
+            long currentIsbn = books.getIsbn(current);
+            if (isbn == currentIsbn) {
+                break;
+            }
+            current = isbn < currentIsbn ? left[current] : right[current];
+        }
+        return depth;
+    }
+
+    @Override
+    public void insert(Book book) {
+        int node = allocate(book);
+
+        int parentForNode = NIL;
+        boolean isLeftChild = false;
+        int current = root;
+        while (current != NIL) {
+            parentForNode = current;
+            isLeftChild = compareExactly(book, current) < 0;
+            current = isLeftChild ? left[current] : right[current];
+        }
+
+        parent[node] = parentForNode;
+        if (parentForNode == NIL) {
+            root = node;
+        } else {
+            if (isLeftChild) {
+                left[parentForNode] = node;
+            } else {
+                right[parentForNode] = node;
+            }
+            splay(node);
+        }
+    }
+
+    @Override
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public void deleteRoot() {
+        int node = root;
+        int leftChild = left[node];
+        int rightChild = right[node];
+
+        if (leftChild != NIL) {
+            // Make the max of the left subtree the new root, which leaves it without a right child to attach the
+            // right subtree to
+            parent[leftChild] = NIL;
+            int leftMax = leftChild;
+            while (right[leftMax] != NIL) {
+                leftMax = right[leftMax];
+            }
+            splay(leftMax);
+            right[leftMax] = rightChild;
+            if (rightChild != NIL) {
+                parent[rightChild] = leftMax;
+            }
+        } else {
+            if (rightChild != NIL) {
+                parent[rightChild] = NIL;
+            }
+            root = rightChild;
+        }
+        free(node);
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        return iteratorFrom(root == NIL ? NIL : locateMin(root));
+    }
+
+    @Override
+    public Iterator<Book> iteratorFrom(Book searchKey) {
+        // Find the first node which doesn't come before the search key
+        int first = NIL;
+        int current = root;
+        while (current != NIL) {
+            if (compare(searchKey, current) <= 0) {
+                first = current;
+                current = left[current];
+            } else {
+                current = right[current];
+            }
+        }
+        return iteratorFrom(first);
+    }
+
+    private Iterator<Book> iteratorFrom(int first) {
+        return new Iterator<Book>() {
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next != NIL;
+            }
+
+            @Override
+            public Book next() {
+                if (next == NIL) {
+                    throw new NoSuchElementException();
+                }
+                Book book = books.get(next);
+                next = locateSuccessor(next);
+                return book;
+            }
+        };
+    }
+
+    private int compare(Book book, int node) {
+        return orderedByIsbn ? Long.compare(book.getIsbn(), books.getIsbn(node)) : books.compareByAuthor(book, node);
+    }
+
+    /**
+     * Compare as {@link #compare(Book, int)}, then by ISBN among books by the same author, or by author among books
+     * with the same ISBN, then by {@link Book#compareByTitleAndAuthor(Book)}, which is the order books are inserted in.
+     */
+    private int compareExactly(Book book, int node) {
+        int comparison = compare(book, node);
+        if (comparison == 0) {
+            comparison = orderedByIsbn
+                    ? books.compareByAuthor(book, node)
+                    : Long.compare(book.getIsbn(), books.getIsbn(node));
+        }
+        // Only books by the same author with the same ISBN need the book itself, so it's rarely read from the store
+        return comparison != 0 || book.getTitle() == null ? comparison : book.compareByTitleAndAuthor(books.get(node));
+    }
+
+    /**
+     * Splay a node to the root with zig-zig and zig-zag steps, finishing with a single rotation if the node ends up
+     * as a child of the root.
+     */
+    private void splay(int node) {
+        while (parent[node] != NIL) {
+            int nodeParent = parent[node];
+            int grandparent = parent[nodeParent];
+            if (grandparent == NIL) {
+                rotateUp(node);
+            } else if ((left[grandparent] == nodeParent) == (left[nodeParent] == node)) {
+                // zig-zig: both left children or both right children
+                rotateUp(nodeParent);
+                rotateUp(node);
+            } else {
+                // zig-zag
+                rotateUp(node);
+                rotateUp(node);
+            }
+        }
+        root = node;
+    }
+
+    /**
+     * Rotate a node into the position of its parent, i.e. a right rotation of the parent if the node is a left child
+     * and a left rotation otherwise.
+     */
+    private void rotateUp(int node) {
+        rotationCount++;
+        int nodeParent = parent[node];
+        int grandparent = parent[nodeParent];
+        if (left[nodeParent] == node) {
+            int middle = right[node];
+            left[nodeParent] = middle;
+            if (middle != NIL) {
+                parent[middle] = nodeParent;
+            }
+            right[node] = nodeParent;
+        } else {
+            int middle = left[node];
+            right[nodeParent] = middle;
+            if (middle != NIL) {
+                parent[middle] = nodeParent;
+            }
+            left[node] = nodeParent;
+        }
+        parent[nodeParent] = node;
+        parent[node] = grandparent;
+        if (grandparent != NIL) {
+            if (left[grandparent] == nodeParent) {
+                left[grandparent] = node;
+            } else {
+                right[grandparent] = node;
+            }
+        }
+    }
+
+    private int locateMin(int node) {
+        int current = node;
+        while (left[current] != NIL) {
+            current = left[current];
+        }
+        return current;
+    }
+
+    private int locateSuccessor(int node) {
+        if (right[node] != NIL) {
+            return locateMin(right[node]);
+        }
+        int current = node;
+        while (parent[current] != NIL && current == right[parent[current]]) {
+            current = parent[current];
+        }
+        return parent[current];
+    }
+
+    private int allocate(Book book) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (allocated == capacity) {
+                grow();
+            }
+            node = allocated++;
+        }
+        books.set(node, book);
+        left[node] = NIL;
+        right[node] = NIL;
+        parent[node] = NIL;
+        return node;
+    }
+
+    private void free(int node) {
+        books.clear(node);
+        left[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow() {
+        capacity += capacity >> 1;
+        books.resize(capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+    }
+}
@@ -0,0 +1,475 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An index of the trigrams, i.e. the runs of three characters, in the lower-cased names of the authors in the library,
+ * for finding the authors within a few typing mistakes of a name.
+ *
+ * A name within k edits of another shares all but at most 3k of its trigrams with it, since an edit changes at most
+ * three of them. So the names sharing too few trigrams with the name searched for are never looked at, and those left
+ * are checked by computing their edit distance, giving up as soon as it is bound to exceed k.
+ *
+ * The index holds every author the library had when it was built, including those whose books are all borrowed, so
+ * that it needn't change as books are borrowed and returned. It is immutable, and so thread-safe.
+ */
+/*package*/ class AuthorTrigramIndex {
+
+    // Marks the start and end of a name, so that its first and last characters are in as many trigrams as the others
+    private static final char PADDING = '\u0000';
+
+    /**
+     * An author found by {@link #search(String, int)}.
+     */
+    /*package*/ static class Match {
+        private final String authorKey;
+        private final int distance;
+
+        private Match(String authorKey, int distance) {
+            this.authorKey = authorKey;
+            this.distance = distance;
+        }
+
+        /**
+         * @return the lower-cased author name, as in {@link Book#getAuthorKey()}
+         */
+        /*package*/ String getAuthorKey() {
+            return authorKey;
+        }
+
+        /**
+         * @return the number of single-character insertions, deletions and substitutions between the name searched
+         *     for and this one
+         */
+        /*package*/ int getDistance() {
+            return distance;
+        }
+    }
+
+    // The distinct author keys, in ascending order
+    private final String[] authorKeys;
+    // For each trigram, the index in postings of the positions in authorKeys of the authors with it, in ascending order
+    private final TrigramIds trigramIds;
+    private final int[][] postings;
+
+    /**
+     * Numbers the distinct trigrams from 0, in an open-addressing hash table so that the millions of lookups made
+     * while building the index don't box each trigram.
+     */
+    private static class TrigramIds {
+        private static final long EMPTY = -1; // Not a trigram, which only takes up the low 48 bits
+
+        private long[] trigrams = new long[1024];
+        private int[] ids = new int[1024];
+        private int size = 0;
+
+        {
+            Arrays.fill(trigrams, EMPTY);
+        }
+
+        /**
+         * @return the number of the trigram, or -1 if it hasn't been numbered
+         */
+        private int get(long trigram) {
+            int mask = trigrams.length - 1;
+            for (int slot = hash(trigram) & mask; trigrams[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (trigrams[slot] == trigram) {
+                    return ids[slot];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the number of the trigram, numbering it next if it hasn't been numbered yet
+         */
+        private int getOrAdd(long trigram) {
+            int mask = trigrams.length - 1;
+            int slot = hash(trigram) & mask;
+            for (; trigrams[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (trigrams[slot] == trigram) {
+                    return ids[slot];
+                }
+            }
+            trigrams[slot] = trigram;
+            ids[slot] = size;
+            if (++size * 2 > trigrams.length) {
+                resize();
+            }
+            return size - 1;
+        }
+
+        private void resize() {
+            long[] oldTrigrams = trigrams;
+            int[] oldIds = ids;
+            trigrams = new long[oldTrigrams.length * 2];
+            ids = new int[oldIds.length * 2];
+            Arrays.fill(trigrams, EMPTY);
+            int mask = trigrams.length - 1;
+            for (int i = 0; i < oldTrigrams.length; i++) {
+                if (oldTrigrams[i] != EMPTY) {
+                    int slot = hash(oldTrigrams[i]) & mask;
+                    while (trigrams[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    trigrams[slot] = oldTrigrams[i];
+                    ids[slot] = oldIds[i];
+                }
+            }
+        }
+
+        private static int hash(long trigram) {
+            long h = trigram * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32);
+        }
+    }
+
+    private AuthorTrigramIndex(String[] authorKeys, TrigramIds trigramIds, int[][] postings) {
+        this.authorKeys = authorKeys;
+        this.trigramIds = trigramIds;
+        this.postings = postings;
+    }
+
+    /**
+     * Build an index of the authors of the books in some trees. The trees are iterated, not splayed.
+     *
+     * @param trees the trees of books whose authors to index, ordered by author
+     * @return the index
+     */
+    /*package*/ static AuthorTrigramIndex of(BookTree... trees) {
+        List<String> keys = new ArrayList<>();
+        for (BookTree tree : trees) {
+            for (Book book : tree) {
+                keys.add(book.getAuthorKey());
+            }
+        }
+        // Each tree is already in order, so this only merges them
+        keys.sort(null);
+        String[] authorKeys = new String[keys.size()];
+        int authorCount = 0;
+        for (String key : keys) {
+            if (authorCount == 0 || !key.equals(authorKeys[authorCount - 1])) {
+                authorKeys[authorCount++] = key;
+            }
+        }
+        authorKeys = Arrays.copyOf(authorKeys, authorCount);
+
+        // Number the trigrams of each author and count the authors with each trigram first, so that the postings can
+        // be allocated at their final size
+        TrigramIds trigramIds = new TrigramIds();
+        int[] counts = new int[64];
+        // The last author counted for each trigram, to count an author only once for a trigram it has several times
+        int[] lastAuthors = new int[64];
+        int[] trigramIdsByAuthor = new int[authorCount * 16];
+        int[] authorStarts = new int[authorCount + 1];
+        for (int id = 0; id < authorCount; id++) {
+            String authorKey = authorKeys[id];
+            int end = authorStarts[id];
+            if (end + authorKey.length() > trigramIdsByAuthor.length) {
+                trigramIdsByAuthor = Arrays.copyOf(trigramIdsByAuthor, Math.max(end + authorKey.length(),
+                        trigramIdsByAuthor.length + (trigramIdsByAuthor.length >> 1)));
+            }
+            for (int i = 0; i < authorKey.length(); i++) {
+                int trigramId = trigramIds.getOrAdd(trigram(authorKey, i));
+                if (trigramId == counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                    lastAuthors = Arrays.copyOf(lastAuthors, lastAuthors.length * 2);
+                }
+                if (counts[trigramId] == 0 || lastAuthors[trigramId] != id) {
+                    counts[trigramId]++;
+                    lastAuthors[trigramId] = id;
+                    trigramIdsByAuthor[end++] = trigramId;
+                }
+            }
+            authorStarts[id + 1] = end;
+        }
+
+        // Adding the authors in order keeps each trigram's postings sorted
+        int[][] postings = new int[trigramIds.size][];
+        for (int trigramId = 0; trigramId < postings.length; trigramId++) {
+            postings[trigramId] = new int[counts[trigramId]];
+            counts[trigramId] = 0;
+        }
+        for (int id = 0; id < authorCount; id++) {
+            for (int i = authorStarts[id]; i < authorStarts[id + 1]; i++) {
+                int trigramId = trigramIdsByAuthor[i];
+                postings[trigramId][counts[trigramId]++] = id;
+            }
+        }
+        return new AuthorTrigramIndex(authorKeys, trigramIds, postings);
+    }
+
+    /**
+     * Find the authors whose names are within the given edit distance of a name, ignoring case.
+     *
+     * @param authorName the name to search for
+     * @param maxDistance the maximum number of single-character insertions, deletions and substitutions
+     * @return the authors found, closest first, then in author order
+     */
+    /*package*/ List<Match> search(String authorName, int maxDistance) {
+        String searchKey = authorName.toLowerCase();
+        long[] trigrams = trigrams(searchKey);
+        // Every author within the distance shares at least this many of the trigrams
+        int minSharedTrigrams = trigrams.length - 3 * maxDistance;
+
+        List<Match> matches = new ArrayList<>();
+        EditDistance editDistance = new EditDistance(searchKey, maxDistance);
+        if (minSharedTrigrams <= 0) {
+            // The name is too short for the trigrams to rule anyone out
+            for (String authorKey : authorKeys) {
+                addIfClose(matches, editDistance, authorKey);
+            }
+        } else {
+            int[][] postingsList = new int[trigrams.length][];
+            for (int i = 0; i < trigrams.length; i++) {
+                int trigramId = trigramIds.get(trigrams[i]);
+                postingsList[i] = trigramId < 0 ? new int[0] : postings[trigramId];
+            }
+            Arrays.sort(postingsList, Comparator.comparingInt(postings -> postings.length));
+
+            // An author sharing enough trigrams is in at least one of the postings of the rarest
+            // (trigrams - minShared + 1) of them, so only those authors are candidates. Each is then looked for in the
+            // longer postings until it either shares enough trigrams or can no longer do so, and only then is its edit
+            // distance computed
+            int shortCount = trigrams.length - minSharedTrigrams + 1;
+            int[] candidates = concatenate(postingsList, shortCount);
+            Arrays.sort(candidates);
+            int[] positions = new int[trigrams.length];
+            for (int i = 0; i < candidates.length; ) {
+                int id = candidates[i];
+                int shared = 0;
+                while (i < candidates.length && candidates[i] == id) {
+                    shared++;
+                    i++;
+                }
+                for (int p = shortCount; p < trigrams.length && shared < minSharedTrigrams
+                        && shared + trigrams.length - p >= minSharedTrigrams; p++) {
+                    int found = seek(postingsList[p], positions[p], id);
+                    positions[p] = found >= 0 ? found + 1 : -(found + 1);
+                    if (found >= 0) {
+                        shared++;
+                    }
+                }
+                if (shared >= minSharedTrigrams) {
+                    addIfClose(matches, editDistance, authorKeys[id]);
+                }
+            }
+        }
+        // The authors are looked at in author order, and the sort is stable
+        matches.sort(Comparator.comparingInt(Match::getDistance));
+        return matches;
+    }
+
+    private static void addIfClose(List<Match> matches, EditDistance editDistance, String authorKey) {
+        int distance = editDistance.to(authorKey);
+        if (distance <= editDistance.maxDistance) {
+            matches.add(new Match(authorKey, distance));
+        }
+    }
+
+    /**
+     * @return the distinct trigrams of a name padded at both ends, each as three 16-bit chars packed into a long
+     */
+    /*package*/ static long[] trigrams(String name) {
+        long[] trigrams = new long[name.length()];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigram(name, i);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (distinct == 0 || trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * @return the trigram starting at the given position of the padded name, so the first one starts with padding
+     */
+    private static long trigram(String name, int position) {
+        return (long) padded(name, position) << 32 | (long) padded(name, position + 1) << 16 | padded(name, position + 2);
+    }
+
+    private static char padded(String name, int position) {
+        return position == 0 || position == name.length() + 1 ? PADDING : name.charAt(position - 1);
+    }
+
+    /**
+     * @return the positions in the first count postings, unsorted and with repeats
+     */
+    private static int[] concatenate(int[][] postingsList, int count) {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += postingsList[i].length;
+        }
+        int[] concatenated = new int[total];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(postingsList[i], 0, concatenated, size, postingsList[i].length);
+            size += postingsList[i].length;
+        }
+        return concatenated;
+    }
+
+    /**
+     * Look for an author in postings with an exponential search from the given position, as
+     * {@link TitleIndex} does.
+     *
+     * @return the position of the author if found, otherwise (-(insertion point) - 1)
+     */
+    private static int seek(int[] postings, int from, int id) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < postings.length && postings[high] < id) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(postings, low, Math.min(high + 1, postings.length), id);
+    }
+
+    /*package*/ static int boundedDistance(String a, String b, int maxDistance) {
+        return new EditDistance(a, maxDistance).to(b);
+    }
+
+    /**
+     * Computes the Levenshtein distance from one string to others, giving up once it is bound to exceed maxDistance.
+     *
+     * Strings of up to 64 characters are compared with Myers' bit-parallel algorithm, which handles a whole column of
+     * the distance matrix per character of the other string in a few long operations. Longer ones fall back to
+     * filling in the cells within maxDistance of the diagonal. Either way the work arrays are reused from one string
+     * to the next.
+     */
+    private static class EditDistance {
+        private final String from;
+        private final int maxDistance;
+
+        // For each ASCII character, the positions in from where it occurs, as bits
+        private final long[] asciiMasks = new long[128];
+
+        private int[] previous = new int[0];
+        private int[] current = new int[0];
+
+        private EditDistance(String from, int maxDistance) {
+            this.from = from;
+            this.maxDistance = maxDistance;
+            if (from.length() <= Long.SIZE) {
+                for (int i = 0; i < from.length(); i++) {
+                    char c = from.charAt(i);
+                    if (c < asciiMasks.length) {
+                        asciiMasks[c] |= 1L << i;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the distance, or maxDistance + 1 if it is greater than maxDistance
+         */
+        private int to(String to) {
+            if (Math.abs(from.length() - to.length()) > maxDistance) {
+                return maxDistance + 1;
+            }
+            if (from.isEmpty() || to.isEmpty()) {
+                return Math.min(Math.max(from.length(), to.length()), maxDistance + 1);
+            }
+            return from.length() <= Long.SIZE ? bitParallel(to) : banded(to);
+        }
+
+        private long mask(char c) {
+            if (c < asciiMasks.length) {
+                return asciiMasks[c];
+            }
+            long mask = 0;
+            for (int i = 0; i < from.length(); i++) {
+                if (from.charAt(i) == c) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+
+        /**
+         * Myers' algorithm, as explained by Hyyrö: the bits of the vertical deltas of the current column are kept in
+         * positive and negative masks, and the distance is tracked along the bottom row.
+         */
+        private int bitParallel(String to) {
+            long positiveVertical = -1L;
+            long negativeVertical = 0;
+            long lastBit = 1L << (from.length() - 1);
+            int distance = from.length();
+            for (int j = 0; j < to.length(); j++) {
+                long equal = mask(to.charAt(j));
+                long xVertical = equal | negativeVertical;
+                long xHorizontal = (((equal & positiveVertical) + positiveVertical) ^ positiveVertical) | equal;
+                long positiveHorizontal = negativeVertical | ~(xHorizontal | positiveVertical);
+                long negativeHorizontal = positiveVertical & xHorizontal;
+                if ((positiveHorizontal & lastBit) != 0) {
+                    distance++;
+                } else if ((negativeHorizontal & lastBit) != 0) {
+                    distance--;
+                }
+                // The distance can fall by at most one per character left
+                if (distance - (to.length() - j - 1) > maxDistance) {
+                    return maxDistance + 1;
+                }
+                // The top row of the matrix goes up by one per character, so shift in a positive delta
+                positiveHorizontal = (positiveHorizontal << 1) | 1;
+                negativeHorizontal <<= 1;
+                positiveVertical = negativeHorizontal | ~(xVertical | positiveHorizontal);
+                negativeVertical = positiveHorizontal & xVertical;
+            }
+            return Math.min(distance, maxDistance + 1);
+        }
+
+        /**
+         * Fill in the cells of the distance matrix within maxDistance of the diagonal, row by row, giving up once
+         * every cell in a row is over maxDistance.
+         */
+        private int banded(String to) {
+            int over = maxDistance + 1;
+            if (previous.length <= to.length()) {
+                previous = new int[to.length() + 1];
+                current = new int[to.length() + 1];
+            }
+            for (int j = 0; j <= to.length(); j++) {
+                previous[j] = Math.min(j, over);
+            }
+            for (int i = 1; i <= from.length(); i++) {
+                int start = Math.max(1, i - maxDistance);
+                int end = Math.min(to.length(), i + maxDistance);
+                current[0] = Math.min(i, over);
+                if (start > 1) {
+                    current[start - 1] = over;
+                }
+                int rowMin = current[0];
+                char fromChar = from.charAt(i - 1);
+                for (int j = start; j <= end; j++) {
+                    int substitution = previous[j - 1] + (fromChar == to.charAt(j - 1) ? 0 : 1);
+                    int deletion = previous[j] + 1;
+                    int insertion = current[j - 1] + 1;
+                    current[j] = Math.min(Math.min(substitution, Math.min(deletion, insertion)), over);
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (end < to.length()) {
+                    current[end + 1] = over;
+                }
+                if (rowMin > maxDistance) {
+                    return over;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[to.length()];
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Which books of the library are borrowed, as one bit per book in an array of atomic words (see
+ * {@link AvailabilityTracking#BITMAP}). Borrowing or returning a book is a compare-and-set of its bit, so it needs no
+ * lock and leaves the trees alone.
+ *
+ * The books are numbered in ISBN order by {@link BookNumbers}, so that borrowing takes a constant number of memory
+ * accesses however large the library. Each book has its own bit, so of several books with the same ISBN only the one
+ * asked for is borrowed, unless it has identical copies, any available one of which is borrowed. An ISBN is available
+ * as long as any book with it is.
+ */
+/*package*/ class AvailabilityBitmap implements AvailabilityTracker {
+
+    private final BookNumbers numbers;
+    private final int count;
+    // Bit (n % 64) of word (n / 64) is set while book n is borrowed
+    private final AtomicLongArray borrowedBits;
+
+    /**
+     * Number the books and mark them all available.
+     *
+     * @param booksInIsbnOrder every book of the library, in ISBN order
+     */
+    /*package*/ AvailabilityBitmap(Iterable<Book> booksInIsbnOrder) {
+        BookNumbers.Builder builder = new BookNumbers.Builder(true);
+        for (Book book : booksInIsbnOrder) {
+            builder.add(book);
+        }
+        this.count = builder.size();
+        this.numbers = builder.build();
+        this.borrowedBits = new AtomicLongArray((count + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    @Override
+    public boolean isAvailable(long isbn) {
+        for (int number = numbers.first(isbn); number != BookNumbers.NONE; number = numbers.next(number)) {
+            if (!isBorrowed(number)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isAvailable(Book book) {
+        for (int number = numbers.firstMatch(book); number != BookNumbers.NONE;
+             number = numbers.nextMatch(number, book)) {
+            if (!isBorrowed(number)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean markBorrowed(Book book) {
+        return setFirstBorrowedBit(book, true);
+    }
+
+    @Override
+    public boolean markReturned(Book book) {
+        return setFirstBorrowedBit(book, false);
+    }
+
+    @Override
+    public int availableCount() {
+        return count - borrowedCount();
+    }
+
+    /**
+     * Count the borrowed books by counting the set bits, which reads every word once.
+     *
+     * @return the number of borrowed books
+     */
+    @Override
+    public int borrowedCount() {
+        int count = 0;
+        for (int word = 0; word < borrowedBits.length(); word++) {
+            count += Long.bitCount(borrowedBits.get(word));
+        }
+        return count;
+    }
+
+    /**
+     * Split the books into available and borrowed ones. Each book in the trees is a single copy.
+     *
+     * @param booksInIsbnOrder every book of the library in ISBN order, the same books this bitmap was created with
+     * @param available to pass the available books to, in ISBN order
+     * @param borrowed to pass the borrowed books to, in ISBN order
+     */
+    @Override
+    public void splitCopies(Iterable<Book> booksInIsbnOrder, Consumer<Book> available, Consumer<Book> borrowed) {
+        int number = 0;
+        for (Book book : booksInIsbnOrder) {
+            (isBorrowed(number++) ? borrowed : available).accept(book);
+        }
+    }
+
+    /**
+     * @param book the book whose bit to set or clear, or any of its identical copies
+     * @param borrowed whether to mark the book borrowed rather than available
+     * @return whether a bit changed, i.e. false if every copy of the book was already in that state
+     */
+    private boolean setFirstBorrowedBit(Book book, boolean borrowed) {
+        for (int number = numbers.firstMatch(book); number != BookNumbers.NONE;
+             number = numbers.nextMatch(number, book)) {
+            if (setBorrowedBit(number, borrowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBorrowed(int number) {
+        return (borrowedBits.get(number / Long.SIZE) & (1L << number)) != 0;
+    }
+
+    /**
+     * Set or clear a book's bit with a compare-and-set, retrying only if another book sharing the word changed first.
+     *
+     * @param number the number of the book
+     * @param borrowed whether to mark the book borrowed rather than available
+     * @return whether the bit changed, i.e. false if the book was already in that state
+     */
+    private boolean setBorrowedBit(int number, boolean borrowed) {
+        int word = number / Long.SIZE;
+        long bit = 1L << number;
+        while (true) {
+            long bits = borrowedBits.get(word);
+            if (((bits & bit) != 0) == borrowed) {
+                return false;
+            }
+            if (borrowedBits.compareAndSet(word, bits, bits ^ bit)) {
+                return true;
+            }
+        }
+    }
+}
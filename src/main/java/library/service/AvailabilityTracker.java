@@ -0,0 +1,63 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of which books are borrowed outside the trees, for libraries whose trees never change after loading
+ * (see {@link AvailabilityTracking}). Each book record in the trees is tracked on its own, and found by its ISBN,
+ * author and title (see {@link Book#compareByIsbnAndAuthor(Book)}), so books which only share an ISBN are never taken
+ * for each other. Thread-safe: books can be borrowed and returned by any number of threads at once without locking.
+ */
+/*package*/ interface AvailabilityTracker {
+
+    /**
+     * @param isbn an ISBN
+     * @return whether a copy of any book with the ISBN is available
+     */
+    boolean isAvailable(long isbn);
+
+    /**
+     * @param book a book in the trees
+     * @return whether a copy of the book is available
+     */
+    boolean isAvailable(Book book);
+
+    /**
+     * Mark a copy of the given book borrowed, if one is available.
+     *
+     * @param book the book, which must be in the library; without a title, any book with its ISBN and author
+     * @return whether a copy was available and is now borrowed
+     */
+    boolean markBorrowed(Book book);
+
+    /**
+     * Mark a copy of the given book available, if one is borrowed.
+     *
+     * @param book the book, which must be in the library; without a title, any book with its ISBN and author
+     * @return whether a copy was borrowed and is now available
+     */
+    boolean markReturned(Book book);
+
+    /**
+     * @return the number of available copies of all the books
+     */
+    int availableCount();
+
+    /**
+     * @return the number of borrowed copies of all the books
+     */
+    int borrowedCount();
+
+    /**
+     * Split the books in the trees into one book for each available and each borrowed copy, e.g. to save them to a
+     * snapshot. The state of each book is read once, so a book borrowed or returned meanwhile is passed to one consumer
+     * or the other.
+     *
+     * @param booksInIsbnOrder every book in the trees, in ISBN order
+     * @param available to pass a book for each available copy to, in ISBN order
+     * @param borrowed to pass a book for each borrowed copy to, in ISBN order
+     */
+    void splitCopies(Iterable<Book> booksInIsbnOrder, Consumer<Book> available, Consumer<Book> borrowed);
+}
@@ -0,0 +1,27 @@
+package library.service;
+
+/**
+ * How the library keeps track of which books are borrowed, configured with {@code library.availability-tracking}.
+ */
+public enum AvailabilityTracking {
+    /**
+     * Borrowed books are moved out of the author and ISBN trees and title index into the tree of borrowed books, and
+     * moved back when returned, restructuring the trees under the locks of the book's shards.
+     */
+    TREES,
+    /**
+     * The trees and title index hold every book and never change after loading, and whether each book is borrowed is
+     * a bit in an {@link AvailabilityBitmap}. Borrowing and returning flip the book's bit with a compare-and-set and
+     * take no lock unless the journal is enabled, while searches skip borrowed books. Searches never splay, so they
+     * take no lock either.
+     */
+    BITMAP,
+    /**
+     * The trees and title index hold a single record for each title, i.e. each ISBN, however many copies of it the
+     * library has, and never change after loading. A {@link CopyInventory} counts the copies of each title and how
+     * many are available. Borrowing and returning decrement and increment the count with a compare-and-set, and a title
+     * is only unavailable once every copy is borrowed, so popular titles with many copies are borrowed and returned
+     * without touching the trees. Locking and searching are as for {@link #BITMAP}.
+     */
+    COPIES
+}
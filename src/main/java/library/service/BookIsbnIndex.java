@@ -0,0 +1,111 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.Objects;
+
+/**
+ * A hash table of books keyed by ISBN, so that keys are never boxed, e.g. to find a particular borrowed book without
+ * searching a tree ordered by author. Several books may have the same ISBN, as the library may have several copies of
+ * a book. See {@link IsbnHashTable} for how it is laid out.
+ *
+ * Not thread-safe: the caller must guard it, e.g. with the lock of the tree it indexes.
+ */
+/*package*/ class BookIsbnIndex extends IsbnHashTable<Book[]> {
+
+    /**
+     * @param expectedSize the number of books expected, to size the table for; it grows as needed
+     */
+    /*package*/ BookIsbnIndex(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * Index every book of a tree.
+     *
+     * @param tree the tree to index
+     * @return an index of the books in the tree
+     */
+    /*package*/ static BookIsbnIndex of(BookTree tree) {
+        BookIsbnIndex index = new BookIsbnIndex(16);
+        for (Book book : tree) {
+            index.add(book);
+        }
+        return index;
+    }
+
+    /**
+     * Add a book, even if another book with the same ISBN is already indexed.
+     *
+     * @param book the book to add
+     */
+    /*package*/ void add(Book book) {
+        int slot = emptySlot(book.getIsbn());
+        isbns[slot] = book.getIsbn();
+        values[slot] = book;
+        added();
+    }
+
+    /**
+     * Find a book by its ISBN and author, ignoring the case of the author as the trees do.
+     *
+     * @param isbn the ISBN of the book
+     * @param authorKey the author of the book, in lower case as given by {@link Book#getAuthorKey()}
+     * @return one of the books with the ISBN and author, or null if there is none
+     */
+    /*package*/ Book find(long isbn, String authorKey) {
+        int slot = slotOf(isbn, authorKey);
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * Remove a book with the same ISBN, author and title as the given one, which need not be the same instance, as
+     * trees which don't keep their books as objects hand out a new one each time.
+     *
+     * @param book the book to remove
+     * @return whether a book was removed
+     */
+    /*package*/ boolean remove(Book book) {
+        for (int slot = slot(book.getIsbn()); values[slot] != null; slot = next(slot)) {
+            Book indexed = values[slot];
+            if (isbns[slot] == book.getIsbn() && Objects.equals(indexed.getAuthor(), book.getAuthor())
+                    && Objects.equals(indexed.getTitle(), book.getTitle())) {
+                remove(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the slot of a book with the ISBN and author, or -1 if there is none
+     */
+    private int slotOf(long isbn, String authorKey) {
+        for (int slot = slot(isbn); values[slot] != null; slot = next(slot)) {
+            if (isbns[slot] == isbn && values[slot].getAuthorKey().equals(authorKey)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    /*package*/ Book[] newValues(int capacity) {
+        return new Book[capacity];
+    }
+
+    @Override
+    /*package*/ boolean isEmpty(Book[] values, int slot) {
+        return values[slot] == null;
+    }
+
+    @Override
+    /*package*/ void copy(Book[] from, int fromSlot, Book[] to, int toSlot) {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    /*package*/ void clear(Book[] values, int slot) {
+        values[slot] = null;
+    }
+}
@@ -0,0 +1,174 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the books kept track of by an {@link AvailabilityTracker}, so that it can keep the state of each one in a
+ * primitive array, and finds the numbers of a given book by its ISBN. The first number of each ISBN is kept in an
+ * {@link IsbnTable}, and the numbers of books which share an ISBN are chained together.
+ *
+ * Almost every ISBN belongs to a single book, which is found from the ISBN alone, so the books themselves are only kept
+ * for the few ISBNs which several books share, to tell those books apart. The trees may keep their books off the heap,
+ * so keeping every book here would defeat them.
+ *
+ * Not thread-safe while it is being built, but once built it can be read by any number of threads.
+ */
+/*package*/ class BookNumbers {
+
+    /*package*/ static final int NONE = -1;
+
+    private final IsbnTable firstNumbers;
+    // The next number with the same ISBN, by number, or NONE after the last one
+    private final int[] nextNumbers;
+    // The books whose ISBN some other book shares, by number
+    private final Map<Integer, Book> booksSharingIsbn;
+
+    private BookNumbers(IsbnTable firstNumbers, int[] nextNumbers, Map<Integer, Book> booksSharingIsbn) {
+        this.firstNumbers = firstNumbers;
+        this.nextNumbers = nextNumbers;
+        this.booksSharingIsbn = booksSharingIsbn;
+    }
+
+    /**
+     * Numbers books in the order they are added.
+     */
+    /*package*/ static class Builder {
+        private final IsbnTable firstNumbers = new IsbnTable(1024);
+        private int[] nextNumbers = new int[64];
+        private int count = 0;
+        // The books added, until they are built, as the first book with an ISBN is only known to share it later. If the
+        // books are added in ISBN order, only the last one is kept, as it is the only one which a book added later can
+        // share an ISBN with
+        private final List<Book> books = new ArrayList<>();
+        private final boolean inIsbnOrder;
+        private final Map<Integer, Book> booksSharingIsbn = new HashMap<>();
+
+        /**
+         * @param inIsbnOrder whether the books will be added in ISBN order, which saves keeping them all until built
+         */
+        /*package*/ Builder(boolean inIsbnOrder) {
+            this.inIsbnOrder = inIsbnOrder;
+        }
+
+        /**
+         * Number a book, even if an identical one was added already.
+         *
+         * @param book the book
+         * @return its number, one more than the previous book's
+         */
+        /*package*/ int add(Book book) {
+            int number = count++;
+            if (number == nextNumbers.length) {
+                nextNumbers = Arrays.copyOf(nextNumbers, number + (number >> 1));
+            }
+            nextNumbers[number] = NONE;
+
+            int last = firstNumbers.get(book.getIsbn());
+            if (last == IsbnTable.ABSENT) {
+                firstNumbers.put(book.getIsbn(), number);
+            } else {
+                booksSharingIsbn.putIfAbsent(last, book(last));
+                while (nextNumbers[last] != NONE) {
+                    last = nextNumbers[last];
+                }
+                nextNumbers[last] = number;
+                booksSharingIsbn.put(number, book);
+            }
+
+            if (inIsbnOrder) {
+                books.clear();
+            }
+            books.add(book);
+            return number;
+        }
+
+        /**
+         * @param book a book
+         * @return the number of the first book added with the same ISBN, author, title and exact author, or
+         * {@value #NONE} if there is none
+         */
+        /*package*/ int find(Book book) {
+            int first = firstNumbers.get(book.getIsbn());
+            for (int number = first == IsbnTable.ABSENT ? NONE : first; number != NONE; number = nextNumbers[number]) {
+                if (book(number).compareByIsbnAndAuthor(book) == 0) {
+                    return number;
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * @return the number of books added
+         */
+        /*package*/ int size() {
+            return count;
+        }
+
+        /*package*/ BookNumbers build() {
+            books.clear();
+            return new BookNumbers(firstNumbers, Arrays.copyOf(nextNumbers, count), booksSharingIsbn);
+        }
+
+        private Book book(int number) {
+            Book sharing = booksSharingIsbn.get(number);
+            if (sharing != null) {
+                return sharing;
+            }
+            // Otherwise it is the only book with its ISBN so far, which is the last one if books come in ISBN order
+            return inIsbnOrder ? books.get(0) : books.get(number);
+        }
+    }
+
+    /**
+     * @param isbn an ISBN
+     * @return the first number of a book with the ISBN, or {@value #NONE} if there is none
+     */
+    /*package*/ int first(long isbn) {
+        int number = firstNumbers.get(isbn);
+        return number == IsbnTable.ABSENT ? NONE : number;
+    }
+
+    /**
+     * @param number the number of a book
+     * @return the next number of a book with the same ISBN, or {@value #NONE} if there is none
+     */
+    /*package*/ int next(int number) {
+        return nextNumbers[number];
+    }
+
+    /**
+     * Find the first number of a book matching the given one: the book with its ISBN, if only one book has it, or
+     * otherwise a book which compares equal to it by {@link Book#compareByIsbnAndAuthor(Book)}. A book without a title
+     * matches any book with its ISBN and author.
+     *
+     * @param book the book to match, which must be in the library if no other book has its ISBN
+     * @return the number of the first book matching, or {@value #NONE} if there is none
+     */
+    /*package*/ int firstMatch(Book book) {
+        int number = first(book.getIsbn());
+        return number == NONE || matches(number, book) ? number : nextMatch(number, book);
+    }
+
+    /**
+     * @param number the number of a book matching the given one
+     * @param book the book to match, as for {@link #firstMatch(Book)}
+     * @return the number of the next book matching, or {@value #NONE} if there is none
+     */
+    /*package*/ int nextMatch(int number, Book book) {
+        do {
+            number = nextNumbers[number];
+        } while (number != NONE && !matches(number, book));
+        return number;
+    }
+
+    private boolean matches(int number, Book book) {
+        Book numberedBook = booksSharingIsbn.isEmpty() ? null : booksSharingIsbn.get(number);
+        return numberedBook == null || numberedBook.compareByIsbnAndAuthor(book) == 0;
+    }
+}
@@ -0,0 +1,157 @@
+package library.service;
+
+import library.model.Book;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Book records stored outside the Java heap, in direct byte buffers, so that a large catalog doesn't leave the garbage
+ * collector millions of books and strings to trace. Records are appended and never moved, and are identified by their
+ * offset: the index of their buffer in the upper 32 bits and their position in it in the lower 32.
+ *
+ * Each record is the ISBN as a long followed by the title, the author and the lower-cased author (see
+ * {@link Book#getAuthorKey()}), each as its length in chars (or -1 for null) followed by its UTF-16 chars. Storing
+ * the lower-cased author lets books be compared by author directly against their records, char by char as
+ * {@link String#compareTo(String)} does, without reading them back into strings.
+ *
+ * Appending needs exclusive access; reading can be done from several threads at once.
+ */
+/*package*/ class BookRecordArena {
+
+    private static final int CHUNK_SIZE = 1 << 24;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer currentChunk = null;
+
+    /**
+     * A book read back from its record, which remembers the record so that storing it again doesn't copy it.
+     */
+    private static class StoredBook extends Book {
+
+        private final BookRecordArena arena;
+        private final long offset;
+
+        private StoredBook(String title, String author, long isbn, BookRecordArena arena, long offset) {
+            super(title, author, isbn);
+            this.arena = arena;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Store a book, unless it was read from this arena, in which case it is already stored.
+     *
+     * @param book the book
+     * @return the offset of its record
+     */
+    /*package*/ long offsetOf(Book book) {
+        if (book instanceof StoredBook && ((StoredBook) book).arena == this) {
+            return ((StoredBook) book).offset;
+        }
+        return append(book);
+    }
+
+    /**
+     * Store a book and return it as read back from its record, so that every tree it is added to shares the record.
+     *
+     * @param book the book
+     * @return the stored book
+     */
+    /*package*/ Book store(Book book) {
+        return read(offsetOf(book));
+    }
+
+    /*package*/ Book read(long offset) {
+        ByteBuffer chunk = chunkOf(offset);
+        int position = positionOf(offset);
+        long isbn = chunk.getLong(position);
+        position += Long.BYTES;
+        String title = readString(chunk, position);
+        position += stringSize(title);
+        String author = readString(chunk, position);
+        return new StoredBook(title, author, isbn, this, offset);
+    }
+
+    /*package*/ long readIsbn(long offset) {
+        return chunkOf(offset).getLong(positionOf(offset));
+    }
+
+    /**
+     * Compare a lower-cased author to that of a record as {@link String#compareTo(String)} would.
+     *
+     * @param authorKey the lower-cased author
+     * @param offset the offset of the record
+     * @return a negative number, zero or a positive number if the author comes before, with or after the record's
+     */
+    /*package*/ int compareAuthorKey(String authorKey, long offset) {
+        ByteBuffer chunk = chunkOf(offset);
+        int position = positionOf(offset) + Long.BYTES;
+        position += Integer.BYTES + Math.max(chunk.getInt(position), 0) * Character.BYTES; // title
+        position += Integer.BYTES + Math.max(chunk.getInt(position), 0) * Character.BYTES; // author
+
+        int recordLength = chunk.getInt(position);
+        position += Integer.BYTES;
+        int length = Math.min(authorKey.length(), recordLength);
+        for (int i = 0; i < length; i++) {
+            char c = chunk.getChar(position + i * Character.BYTES);
+            if (authorKey.charAt(i) != c) {
+                return authorKey.charAt(i) - c;
+            }
+        }
+        return authorKey.length() - recordLength;
+    }
+
+    private long append(Book book) {
+        String authorKey = book.getAuthor() == null ? null : book.getAuthorKey();
+        int size = Long.BYTES + stringSize(book.getTitle()) + stringSize(book.getAuthor()) + stringSize(authorKey);
+        if (currentChunk == null || currentChunk.remaining() < size) {
+            currentChunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, size));
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = currentChunk;
+        }
+
+        int position = currentChunk.position();
+        currentChunk.putLong(book.getIsbn());
+        putString(currentChunk, book.getTitle());
+        putString(currentChunk, book.getAuthor());
+        putString(currentChunk, authorKey);
+        return ((long) (chunks.length - 1) << 32) | position;
+    }
+
+    private ByteBuffer chunkOf(long offset) {
+        return chunks[(int) (offset >>> 32)];
+    }
+
+    private static int positionOf(long offset) {
+        return (int) offset;
+    }
+
+    private static int stringSize(String string) {
+        return Integer.BYTES + (string == null ? 0 : string.length() * Character.BYTES);
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            buffer.putChar(string.charAt(i));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        int charPosition = position + Integer.BYTES;
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(charPosition + i * Character.BYTES);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,169 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+
+import java.util.Comparator;
+
+/**
+ * Builds a balanced tree from books added one at a time, e.g. while they are being read from a file.
+ *
+ * Until the tree is built, the nodes are kept in a list threaded through their right pointers, so the only memory
+ * used is that of the nodes which end up in the tree. Building sorts that list with a bottom-up merge sort (skipped
+ * entirely if the books were added in order) and then builds the tree from it in O(n). Books which compare as equal
+ * stay in the order they were added.
+ *
+ * Create builders with {@link BookSplayTreeService#authorTreeBuilder()} or
+ * {@link BookSplayTreeService#isbnTreeBuilder()}.
+ */
+public class BookSplayTreeBuilder {
+
+    private final Comparator<Book> comparator;
+
+    private SplayTreeNode<Book> head = null;
+    private SplayTreeNode<Book> tail = null;
+    private int size = 0;
+    private boolean sorted = true;
+
+    // Next node to take from the sorted list while building the tree
+    private SplayTreeNode<Book> cursor;
+
+    /*package*/ BookSplayTreeBuilder(Comparator<Book> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Add a book to the tree to be built.
+     *
+     * @param book the book to add
+     */
+    public void add(Book book) {
+        SplayTreeNode<Book> node = new SplayTreeNode<>(book);
+        if (head == null) {
+            head = node;
+        } else {
+            if (sorted && comparator.compare(tail.data, book) > 0) {
+                sorted = false;
+            }
+            tail.right = node;
+        }
+        tail = node;
+        size++;
+    }
+
+    /**
+     * Build a balanced tree from all the books added so far. The builder is empty again afterwards.
+     *
+     * @return the root of the new tree, or null if no books were added
+     */
+    public SplayTreeNode<Book> build() {
+        cursor = sorted ? head : sortList(head);
+        SplayTreeNode<Book> root = buildBalanced(size);
+
+        head = null;
+        tail = null;
+        size = 0;
+        sorted = true;
+        cursor = null;
+        return root;
+    }
+
+    /**
+     * Build a balanced subtree from the next {@code count} nodes of the sorted list, by building the left subtree from
+     * the first half of them, taking the middle node as the root and building the right subtree from the rest.
+     *
+     * @param count the number of nodes in the subtree
+     * @return the root of the subtree, or null if count is zero
+     */
+    private SplayTreeNode<Book> buildBalanced(int count) {
+        if (count == 0) {
+            return null;
+        }
+        int leftCount = (count - 1) / 2;
+        SplayTreeNode<Book> left = buildBalanced(leftCount);
+
+        SplayTreeNode<Book> node = cursor;
+        cursor = cursor.right;
+
+        node.left = left;
+        if (left != null) {
+            left.parent = node;
+        }
+        node.right = buildBalanced(count - leftCount - 1);
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+        node.parent = null;
+        return node;
+    }
+
+    /**
+     * Sort the list threaded through the right pointers of the nodes with a stable, bottom-up merge sort, which needs
+     * no memory besides the nodes themselves.
+     *
+     * @param list the first node of the list
+     * @return the first node of the sorted list
+     */
+    private SplayTreeNode<Book> sortList(SplayTreeNode<Book> list) {
+        SplayTreeNode<Book> sentinel = new SplayTreeNode<>(null);
+        sentinel.right = list;
+        for (long width = 1; width < size; width *= 2) {
+            SplayTreeNode<Book> sortedTail = sentinel;
+            SplayTreeNode<Book> remaining = sentinel.right;
+            while (remaining != null) {
+                SplayTreeNode<Book> left = remaining;
+                SplayTreeNode<Book> right = cutAfter(left, width);
+                remaining = cutAfter(right, width);
+                sortedTail = merge(left, right, sortedTail);
+            }
+        }
+        return sentinel.right;
+    }
+
+    /**
+     * Cut a list after the given number of nodes.
+     *
+     * @param list the first node of the list, which may be null
+     * @param count the number of nodes to keep
+     * @return the first node after the cut, or null if the list was no longer than count
+     */
+    private SplayTreeNode<Book> cutAfter(SplayTreeNode<Book> list, long count) {
+        SplayTreeNode<Book> current = list;
+        for (long i = 1; current != null && i < count; i++) {
+            current = current.right;
+        }
+        if (current == null) {
+            return null;
+        }
+        SplayTreeNode<Book> rest = current.right;
+        current.right = null;
+        return rest;
+    }
+
+    /**
+     * Merge two sorted lists onto the end of another, taking from the left list first when nodes are equal.
+     *
+     * @param left the first node of the left list
+     * @param right the first node of the right list, which may be null
+     * @param tail the last node of the list to append the merged nodes to
+     * @return the last node of the merged list
+     */
+    private SplayTreeNode<Book> merge(SplayTreeNode<Book> left, SplayTreeNode<Book> right, SplayTreeNode<Book> tail) {
+        SplayTreeNode<Book> current = tail;
+        while (left != null && right != null) {
+            if (comparator.compare(left.data, right.data) <= 0) {
+                current.right = left;
+                left = left.right;
+            } else {
+                current.right = right;
+                right = right.right;
+            }
+            current = current.right;
+        }
+        current.right = left != null ? left : right;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current;
+    }
+}
@@ -2,13 +2,84 @@ package library.service;
 
 import library.model.Book;
 import library.model.SplayTreeNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntSupplier;
+
 @Service
 public class BookSplayTreeService {
 
     private static final int AUTHOR_MODE = 0;
     private static final int ISBN_MODE = 1;
+    // By author, then by ISBN among books by the same author. Author trees are kept in this order, so that searching by
+    // author alone still works and a particular book by an author can be found
+    private static final int AUTHOR_AND_ISBN_MODE = 2;
+    // By ISBN, then by author among books with the same ISBN. ISBN trees are kept in this order, for the same reason
+    private static final int ISBN_AND_AUTHOR_MODE = 3;
+
+    private final TreeStorage treeStorage;
+    private final SplayEngine splayEngine;
+    private final SplayPolicy splayPolicy;
+    private final int splayDepthThreshold;
+    private final double splayProbability;
+    // Only used for off-heap storage, shared by all the trees so that they can share the records of their books
+    private BookRecordArena bookRecordArena;
+    // Rotations made by zig and zag in any tree splayed by this service. Not synchronised, as trees are only splayed
+    // under an exclusive lock, and each tree wrapped by authorTree or isbnTree gets a copy of the service of its own, so
+    // that trees guarded by different locks don't share the count
+    private long rotationCount = 0;
+
+    public BookSplayTreeService() {
+        this(TreeStorage.NODES);
+    }
+
+    public BookSplayTreeService(TreeStorage treeStorage) {
+        this(treeStorage, SplayEngine.BOTTOM_UP);
+    }
+
+    public BookSplayTreeService(TreeStorage treeStorage, SplayEngine splayEngine) {
+        this(treeStorage, splayEngine, SplayPolicy.ALWAYS, 0, 1);
+    }
+
+    @Autowired
+    public BookSplayTreeService(@Value("${library.tree-storage:NODES}") TreeStorage treeStorage,
+                                @Value("${library.splay-engine:BOTTOM_UP}") SplayEngine splayEngine,
+                                @Value("${library.splay-policy:ALWAYS}") SplayPolicy splayPolicy,
+                                @Value("${library.splay-depth-threshold:16}") int splayDepthThreshold,
+                                @Value("${library.splay-probability:0.05}") double splayProbability) {
+        if (splayEngine == SplayEngine.TOP_DOWN && treeStorage != TreeStorage.NODES) {
+            throw new IllegalArgumentException("Top-down splaying is only available with NODES tree storage");
+        }
+        if (splayProbability < 0 || splayProbability > 1) {
+            throw new IllegalArgumentException("Splay probability must be between 0 and 1");
+        }
+        this.treeStorage = treeStorage;
+        this.splayEngine = splayEngine;
+        this.splayPolicy = splayPolicy;
+        this.splayDepthThreshold = splayDepthThreshold;
+        this.splayProbability = splayProbability;
+        if (treeStorage == TreeStorage.OFF_HEAP) {
+            bookRecordArena = new BookRecordArena();
+        }
+    }
+
+    /**
+     * Copy a service's configuration and book storage, but not its rotation count.
+     *
+     * @param bookSplayTreeService the service to copy
+     */
+    private BookSplayTreeService(BookSplayTreeService bookSplayTreeService) {
+        this.treeStorage = bookSplayTreeService.treeStorage;
+        this.splayEngine = bookSplayTreeService.splayEngine;
+        this.splayPolicy = bookSplayTreeService.splayPolicy;
+        this.splayDepthThreshold = bookSplayTreeService.splayDepthThreshold;
+        this.splayProbability = bookSplayTreeService.splayProbability;
+        this.bookRecordArena = bookSplayTreeService.bookRecordArena;
+    }
 
     /**
      * Perform a zig operation on the given node, i.e. perform a single right rotation on its parent to move it up
@@ -19,6 +90,7 @@ public class BookSplayTreeService {
      * @param node the node to move into its parent's position, which is a left child of its parent
      */
     /*package*/ void zig(SplayTreeNode<Book> node) {
+        rotationCount++;
         SplayTreeNode<Book> parent = node.parent;
         parent.left = node.right;
         if (node.right != null) {
@@ -45,6 +117,7 @@ public class BookSplayTreeService {
      * @param node the node to move into its parent's position, which is a right child of its parent
      */
     /*package*/ void zag(SplayTreeNode<Book> node) {
+        rotationCount++;
         SplayTreeNode<Book> parent = node.parent;
         parent.right = node.left;
         if (node.left != null) {
@@ -118,6 +191,36 @@ public class BookSplayTreeService {
         return search(root, searchKey, AUTHOR_MODE);
     }
 
+    /**
+     * Search a tree ordered by author for the node with the same author and ISBN as the search item, i.e. for that
+     * particular book rather than any book by the same author.
+     *
+     * The tree will be modified whether a matching node is found or not: either that node or the last node searched will
+     * be splayed to the root.
+     *
+     * @param root the root of the tree
+     * @param searchKey the book to search for
+     * @return the new root of the tree
+     */
+    public SplayTreeNode<Book> searchByAuthorAndIsbn(SplayTreeNode<Book> root, Book searchKey) {
+        return search(root, searchKey, AUTHOR_AND_ISBN_MODE);
+    }
+
+    /**
+     * Search a tree ordered by ISBN for the node with the same ISBN and author as the search item, i.e. for that
+     * particular book rather than any book with the same ISBN.
+     *
+     * The tree will be modified whether a matching node is found or not: either that node or the last node searched will
+     * be splayed to the root.
+     *
+     * @param root the root of the tree
+     * @param searchKey the book to search for
+     * @return the new root of the tree
+     */
+    public SplayTreeNode<Book> searchByIsbnAndAuthor(SplayTreeNode<Book> root, Book searchKey) {
+        return search(root, searchKey, ISBN_AND_AUTHOR_MODE);
+    }
+
     /**
      * Search for the node which has data matching the search item. Compare nodes using the mode specified (see the mode
      * constants at the top of the class.
@@ -130,7 +233,40 @@ public class BookSplayTreeService {
      * @return the new root of the tree
      */
     public SplayTreeNode<Book> searchByIsbn(SplayTreeNode<Book> root, Book searchKey) {
-        return search(root, searchKey, ISBN_MODE);
+        return searchByIsbn(root, searchKey.getIsbn());
+    }
+
+    /**
+     * Search for the node with the given ISBN. Unlike {@link #searchByIsbn(SplayTreeNode, Book)}, the caller doesn't
+     * need to create a book to search for, and ISBNs are compared directly rather than through
+     * {@link Book#compareByISBN(Book)}.
+     *
+     * The tree will be modified whether a matching node is found or not: either that node or the last node searched will
+     * be splayed to the root.
+     *
+     * @param root the root of the tree
+     * @param isbn the ISBN to search for
+     * @return the new root of the tree
+     */
+    public SplayTreeNode<Book> searchByIsbn(SplayTreeNode<Book> root, long isbn) {
+        SplayTreeNode<Book> currentParent = null;
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            currentParent = current;
+            long currentIsbn = current.data.getIsbn();
+            if (isbn < currentIsbn) {
+                current = current.left;
+            } else if (isbn > currentIsbn) {
+                current = current.right;
+            } else {
+                break; // item found
+            }
+        }
+        if (current == null) {
+            current = currentParent;
+        }
+        splayToRoot(current);
+        return current;
     }
 
     /**
@@ -150,9 +286,7 @@ public class BookSplayTreeService {
         SplayTreeNode<Book> current = root;
         while (current != null) {
             currentParent = current;
-            int comparison = mode == AUTHOR_MODE
-                    ? searchKey.compareByAuthor(current.data)
-                    : searchKey.compareByISBN(current.data);
+            int comparison = compare(searchKey, current.data, mode);
             if (comparison < 0) {
                 // item is smaller, so will be to the left
                 current = current.left;
@@ -170,6 +304,137 @@ public class BookSplayTreeService {
         return current;
     }
 
+    /**
+     * Find the node which has data matching the search item by author, without modifying the tree. Unlike
+     * {@link #searchByAuthor(SplayTreeNode, Book)}, this is safe to call from several threads at once as long as no
+     * other thread is modifying the tree.
+     *
+     * @param root the root of the tree
+     * @param searchKey the data to search for
+     * @return the matching node, or null if there is none
+     */
+    public SplayTreeNode<Book> findByAuthor(SplayTreeNode<Book> root, Book searchKey) {
+        return find(root, searchKey, AUTHOR_MODE);
+    }
+
+    /**
+     * Find the node which has data matching the search item by ISBN, without modifying the tree. Unlike
+     * {@link #searchByIsbn(SplayTreeNode, Book)}, this is safe to call from several threads at once as long as no
+     * other thread is modifying the tree.
+     *
+     * @param root the root of the tree
+     * @param searchKey the data to search for
+     * @return the matching node, or null if there is none
+     */
+    public SplayTreeNode<Book> findByIsbn(SplayTreeNode<Book> root, Book searchKey) {
+        return findByIsbn(root, searchKey.getIsbn());
+    }
+
+    /**
+     * Find the node with the given ISBN, without modifying the tree or creating a book to search for. Unlike
+     * {@link #searchByIsbn(SplayTreeNode, long)}, this is safe to call from several threads at once as long as no
+     * other thread is modifying the tree.
+     *
+     * @param root the root of the tree
+     * @param isbn the ISBN to search for
+     * @return the matching node, or null if there is none
+     */
+    public SplayTreeNode<Book> findByIsbn(SplayTreeNode<Book> root, long isbn) {
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            long currentIsbn = current.data.getIsbn();
+            if (isbn < currentIsbn) {
+                current = current.left;
+            } else if (isbn > currentIsbn) {
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the books with each of the given ISBNs, without modifying the tree. Rather than descending from the root for
+     * every ISBN, each search starts from where the previous one ended (a finger search), climbing only as far as needed
+     * to reach a subtree which must contain the next ISBN. A batch of ISBNs close together in the tree therefore costs
+     * little more than a single search.
+     *
+     * Like {@link #findByIsbn(SplayTreeNode, Book)}, this is safe to call from several threads at once as long as no
+     * other thread is modifying the tree.
+     *
+     * @param root the root of the tree
+     * @param sortedIsbns the ISBNs to search for, in ascending order
+     * @return the book with each ISBN, in the same order as the ISBNs, or null for ISBNs which are not in the tree
+     */
+    public Book[] findAllByIsbn(SplayTreeNode<Book> root, long[] sortedIsbns) {
+        Book[] found = new Book[sortedIsbns.length];
+        SplayTreeNode<Book> finger = root;
+        for (int i = 0; i < sortedIsbns.length && finger != null; i++) {
+            long isbn = sortedIsbns[i];
+
+            // The search path of the previous ISBN passed through every ancestor of the finger, so each ancestor's
+            // subtree is already bounded below by it. Climb until the subtree is also bounded above, i.e. until we
+            // come up from a left child whose parent is larger than the ISBN
+            SplayTreeNode<Book> current = finger;
+            while (current.parent != null
+                    && !(current == current.parent.left && current.parent.data.getIsbn() > isbn)) {
+                current = current.parent;
+            }
+
+            while (current != null) {
+                finger = current;
+                long currentIsbn = current.data.getIsbn();
+                if (isbn < currentIsbn) {
+                    current = current.left;
+                } else if (isbn > currentIsbn) {
+                    current = current.right;
+                } else {
+                    found[i] = current.data;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the node which has data matching the search item, comparing nodes using the mode specified. The tree is
+     * not modified.
+     *
+     * @param root the root of the tree
+     * @param searchKey the data to search for
+     * @param mode the mode by which to compare nodes
+     * @return the matching node, or null if there is none
+     */
+    private SplayTreeNode<Book> find(SplayTreeNode<Book> root, Book searchKey, int mode) {
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            int comparison = compare(searchKey, current.data, mode);
+            if (comparison < 0) {
+                current = current.left;
+            } else if (comparison > 0) {
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    private static int compare(Book searchKey, Book data, int mode) {
+        switch (mode) {
+            case AUTHOR_MODE:
+                return searchKey.compareByAuthor(data);
+            case AUTHOR_AND_ISBN_MODE:
+                return searchKey.compareByAuthorAndIsbn(data);
+            case ISBN_AND_AUTHOR_MODE:
+                return searchKey.compareByIsbnAndAuthor(data);
+            default:
+                return searchKey.compareByISBN(data);
+        }
+    }
+
     /**
      * Locate the parent of where a node with the given data would be inserted into the tree. If a node with that data
      * already exists in the tree, returns the deepest node with that data.
@@ -186,9 +451,7 @@ public class BookSplayTreeService {
         SplayTreeNode<Book> current = root;
         while (current != null) {
             currentParent = current;
-            int comparison = mode == AUTHOR_MODE
-                    ? searchKey.compareByAuthor(current.data)
-                    : searchKey.compareByISBN(current.data);
+            int comparison = compare(searchKey, current.data, mode);
             if (comparison < 0) {
                 // item is smaller, so it will be to the left
                 current = current.left;
@@ -202,26 +465,26 @@ public class BookSplayTreeService {
 
     /**
      * Insert a given node that is not yet attached to the tree into the tree in the correct position, then splay this
-     * new node to the root.
+     * new node to the root. Books by the same author are kept in ISBN order.
      *
      * @param root the root of the tree
      * @param node the node to insert
      * @return the new root of the tree
      */
     public SplayTreeNode<Book> insertByAuthor(SplayTreeNode<Book> root, SplayTreeNode<Book> node) {
-        return insert(root, node, AUTHOR_MODE);
+        return insert(root, node, AUTHOR_AND_ISBN_MODE);
     }
 
     /**
      * Insert a given node that is not yet attached to the tree into the tree in the correct position, then splay this
-     * new node to the root.
+     * new node to the root. Books with the same ISBN are kept in author order.
      *
      * @param root the root of the tree
      * @param node the node to insert
      * @return the new root of the tree
      */
     public SplayTreeNode<Book> insertByISBN(SplayTreeNode<Book> root, SplayTreeNode<Book> node) {
-        return insert(root, node, ISBN_MODE);
+        return insert(root, node, ISBN_AND_AUTHOR_MODE);
     }
 
     /**
@@ -241,9 +504,7 @@ public class BookSplayTreeService {
             // node is new root
             return node;
         } else {
-            int comparison = mode == AUTHOR_MODE
-                    ? node.data.compareByAuthor(parentForNode.data)
-                    : node.data.compareByISBN(parentForNode.data);
+            int comparison = compare(node.data, parentForNode.data, mode);
             if (comparison < 0) {
                 // item is smaller, so will be to the left
                 parentForNode.left = node;
@@ -256,6 +517,136 @@ public class BookSplayTreeService {
         }
     }
 
+    /**
+     * Wrap a tree ordered by author, e.g. one built by {@link #authorTreeBuilder()}, for use by the library, storing
+     * and splaying its nodes as configured.
+     *
+     * @param root the root of the tree, which may be null for an empty tree
+     * @return the tree
+     */
+    /*package*/ BookTree authorTree(SplayTreeNode<Book> root) {
+        return bookTree(root, false);
+    }
+
+    /**
+     * Wrap a tree ordered by ISBN, e.g. one built by {@link #isbnTreeBuilder()}, for use by the library, storing and
+     * splaying its nodes as configured.
+     *
+     * @param root the root of the tree, which may be null for an empty tree
+     * @return the tree
+     */
+    /*package*/ BookTree isbnTree(SplayTreeNode<Book> root) {
+        return bookTree(root, true);
+    }
+
+    private BookTree bookTree(SplayTreeNode<Book> root, boolean orderedByIsbn) {
+        switch (treeStorage) {
+            case ARRAYS:
+                return ArrayBookTree.copyOf(root, orderedByIsbn, this);
+            case OFF_HEAP:
+                return ArrayBookTree.copyOf(root, orderedByIsbn, this, new OffHeapBookStore(bookRecordArena));
+            default:
+                return splayEngine == SplayEngine.TOP_DOWN
+                        ? TopDownBookTree.copyOf(root, orderedByIsbn, this)
+                        : new NodeBookTree(new BookSplayTreeService(this), orderedByIsbn, root);
+        }
+    }
+
+    /**
+     * @return the number of zig and zag rotations made so far, in all trees of nodes splayed by this service
+     */
+    /*package*/ long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * @return when searches should splay the trees
+     */
+    public SplayPolicy getSplayPolicy() {
+        return splayPolicy;
+    }
+
+    /**
+     * Decide whether a search should splay the tree it searches, according to the configured {@link SplayPolicy}.
+     *
+     * @param searchDepth the depth of the book searched for, as given by {@link BookTree#searchDepth(Book)}; only
+     *                    called if the policy depends on it
+     * @return true if the search should splay
+     */
+    /*package*/ boolean shouldSplay(IntSupplier searchDepth) {
+        switch (splayPolicy) {
+            case DEPTH_THRESHOLD:
+                return searchDepth.getAsInt() > splayDepthThreshold;
+            case PROBABILISTIC:
+                return ThreadLocalRandom.current().nextDouble() < splayProbability;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Prepare a book to be added to the trees. With off-heap storage, the book is stored once here and the stored
+     * copy returned, so that the author and ISBN trees share a single record rather than storing the book twice;
+     * otherwise the book is returned as is.
+     *
+     * @param book the book to add to the trees
+     * @return the book to add instead
+     */
+    /*package*/ Book storedBook(Book book) {
+        return bookRecordArena == null ? book : bookRecordArena.store(book);
+    }
+
+    /**
+     * Create a builder for a new tree sorted by author, to which books can be added one at a time before building the
+     * whole tree in one go.
+     *
+     * @return the builder
+     */
+    public BookSplayTreeBuilder authorTreeBuilder() {
+        return new BookSplayTreeBuilder(Book::compareByAuthorAndIsbn);
+    }
+
+    /**
+     * Create a builder for a new tree sorted by ISBN, to which books can be added one at a time before building the
+     * whole tree in one go.
+     *
+     * @return the builder
+     */
+    public BookSplayTreeBuilder isbnTreeBuilder() {
+        return new BookSplayTreeBuilder(Book::compareByIsbnAndAuthor);
+    }
+
+    /**
+     * Build a new tree sorted by author containing the given books in one go, rather than inserting them one at a
+     * time. The tree is built perfectly balanced and takes O(n log n) to sort the books plus O(n) to build, without
+     * any splaying. Books with equal authors stay in the order given.
+     *
+     * @param books the books to put in the tree
+     * @return the root of the new tree, or null if there are no books
+     */
+    public SplayTreeNode<Book> buildByAuthor(List<Book> books) {
+        return build(books, authorTreeBuilder());
+    }
+
+    /**
+     * Build a new tree sorted by ISBN containing the given books in one go, rather than inserting them one at a
+     * time. The tree is built perfectly balanced and takes O(n log n) to sort the books plus O(n) to build, without
+     * any splaying.
+     *
+     * @param books the books to put in the tree
+     * @return the root of the new tree, or null if there are no books
+     */
+    public SplayTreeNode<Book> buildByIsbn(List<Book> books) {
+        return build(books, isbnTreeBuilder());
+    }
+
+    private SplayTreeNode<Book> build(List<Book> books, BookSplayTreeBuilder builder) {
+        for (Book book : books) {
+            builder.add(book);
+        }
+        return builder.build();
+    }
+
     /**
      * Delete a given node in a tree from that tree. Splay it to the root as part of this process, thereby rearranging
      * the tree.
@@ -292,6 +683,41 @@ public class BookSplayTreeService {
         }
     }
 
+    /**
+     * Locate, but do not splay, the minimum of a given (sub)tree.
+     *
+     * @param root the root of the (sub)tree, which may be null
+     * @return the minimum node, or null if the tree is empty
+     */
+    public SplayTreeNode<Book> locateMin(SplayTreeNode<Book> root) {
+        SplayTreeNode<Book> current = root;
+        while (current != null && current.left != null) {
+            // There is a smaller element to the left
+            current = current.left;
+        }
+        return current;
+    }
+
+    /**
+     * Locate, but do not splay, the node which comes after the given node in the order of the tree. Together with
+     * {@link #locateMin(SplayTreeNode)}, this walks the whole tree in order without modifying it or recursing, which
+     * matters since a splay tree can be arbitrarily deep.
+     *
+     * @param node the node to find the successor of
+     * @return the successor, or null if the node is the maximum of the tree
+     */
+    public SplayTreeNode<Book> locateSuccessor(SplayTreeNode<Book> node) {
+        if (node.right != null) {
+            return locateMin(node.right);
+        }
+        // Climb until we come up from a left child; that parent is the next node in order
+        SplayTreeNode<Book> current = node;
+        while (current.parent != null && current == current.parent.right) {
+            current = current.parent;
+        }
+        return current.parent;
+    }
+
     /**
      * Locate, but do not splay, the maximum of a given (sub)tree.
      *
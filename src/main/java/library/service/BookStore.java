@@ -0,0 +1,34 @@
+package library.service;
+
+import library.model.Book;
+
+/**
+ * Where an {@link ArrayBookTree} keeps the book of each of its nodes, indexed by node.
+ */
+/*package*/ interface BookStore {
+
+    /**
+     * Make room for at least the given number of nodes, keeping the books already stored.
+     *
+     * @param capacity the number of nodes
+     */
+    void resize(int capacity);
+
+    void set(int node, Book book);
+
+    void clear(int node);
+
+    Book get(int node);
+
+    long getIsbn(int node);
+
+    /**
+     * Compare a book to the book of a node as {@link Book#compareByAuthor(Book)} would, i.e.
+     * {@code searchKey.compareByAuthor(get(node))}.
+     *
+     * @param searchKey the book to compare
+     * @param node the node to compare it to
+     * @return a negative number, zero or a positive number if the search key comes before, with or after the node
+     */
+    int compareByAuthor(Book searchKey, int node);
+}
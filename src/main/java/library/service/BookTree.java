@@ -0,0 +1,125 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.Iterator;
+
+/**
+ * A splay tree of books, ordered either by author or by ISBN, as used by {@link LibraryService}. Splaying operations
+ * restructure the tree and so need exclusive access; the find operations and iteration don't modify the tree and can
+ * run concurrently with each other.
+ *
+ * Create trees with {@link BookSplayTreeService#authorTree(library.model.SplayTreeNode)} or
+ * {@link BookSplayTreeService#isbnTree(library.model.SplayTreeNode)}, which choose how the nodes are stored.
+ */
+/*package*/ interface BookTree extends Iterable<Book> {
+
+    /**
+     * @return true if the tree has no books
+     */
+    boolean isEmpty();
+
+    /**
+     * @return the book at the root of the tree, or null if the tree is empty
+     */
+    Book getRoot();
+
+    /**
+     * Splay the book matching the search key in the order of the tree to the root, or the last book searched if there
+     * is no match.
+     *
+     * @param searchKey the book to search for
+     */
+    void search(Book searchKey);
+
+    /**
+     * Splay the book with the given ISBN to the root, or the last book searched if there is no match. Only valid for
+     * trees ordered by ISBN.
+     *
+     * @param isbn the ISBN to search for
+     */
+    void searchByIsbn(long isbn);
+
+    /**
+     * Splay the given book to the root, or the last book searched if it is not in the tree. Unlike
+     * {@link #search(Book)}, this finds that particular book rather than any book by the same author, or any book with
+     * the same ISBN, as books by the same author are kept in ISBN order and books with the same ISBN in author order,
+     * and books with both in common by title (see {@link Book#compareByTitleAndAuthor(Book)}).
+     *
+     * @param book the book to search for; without a title, any book with its author and ISBN is found
+     */
+    void searchExactly(Book book);
+
+    /**
+     * Find the book matching the search key in the order of the tree, without modifying the tree.
+     *
+     * @param searchKey the book to search for
+     * @return the matching book, or null if there is none
+     */
+    Book find(Book searchKey);
+
+    /**
+     * Find the book with the given ISBN without modifying the tree. Only valid for trees ordered by ISBN.
+     *
+     * @param isbn the ISBN to search for
+     * @return the matching book, or null if there is none
+     */
+    Book findByIsbn(long isbn);
+
+    /**
+     * Find the books with each of the given ISBNs in a single pass, without modifying the tree. Only valid for trees
+     * ordered by ISBN.
+     *
+     * @param sortedIsbns the ISBNs to search for, in ascending order
+     * @return the book with each ISBN, in the same order as the ISBNs, or null for ISBNs which are not in the tree
+     */
+    Book[] findAllByIsbn(long[] sortedIsbns);
+
+    /**
+     * Count the books a search for the search key in the order of the tree would visit, without modifying the tree.
+     *
+     * @param searchKey the book to search for
+     * @return the depth of the matching book, or of the last book searched if there is no match, counting the root as
+     * 1; or 0 if the tree is empty
+     */
+    int searchDepth(Book searchKey);
+
+    /**
+     * Count the books a search for the given ISBN would visit, without modifying the tree. Only valid for trees
+     * ordered by ISBN.
+     *
+     * @param isbn the ISBN to search for
+     * @return the depth of the matching book, or of the last book searched if there is no match, counting the root as
+     * 1; or 0 if the tree is empty
+     */
+    int searchDepthByIsbn(long isbn);
+
+    /**
+     * Iterate over the books in the order of the tree, starting from the first book which doesn't come before the
+     * search key, without modifying the tree.
+     *
+     * @param searchKey the book to start from
+     * @return an iterator over the books from the search key onwards
+     */
+    Iterator<Book> iteratorFrom(Book searchKey);
+
+    /**
+     * Insert a book and splay it to the root.
+     *
+     * @param book the book to insert
+     */
+    void insert(Book book);
+
+    /**
+     * Remove the book at the root of the tree, e.g. after splaying it there with a search.
+     */
+    void deleteRoot();
+
+    /**
+     * Count the rotations made restructuring the tree so far, for metrics. Splaying a book at depth d to the root
+     * takes d - 1 rotations, whichever way the tree is splayed.
+     *
+     * @return the number of rotations made since the tree was created
+     */
+    long getRotationCount();
+}
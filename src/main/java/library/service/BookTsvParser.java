@@ -0,0 +1,108 @@
+package library.service;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import library.model.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads books from a tab-separated base library file one row at a time, so that the file never needs to be held in
+ * memory as a whole. The first row must be a header naming the Title, Author and ISBN columns (in any order and in
+ * any case). Rows which cannot be read are logged and skipped.
+ */
+public class BookTsvParser implements Closeable {
+
+    private static final String TITLE_HEADER = "Title";
+    private static final String AUTHOR_HEADER = "Author";
+    private static final String ISBN_HEADER = "ISBN";
+
+    private Logger logger = LoggerFactory.getLogger(BookTsvParser.class);
+
+    private final CSVReader csvReader;
+    private boolean headerRead = false;
+    private int columnCount;
+    private int titleColumn = -1;
+    private int authorColumn = -1;
+    private int isbnColumn = -1;
+
+    public BookTsvParser(Reader reader) {
+        this.csvReader = new CSVReaderBuilder(reader)
+                .withCSVParser(new CSVParserBuilder().withSeparator('\t').build())
+                .build();
+    }
+
+    /**
+     * Read the next valid book from the file, logging and skipping any invalid rows on the way.
+     *
+     * @return the next book, or null if the end of the file has been reached
+     * @throws IOException if the file cannot be read
+     */
+    public Book next() throws IOException {
+        if (!headerRead) {
+            readHeader();
+        }
+
+        String[] row;
+        while ((row = csvReader.readNext()) != null) {
+            if (isBlank(row)) {
+                continue;
+            }
+            if (row.length != columnCount) {
+                warn("Number of data fields does not match number of headers.");
+                continue;
+            }
+            try {
+                return toBook(row);
+            } catch (NumberFormatException e) {
+                warn("Invalid ISBN: " + row[isbnColumn]);
+            }
+        }
+        return null;
+    }
+
+    private void readHeader() throws IOException {
+        headerRead = true;
+        String[] header = csvReader.readNext();
+        if (header == null) {
+            return;
+        }
+
+        columnCount = header.length;
+        for (int column = 0; column < header.length; column++) {
+            String name = header[column].trim();
+            if (TITLE_HEADER.equalsIgnoreCase(name)) {
+                titleColumn = column;
+            } else if (AUTHOR_HEADER.equalsIgnoreCase(name)) {
+                authorColumn = column;
+            } else if (ISBN_HEADER.equalsIgnoreCase(name)) {
+                isbnColumn = column;
+            }
+        }
+    }
+
+    private Book toBook(String[] row) {
+        String title = titleColumn < 0 ? null : row[titleColumn];
+        String author = authorColumn < 0 ? null : row[authorColumn];
+        long isbn = isbnColumn < 0 ? 0 : Long.parseLong(row[isbnColumn].trim());
+        return new Book(title, author, isbn);
+    }
+
+    private boolean isBlank(String[] row) {
+        return row.length == 1 && row[0].trim().isEmpty();
+    }
+
+    private void warn(String message) {
+        logger.warn("Error reading base library. Line " + csvReader.getLinesRead() + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        csvReader.close();
+    }
+}
@@ -0,0 +1,274 @@
+package library.service;
+
+import library.model.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of borrowed and returned books, so that lending state survives a crash. It is replayed on
+ * top of the base library or snapshot on start-up, and emptied whenever a snapshot is saved.
+ *
+ * Appending an entry only buffers it; callers then wait for it to be durable with {@link #awaitDurable(long)}. The
+ * first caller to wait becomes the leader and writes and syncs everything buffered so far, while entries appended in
+ * the meantime are buffered for the next leader. Under load, one sync therefore covers many requests (group commit).
+ *
+ * Each entry is its length and CRC32 as ints, followed by the entry type as a byte, the ISBN as a long and the title
+ * and author as UTF-8 strings prefixed with their length in bytes (or -1 for null). Replay stops at the first entry
+ * which is incomplete or fails its checksum, i.e. one that was being written when the application crashed.
+ */
+/*package*/ class BorrowingJournal implements Closeable {
+
+    public enum EntryType {
+        BORROW,
+        RETURN
+    }
+
+    private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 12;
+
+    private Logger logger = LoggerFactory.getLogger(BorrowingJournal.class);
+
+    private final FileChannel channel;
+
+    // All fields below are guarded by the monitor
+    private final Object monitor = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedSequence = 0;
+    private long durableSequence = 0;
+    private boolean flushing = false;
+    private IOException failure = null;
+
+    /*package*/ BorrowingJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Replay all complete entries in the journal, then truncate any incomplete entry at the end so that new entries
+     * are appended after the last complete one.
+     *
+     * @param handler called with the type and book of each entry, in the order they were appended
+     * @throws IOException if the journal cannot be read
+     */
+    /*package*/ void replay(BiConsumer<EntryType, Book> handler) throws IOException {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (position + ENTRY_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + ENTRY_HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer entry = ByteBuffer.allocate(length);
+            readFully(entry, position + ENTRY_HEADER_SIZE);
+            entry.flip();
+            crc.reset();
+            crc.update(entry.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            handler.accept(EntryType.values()[entry.get()], readBook(entry));
+            position += ENTRY_HEADER_SIZE + length;
+        }
+
+        if (position < size) {
+            logger.warn("Discarding incomplete entry at the end of the borrowing journal.");
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Buffer an entry to be written to the journal. Entries are written in the order they are appended.
+     *
+     * @param type whether the book was borrowed or returned
+     * @param book the book
+     * @return the sequence number of the entry, to pass to {@link #awaitDurable(long)}
+     */
+    /*package*/ long append(EntryType type, Book book) {
+        byte[] title = encode(book.getTitle());
+        byte[] author = encode(book.getAuthor());
+        int length = 1 + Long.BYTES + stringSize(title) + stringSize(author);
+
+        synchronized (monitor) {
+            ensureCapacity(ENTRY_HEADER_SIZE + length);
+            int start = pending.position();
+            pending.putInt(length);
+            pending.putInt(0); // checksum, filled in below
+            pending.put((byte) type.ordinal());
+            pending.putLong(book.getIsbn());
+            putString(pending, title);
+            putString(pending, author);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer entry = pending.duplicate();
+            entry.position(start + ENTRY_HEADER_SIZE).limit(start + ENTRY_HEADER_SIZE + length);
+            crc.update(entry);
+            pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+            return ++appendedSequence;
+        }
+    }
+
+    /**
+     * Wait until the entry with the given sequence number, and so every entry before it, has been synced to disk.
+     *
+     * @param sequence the sequence number returned by {@link #append(EntryType, Book)}
+     * @throws IOException if the journal could not be written, in which case it stays broken
+     */
+    /*package*/ void awaitDurable(long sequence) throws IOException {
+        ByteBuffer batch;
+        long batchSequence;
+        synchronized (monitor) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("The borrowing journal could not be written", failure);
+                }
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                waitForMonitor();
+            }
+
+            // Become the leader: take everything buffered so far and let others keep appending to the spare buffer
+            flushing = true;
+            batch = pending;
+            batchSequence = appendedSequence;
+            pending = spare;
+            spare = null;
+        }
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (monitor) {
+            batch.clear();
+            spare = batch;
+            flushing = false;
+            if (error == null) {
+                durableSequence = Math.max(durableSequence, batchSequence);
+            } else {
+                failure = error;
+            }
+            monitor.notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Discard every entry, e.g. because a snapshot containing their effects has just been saved. The caller must make
+     * sure no entries are appended in the meantime.
+     *
+     * @throws IOException if the journal cannot be truncated
+     */
+    /*package*/ void clear() throws IOException {
+        synchronized (monitor) {
+            while (flushing) {
+                waitForMonitor();
+            }
+            pending.clear();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            durableSequence = appendedSequence;
+            monitor.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void waitForMonitor() throws InterruptedIOException {
+        try {
+            monitor.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the borrowing journal");
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (pending.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of borrowing journal");
+            }
+            offset += read;
+        }
+    }
+
+    private static Book readBook(ByteBuffer entry) {
+        long isbn = entry.getLong();
+        String title = getString(entry);
+        String author = getString(entry);
+        return new Book(title, author, isbn);
+    }
+
+    private static byte[] encode(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+}
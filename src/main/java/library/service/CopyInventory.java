@@ -0,0 +1,199 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * How many copies of each title the library has and how many of them are available, for libraries which keep a single
+ * record per title in their trees however many copies of it there are (see {@link AvailabilityTracking#COPIES}).
+ * Borrowing a copy decrements the title's available copies with a compare-and-set, so a popular title can be borrowed
+ * over and over without touching the trees or taking a lock, and only becomes unavailable once every copy is borrowed.
+ *
+ * Books are copies of each other if they have the same ISBN, author and title (see
+ * {@link Book#compareByIsbnAndAuthor(Book)}); books which only share an ISBN are different titles, each with its own
+ * record and copies. Titles are numbered in the order they were added by {@link BookNumbers}.
+ */
+/*package*/ class CopyInventory implements AvailabilityTracker {
+
+    private final BookNumbers titleNumbers;
+    // By title number
+    private final int[] totalCopies;
+    private final AtomicIntegerArray availableCopies;
+    private final int copyCount;
+
+    private CopyInventory(BookNumbers titleNumbers, int[] totalCopies, int[] availableCopies) {
+        this.titleNumbers = titleNumbers;
+        this.totalCopies = totalCopies;
+        this.availableCopies = new AtomicIntegerArray(availableCopies);
+        int copyCount = 0;
+        for (int copies : totalCopies) {
+            copyCount += copies;
+        }
+        this.copyCount = copyCount;
+    }
+
+    /**
+     * Counts the copies of each title as the library is loaded, picking out the first copy of each to be the title's
+     * record in the trees.
+     */
+    /*package*/ static class Builder {
+        private final BookNumbers.Builder titleNumbers = new BookNumbers.Builder(false);
+        private int[] totalCopies = new int[64];
+        private int[] availableCopies = new int[64];
+
+        /**
+         * Add a copy of a title.
+         *
+         * @param book the copy
+         * @param borrowed whether the copy is borrowed
+         * @return whether this is the first copy of its title, which should be added to the trees as its record
+         */
+        /*package*/ boolean addCopy(Book book, boolean borrowed) {
+            int number = titleNumbers.find(book);
+            boolean first = number == BookNumbers.NONE;
+            if (first) {
+                number = titleNumbers.add(book);
+                if (number == totalCopies.length) {
+                    totalCopies = Arrays.copyOf(totalCopies, number + (number >> 1));
+                    availableCopies = Arrays.copyOf(availableCopies, number + (number >> 1));
+                }
+            }
+            totalCopies[number]++;
+            if (!borrowed) {
+                availableCopies[number]++;
+            }
+            return first;
+        }
+
+        /**
+         * @return the inventory of the copies added
+         */
+        /*package*/ CopyInventory build() {
+            int titleCount = titleNumbers.size();
+            return new CopyInventory(titleNumbers.build(), Arrays.copyOf(totalCopies, titleCount),
+                    Arrays.copyOf(availableCopies, titleCount));
+        }
+    }
+
+    @Override
+    public boolean isAvailable(long isbn) {
+        for (int number = titleNumbers.first(isbn); number != BookNumbers.NONE; number = titleNumbers.next(number)) {
+            if (availableCopies.get(number) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isAvailable(Book book) {
+        for (int number = titleNumbers.firstMatch(book); number != BookNumbers.NONE;
+             number = titleNumbers.nextMatch(number, book)) {
+            if (availableCopies.get(number) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean markBorrowed(Book book) {
+        for (int number = titleNumbers.firstMatch(book); number != BookNumbers.NONE;
+             number = titleNumbers.nextMatch(number, book)) {
+            if (addAvailableCopy(number, -1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean markReturned(Book book) {
+        for (int number = titleNumbers.firstMatch(book); number != BookNumbers.NONE;
+             number = titleNumbers.nextMatch(number, book)) {
+            if (addAvailableCopy(number, 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param book a title
+     * @return the number of copies of the title, available or not, or 0 if the library doesn't have it
+     */
+    /*package*/ int totalCopies(Book book) {
+        int number = titleNumbers.firstMatch(book);
+        return number == BookNumbers.NONE ? 0 : totalCopies[number];
+    }
+
+    /**
+     * @param book a title
+     * @return the number of available copies of the title, or 0 if the library doesn't have it
+     */
+    /*package*/ int availableCopies(Book book) {
+        int number = titleNumbers.firstMatch(book);
+        return number == BookNumbers.NONE ? 0 : availableCopies.get(number);
+    }
+
+    /**
+     * Sum the available copies of every title, which reads each counter once.
+     *
+     * @return the number of available copies
+     */
+    @Override
+    public int availableCount() {
+        int count = 0;
+        for (int number = 0; number < availableCopies.length(); number++) {
+            count += availableCopies.get(number);
+        }
+        return count;
+    }
+
+    @Override
+    public int borrowedCount() {
+        return copyCount - availableCount();
+    }
+
+    /**
+     * Split the titles into their copies, the record of each title in the trees standing for its first copy and new
+     * books for the others.
+     *
+     * @param booksInIsbnOrder the record of every title in the trees, in ISBN order
+     * @param available to pass a book for each available copy to, in ISBN order
+     * @param borrowed to pass a book for each borrowed copy to, in ISBN order
+     */
+    @Override
+    public void splitCopies(Iterable<Book> booksInIsbnOrder, Consumer<Book> available, Consumer<Book> borrowed) {
+        for (Book book : booksInIsbnOrder) {
+            int number = titleNumbers.firstMatch(book);
+            int availableCount = availableCopies.get(number);
+            for (int copy = 0; copy < totalCopies[number]; copy++) {
+                Book copyBook = copy == 0 ? book : new Book(book.getTitle(), book.getAuthor(), book.getIsbn());
+                (copy < availableCount ? available : borrowed).accept(copyBook);
+            }
+        }
+    }
+
+    /**
+     * Add to or take from a title's available copies with a compare-and-set, keeping them between none and all.
+     *
+     * @param number the number of the title
+     * @param delta 1 to return a copy, or -1 to borrow one
+     * @return whether the available copies changed
+     */
+    private boolean addAvailableCopy(int number, int delta) {
+        while (true) {
+            int available = availableCopies.get(number);
+            if (available + delta < 0 || available + delta > totalCopies[number]) {
+                return false;
+            }
+            if (availableCopies.compareAndSet(number, available, available + delta)) {
+                return true;
+            }
+        }
+    }
+}
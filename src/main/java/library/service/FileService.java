@@ -1,22 +1,152 @@
 package library.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 @Service
 public class FileService {
 
-    private static final String BASE_LIBRARY_PATH = "src/main/resources/static/base_library.tsv";
+    private Logger logger = LoggerFactory.getLogger(FileService.class);
 
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final String baseLibraryPath;
+    private final String snapshotPath;
+    private final String journalPath;
+
+    @Autowired
+    public FileService(@Value("${library.base-library-path}") String baseLibraryPath,
+                       @Value("${library.snapshot-path:}") String snapshotPath,
+                       @Value("${library.journal-path:}") String journalPath) {
+        this.baseLibraryPath = baseLibraryPath;
+        this.snapshotPath = snapshotPath;
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Open the base library file by memory-mapping it, so that even very large files are decoded straight from the
+     * page cache rather than being copied onto the heap first.
+     *
+     * @return a reader over the UTF-8 contents of the base library, which is empty if the file cannot be opened
+     */
     public Reader getBaseLibraryReader() {
         try {
-            return new FileReader(BASE_LIBRARY_PATH);
-        } catch (FileNotFoundException e) {
+            return new MappedFileReader(Paths.get(baseLibraryPath), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            logger.warn("Base library " + baseLibraryPath + " not found, starting with an empty library.");
             return new StringReader("");
+        } catch (IOException e) {
+            logger.error("Error opening base library " + baseLibraryPath + ", starting with an empty library.", e);
+            return new StringReader("");
+        }
+    }
+
+    /**
+     * Open the snapshot saved when the library was last shut down, if there is one.
+     *
+     * @return a stream over the snapshot, or null if snapshots are disabled or no snapshot has been saved
+     */
+    public InputStream getSnapshotInputStream() {
+        if (!isSnapshotEnabled()) {
+            return null;
+        }
+        try {
+            return new BufferedInputStream(Files.newInputStream(Paths.get(snapshotPath)), SNAPSHOT_BUFFER_SIZE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error("Error opening library snapshot " + snapshotPath + ", ignoring it.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Open a stream to save a new snapshot to. The snapshot is written to a temporary file and only replaces the
+     * previous snapshot once {@link #commitSnapshot()} is called, so a failed save never leaves a broken snapshot.
+     *
+     * @return a stream to write the snapshot to, or null if snapshots are disabled
+     * @throws IOException if the temporary file cannot be created
+     */
+    public OutputStream getSnapshotOutputStream() throws IOException {
+        if (!isSnapshotEnabled()) {
+            return null;
         }
+        return new BufferedOutputStream(Files.newOutputStream(temporarySnapshotPath()), SNAPSHOT_BUFFER_SIZE);
+    }
+
+    /**
+     * Replace the previous snapshot with the one written to {@link #getSnapshotOutputStream()}, which must have
+     * been closed. The new snapshot is forced to disk before it is moved into place, and the move is forced to disk
+     * by syncing the directory, so once this returns the snapshot survives a crash or power loss, and the journal can
+     * be cleared.
+     *
+     * @throws IOException if the snapshot cannot be forced to disk or moved into place
+     */
+    public void commitSnapshot() throws IOException {
+        Path temporaryPath = temporarySnapshotPath();
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.getParent());
+    }
+
+    /**
+     * Open the journal of borrowed and returned books for reading and appending, creating it if necessary.
+     *
+     * @return a channel over the journal, or null if journaling is disabled
+     * @throws IOException if the journal cannot be opened
+     */
+    public FileChannel getJournalChannel() throws IOException {
+        if (journalPath == null || journalPath.isEmpty()) {
+            return null;
+        }
+        return FileChannel.open(Paths.get(journalPath),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Force the entries of a directory to disk, e.g. so that a file renamed into it stays renamed after a crash.
+     *
+     * @param directory the directory to sync
+     * @throws IOException if the directory cannot be synced
+     */
+    private void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Directories can't be opened on some platforms, e.g. Windows, which make renames durable themselves
+            logger.debug("Cannot sync directory " + directory + ".", e);
+        }
+    }
+
+    private boolean isSnapshotEnabled() {
+        return snapshotPath != null && !snapshotPath.isEmpty();
+    }
+
+    private Path temporarySnapshotPath() {
+        return Paths.get(snapshotPath + TEMPORARY_SUFFIX);
     }
 }
@@ -0,0 +1,43 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the books of an {@link ArrayBookTree} on the heap, as an array of references.
+ */
+/*package*/ class HeapBookStore implements BookStore {
+
+    private Book[] books = new Book[0];
+
+    @Override
+    public void resize(int capacity) {
+        books = Arrays.copyOf(books, capacity);
+    }
+
+    @Override
+    public void set(int node, Book book) {
+        books[node] = book;
+    }
+
+    @Override
+    public void clear(int node) {
+        books[node] = null;
+    }
+
+    @Override
+    public Book get(int node) {
+        return books[node];
+    }
+
+    @Override
+    public long getIsbn(int node) {
+        return books[node].getIsbn();
+    }
+
+    @Override
+    public int compareByAuthor(Book searchKey, int node) {
+        return searchKey.compareByAuthor(books[node]);
+    }
+}
@@ -0,0 +1,121 @@
+package library.service;
+
+/**
+ * The open addressing shared by the hash tables keyed by ISBN: a primitive array of ISBNs alongside an array of
+ * values, e.g. an int[] or a Book[], so that keys are never boxed. Uses linear probing, and is kept at most half full
+ * so that probes are short. Subclasses mark the empty slots in their values, and look an ISBN up by probing from
+ * {@link #slot(long)} with {@link #next(int)} until an empty slot.
+ *
+ * Not thread-safe while it is being modified, but once filled it can be read by any number of threads.
+ *
+ * @param <A> the type of the array of values
+ */
+/*package*/ abstract class IsbnHashTable<A> {
+
+    /*package*/ long[] isbns;
+    // The value for the ISBN in the same slot, or a value marking the slot empty
+    /*package*/ A values;
+    private int mask;
+    private int shift;
+    private int size = 0;
+
+    /**
+     * @param expectedSize the number of entries expected, to size the table for; it grows as needed
+     */
+    /*package*/ IsbnHashTable(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(expectedSize, 1)) * 4);
+    }
+
+    /**
+     * @param capacity the number of slots
+     * @return an array of values with every slot empty
+     */
+    /*package*/ abstract A newValues(int capacity);
+
+    /*package*/ abstract boolean isEmpty(A values, int slot);
+
+    /*package*/ abstract void copy(A from, int fromSlot, A to, int toSlot);
+
+    /*package*/ abstract void clear(A values, int slot);
+
+    /**
+     * @return the number of entries in the table
+     */
+    /*package*/ int size() {
+        return size;
+    }
+
+    /**
+     * @param isbn an ISBN
+     * @return the slot to start probing from for the ISBN
+     */
+    /*package*/ int slot(long isbn) {
+        // Fibonacci hashing spreads consecutive ISBNs across the table
+        return (int) ((isbn * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /*package*/ int next(int slot) {
+        return (slot + 1) & mask;
+    }
+
+    /**
+     * @param isbn an ISBN
+     * @return the first empty slot probing for the ISBN, in which to add an entry for it
+     */
+    /*package*/ int emptySlot(long isbn) {
+        int slot = slot(isbn);
+        while (!isEmpty(values, slot)) {
+            slot = next(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Count an entry filled in by the subclass, growing the table if it is now more than half full. Slots are only
+     * valid until then.
+     */
+    /*package*/ void added() {
+        if (++size * 2 > isbns.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Empty a slot, shifting back any later entries of its run which couldn't be found past the emptied slot any more.
+     *
+     * @param slot the slot to empty
+     */
+    /*package*/ void remove(int slot) {
+        int empty = slot;
+        for (int next = next(slot); !isEmpty(values, next); next = next(next)) {
+            // Move the entry unless its home slot lies cyclically after the empty slot, up to its current slot
+            if (((next - slot(isbns[next])) & mask) >= ((next - empty) & mask)) {
+                isbns[empty] = isbns[next];
+                copy(values, next, values, empty);
+                empty = next;
+            }
+        }
+        clear(values, empty);
+        size--;
+    }
+
+    private void grow() {
+        long[] oldIsbns = isbns;
+        A oldValues = values;
+        allocate(isbns.length * 2);
+        for (int oldSlot = 0; oldSlot < oldIsbns.length; oldSlot++) {
+            if (!isEmpty(oldValues, oldSlot)) {
+                int slot = emptySlot(oldIsbns[oldSlot]);
+                isbns[slot] = oldIsbns[oldSlot];
+                copy(oldValues, oldSlot, values, slot);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        isbns = new long[capacity];
+        values = newValues(capacity);
+        mask = capacity - 1;
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+}
@@ -0,0 +1,81 @@
+package library.service;
+
+import java.util.Arrays;
+
+/**
+ * A hash table from ISBNs to non-negative ints, e.g. the number of a book, so that neither keys nor values are boxed.
+ * See {@link IsbnHashTable} for how it is laid out.
+ *
+ * Not thread-safe while it is being filled, but once filled it can be read by any number of threads.
+ */
+/*package*/ class IsbnTable extends IsbnHashTable<int[]> {
+
+    /*package*/ static final int ABSENT = -1;
+
+    /**
+     * @param expectedSize the number of ISBNs expected, to size the table for; it grows as needed
+     */
+    /*package*/ IsbnTable(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * @param isbn an ISBN
+     * @return the value for the ISBN, or {@value #ABSENT} if it has none
+     */
+    /*package*/ int get(long isbn) {
+        for (int slot = slot(isbn); values[slot] != ABSENT; slot = next(slot)) {
+            if (isbns[slot] == isbn) {
+                return values[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Set the value for an ISBN.
+     *
+     * @param isbn an ISBN
+     * @param value the value, which must not be negative
+     * @return the previous value for the ISBN, or {@value #ABSENT} if it had none
+     */
+    /*package*/ int put(long isbn, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative");
+        }
+        int slot = slot(isbn);
+        for (; values[slot] != ABSENT; slot = next(slot)) {
+            if (isbns[slot] == isbn) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        isbns[slot] = isbn;
+        values[slot] = value;
+        added();
+        return ABSENT;
+    }
+
+    @Override
+    /*package*/ int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+        return values;
+    }
+
+    @Override
+    /*package*/ boolean isEmpty(int[] values, int slot) {
+        return values[slot] == ABSENT;
+    }
+
+    @Override
+    /*package*/ void copy(int[] from, int fromSlot, int[] to, int toSlot) {
+        to[toSlot] = from[fromSlot];
+    }
+
+    @Override
+    /*package*/ void clear(int[] values, int slot) {
+        values[slot] = ABSENT;
+    }
+}
@@ -0,0 +1,263 @@
+package library.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * The metrics recorded by {@link LibraryService}, published through Spring Boot Actuator at
+ * {@code /actuator/metrics}:
+ * <ul>
+ *     <li>{@code library.splay.operations} and {@code library.splay.rotations}: the searches, borrows and returns
+ *     which splayed the trees and the rotations they made, tagged by operation, giving the rotations per operation
+ *     </li>
+ *     <li>{@code library.search.depth}: a histogram of the depth of the book searched for, as cumulative counts
+ *     tagged with the upper bound {@code le} of each bucket (see {@link #LibraryMetrics(MeterRegistry)} for which
+ *     searches it covers)</li>
+ *     <li>{@code library.searches}: searches by author and ISBN, tagged by key and by whether a book was found</li>
+ *     <li>{@code library.books}: the numbers of available and borrowed books</li>
+ *     <li>{@code library.borrow} and {@code library.return}: how long borrowing and returning take, including
+ *     waiting for the lock and the journal, tagged by whether they succeeded</li>
+ * </ul>
+ *
+ * Recording allocates nothing, once the adders of the search depths have grown to the number of threads contending for
+ * them. The tree metrics are recorded on every search, so rather than going through
+ * Micrometer, which reads the clock for every value recorded, they are counted in plain arrays, one set of
+ * {@link SplayCounts} for each lock guarding some of the trees, and summed when the metrics are published. The other
+ * meters are registered up front, so recording a value is a call on an existing meter.
+ */
+@Component
+public class LibraryMetrics {
+
+    /**
+     * The operations which splay the trees.
+     */
+    /*package*/ enum Operation {
+        SEARCH,
+        BORROW,
+        RETURN
+    }
+
+    // Upper bounds of the buckets of the search depth histogram. A balanced tree of a million books is 20 deep
+    private static final int[] DEPTH_BUCKETS = {1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+    /**
+     * Counts of the operations which splayed some trees, the rotations they made and how deep the books searched for
+     * were. The operations and rotations are not thread-safe: they are only updated while holding the write lock
+     * guarding the trees. The depths are also recorded by searches which don't splay, under the read lock, so they are
+     * kept in adders, which many threads can update at once without contending. All are read without the lock when
+     * published, which may see slightly stale counts.
+     */
+    /*package*/ static class SplayCounts {
+        private final long[] operations = new long[Operation.values().length];
+        private final long[] rotations = new long[Operation.values().length];
+        // Searches by the bucket of their depth, the last bucket being for depths over the last bound
+        private final LongAdder[] depths = new LongAdder[DEPTH_BUCKETS.length + 1];
+
+        private SplayCounts() {
+            for (int bucket = 0; bucket < depths.length; bucket++) {
+                depths[bucket] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record an operation which splayed the trees. Splaying a book to the root takes one rotation per level it
+         * moves up, as counted by {@link BookTree#getRotationCount()}, so the depth of the book a search splayed is
+         * one more than its rotations.
+         *
+         * @param operation the operation
+         * @param rotationCount the rotations it made
+         */
+        /*package*/ void record(Operation operation, long rotationCount) {
+            operations[operation.ordinal()]++;
+            rotations[operation.ordinal()] += rotationCount;
+            if (operation == Operation.SEARCH) {
+                recordSearchDepth(rotationCount + 1);
+            }
+        }
+
+        /**
+         * Record the depth of the book searched for by a search which didn't splay the trees. Thread-safe.
+         *
+         * @param depth the depth, counting the root as 1
+         */
+        /*package*/ void recordSearchDepth(long depth) {
+            // The bucket with bound 2^b holds depths from 2^(b-1) + 1 up to 2^b
+            int bucket = depth <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(depth - 1);
+            depths[Math.min(bucket, DEPTH_BUCKETS.length)].increment();
+        }
+
+        /**
+         * Add to the rotations of an operation recorded in another set of counts, e.g. for borrowing a book, which
+         * splays trees guarded by two locks.
+         *
+         * @param operation the operation
+         * @param rotationCount the rotations it made in the trees guarded by the lock of these counts
+         */
+        /*package*/ void addRotations(Operation operation, long rotationCount) {
+            rotations[operation.ordinal()] += rotationCount;
+        }
+
+        private long cumulativeDepthCount(int lastBucket) {
+            long count = 0;
+            for (int bucket = 0; bucket <= lastBucket; bucket++) {
+                count += depths[bucket].sum();
+            }
+            return count;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final List<SplayCounts> splayCounts = new CopyOnWriteArrayList<>();
+
+    private final Counter authorHits;
+    private final Counter authorMisses;
+    private final Counter isbnHits;
+    private final Counter isbnMisses;
+    private final Timer borrowSuccesses;
+    private final Timer borrowFailures;
+    private final Timer returnSuccesses;
+    private final Timer returnFailures;
+
+    /**
+     * Create metrics which are recorded but not published, e.g. for tests and benchmarks.
+     */
+    public LibraryMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Register the meters. The search depth histogram covers every search which splays the trees, which is every
+     * search under {@link SplayPolicy#ALWAYS} unless the tree is busy, and a random sample of the searches under
+     * {@link SplayPolicy#PROBABILISTIC}; neither depends on the depth, so the histogram is not skewed. Under
+     * {@link SplayPolicy#DEPTH_THRESHOLD} only the deep searches splay, so the searches which don't are recorded too,
+     * from the depth the policy has already worked out. Searches are not recorded if availability is tracked outside
+     * the trees, which are then never splayed.
+     *
+     * @param registry the registry to register the meters in
+     */
+    @Autowired
+    public LibraryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Operation operation : Operation.values()) {
+            String tag = operation.name().toLowerCase(Locale.ROOT);
+            FunctionCounter.builder("library.splay.operations", this,
+                    metrics -> metrics.sumSplayCounts(counts -> counts.operations[operation.ordinal()]))
+                    .description("Operations which splayed the trees")
+                    .tag("operation", tag)
+                    .register(registry);
+            FunctionCounter.builder("library.splay.rotations", this,
+                    metrics -> metrics.sumSplayCounts(counts -> counts.rotations[operation.ordinal()]))
+                    .description("Rotations made splaying the trees")
+                    .tag("operation", tag)
+                    .register(registry);
+        }
+        for (int bucket = 0; bucket <= DEPTH_BUCKETS.length; bucket++) {
+            int lastBucket = bucket;
+            FunctionCounter.builder("library.search.depth", this,
+                    metrics -> metrics.sumSplayCounts(counts -> counts.cumulativeDepthCount(lastBucket)))
+                    .description("Searches no deeper than le, counting the root as 1")
+                    .tag("le", bucket < DEPTH_BUCKETS.length ? Integer.toString(DEPTH_BUCKETS[bucket]) : "+Inf")
+                    .register(registry);
+        }
+        authorHits = searches(registry, "author", "hit");
+        authorMisses = searches(registry, "author", "miss");
+        isbnHits = searches(registry, "isbn", "hit");
+        isbnMisses = searches(registry, "isbn", "miss");
+        borrowSuccesses = lending(registry, "library.borrow", "success");
+        borrowFailures = lending(registry, "library.borrow", "failure");
+        returnSuccesses = lending(registry, "library.return", "success");
+        returnFailures = lending(registry, "library.return", "failure");
+    }
+
+    private double sumSplayCounts(ToLongFunction<SplayCounts> count) {
+        long sum = 0;
+        for (SplayCounts counts : splayCounts) {
+            sum += count.applyAsLong(counts);
+        }
+        return sum;
+    }
+
+    private static Counter searches(MeterRegistry registry, String key, String result) {
+        return Counter.builder("library.searches")
+                .description("Searches for a single book")
+                .tag("key", key)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Timer lending(MeterRegistry registry, String name, String outcome) {
+        return Timer.builder(name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Publish the number of available and borrowed books, as read from the given object whenever the metrics are
+     * collected.
+     *
+     * @param library the object to read the numbers from, which is only weakly referenced
+     * @param availableBooks reads the number of available books
+     * @param borrowedBooks reads the number of borrowed books
+     */
+    /*package*/ <T> void registerBookCounts(T library, ToDoubleFunction<T> availableBooks,
+                                            ToDoubleFunction<T> borrowedBooks) {
+        Gauge.builder("library.books", library, availableBooks)
+                .description("Books in the library")
+                .tag("state", "available")
+                .register(registry);
+        Gauge.builder("library.books", library, borrowedBooks)
+                .description("Books in the library")
+                .tag("state", "borrowed")
+                .register(registry);
+    }
+
+    /**
+     * Create counts for the operations which splay some trees, to be published along with all the others.
+     *
+     * @return the counts, to be updated only while holding the lock guarding the trees
+     */
+    /*package*/ SplayCounts newSplayCounts() {
+        SplayCounts counts = new SplayCounts();
+        splayCounts.add(counts);
+        return counts;
+    }
+
+    /*package*/ void recordAuthorSearch(boolean found) {
+        (found ? authorHits : authorMisses).increment();
+    }
+
+    /*package*/ void recordIsbnSearch(boolean found) {
+        (found ? isbnHits : isbnMisses).increment();
+    }
+
+    /**
+     * @param nanos how long the borrow took, from System.nanoTime
+     * @param succeeded whether the book was borrowed
+     */
+    /*package*/ void recordBorrow(long nanos, boolean succeeded) {
+        (succeeded ? borrowSuccesses : borrowFailures).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param nanos how long the return took, from System.nanoTime
+     * @param succeeded whether the book was returned
+     */
+    /*package*/ void recordReturn(long nanos, boolean succeeded) {
+        (succeeded ? returnSuccesses : returnFailures).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,86 +1,384 @@
 package library.service;
 
-import com.opencsv.bean.CsvToBean;
-import com.opencsv.bean.CsvToBeanBuilder;
-import com.opencsv.exceptions.CsvException;
 import library.exception.BorrowingException;
 import library.model.Book;
-import library.model.SplayTreeNode;
+import library.model.BorrowingOutcome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 @Service
 public class LibraryService {
 
+    /*package*/ static final int MAX_FUZZY_DISTANCE = 3;
+
     private Logger logger = LoggerFactory.getLogger(LibraryService.class);
 
-    // In-memory representation of the available books, stored in splay trees
-    private SplayTreeNode<Book> authorSplayTree = null;
-    private SplayTreeNode<Book> isbnSplayTree = null;
-    private SplayTreeNode<Book> borrowedSplayTree = null;
+    // In-memory representation of the library, split into shards by the hashes of authors and ISBNs, each with its own
+    // splay trees of available and borrowed books, title index and locks. Since splaying searches restructure the trees,
+    // they need a write lock; when it is contended, searches fall back to non-restructuring lookups under the read lock
+    // so that they can run in parallel
+    private LibraryShard[] shards;
+
+    // Which books are borrowed, if tracked outside the trees rather than by moving books between them, in which case
+    // the trees and title indexes hold every book and are never modified after loading, so searches need no lock
+    private final AvailabilityTracking availabilityTracking;
+    private AvailabilityTracker availability = null;
+
+    // Held while marking books borrowed or returned in the tracker and appending them to the journal, so that the
+    // entries are in the order of the changes, and while saving a snapshot, so that the journal can be cleared
+    // afterwards. Borrowing and returning only take it if there is a journal; otherwise they take no lock
+    private final Object lendingMonitor = new Object();
+
+    // Index of the authors in the library, for fuzzy searches. Immutable, so not guarded by any lock
+    private AuthorTrigramIndex authorIndex;
+
+    // Journal of borrowed and returned books since the last snapshot, or null if journaling is disabled
+    private BorrowingJournal journal = null;
+
+    private final LibraryMetrics metrics;
 
     // Autowired services
     private BookSplayTreeService bookSplayTreeService;
     private FileService fileService;
 
-    @Autowired
     public LibraryService(BookSplayTreeService bookSplayTreeService, FileService fileService) {
+        this(bookSplayTreeService, fileService, new LibraryMetrics());
+    }
+
+    public LibraryService(BookSplayTreeService bookSplayTreeService, FileService fileService, LibraryMetrics metrics) {
+        this(bookSplayTreeService, fileService, metrics, 1);
+    }
+
+    public LibraryService(BookSplayTreeService bookSplayTreeService, FileService fileService, LibraryMetrics metrics,
+                          int shardCount) {
+        this(bookSplayTreeService, fileService, metrics, shardCount, AvailabilityTracking.TREES);
+    }
+
+    @Autowired
+    public LibraryService(BookSplayTreeService bookSplayTreeService, FileService fileService, LibraryMetrics metrics,
+                          @Value("${library.shards:1}") int shardCount,
+                          @Value("${library.availability-tracking:TREES}") AvailabilityTracking availabilityTracking) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
         this.bookSplayTreeService = bookSplayTreeService;
         this.fileService = fileService;
-        initialise();
+        this.metrics = metrics;
+        this.availabilityTracking = availabilityTracking;
+        initialise(shardCount);
+        metrics.registerBookCounts(this, LibraryService::availableBookCount, LibraryService::borrowedBookCount);
     }
 
-    private void initialise() {
-        loadBaseLibraryFromFile(fileService.getBaseLibraryReader());
+    private void initialise(int shardCount) {
+        LibrarySnapshot snapshot = loadSnapshot();
+        boolean bitmap = availabilityTracking == AvailabilityTracking.BITMAP;
+        CopyInventory.Builder copies = availabilityTracking == AvailabilityTracking.COPIES
+                ? new CopyInventory.Builder()
+                : null;
+        if (snapshot != null && shardCount == 1 && availabilityTracking == AvailabilityTracking.TREES) {
+            shards = new LibraryShard[]{new LibraryShard(snapshot.getAuthorTree(), snapshot.getIsbnTree(),
+                    snapshot.getBorrowedTree(), metrics)};
+        } else {
+            BookSplayTreeBuilder[] authorTreeBuilders = new BookSplayTreeBuilder[shardCount];
+            BookSplayTreeBuilder[] isbnTreeBuilders = new BookSplayTreeBuilder[shardCount];
+            BookSplayTreeBuilder[] borrowedTreeBuilders = new BookSplayTreeBuilder[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                authorTreeBuilders[i] = bookSplayTreeService.authorTreeBuilder();
+                isbnTreeBuilders[i] = bookSplayTreeService.isbnTreeBuilder();
+                borrowedTreeBuilders[i] = bookSplayTreeService.authorTreeBuilder();
+            }
+            if (snapshot != null && copies != null) {
+                // Only the first copy of each title goes into the trees, so the author trees are built from the ISBN
+                // order, which their builders sort
+                for (Book book : snapshot.getIsbnTree()) {
+                    addTitle(copies, book, false, authorTreeBuilders, isbnTreeBuilders);
+                }
+                for (Book book : snapshot.getBorrowedTree()) {
+                    addTitle(copies, book, true, authorTreeBuilders, isbnTreeBuilders);
+                }
+            } else if (snapshot != null) {
+                // Deal the books of each tree out to the shards, which keeps them in order for the builders
+                for (Book book : snapshot.getAuthorTree()) {
+                    authorTreeBuilders[authorShardIndex(book.getAuthorKey(), shardCount)].add(book);
+                }
+                for (Book book : snapshot.getIsbnTree()) {
+                    isbnTreeBuilders[isbnShardIndex(book.getIsbn(), shardCount)].add(book);
+                }
+                for (Book book : snapshot.getBorrowedTree()) {
+                    if (bitmap) {
+                        // Borrowed books stay in the trees, marked borrowed once the bitmap is built
+                        authorTreeBuilders[authorShardIndex(book.getAuthorKey(), shardCount)].add(book);
+                        isbnTreeBuilders[isbnShardIndex(book.getIsbn(), shardCount)].add(book);
+                    } else {
+                        borrowedTreeBuilders[authorShardIndex(book.getAuthorKey(), shardCount)].add(book);
+                    }
+                }
+            } else {
+                loadBaseLibraryFromFile(fileService.getBaseLibraryReader(), copies, authorTreeBuilders,
+                        isbnTreeBuilders);
+            }
+            shards = new LibraryShard[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = new LibraryShard(bookSplayTreeService.authorTree(authorTreeBuilders[i].build()),
+                        bookSplayTreeService.isbnTree(isbnTreeBuilders[i].build()),
+                        bookSplayTreeService.authorTree(borrowedTreeBuilders[i].build()), metrics);
+            }
+        }
+
+        BookTree[] authorTrees = new BookTree[shardCount * 2];
+        for (int i = 0; i < shardCount; i++) {
+            authorTrees[2 * i] = shards[i].authorTree;
+            authorTrees[2 * i + 1] = shards[i].borrowedTree;
+        }
+        authorIndex = AuthorTrigramIndex.of(authorTrees);
+        if (bitmap) {
+            availability = new AvailabilityBitmap(merged(trees(shard -> shard.isbnTree), Book::compareByISBN));
+            if (snapshot != null) {
+                for (Book book : snapshot.getBorrowedTree()) {
+                    availability.markBorrowed(book);
+                }
+            }
+        } else if (copies != null) {
+            availability = copies.build();
+        }
+        replayJournal();
     }
 
-    private void loadBaseLibraryFromFile(Reader reader) {
-        CsvToBean<Book> csvToBean = new CsvToBeanBuilder<Book>(reader)
-                .withType(Book.class)
-                .withSeparator('\t')
-                .withThrowExceptions(false)
-                .build();
-        List<Book> books = csvToBean.parse();
-        handleBaseLibraryExceptions(csvToBean);
+    /**
+     * Open the journal of books borrowed and returned since the last snapshot, if journaling is enabled, and apply
+     * them to the trees.
+     */
+    private void replayJournal() {
+        try {
+            FileChannel journalChannel = fileService.getJournalChannel();
+            if (journalChannel == null) {
+                return;
+            }
+            journal = new BorrowingJournal(journalChannel);
+            journal.replay((type, book) -> {
+                if (availability != null) {
+                    try {
+                        changeAvailability(book, type);
+                    } catch (BorrowingException e) {
+                        logger.warn("Skipping journal entry which no longer applies: " + type + " " + book);
+                    }
+                    return;
+                }
+                LibraryShard shard = authorShard(book);
+                Lock writeLock = shard.authorLock.writeLock();
+                writeLock.lock();
+                try {
+                    if (type == BorrowingJournal.EntryType.BORROW) {
+                        borrowBookLocked(shard, book);
+                    } else {
+                        returnBookLocked(shard, book);
+                    }
+                } catch (BorrowingException e) {
+                    logger.warn("Skipping journal entry which no longer applies: " + type + " " + book);
+                } finally {
+                    writeLock.unlock();
+                }
+            });
+        } catch (IOException e) {
+            // Carrying on without the journal would silently lose lending state
+            throw new UncheckedIOException("Error reading borrowing journal", e);
+        }
+    }
 
-        for (Book book : books) {
-            authorSplayTree = bookSplayTreeService.insertByAuthor(authorSplayTree, new SplayTreeNode<>(book));
-            isbnSplayTree = bookSplayTreeService.insertByISBN(isbnSplayTree, new SplayTreeNode<>(book));
+    /**
+     * Load the trees from the snapshot saved when the library was last shut down, if there is one.
+     *
+     * @return the snapshot, or null if there was none or it could not be read
+     */
+    private LibrarySnapshot loadSnapshot() {
+        try (InputStream snapshotStream = fileService.getSnapshotInputStream()) {
+            if (snapshotStream == null) {
+                return null;
+            }
+            return LibrarySnapshot.readFrom(snapshotStream, bookSplayTreeService);
+        } catch (IOException e) {
+            logger.error("Error reading library snapshot, loading the base library instead.", e);
+            return null;
         }
     }
 
-    private void handleBaseLibraryExceptions(CsvToBean<Book> csvToBean) {
-        List<CsvException> capturedExceptions = csvToBean.getCapturedExceptions();
-        for (CsvException exception : capturedExceptions) {
-            logger.warn("Error reading base library. " + exception.getMessage());
+    /**
+     * Save the trees to a snapshot, if snapshots are enabled, so that the next start-up doesn't need to parse the
+     * base library again. The journal is emptied since the snapshot contains everything in it.
+     * The trees of all the shards are merged into a single snapshot, so it can be loaded into any number of shards,
+     * and with either kind of {@link AvailabilityTracking}.
+     * The trees are only read, so searches which don't splay can carry on while the snapshot is saved.
+     */
+    public void saveSnapshot() {
+        if (availability != null) {
+            synchronized (lendingMonitor) {
+                List<Book> available = new ArrayList<>();
+                List<Book> borrowed = new ArrayList<>();
+                availability.splitCopies(merged(trees(shard -> shard.isbnTree), Book::compareByISBN),
+                        available::add, borrowed::add);
+                List<Book> availableInAuthorOrder = new ArrayList<>(available);
+                availableInAuthorOrder.sort(Book::compareByAuthorAndIsbn);
+                borrowed.sort(Book::compareByAuthorAndIsbn);
+                writeSnapshot(availableInAuthorOrder, available, borrowed);
+            }
+            return;
+        }
+
+        List<Lock> readLocks = new ArrayList<>(shards.length * 2);
+        for (LibraryShard shard : shards) {
+            readLocks.add(shard.authorLock.readLock());
+        }
+        for (LibraryShard shard : shards) {
+            readLocks.add(shard.isbnLock.readLock());
+        }
+        readLocks.forEach(Lock::lock);
+        try {
+            writeSnapshot(merged(trees(shard -> shard.authorTree), Book::compareByAuthorAndIsbn),
+                    merged(trees(shard -> shard.isbnTree), Book::compareByISBN),
+                    merged(trees(shard -> shard.borrowedTree), Book::compareByAuthorAndIsbn));
+        } finally {
+            readLocks.forEach(Lock::unlock);
         }
     }
 
+    /**
+     * Write a snapshot of the given books and clear the journal, while nothing can change them.
+     *
+     * @param authorOrder the available books in author order
+     * @param isbnOrder the same books in ISBN order
+     * @param borrowed the borrowed books in author order
+     */
+    private void writeSnapshot(Iterable<Book> authorOrder, Iterable<Book> isbnOrder, Iterable<Book> borrowed) {
+        try {
+            try (OutputStream snapshotStream = fileService.getSnapshotOutputStream()) {
+                if (snapshotStream == null) {
+                    return;
+                }
+                LibrarySnapshot.write(snapshotStream, authorOrder, isbnOrder, borrowed);
+            }
+            // Only returns once the snapshot is on disk, so the journal is never cleared before its entries are safe
+            fileService.commitSnapshot();
+            if (journal != null) {
+                journal.clear();
+            }
+        } catch (IOException e) {
+            logger.error("Error saving library snapshot, keeping the previous one.", e);
+        }
+    }
+
+    /**
+     * Save a snapshot and close the journal. Called by Spring when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        saveSnapshot();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Error closing borrowing journal.", e);
+            }
+        }
+    }
+
+    /**
+     * @param copies counts the copies of each title if only the first copy goes into the trees, otherwise null
+     */
+    private void loadBaseLibraryFromFile(Reader reader, CopyInventory.Builder copies,
+                                         BookSplayTreeBuilder[] authorTreeBuilders,
+                                         BookSplayTreeBuilder[] isbnTreeBuilders) {
+        // Stream the books straight into the tree builders of their shards rather than reading them all into a list
+        // first. Building the trees directly is also much faster than splaying each book in, especially if the file is
+        // sorted
+        try (BookTsvParser parser = new BookTsvParser(reader)) {
+            Book book;
+            while ((book = parser.next()) != null) {
+                addTitle(copies, book, false, authorTreeBuilders, isbnTreeBuilders);
+            }
+        } catch (IOException e) {
+            logger.error("Error reading base library, only the books read so far will be available.", e);
+        }
+    }
+
+    /**
+     * Add a book to the builders of the author and ISBN trees of its shards, unless it is another copy of a title
+     * already added and only the copies are being counted.
+     *
+     * @param copies counts the copies of each title if only the first copy goes into the trees, otherwise null
+     * @param book the book to add
+     * @param borrowed whether the book is borrowed, if copies are counted
+     */
+    private void addTitle(CopyInventory.Builder copies, Book book, boolean borrowed,
+                          BookSplayTreeBuilder[] authorTreeBuilders, BookSplayTreeBuilder[] isbnTreeBuilders) {
+        if (copies != null && !copies.addCopy(book, borrowed)) {
+            return;
+        }
+        book = bookSplayTreeService.storedBook(book);
+        authorTreeBuilders[authorShardIndex(book.getAuthorKey(), authorTreeBuilders.length)].add(book);
+        isbnTreeBuilders[isbnShardIndex(book.getIsbn(), isbnTreeBuilders.length)].add(book);
+    }
+
     /**
      * Search the library for a given author name. Searches in unborrowed books only.
      * Modifies the author splay tree regardless whether the book was found or not. If the book was found, it will be
      * the new root of the tree. If the book was not found, a book close to its presumed position in the tree will be
      * the new root of the tree.
+     * If another thread is currently using the tree, or the configured {@link SplayPolicy} doesn't call for
+     * splaying, the tree is searched without being modified instead.
      *
      * @param authorName the full author name to search for
      * @return the node containing the book found, if one is found, or null if no book was found
      */
     public Book searchByAuthor(String authorName) {
-        if (authorSplayTree == null) {
-            return null;
-        }
-
         Book mockBook = new Book(null, authorName, 0);
-        authorSplayTree = bookSplayTreeService.searchByAuthor(authorSplayTree, mockBook);
+        LibraryShard shard = authorShard(mockBook);
+        BookTree authorTree = shard.authorTree;
+        Book book = search(shard.authorLock, authorTree, shard.authorSplayCounts, () -> {
+            if (authorTree.isEmpty()) {
+                return null;
+            }
+            authorTree.search(mockBook);
 
-        // Splay tree root will not be the right book if it is not found
-        Book foundBook = authorSplayTree.data;
-        return foundBook.getAuthor().equals(authorName) ? foundBook : null;
+            // Splay tree root will not be the right book if it is not found
+            Book foundBook = authorTree.getRoot();
+            return foundBook.getAuthor().equals(authorName) ? foundBook : null;
+        }, () -> {
+            if (availability != null) {
+                return findAvailableByAuthor(authorTree, mockBook, authorName);
+            }
+            Book foundBook = authorTree.find(mockBook);
+            return foundBook != null && foundBook.getAuthor().equals(authorName) ? foundBook : null;
+        }, () -> authorTree.searchDepth(mockBook));
+        metrics.recordAuthorSearch(book != null);
+        return book;
     }
 
     /**
@@ -88,113 +386,980 @@ public class LibraryService {
      * Modifies the ISBN splay tree regardless whether the book was found or not. If the book was found, it will be
      * the new root of the tree. If the book was not found, a book close to its presumed position in the tree will be
      * the new root of the tree.
+     * If another thread is currently using the tree, or the configured {@link SplayPolicy} doesn't call for
+     * splaying, the tree is searched without being modified instead.
      *
      * @param isbn the full ISBN to search for
      * @return the node containing the book found, if one is found, or null if no book was found
      */
-    public Book searchByIsbn(Long isbn) {
-        if (isbnSplayTree == null) {
-            return null;
+    public Book searchByIsbn(long isbn) {
+        LibraryShard shard = isbnShard(isbn);
+        BookTree isbnTree = shard.isbnTree;
+        Book book = search(shard.isbnLock, isbnTree, shard.isbnSplayCounts, () -> {
+            if (isbnTree.isEmpty()) {
+                return null;
+            }
+            isbnTree.searchByIsbn(isbn);
+
+            // Splay tree root will not be the right book if it is not found
+            Book foundBook = isbnTree.getRoot();
+            return foundBook.getIsbn() == isbn ? foundBook : null;
+        }, () -> {
+            Book foundBook = isbnTree.findByIsbn(isbn);
+            return foundBook == null || isAvailable(foundBook) ? foundBook : findAvailableByIsbn(isbnTree, isbn);
+        }, () -> isbnTree.searchDepthByIsbn(isbn));
+        metrics.recordIsbnSearch(book != null);
+        return book;
+    }
+
+    /**
+     * Search the library for all books by a given author. Searches in unborrowed books only.
+     * Books by the same author are kept together in the author tree of a single shard, so this splays that tree as
+     * {@link #searchByAuthor(String)} does, then walks the tree in order through the author's books, for a cost of
+     * O(log n + k) for k books found.
+     *
+     * @param authorName the full author name to search for
+     * @return the books by the author, in ISBN order, or an empty list if there are none
+     */
+    public List<Book> searchAllByAuthor(String authorName) {
+        Book mockBook = new Book(null, authorName, 0);
+        List<Book> books = searchAuthorRange(authorShard(mockBook), mockBook,
+                book -> book.compareByAuthor(mockBook) == 0, Integer.MAX_VALUE);
+        // Authors are compared ignoring case in the tree, but must match exactly, as for searchByAuthor
+        books.removeIf(book -> !book.getAuthor().equals(authorName));
+        return books;
+    }
+
+    /**
+     * Search the library for authors whose names start with the given prefix, ignoring case. Searches in unborrowed
+     * books only.
+     * Splays the author tree of each shard to where the prefix would be inserted, as {@link #searchByAuthor(String)}
+     * does, then walks the tree in order from there, so only the books returned by each shard are visited.
+     *
+     * @param prefix the start of the author names to search for
+     * @param limit the maximum number of books to return
+     * @return up to limit books whose authors start with the prefix, in author order
+     */
+    public List<Book> searchByAuthorPrefix(String prefix, int limit) {
+        String prefixKey = prefix.toLowerCase();
+        return searchAuthorRange(new Book(null, prefix, 0), book -> book.getAuthorKey().startsWith(prefixKey), limit);
+    }
+
+    /**
+     * Search the library for authors in the given range of names, ignoring case. Searches in unborrowed books only.
+     * Splays the author tree of each shard to where the start of the range would be inserted, as
+     * {@link #searchByAuthor(String)} does, then walks the tree in order from there, so only the books returned by each
+     * shard are visited.
+     *
+     * @param fromAuthor the first author name in the range, inclusive
+     * @param toAuthor the author name at which the range ends, exclusive, or null to continue to the last author
+     * @param limit the maximum number of books to return
+     * @return up to limit books whose authors are in the range, in author order
+     */
+    public List<Book> searchByAuthorRange(String fromAuthor, String toAuthor, int limit) {
+        String toKey = toAuthor == null ? null : toAuthor.toLowerCase();
+        return searchAuthorRange(new Book(null, fromAuthor, 0),
+                book -> toKey == null || book.getAuthorKey().compareTo(toKey) < 0, limit);
+    }
+
+    /**
+     * Collect the books in the author trees of all the shards from the search key onwards, for as long as they are in
+     * range, and merge them into author order.
+     *
+     * @param fromKey the book to start from
+     * @param inRange whether a book is still in range; once one isn't, no later book is either
+     * @param limit the maximum number of books to return
+     * @return the books found, in author order
+     */
+    private List<Book> searchAuthorRange(Book fromKey, Predicate<Book> inRange, int limit) {
+        if (shards.length == 1) {
+            return searchAuthorRange(shards[0], fromKey, inRange, limit);
+        }
+        List<List<Book>> booksByShard = new ArrayList<>(shards.length);
+        for (LibraryShard shard : shards) {
+            booksByShard.add(searchAuthorRange(shard, fromKey, inRange, limit));
+        }
+        return firstMerged(booksByShard, Book::compareByAuthorAndIsbn, limit);
+    }
+
+    /**
+     * Collect the books in the author tree of a shard from the search key onwards, for as long as they are in range.
+     *
+     * @param shard the shard to search
+     * @param fromKey the book to start from
+     * @param inRange whether a book is still in range; once one isn't, no later book is either
+     * @param limit the maximum number of books to return
+     * @return the books found, in author order
+     */
+    private List<Book> searchAuthorRange(LibraryShard shard, Book fromKey, Predicate<Book> inRange, int limit) {
+        BookTree authorTree = shard.authorTree;
+        Supplier<List<Book>> collect = () -> {
+            List<Book> books = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+            Iterator<Book> iterator = authorTree.iteratorFrom(fromKey);
+            while (books.size() < limit && iterator.hasNext()) {
+                Book book = iterator.next();
+                if (!inRange.test(book)) {
+                    break;
+                }
+                if (isAvailable(book)) {
+                    books.add(book);
+                }
+            }
+            return books;
+        };
+        return search(shard.authorLock, authorTree, shard.authorSplayCounts, () -> {
+            authorTree.search(fromKey);
+            return collect.get();
+        }, collect, () -> authorTree.searchDepth(fromKey));
+    }
+
+    /**
+     * Search the library for several ISBNs at once. Searches in unborrowed books only.
+     * The ISBNs in each shard are looked up in ascending order in a single pass over its ISBN tree, which is not
+     * modified, so batches can be searched in parallel with other searches.
+     *
+     * @param isbns the full ISBNs to search for
+     * @return the book found for each ISBN, in the same order as the ISBNs, or null for each ISBN not found
+     */
+    public List<Book> searchByIsbns(List<Long> isbns) {
+        long[] sortedIsbns = new long[isbns.size()];
+        int count = 0;
+        for (Long isbn : isbns) {
+            if (isbn != null) {
+                sortedIsbns[count++] = isbn;
+            }
+        }
+        Arrays.sort(sortedIsbns, 0, count);
+        sortedIsbns = Arrays.copyOf(sortedIsbns, count);
+
+        Book[] foundBooks;
+        if (shards.length == 1) {
+            foundBooks = findAllByIsbn(shards[0], sortedIsbns);
+        } else {
+            // Split the ISBNs between the shards, keeping each shard's in order, and where each one came from
+            int[] shardCounts = new int[shards.length];
+            for (long isbn : sortedIsbns) {
+                shardCounts[isbnShardIndex(isbn, shards.length)]++;
+            }
+            long[][] shardIsbns = new long[shards.length][];
+            int[][] shardPositions = new int[shards.length][];
+            for (int i = 0; i < shards.length; i++) {
+                shardIsbns[i] = new long[shardCounts[i]];
+                shardPositions[i] = new int[shardCounts[i]];
+                shardCounts[i] = 0;
+            }
+            for (int position = 0; position < sortedIsbns.length; position++) {
+                int i = isbnShardIndex(sortedIsbns[position], shards.length);
+                shardIsbns[i][shardCounts[i]] = sortedIsbns[position];
+                shardPositions[i][shardCounts[i]++] = position;
+            }
+
+            foundBooks = new Book[sortedIsbns.length];
+            for (int i = 0; i < shards.length; i++) {
+                if (shardIsbns[i].length > 0) {
+                    Book[] shardBooks = findAllByIsbn(shards[i], shardIsbns[i]);
+                    for (int j = 0; j < shardBooks.length; j++) {
+                        foundBooks[shardPositions[i][j]] = shardBooks[j];
+                    }
+                }
+            }
         }
-        Book mockBook = new Book(null, null, isbn);
-        isbnSplayTree = bookSplayTreeService.searchByIsbn(isbnSplayTree, mockBook);
 
-        // Splay tree root will not be the right book if it is not found
-        Book foundBook = isbnSplayTree.data;
-        return foundBook.getIsbn() == isbn ? foundBook : null;
+        List<Book> results = new ArrayList<>(isbns.size());
+        for (Long isbn : isbns) {
+            Book book = isbn == null ? null : foundBooks[Arrays.binarySearch(sortedIsbns, isbn)];
+            if (book != null && !isAvailable(book)) {
+                // Another book with the ISBN may still be available; the trees never change while it is tracked
+                book = findAvailableByIsbn(isbnShard(isbn).isbnTree, isbn);
+            }
+            results.add(book);
+        }
+        return results;
+    }
+
+    private static Book[] findAllByIsbn(LibraryShard shard, long[] sortedIsbns) {
+        Lock readLock = shard.isbnLock.readLock();
+        readLock.lock();
+        try {
+            return shard.isbnTree.findAllByIsbn(sortedIsbns);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Search the library for authors whose names are close to the given one, ignoring case, e.g. to find
+     * "Thomas H. Cormen" when searching for "Thomas H Cormen". Searches in unborrowed books only.
+     * Names are ranked by their edit distance to the one searched for, and the books of each are returned in turn.
+     * The candidate names are found in an index of the trigrams in the authors' names, then their books are looked up
+     * in the author trees, which are not modified, so fuzzy searches can run in parallel with other searches.
+     *
+     * @param authorName the author name to search for
+     * @param maxDistance the maximum number of characters inserted, deleted or changed, between 0 and
+     *     {@value #MAX_FUZZY_DISTANCE}; values outside this range are clamped to it
+     * @param limit the maximum number of books to return
+     * @return up to limit books by the authors found, closest first, then in author order
+     */
+    public List<Book> searchByAuthorFuzzy(String authorName, int maxDistance, int limit) {
+        List<AuthorTrigramIndex.Match> matches = authorIndex.search(authorName,
+                Math.max(0, Math.min(maxDistance, MAX_FUZZY_DISTANCE)));
+
+        List<Book> books = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        for (AuthorTrigramIndex.Match match : matches) {
+            if (books.size() >= limit) {
+                break;
+            }
+            LibraryShard shard = authorShard(match.getAuthorKey());
+            Lock readLock = shard.authorLock.readLock();
+            readLock.lock();
+            try {
+                Iterator<Book> iterator = shard.authorTree.iteratorFrom(new Book(null, match.getAuthorKey(), 0));
+                while (books.size() < limit && iterator.hasNext()) {
+                    Book book = iterator.next();
+                    if (!book.getAuthorKey().equals(match.getAuthorKey())) {
+                        break;
+                    }
+                    if (isAvailable(book)) {
+                        books.add(book);
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Search the library for books with all the given words in their titles, ignoring case and punctuation. Searches
+     * in unborrowed books only.
+     * The words are looked up in the title index of each shard and the books with the ISBNs found are then checked in
+     * its ISBN tree, neither of which is modified, so title searches can run in parallel with other searches.
+     *
+     * @param query the words to search for, separated by spaces or punctuation
+     * @param limit the maximum number of books to return
+     * @return up to limit books whose titles contain every word of the query, in ISBN order
+     */
+    public List<Book> searchByTitle(String query, int limit) {
+        List<String> terms = TitleIndex.terms(query);
+        List<List<Book>> booksByShard = new ArrayList<>(shards.length);
+        for (LibraryShard shard : shards) {
+            List<Book> books = new ArrayList<>();
+            Lock readLock = shard.isbnLock.readLock();
+            readLock.lock();
+            try {
+                for (long isbn : shard.titleIndex.search(query, limit, this::isAvailable)) {
+                    // Several books may share the ISBN, so check the title of each of them
+                    Iterator<Book> booksFromIsbn = shard.isbnTree.iteratorFrom(new Book(null, null, isbn));
+                    while (booksFromIsbn.hasNext() && books.size() < limit) {
+                        Book book = booksFromIsbn.next();
+                        if (book.getIsbn() != isbn) {
+                            break;
+                        }
+                        if (TitleIndex.matches(book, terms) && isAvailable(book)) {
+                            books.add(book);
+                        }
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+            booksByShard.add(books);
+        }
+        return shards.length == 1 ? booksByShard.get(0) : firstMerged(booksByShard, Book::compareByISBN, limit);
+    }
+
+    /**
+     * List the borrowed books, in author order. The borrowed trees of all the shards are iterated and merged without
+     * being modified, so the listing can run in parallel with searches, while borrowing and returning wait for it.
+     * If availability is tracked outside the trees, the borrowed copies are picked out of all the books of the library
+     * instead, without any lock, keeping the first limit of them in a heap rather than sorting them all.
+     *
+     * @param limit the maximum number of books to return
+     * @return up to limit borrowed books, the first in author order
+     */
+    public List<Book> listBorrowed(int limit) {
+        if (availability != null) {
+            if (limit <= 0) {
+                return new ArrayList<>();
+            }
+            // Keep only the first limit books in author order, with the last of them at the head to be displaced
+            Comparator<Book> authorOrder = Book::compareByAuthorAndIsbn;
+            PriorityQueue<Book> first = new PriorityQueue<>(Math.min(limit, 64), authorOrder.reversed());
+            availability.splitCopies(merged(trees(shard -> shard.isbnTree), Book::compareByISBN), book -> { },
+                    book -> {
+                        if (first.size() < limit) {
+                            first.add(book);
+                        } else if (authorOrder.compare(book, first.peek()) < 0) {
+                            first.poll();
+                            first.add(book);
+                        }
+                    });
+            List<Book> borrowed = new ArrayList<>(first);
+            borrowed.sort(authorOrder);
+            return borrowed;
+        }
+
+        List<Lock> readLocks = new ArrayList<>(shards.length);
+        for (LibraryShard shard : shards) {
+            readLocks.add(shard.authorLock.readLock());
+        }
+        readLocks.forEach(Lock::lock);
+        try {
+            List<Book> books = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+            Iterator<Book> iterator = merged(trees(shard -> shard.borrowedTree), Book::compareByAuthorAndIsbn)
+                    .iterator();
+            while (books.size() < limit && iterator.hasNext()) {
+                books.add(iterator.next());
+            }
+            return books;
+        } finally {
+            readLocks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Run a search of a tree, splaying it if no other thread is using it and otherwise looking the book up without
+     * restructuring the tree, so that concurrent searches do not queue up behind each other.
+     * Unless the splay policy is to always splay, the book is first looked up under the read lock, and the tree is
+     * only splayed if the policy asks for it. If availability is tracked outside the trees, they are never modified, so
+     * the book is looked up without any lock.
+     *
+     * @param lock the lock guarding the tree
+     * @param tree the tree searched
+     * @param splayCounts the counts to record splaying the tree in
+     * @param splayingSearch the search to run while holding the write lock
+     * @param readOnlySearch the search to run while holding the read lock; must not modify any tree
+     * @param searchDepth the depth of the book searched for, run while holding the read lock if the policy needs it
+     * @return the result of the search
+     */
+    private <T> T search(ReadWriteLock lock, BookTree tree, LibraryMetrics.SplayCounts splayCounts,
+                         Supplier<T> splayingSearch, Supplier<T> readOnlySearch, IntSupplier searchDepth) {
+        if (availability != null) {
+            return readOnlySearch.get();
+        }
+        Lock readLock = lock.readLock();
+        if (bookSplayTreeService.getSplayPolicy() != SplayPolicy.ALWAYS) {
+            readLock.lock();
+            try {
+                if (bookSplayTreeService.getSplayPolicy() == SplayPolicy.DEPTH_THRESHOLD) {
+                    // Only the deep searches splay, so record the depth of the others too, or the histogram would
+                    // only show the deep ones
+                    int depth = searchDepth.getAsInt();
+                    if (!bookSplayTreeService.shouldSplay(() -> depth)) {
+                        splayCounts.recordSearchDepth(depth);
+                        return readOnlySearch.get();
+                    }
+                } else if (!bookSplayTreeService.shouldSplay(searchDepth)) {
+                    return readOnlySearch.get();
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        Lock writeLock = lock.writeLock();
+        if (writeLock.tryLock()) {
+            try {
+                long rotationsBefore = tree.getRotationCount();
+                T result = splayingSearch.get();
+                splayCounts.record(LibraryMetrics.Operation.SEARCH, tree.getRotationCount() - rotationsBefore);
+                return result;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        readLock.lock();
+        try {
+            return readOnlySearch.get();
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
      * Borrow a given book by removing it from both the author and ISBN trees, and adding it to the borrowed books tree.
-     * Updates all three trees.
+     * Updates all three trees, holding the author lock of the author's shard and the ISBN lock of the ISBN's shard.
+     * If availability is tracked outside the trees, a copy of the book is marked borrowed instead, leaving the trees
+     * alone.
      *
      * @param book the book to borrow
      */
     public void borrowBook(Book book) {
-        SplayTreeNode<Book> nodeInAuthorTree = bookSplayTreeService.searchByAuthor(authorSplayTree, book);
-        if (!nodeInAuthorTree.data.getAuthor().equals(book.getAuthor())) {
-            throw new BorrowingException("Oops! That book is not available to borrow.");
+        long start = System.nanoTime();
+        boolean borrowed = false;
+        try {
+            awaitJournal(process(book, this::borrowBookLocked, BorrowingJournal.EntryType.BORROW));
+            borrowed = true;
+        } finally {
+            metrics.recordBorrow(System.nanoTime() - start, borrowed);
+        }
+    }
+
+    /**
+     * Borrow a book while holding the author write lock of its author's shard.
+     *
+     * @param authorShard the shard of the book's author
+     * @param book the book to borrow
+     */
+    private void borrowBookLocked(LibraryShard authorShard, Book book) {
+        long rotationsBefore = authorShard.authorTree.getRotationCount()
+                + authorShard.borrowedTree.getRotationCount();
+        try {
+            moveToBorrowed(authorShard, book);
+        } finally {
+            authorShard.authorSplayCounts.record(LibraryMetrics.Operation.BORROW,
+                    authorShard.authorTree.getRotationCount() + authorShard.borrowedTree.getRotationCount()
+                            - rotationsBefore);
         }
+    }
 
-        SplayTreeNode<Book> nodeInIsbnTree = bookSplayTreeService.searchByIsbn(isbnSplayTree, book);
-        if (nodeInIsbnTree.data.getIsbn() != book.getIsbn()) {
+    private void moveToBorrowed(LibraryShard authorShard, Book book) {
+        BookTree authorTree = authorShard.authorTree;
+        // Searching splays the trees, so keep track of the new roots even if the book turns out not to be available
+        authorTree.search(book);
+        Book bookInAuthorTree = authorTree.getRoot();
+        // Compare authors as the trees order them
+        if (bookInAuthorTree == null || !bookInAuthorTree.getAuthorKey().equals(book.getAuthorKey())) {
             throw new BorrowingException("Oops! That book is not available to borrow.");
         }
 
-        authorSplayTree = bookSplayTreeService.delete(authorSplayTree, nodeInAuthorTree);
-        isbnSplayTree = bookSplayTreeService.delete(isbnSplayTree, nodeInIsbnTree);
+        LibraryShard isbnShard = isbnShard(book.getIsbn());
+        BookTree isbnTree = isbnShard.isbnTree;
+        Lock writeLock = isbnShard.isbnLock.writeLock();
+        writeLock.lock();
+        long rotationsBefore = isbnTree.getRotationCount();
+        try {
+            // Several books may share the ISBN, so find one by this author, whatever its title
+            isbnTree.searchExactly(new Book(null, book.getAuthor(), book.getIsbn()));
+            Book bookInIsbnTree = isbnTree.getRoot();
+            if (bookInIsbnTree == null || bookInIsbnTree.getIsbn() != book.getIsbn()
+                    || !bookInIsbnTree.getAuthorKey().equals(book.getAuthorKey())) {
+                throw new BorrowingException("Oops! That book is not available to borrow.");
+            }
+
+            // Find that same book in the author tree, rather than another one by the author, even one with the same
+            // ISBN but a different title
+            authorTree.searchExactly(bookInIsbnTree);
+
+            // The book is now at the roots of both trees
+            authorTree.deleteRoot();
+            isbnTree.deleteRoot();
+            isbnShard.titleIndex.remove(bookInIsbnTree);
 
-        SplayTreeNode<Book> borrowedNode = new SplayTreeNode<>(book);
-        borrowedSplayTree = bookSplayTreeService.insertByAuthor(borrowedSplayTree, borrowedNode);
+            // Keep the library's copy of the book rather than the one given, which may e.g. lack a title
+            authorShard.borrowedTree.insert(bookInIsbnTree);
+            authorShard.borrowedByIsbn.add(bookInIsbnTree);
+            isbnShard.availableBookCount--;
+            authorShard.borrowedBookCount++;
+        } finally {
+            isbnShard.isbnSplayCounts.addRotations(LibraryMetrics.Operation.BORROW,
+                    isbnTree.getRotationCount() - rotationsBefore);
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Searches the borrowed book tree to see if the supplied book corresponds to a borrowed book. If it does,
-     * return the book by removing it from the borrowed books tree and adding it back to the author and ISBN trees.
+     * Looks up the supplied book's ISBN and author among the borrowed books of its author's shard. If it has been
+     * borrowed, return the book by removing it from the borrowed books tree and adding it back to the author and ISBN
+     * trees. It is that exact book which is returned rather than any borrowed book by its author, and the trees are
+     * left alone if it hasn't been borrowed.
      *
-     * Note that the trees will be updated by searching for the author even if the
-     * author is not found.
+     * If availability is tracked outside the trees, a copy of the book with the given ISBN is marked available instead,
+     * leaving the trees alone.
      *
      * @param book the book to return.
      */
     public void returnBook(Book book) {
-        SplayTreeNode<Book> borrowedNode = searchBorrowedByAuthor(book.getAuthor());
-        if (borrowedNode == null) {
+        long start = System.nanoTime();
+        boolean returned = false;
+        try {
+            awaitJournal(process(book, this::returnBookLocked, BorrowingJournal.EntryType.RETURN));
+            returned = true;
+        } finally {
+            metrics.recordReturn(System.nanoTime() - start, returned);
+        }
+    }
+
+    /**
+     * Borrow or return a single book and append it to the journal.
+     *
+     * @param book the book to borrow or return
+     * @param operation borrows or returns the book while holding the author lock of the shard of its author, throwing
+     *                  a {@link BorrowingException} if it can't; not used if availability is tracked outside the
+     *                  trees
+     * @param journalEntryType the type of journal entry to record for the book
+     * @return the sequence number of the journal entry, or 0 if there is no journal
+     */
+    private long process(Book book, BiConsumer<LibraryShard, Book> operation,
+                         BorrowingJournal.EntryType journalEntryType) {
+        if (availability != null) {
+            return changeAvailabilityAndJournal(book, journalEntryType);
+        }
+        LibraryShard shard = authorShard(book);
+        Lock writeLock = shard.authorLock.writeLock();
+        writeLock.lock();
+        try {
+            operation.accept(shard, book);
+            return journal == null ? 0 : journal.append(journalEntryType, book);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Borrow or return a book by marking it in the availability tracker, and append it to the journal. Without a
+     * journal this takes no lock; with one, the book is marked and the entry appended under the lending monitor, since
+     * a book borrowed and then returned by two other threads must not be journalled the other way round.
+     *
+     * @param book the book to borrow or return
+     * @param journalEntryType whether to borrow or return the book
+     * @return the sequence number of the journal entry, or 0 if there is no journal
+     */
+    private long changeAvailabilityAndJournal(Book book, BorrowingJournal.EntryType journalEntryType) {
+        if (journal == null) {
+            changeAvailability(book, journalEntryType);
+            return 0;
+        }
+        synchronized (lendingMonitor) {
+            changeAvailability(book, journalEntryType);
+            return journal.append(journalEntryType, book);
+        }
+    }
+
+    /**
+     * Borrow or return a book by marking it in the availability tracker. The book must be in the library with the
+     * given ISBN and author. If several books have that ISBN and author, any available one is borrowed, or any borrowed
+     * one returned, so borrowing only fails once every one of them is borrowed; other books with the ISBN are left
+     * alone.
+     *
+     * @param book the book to borrow or return
+     * @param type whether to borrow or return the book
+     */
+    private void changeAvailability(Book book, BorrowingJournal.EntryType type) {
+        boolean borrowing = type == BorrowingJournal.EntryType.BORROW;
+        // The book by exactly that author is preferred, but any title by the author will do, as when borrowing from
+        // the trees
+        Book libraryBook = findInLibrary(isbnShard(book.getIsbn()).isbnTree, book);
+        Book anyTitle = new Book(null, book.getAuthor(), book.getIsbn());
+        boolean changed = libraryBook != null && (borrowing
+                ? availability.markBorrowed(libraryBook) || availability.markBorrowed(anyTitle)
+                : availability.markReturned(libraryBook) || availability.markReturned(anyTitle));
+        if (!changed) {
+            throw new BorrowingException(borrowing
+                    ? "Oops! That book is not available to borrow."
+                    : "Oops! That book hasn't been borrowed, so can't be returned.");
+        }
+    }
+
+    /**
+     * @param isbnTree a tree ordered by ISBN, which is not splayed
+     * @param book a book
+     * @return the book in the tree with the book's ISBN and exact author, or else the first one with its ISBN and
+     * author ignoring case as the tree does, or null if there is none. Several books may share the ISBN
+     */
+    private static Book findInLibrary(BookTree isbnTree, Book book) {
+        Book firstByAuthor = null;
+        Iterator<Book> booksFromIsbn = isbnTree.iteratorFrom(new Book(null, null, book.getIsbn()));
+        while (booksFromIsbn.hasNext()) {
+            Book libraryBook = booksFromIsbn.next();
+            if (libraryBook.getIsbn() != book.getIsbn()) {
+                break;
+            }
+            if (!libraryBook.getAuthorKey().equals(book.getAuthorKey())) {
+                continue;
+            }
+            if (libraryBook.getAuthor().equals(book.getAuthor())) {
+                return libraryBook;
+            }
+            if (firstByAuthor == null) {
+                firstByAuthor = libraryBook;
+            }
+        }
+        return firstByAuthor;
+    }
+
+    /**
+     * Borrow several books at once. Each book is borrowed as by {@link #borrowBook(Book)}, but a book which cannot be
+     * borrowed is reported in its outcome rather than failing the whole batch.
+     *
+     * @param books the books to borrow
+     * @return the outcome for each book, in the same order as the books
+     */
+    public List<BorrowingOutcome> borrowBooks(List<Book> books) {
+        return processBatch(books, this::borrowBookLocked, BorrowingJournal.EntryType.BORROW);
+    }
+
+    /**
+     * Return several books at once. Each book is returned as by {@link #returnBook(Book)}, but a book which cannot be
+     * returned is reported in its outcome rather than failing the whole batch.
+     *
+     * @param books the books to return
+     * @return the outcome for each book, in the same order as the books
+     */
+    public List<BorrowingOutcome> returnBooks(List<Book> books) {
+        return processBatch(books, this::returnBookLocked, BorrowingJournal.EntryType.RETURN);
+    }
+
+    /**
+     * Borrow or return a batch of books under a single acquisition of the author lock of each shard involved, waiting
+     * for the journal only once at the end. The books are processed in author order, so that each search starts next
+     * to the book the previous one splayed to the root and only has a short way to go. If availability is tracked
+     * outside the trees, the books are processed one at a time in the order given, with no lock.
+     *
+     * @param books the books to borrow or return
+     * @param operation borrows or returns a single book while holding the author lock of the shard of its author,
+     *                  throwing a {@link BorrowingException} if it can't
+     * @param journalEntryType the type of journal entry to record for each book borrowed or returned
+     * @return the outcome for each book, in the same order as the books
+     */
+    private List<BorrowingOutcome> processBatch(List<Book> books, BiConsumer<LibraryShard, Book> operation,
+                                                BorrowingJournal.EntryType journalEntryType) {
+        BorrowingOutcome[] outcomes = new BorrowingOutcome[books.size()];
+        List<List<Integer>> orderByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            orderByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (book == null || book.getAuthor() == null) {
+                outcomes[i] = BorrowingOutcome.failure(book, "Oops! That book has no author.");
+            } else {
+                orderByShard.get(shards.length == 1 ? 0 : authorShardIndex(book.getAuthorKey(), shards.length)).add(i);
+            }
+        }
+
+        long journalSequence = 0;
+        if (availability != null) {
+            for (int i = 0; i < books.size(); i++) {
+                if (outcomes[i] == null) {
+                    Book book = books.get(i);
+                    try {
+                        journalSequence = changeAvailabilityAndJournal(book, journalEntryType);
+                        outcomes[i] = BorrowingOutcome.success(book);
+                    } catch (BorrowingException e) {
+                        outcomes[i] = BorrowingOutcome.failure(book, e.getMessage());
+                    }
+                }
+            }
+            awaitJournal(journalSequence);
+            return Arrays.asList(outcomes);
+        }
+        for (int shardIndex = 0; shardIndex < shards.length; shardIndex++) {
+            List<Integer> order = orderByShard.get(shardIndex);
+            if (order.isEmpty()) {
+                continue;
+            }
+            order.sort((i, j) -> books.get(i).compareByAuthor(books.get(j)));
+
+            LibraryShard shard = shards[shardIndex];
+            Lock writeLock = shard.authorLock.writeLock();
+            writeLock.lock();
+            try {
+                for (int i : order) {
+                    Book book = books.get(i);
+                    try {
+                        operation.accept(shard, book);
+                        outcomes[i] = BorrowingOutcome.success(book);
+                        if (journal != null) {
+                            journalSequence = journal.append(journalEntryType, book);
+                        }
+                    } catch (BorrowingException e) {
+                        outcomes[i] = BorrowingOutcome.failure(book, e.getMessage());
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        awaitJournal(journalSequence);
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Wait for a journal entry to be written to disk. This happens outside the locks, so that other requests can go
+     * ahead and have their entries written in the same batch.
+     *
+     * @param journalSequence the sequence number of the entry
+     */
+    private void awaitJournal(long journalSequence) {
+        if (journal == null || journalSequence == 0) {
+            return;
+        }
+        try {
+            journal.awaitDurable(journalSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing borrowing journal", e);
+        }
+    }
+
+    /**
+     * Return a book while holding the author write lock of its author's shard.
+     *
+     * @param authorShard the shard of the book's author
+     * @param book the book to return
+     */
+    private void returnBookLocked(LibraryShard authorShard, Book book) {
+        long rotationsBefore = authorShard.authorTree.getRotationCount()
+                + authorShard.borrowedTree.getRotationCount();
+        try {
+            moveToAvailable(authorShard, book);
+        } finally {
+            authorShard.authorSplayCounts.record(LibraryMetrics.Operation.RETURN,
+                    authorShard.authorTree.getRotationCount() + authorShard.borrowedTree.getRotationCount()
+                            - rotationsBefore);
+        }
+    }
+
+    private void moveToAvailable(LibraryShard authorShard, Book book) {
+        Book borrowedBook = authorShard.borrowedByIsbn.find(book.getIsbn(), book.getAuthorKey());
+        if (borrowedBook == null) {
             throw new BorrowingException("Oops! That book hasn't been borrowed, so can't be returned.");
-        } else {
-            borrowedSplayTree = bookSplayTreeService.delete(borrowedSplayTree, borrowedNode);
+        }
+        // Splay the book to the root of the borrowed tree to delete it. Books which share the ISBN and author are told
+        // apart by title, so it is the same book the index gave up, or an identical copy of it
+        authorShard.borrowedTree.searchExactly(borrowedBook);
+        borrowedBook = authorShard.borrowedTree.getRoot();
+        authorShard.borrowedTree.deleteRoot();
+        authorShard.borrowedByIsbn.remove(borrowedBook);
+        authorShard.authorTree.insert(borrowedBook);
+        authorShard.borrowedBookCount--;
+
+        LibraryShard isbnShard = isbnShard(borrowedBook.getIsbn());
+        BookTree isbnTree = isbnShard.isbnTree;
+        Lock writeLock = isbnShard.isbnLock.writeLock();
+        writeLock.lock();
+        long rotationsBefore = isbnTree.getRotationCount();
+        try {
+            isbnTree.insert(borrowedBook);
+            isbnShard.titleIndex.add(borrowedBook);
+            isbnShard.availableBookCount++;
+        } finally {
+            isbnShard.isbnSplayCounts.addRotations(LibraryMetrics.Operation.RETURN,
+                    isbnTree.getRotationCount() - rotationsBefore);
+            writeLock.unlock();
+        }
+    }
 
-            SplayTreeNode<Book> authorNode = new SplayTreeNode<>(borrowedNode.data);
-            authorSplayTree = bookSplayTreeService.insertByAuthor(authorSplayTree, authorNode);
+    /**
+     * @param isbn an ISBN
+     * @return whether a book with the ISBN is available, assuming that one is in the trees searched
+     */
+    private boolean isAvailable(long isbn) {
+        return availability == null || availability.isAvailable(isbn);
+    }
+
+    /**
+     * @param book a book in the trees searched
+     * @return whether the book is available
+     */
+    private boolean isAvailable(Book book) {
+        return availability == null || availability.isAvailable(book);
+    }
 
-            SplayTreeNode<Book> isbnNode = new SplayTreeNode<>(borrowedNode.data);
-            isbnSplayTree = bookSplayTreeService.insertByISBN(isbnSplayTree, isbnNode);
+    /**
+     * Find the first available book with an ISBN in an ISBN tree holding borrowed books as well, without modifying
+     * the tree.
+     *
+     * @param isbnTree the ISBN tree of the ISBN's shard
+     * @param isbn the ISBN to search for
+     * @return the first available book with the ISBN, or null if there is none
+     */
+    private Book findAvailableByIsbn(BookTree isbnTree, long isbn) {
+        Iterator<Book> booksFromIsbn = isbnTree.iteratorFrom(new Book(null, null, isbn));
+        while (booksFromIsbn.hasNext()) {
+            Book book = booksFromIsbn.next();
+            if (book.getIsbn() != isbn) {
+                return null;
+            }
+            if (availability.isAvailable(book)) {
+                return book;
+            }
         }
+        return null;
     }
 
     /**
-     * Searches the tree of borrowed books for the given author name.
-     * Modifies the borrowed splay tree regardless whether the book was found or not. If the book was found, it will be
-     * the new root of the tree. If the book was not found, a book close to its presumed position in the tree will be
-     * the new root of the tree.
+     * Find the first available book by an author in an author tree holding borrowed books as well, without modifying
+     * the tree.
      *
-     * @param authorName the author name to search the borrowed books for
-     * @return the node containing the book found, if one is found, or null if no book was found
+     * @param authorTree the author tree of the author's shard
+     * @param mockBook a book with the author's name, to search the tree for
+     * @param authorName the full author name to search for
+     * @return the first available book by the author in ISBN order, or null if there is none
      */
-    private SplayTreeNode<Book> searchBorrowedByAuthor(String authorName) {
-        if (borrowedSplayTree == null) {
-            return null;
+    private Book findAvailableByAuthor(BookTree authorTree, Book mockBook, String authorName) {
+        Iterator<Book> iterator = authorTree.iteratorFrom(mockBook);
+        while (iterator.hasNext()) {
+            Book book = iterator.next();
+            if (book.compareByAuthor(mockBook) != 0) {
+                return null;
+            }
+            if (book.getAuthor().equals(authorName) && availability.isAvailable(book)) {
+                return book;
+            }
         }
+        return null;
+    }
 
-        Book mockBook = new Book(null, authorName, 0);
-        borrowedSplayTree = bookSplayTreeService.searchByAuthor(borrowedSplayTree, mockBook);
+    private int availableBookCount() {
+        return availability != null ? availability.availableCount() : sumOverShards(shard -> shard.availableBookCount);
+    }
+
+    private int borrowedBookCount() {
+        return availability != null ? availability.borrowedCount() : sumOverShards(shard -> shard.borrowedBookCount);
+    }
+
+    private LibraryShard authorShard(Book book) {
+        return shards.length == 1 ? shards[0] : shards[authorShardIndex(book.getAuthorKey(), shards.length)];
+    }
+
+    private LibraryShard authorShard(String authorKey) {
+        return shards.length == 1 ? shards[0] : shards[authorShardIndex(authorKey, shards.length)];
+    }
+
+    private LibraryShard isbnShard(long isbn) {
+        return shards.length == 1 ? shards[0] : shards[isbnShardIndex(isbn, shards.length)];
+    }
+
+    /**
+     * @param authorKey the author of a book, in lower case as given by {@link Book#getAuthorKey()}
+     * @param shardCount the number of shards
+     * @return the index of the shard whose author tree the author's books belong in
+     */
+    private static int authorShardIndex(String authorKey, int shardCount) {
+        int hash = authorKey.hashCode();
+        // Mix the high bits in, as HashMap does, since similar names differ mostly in the low ones
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * @param isbn the ISBN of a book
+     * @param shardCount the number of shards
+     * @return the index of the shard whose ISBN tree the book belongs in
+     */
+    private static int isbnShardIndex(long isbn, int shardCount) {
+        // Consecutive ISBNs go to consecutive shards, spreading out books published together
+        return Math.floorMod(Long.hashCode(isbn), shardCount);
+    }
 
-        // Splay tree root will not be the right book if it is not found
-        Book foundBook = borrowedSplayTree.data;
-        return foundBook.getAuthor().equals(authorName) ? borrowedSplayTree : null;
+    private int sumOverShards(ToIntFunction<LibraryShard> count) {
+        int sum = 0;
+        for (LibraryShard shard : shards) {
+            sum += count.applyAsInt(shard);
+        }
+        return sum;
+    }
+
+    /**
+     * @param tree picks a tree of a shard
+     * @return that tree of each of the shards, in shard order
+     */
+    private List<BookTree> trees(Function<LibraryShard, BookTree> tree) {
+        List<BookTree> trees = new ArrayList<>(shards.length);
+        for (LibraryShard shard : shards) {
+            trees.add(tree.apply(shard));
+        }
+        return trees;
+    }
+
+    /**
+     * Merge lists of books which are each in order, and take the first of them.
+     *
+     * @param lists the lists to merge
+     * @param order the order of the books in each list
+     * @param limit the maximum number of books to take
+     * @return up to limit books, the first in the given order of all those in the lists
+     */
+    private static List<Book> firstMerged(List<List<Book>> lists, Comparator<Book> order, int limit) {
+        List<Book> books = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        Iterator<Book> iterator = merged(lists, order).iterator();
+        while (books.size() < limit && iterator.hasNext()) {
+            books.add(iterator.next());
+        }
+        return books;
+    }
+
+    /**
+     * Merge collections of books which are each in order, e.g. the trees of the same kind of every shard.
+     *
+     * @param collections the collections of books to merge, which are only iterated
+     * @param order the order of the books in each collection
+     * @return the books of all the collections in order, iterated lazily
+     */
+    private static Iterable<Book> merged(List<? extends Iterable<Book>> collections, Comparator<Book> order) {
+        if (collections.size() == 1) {
+            return collections.get(0);
+        }
+        return () -> new MergingIterator(collections, order);
+    }
+
+    /**
+     * Iterates over the books of several collections which are each in order, in order.
+     */
+    private static class MergingIterator implements Iterator<Book> {
+        // The next book of each collection which has one, with the iterator over the rest of that collection
+        private final PriorityQueue<Map.Entry<Book, Iterator<Book>>> heads;
+
+        private MergingIterator(List<? extends Iterable<Book>> collections, Comparator<Book> order) {
+            heads = new PriorityQueue<>(Math.max(collections.size(), 1), Map.Entry.comparingByKey(order));
+            for (Iterable<Book> collection : collections) {
+                advance(collection.iterator());
+            }
+        }
+
+        private void advance(Iterator<Book> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new AbstractMap.SimpleImmutableEntry<>(iterator.next(), iterator));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Book next() {
+            Map.Entry<Book, Iterator<Book>> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.getValue());
+            return head.getKey();
+        }
+    }
+
+    /**
+     * For unit tests only
+     * @return the author splay tree of the first shard, which is the only one unless the library is sharded
+     */
+    /*package*/ BookTree getAuthorSplayTree() {
+        return shards[0].authorTree;
     }
 
     /**
      * For unit tests only
-     * @return the root of the author splay tree
+     * @return the ISBN splay tree of the first shard, which is the only one unless the library is sharded
      */
-    /*package*/ SplayTreeNode<Book> getAuthorSplayTree() {
-        return authorSplayTree;
+    /*package*/ BookTree getIsbnSplayTree() {
+        return shards[0].isbnTree;
     }
 
     /**
      * For unit tests only
-     * @return the root of the ISBN splay tree
+     * @return the borrowed splay tree of the first shard, which is the only one unless the library is sharded
      */
-    /*package*/ SplayTreeNode<Book> getIsbnSplayTree() {
-        return isbnSplayTree;
+    /*package*/ BookTree getBorrowedSplayTree() {
+        return shards[0].borrowedTree;
     }
 
     /**
      * For unit tests only
-     * @return the root of the borrowed splay tree
+     * @return the shards of the library
      */
-    /*package*/ SplayTreeNode<Book> getBorrowedSplayTree() {
-        return borrowedSplayTree;
+    /*package*/ LibraryShard[] getShards() {
+        return shards;
     }
 }
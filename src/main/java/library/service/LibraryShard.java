@@ -0,0 +1,69 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One of the shards {@link LibraryService} splits the library into, so that requests for different books can be
+ * served in parallel rather than all contending for the same lock and the tops of the same trees.
+ *
+ * Each book is placed twice over: in the author tree, or the borrowed tree while it is borrowed, of the shard chosen
+ * by the hash of its author, and in the ISBN tree and title index of the shard chosen by the hash of its ISBN. Each of
+ * these two halves of a shard has its own lock, so a search by author or by ISBN needs the lock of one half of one
+ * shard, while borrowing or returning a book needs the author lock of its author's shard and the ISBN lock of its
+ * ISBN's shard.
+ *
+ * To avoid deadlock, locks are always taken in the same order: author locks before ISBN locks, and locks of the same
+ * kind in shard order.
+ */
+/*package*/ class LibraryShard {
+
+    // The author half: the books by the authors hashed to this shard, guarded by authorLock
+    /*package*/ final BookTree authorTree;
+    /*package*/ final BookTree borrowedTree;
+    // The books in borrowedTree by ISBN, so that a returned book can be found exactly without splaying
+    /*package*/ final BookIsbnIndex borrowedByIsbn;
+    /*package*/ final ReadWriteLock authorLock = new ReentrantReadWriteLock();
+    /*package*/ final LibraryMetrics.SplayCounts authorSplayCounts;
+    // Only changed under the author write lock, read without it for metrics
+    /*package*/ volatile int borrowedBookCount;
+
+    // The ISBN half: the available books with the ISBNs hashed to this shard, guarded by isbnLock
+    /*package*/ final BookTree isbnTree;
+    /*package*/ final TitleIndex titleIndex;
+    /*package*/ final ReadWriteLock isbnLock = new ReentrantReadWriteLock();
+    /*package*/ final LibraryMetrics.SplayCounts isbnSplayCounts;
+    // Only changed under the ISBN write lock, read without it for metrics
+    /*package*/ volatile int availableBookCount;
+
+    /**
+     * Create a shard of the given trees, indexing their titles and the ISBNs of the borrowed books.
+     *
+     * @param authorTree the available books by the authors of this shard
+     * @param isbnTree the available books with the ISBNs of this shard
+     * @param borrowedTree the borrowed books by the authors of this shard
+     * @param metrics the metrics to count the splaying of the trees in
+     */
+    /*package*/ LibraryShard(BookTree authorTree, BookTree isbnTree, BookTree borrowedTree, LibraryMetrics metrics) {
+        this.authorTree = authorTree;
+        this.isbnTree = isbnTree;
+        this.borrowedTree = borrowedTree;
+        this.borrowedByIsbn = BookIsbnIndex.of(borrowedTree);
+        // Built from the ISBN tree, so that each term's ISBNs are appended in order
+        this.titleIndex = TitleIndex.of(isbnTree);
+        this.authorSplayCounts = metrics.newSplayCounts();
+        this.isbnSplayCounts = metrics.newSplayCounts();
+        this.availableBookCount = count(isbnTree);
+        this.borrowedBookCount = count(borrowedTree);
+    }
+
+    private static int count(BookTree tree) {
+        int count = 0;
+        for (Book ignored : tree) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,245 @@
+package library.service;
+
+import library.model.Book;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The three trees of the library, along with a compact binary format to save them in so that the library can be
+ * restarted without parsing the base library file again.
+ *
+ * The format is, in big-endian order:
+ * <ul>
+ *     <li>the magic number {@code LIBS} and the format version</li>
+ *     <li>the number of available books, followed by the available books in ISBN order</li>
+ *     <li>the position of each available book in the previous list, in author order</li>
+ *     <li>the number of borrowed books, followed by the borrowed books in author order</li>
+ * </ul>
+ * Each book is its ISBN as a long followed by its title and author as UTF-8 strings, each prefixed with its length
+ * in bytes as an int (or -1 for null). Whether a book is borrowed is given by the section it is in.
+ *
+ * Since every list is stored in the order of the tree it is loaded into, the trees can be rebuilt in O(n) without
+ * sorting or splaying.
+ */
+/*package*/ class LibrarySnapshot {
+
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 1;
+
+    private final BookTree authorTree;
+    private final BookTree isbnTree;
+    private final BookTree borrowedTree;
+
+    /*package*/ LibrarySnapshot(BookTree authorTree, BookTree isbnTree, BookTree borrowedTree) {
+        this.authorTree = authorTree;
+        this.isbnTree = isbnTree;
+        this.borrowedTree = borrowedTree;
+    }
+
+    /*package*/ BookTree getAuthorTree() {
+        return authorTree;
+    }
+
+    /*package*/ BookTree getIsbnTree() {
+        return isbnTree;
+    }
+
+    /*package*/ BookTree getBorrowedTree() {
+        return borrowedTree;
+    }
+
+    /**
+     * Write the trees to the given stream. The trees are only read, not splayed.
+     *
+     * @param outputStream the stream to write to, which is not closed
+     * @throws IOException if the stream cannot be written to
+     */
+    /*package*/ void writeTo(OutputStream outputStream) throws IOException {
+        write(outputStream, authorTree, isbnTree, borrowedTree);
+    }
+
+    /**
+     * Write books to the given stream as {@link #writeTo(OutputStream)} does, e.g. from the trees of several shards
+     * merged into order.
+     *
+     * @param outputStream the stream to write to, which is not closed
+     * @param authorOrder the available books in author order
+     * @param isbnOrder the same books in ISBN order
+     * @param borrowed the borrowed books in author order
+     * @throws IOException if the stream cannot be written to
+     */
+    /*package*/ static void write(OutputStream outputStream, Iterable<Book> authorOrder, Iterable<Book> isbnOrder,
+                                  Iterable<Book> borrowed) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        // Available books in ISBN order, remembering where each one went. Trees which keep their books off the heap
+        // read a new instance of a book every time it is asked for, so the books are told apart by their contents
+        // rather than by identity, and books with the same ISBN are next to each other
+        List<Book> isbnOrderBooks = new ArrayList<>();
+        int availableCount = count(isbnOrder);
+        IsbnTable firstPositions = new IsbnTable(availableCount);
+        out.writeInt(availableCount);
+        for (Book book : isbnOrder) {
+            if (firstPositions.get(book.getIsbn()) == IsbnTable.ABSENT) {
+                firstPositions.put(book.getIsbn(), isbnOrderBooks.size());
+            }
+            isbnOrderBooks.add(book);
+            writeBook(out, book);
+        }
+
+        // Author order of the same books
+        BitSet placed = new BitSet(isbnOrderBooks.size());
+        for (Book book : authorOrder) {
+            int position = positionOf(book, isbnOrderBooks, firstPositions, placed);
+            if (position < 0) {
+                throw new IOException("Book in author tree is missing from ISBN tree: " + book);
+            }
+            placed.set(position);
+            out.writeInt(position);
+        }
+
+        // Borrowed books in author order
+        out.writeInt(count(borrowed));
+        for (Book book : borrowed) {
+            writeBook(out, book);
+        }
+        out.flush();
+    }
+
+    /**
+     * Find a book among the books in ISBN order which hasn't been placed in author order yet. Copies of a book with the
+     * same title and author are interchangeable, so whichever of them comes first is taken.
+     *
+     * @param book the book to find
+     * @param isbnOrderBooks the books in ISBN order
+     * @param firstPositions the position of the first book with each ISBN
+     * @param placed the positions already placed in author order
+     * @return the position of the book, or -1 if it isn't there or every copy of it has been placed already
+     */
+    private static int positionOf(Book book, List<Book> isbnOrderBooks, IsbnTable firstPositions, BitSet placed) {
+        int position = firstPositions.get(book.getIsbn());
+        if (position == IsbnTable.ABSENT) {
+            return -1;
+        }
+        for (; position < isbnOrderBooks.size() && isbnOrderBooks.get(position).getIsbn() == book.getIsbn();
+             position++) {
+            Book candidate = isbnOrderBooks.get(position);
+            if (!placed.get(position) && Objects.equals(candidate.getTitle(), book.getTitle())
+                    && Objects.equals(candidate.getAuthor(), book.getAuthor())) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read trees previously written with {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream the stream to read from, which is not closed
+     * @param bookSplayTreeService the service to build the trees with
+     * @return the snapshot read
+     * @throws IOException if the stream cannot be read or is not a valid snapshot
+     */
+    /*package*/ static LibrarySnapshot readFrom(InputStream inputStream, BookSplayTreeService bookSplayTreeService)
+            throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a library snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported library snapshot version " + version);
+        }
+
+        byte[] buffer = new byte[256];
+        int availableCount = readCount(in);
+        Book[] availableBooks = new Book[availableCount];
+        BookSplayTreeBuilder isbnTreeBuilder = bookSplayTreeService.isbnTreeBuilder();
+        for (int i = 0; i < availableCount; i++) {
+            availableBooks[i] = bookSplayTreeService.storedBook(readBook(in, buffer));
+            isbnTreeBuilder.add(availableBooks[i]);
+        }
+
+        BookSplayTreeBuilder authorTreeBuilder = bookSplayTreeService.authorTreeBuilder();
+        for (int i = 0; i < availableCount; i++) {
+            int position = in.readInt();
+            if (position < 0 || position >= availableCount) {
+                throw new IOException("Invalid book position " + position);
+            }
+            authorTreeBuilder.add(availableBooks[position]);
+        }
+
+        int borrowedCount = readCount(in);
+        BookSplayTreeBuilder borrowedTreeBuilder = bookSplayTreeService.authorTreeBuilder();
+        for (int i = 0; i < borrowedCount; i++) {
+            borrowedTreeBuilder.add(bookSplayTreeService.storedBook(readBook(in, buffer)));
+        }
+
+        return new LibrarySnapshot(bookSplayTreeService.authorTree(authorTreeBuilder.build()),
+                bookSplayTreeService.isbnTree(isbnTreeBuilder.build()),
+                bookSplayTreeService.authorTree(borrowedTreeBuilder.build()));
+    }
+
+    private static int count(Iterable<Book> books) {
+        int count = 0;
+        for (Book ignored : books) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid book count " + count);
+        }
+        return count;
+    }
+
+    private static void writeBook(DataOutputStream out, Book book) throws IOException {
+        out.writeLong(book.getIsbn());
+        writeString(out, book.getTitle());
+        writeString(out, book.getAuthor());
+    }
+
+    private static Book readBook(DataInputStream in, byte[] buffer) throws IOException {
+        long isbn = in.readLong();
+        String title = readString(in, buffer);
+        String author = readString(in, buffer);
+        return new Book(title, author, isbn);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in, byte[] buffer) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+package library.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A reader which memory-maps a file and decodes it straight from the mapping into the caller's buffer, without
+ * copying the bytes onto the heap first.
+ *
+ * A single mapping is limited to 2GB, so larger files are mapped one window at a time. Each new window starts at the
+ * first byte the decoder has not consumed yet, so characters which straddle the end of a window are decoded whole.
+ * As with {@link java.io.FileReader}, malformed input is replaced rather than reported.
+ */
+/*package*/ class MappedFileReader extends Reader {
+
+    private static final long DEFAULT_WINDOW_SIZE = 1L << 30; // must be at least as long as the longest character
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final CharsetDecoder decoder;
+
+    private long windowStart = 0;
+    private MappedByteBuffer window;
+    private boolean finished = false;
+
+    // Second half of a surrogate pair which did not fit in the caller's buffer, or -1 if there is none
+    private int pendingChar = -1;
+
+    /*package*/ MappedFileReader(Path path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /*package*/ MappedFileReader(Path path, Charset charset, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        mapWindow(0);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        int start = offset;
+        if (pendingChar >= 0) {
+            buffer[offset++] = (char) pendingChar;
+            length--;
+            pendingChar = -1;
+        }
+        if (length == 1) {
+            // Too small for a surrogate pair, so decode via a buffer which is big enough for one
+            char[] pair = new char[2];
+            int read = decodeInto(CharBuffer.wrap(pair));
+            if (read > 0) {
+                buffer[offset++] = pair[0];
+            }
+            if (read > 1) {
+                pendingChar = pair[1];
+            }
+        } else if (length > 1) {
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            offset += decodeInto(out);
+        }
+
+        int read = offset - start;
+        return read == 0 && finished ? -1 : read;
+    }
+
+    /**
+     * Decode as many characters as will fit into the given buffer, or as are left in the file, moving on to the next
+     * window as needed.
+     *
+     * @param out the buffer to decode into
+     * @return the number of characters decoded
+     * @throws IOException if the next window cannot be mapped
+     */
+    private int decodeInto(CharBuffer out) throws IOException {
+        int start = out.position();
+        while (out.hasRemaining() && !finished) {
+            boolean lastWindow = windowStart + window.limit() == fileSize;
+            CoderResult result = decoder.decode(window, out, lastWindow);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (!lastWindow) {
+                mapWindow(windowStart + window.position());
+            } else if (decoder.flush(out).isUnderflow()) {
+                finished = true;
+            } else {
+                break;
+            }
+        }
+        return out.position() - start;
+    }
+
+    private void mapWindow(long position) throws IOException {
+        long size = Math.min(windowSize, fileSize - position);
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
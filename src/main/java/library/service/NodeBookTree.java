@@ -0,0 +1,198 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link BookTree} made of {@link SplayTreeNode} objects, restructured by {@link BookSplayTreeService}.
+ */
+/*package*/ class NodeBookTree implements BookTree {
+
+    private final BookSplayTreeService bookSplayTreeService;
+    private final boolean orderedByIsbn;
+    private SplayTreeNode<Book> root;
+    // The service's rotations are shared by all its trees, so count those made while restructuring this one
+    private long rotationCount = 0;
+
+    /*package*/ NodeBookTree(BookSplayTreeService bookSplayTreeService, boolean orderedByIsbn,
+                             SplayTreeNode<Book> root) {
+        this.bookSplayTreeService = bookSplayTreeService;
+        this.orderedByIsbn = orderedByIsbn;
+        this.root = root;
+    }
+
+    /**
+     * For unit tests only
+     * @return the root node of the tree
+     */
+    /*package*/ SplayTreeNode<Book> getRootNode() {
+        return root;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Book getRoot() {
+        return root == null ? null : root.data;
+    }
+
+    @Override
+    public void search(Book searchKey) {
+        if (root != null) {
+            long rotationsBefore = bookSplayTreeService.getRotationCount();
+            root = orderedByIsbn
+                    ? bookSplayTreeService.searchByIsbn(root, searchKey)
+                    : bookSplayTreeService.searchByAuthor(root, searchKey);
+            countRotationsSince(rotationsBefore);
+        }
+    }
+
+    @Override
+    public void searchByIsbn(long isbn) {
+        if (root != null) {
+            long rotationsBefore = bookSplayTreeService.getRotationCount();
+            root = bookSplayTreeService.searchByIsbn(root, isbn);
+            countRotationsSince(rotationsBefore);
+        }
+    }
+
+    @Override
+    public void searchExactly(Book book) {
+        if (root != null) {
+            long rotationsBefore = bookSplayTreeService.getRotationCount();
+            root = orderedByIsbn
+                    ? bookSplayTreeService.searchByIsbnAndAuthor(root, book)
+                    : bookSplayTreeService.searchByAuthorAndIsbn(root, book);
+            countRotationsSince(rotationsBefore);
+        }
+    }
+
+    @Override
+    public Book find(Book searchKey) {
+        SplayTreeNode<Book> node = orderedByIsbn
+                ? bookSplayTreeService.findByIsbn(root, searchKey)
+                : bookSplayTreeService.findByAuthor(root, searchKey);
+        return node == null ? null : node.data;
+    }
+
+    @Override
+    public Book findByIsbn(long isbn) {
+        SplayTreeNode<Book> node = bookSplayTreeService.findByIsbn(root, isbn);
+        return node == null ? null : node.data;
+    }
+
+    @Override
+    public Book[] findAllByIsbn(long[] sortedIsbns) {
+        return bookSplayTreeService.findAllByIsbn(root, sortedIsbns);
+    }
+
+    @Override
+    public int searchDepth(Book searchKey) {
+        if (orderedByIsbn) {
+            return searchDepthByIsbn(searchKey.getIsbn());
+        }
+        int depth = 0;
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            depth++;
+            int comparison = searchKey.compareByAuthor(current.data);
+            if (comparison == 0) {
+                break;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return depth;
+    }
+
+    @Override
+    public int searchDepthByIsbn(long isbn) {
+        int depth = 0;
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            depth++;
+            long currentIsbn = current.data.getIsbn();
+            if (isbn == currentIsbn) {
+                break;
+            }
+            current = isbn < currentIsbn ? current.left : current.right;
+        }
+        return depth;
+    }
+
+    @Override
+    public void insert(Book book) {
+        SplayTreeNode<Book> node = new SplayTreeNode<>(book);
+        long rotationsBefore = bookSplayTreeService.getRotationCount();
+        root = orderedByIsbn
+                ? bookSplayTreeService.insertByISBN(root, node)
+                : bookSplayTreeService.insertByAuthor(root, node);
+        countRotationsSince(rotationsBefore);
+    }
+
+    @Override
+    public void deleteRoot() {
+        long rotationsBefore = bookSplayTreeService.getRotationCount();
+        root = bookSplayTreeService.delete(root, root);
+        countRotationsSince(rotationsBefore);
+    }
+
+    @Override
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    private void countRotationsSince(long rotationsBefore) {
+        rotationCount += bookSplayTreeService.getRotationCount() - rotationsBefore;
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        return iteratorFrom(bookSplayTreeService.locateMin(root));
+    }
+
+    @Override
+    public Iterator<Book> iteratorFrom(Book searchKey) {
+        // Find the first node which doesn't come before the search key
+        SplayTreeNode<Book> first = null;
+        SplayTreeNode<Book> current = root;
+        while (current != null) {
+            int comparison = orderedByIsbn
+                    ? searchKey.compareByISBN(current.data)
+                    : searchKey.compareByAuthor(current.data);
+            if (comparison <= 0) {
+                first = current;
+                current = current.left;
+            } else {
+                current = current.right;
+            }
+        }
+        return iteratorFrom(first);
+    }
+
+    private Iterator<Book> iteratorFrom(SplayTreeNode<Book> first) {
+        return new Iterator<Book>() {
+            private SplayTreeNode<Book> next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Book next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Book book = next.data;
+                next = bookSplayTreeService.locateSuccessor(next);
+                return book;
+            }
+        };
+    }
+}
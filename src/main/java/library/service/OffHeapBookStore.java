@@ -0,0 +1,49 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the books of an {@link ArrayBookTree} in a {@link BookRecordArena}, so that the tree holds only the offset of
+ * each book's record. Books are read back from their records when they are asked for.
+ */
+/*package*/ class OffHeapBookStore implements BookStore {
+
+    private final BookRecordArena arena;
+    private long[] offsets = new long[0];
+
+    /*package*/ OffHeapBookStore(BookRecordArena arena) {
+        this.arena = arena;
+    }
+
+    @Override
+    public void resize(int capacity) {
+        offsets = Arrays.copyOf(offsets, capacity);
+    }
+
+    @Override
+    public void set(int node, Book book) {
+        offsets[node] = arena.offsetOf(book);
+    }
+
+    @Override
+    public void clear(int node) {
+        offsets[node] = 0;
+    }
+
+    @Override
+    public Book get(int node) {
+        return arena.read(offsets[node]);
+    }
+
+    @Override
+    public long getIsbn(int node) {
+        return arena.readIsbn(offsets[node]);
+    }
+
+    @Override
+    public int compareByAuthor(Book searchKey, int node) {
+        return arena.compareAuthorKey(searchKey.getAuthorKey(), offsets[node]);
+    }
+}
@@ -0,0 +1,16 @@
+package library.service;
+
+/**
+ * How the library's splay trees are splayed, configured with {@code library.splay-engine}.
+ */
+public enum SplayEngine {
+    /**
+     * Walk down to the book searched for, then rotate it back up to the root along its parent links.
+     */
+    BOTTOM_UP,
+    /**
+     * Rotate the nodes passed on the way down to the book searched for, so that it arrives at the root in a single
+     * pass. The nodes need no parent links. Only available with {@link TreeStorage#NODES} storage.
+     */
+    TOP_DOWN
+}
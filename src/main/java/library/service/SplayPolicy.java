@@ -0,0 +1,23 @@
+package library.service;
+
+/**
+ * When searches splay the book found to the root of its tree, configured with {@code library.splay-policy}. Searches
+ * which don't splay only read the tree, so they can run in parallel and don't write to memory shared between cores.
+ * Borrowing and returning books always splay.
+ */
+public enum SplayPolicy {
+    /**
+     * Splay on every search.
+     */
+    ALWAYS,
+    /**
+     * Splay only when the book searched for is deeper than {@code library.splay-depth-threshold}, so that once the
+     * popular books are near the root, searching for them leaves the tree alone.
+     */
+    DEPTH_THRESHOLD,
+    /**
+     * Splay on a random fraction {@code library.splay-probability} of searches. Popular books are still searched
+     * often enough to be splayed towards the root.
+     */
+    PROBABILISTIC
+}
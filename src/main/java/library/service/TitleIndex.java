@@ -0,0 +1,406 @@
+package library.service;
+
+import library.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * An inverted index of the words in the titles of the available books. Each term, a word of letters and digits in
+ * lower case, maps to the ISBNs of the books with that term in their title, kept sorted in a primitive array so that
+ * a million titles take a few words of memory per posting and terms can be intersected by merging.
+ *
+ * Several books may share an ISBN, e.g. copies of a book or books wrongly given the same ISBN, so an ISBN is kept once
+ * for each book with the term, and is only dropped from the postings once the last of those books is removed. A
+ * search finds the ISBNs which have every term among their books, so the titles of the books with those ISBNs must be
+ * checked with {@link #matches(Book, List)}, as the terms may come from the titles of different books.
+ *
+ * The index is updated as books are borrowed and returned, unless availability is tracked outside the trees (see
+ * {@link AvailabilityTracking}), in which case searches filter out the borrowed books. It is not thread-safe;
+ * {@link LibraryService} guards it with the same lock as the trees.
+ */
+/*package*/ class TitleIndex {
+
+    private static final int INITIAL_POSTINGS_CAPACITY = 4;
+    private static final long[] NO_ISBNS = new long[0];
+
+    /**
+     * The sorted ISBNs of the books with a term in their title, repeated for books sharing an ISBN.
+     *
+     * Borrowing and returning books must not shift the whole array, so the ISBNs are kept in three parts: the main
+     * sorted array, which ISBNs are only appended to; tombstones marking the ISBNs in it which have been removed; and a
+     * small sorted array of the ISBNs added out of order since the main array was last compacted. A book returned is
+     * usually one borrowed earlier, whose tombstone is simply cleared. Once there are many tombstones or many ISBNs
+     * added out of order, they are merged into a new main array, which spreads its cost over the books lent since.
+     */
+    private static class Postings {
+        private long[] isbns = new long[INITIAL_POSTINGS_CAPACITY];
+        private int size = 0;
+        // Bit (n % 64) of word (n / 64) is set once the ISBN at position n has been removed; null while none have
+        private long[] removed = null;
+        private int removedCount = 0;
+        private long[] added = NO_ISBNS;
+        private int addedCount = 0;
+
+        /**
+         * @return the number of ISBNs in the postings, counting each book
+         */
+        private int count() {
+            return size - removedCount + addedCount;
+        }
+
+        private void add(long isbn) {
+            if (removedCount > 0) {
+                int position = positionInRun(isbn, true);
+                if (position >= 0) {
+                    removed[position / Long.SIZE] &= ~(1L << position);
+                    removedCount--;
+                    return;
+                }
+            }
+            // Books are usually added in ISBN order when the index is built, so check the end first
+            if (size == 0 || isbns[size - 1] <= isbn) {
+                if (size == isbns.length) {
+                    isbns = Arrays.copyOf(isbns, size + (size >> 1) + 1);
+                    if (removed != null) {
+                        removed = Arrays.copyOf(removed, (isbns.length + Long.SIZE - 1) / Long.SIZE);
+                    }
+                }
+                isbns[size++] = isbn;
+                return;
+            }
+            if (addedCount == added.length) {
+                added = Arrays.copyOf(added, Math.max(INITIAL_POSTINGS_CAPACITY, addedCount * 2));
+            }
+            int position = insertionPoint(added, addedCount, isbn);
+            System.arraycopy(added, position, added, position + 1, addedCount - position);
+            added[position] = isbn;
+            // Keeping at most about the square root of the postings out of order balances shifting them against
+            // compacting
+            if (++addedCount * addedCount > size + INITIAL_POSTINGS_CAPACITY * INITIAL_POSTINGS_CAPACITY) {
+                compact();
+            }
+        }
+
+        private void remove(long isbn) {
+            int position = positionInRun(isbn, false);
+            if (position >= 0) {
+                if (removed == null) {
+                    removed = new long[(isbns.length + Long.SIZE - 1) / Long.SIZE];
+                }
+                removed[position / Long.SIZE] |= 1L << position;
+                if (++removedCount * 2 > size) {
+                    compact();
+                }
+                return;
+            }
+            position = Arrays.binarySearch(added, 0, addedCount, isbn);
+            if (position >= 0) {
+                System.arraycopy(added, position + 1, added, position, addedCount - position - 1);
+                addedCount--;
+            }
+        }
+
+        /**
+         * @return whether the ISBN at a position of the main array has been removed
+         */
+        private boolean isRemoved(int position) {
+            return removed != null && (removed[position / Long.SIZE] & (1L << position)) != 0;
+        }
+
+        /**
+         * @param position the position of an ISBN in the main array
+         * @return whether the ISBN at the position, or at another position with the same ISBN, has not been removed
+         */
+        private boolean isLiveAround(int position) {
+            if (removedCount == 0) {
+                return true;
+            }
+            long isbn = isbns[position];
+            for (int before = position; before >= 0 && isbns[before] == isbn; before--) {
+                if (!isRemoved(before)) {
+                    return true;
+                }
+            }
+            for (int after = position + 1; after < size && isbns[after] == isbn; after++) {
+                if (!isRemoved(after)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isAddedOutOfOrder(long isbn) {
+            return addedCount > 0 && Arrays.binarySearch(added, 0, addedCount, isbn) >= 0;
+        }
+
+        /**
+         * @param removed whether to find a removed ISBN rather than one still in the postings
+         * @return the position of the ISBN in the main array, removed or not as asked, or -1 if there is none
+         */
+        private int positionInRun(long isbn, boolean removed) {
+            int position = insertionPoint(isbns, size, isbn) - 1;
+            for (; position >= 0 && isbns[position] == isbn; position--) {
+                if (isRemoved(position) == removed) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Merge the ISBNs added out of order into the main array, leaving out the removed ones.
+         */
+        private void compact() {
+            long[] merged = new long[Math.max(count() + (count() >> 1), INITIAL_POSTINGS_CAPACITY)];
+            int count = 0;
+            int a = 0;
+            for (int position = 0; position < size; position++) {
+                if (isRemoved(position)) {
+                    continue;
+                }
+                while (a < addedCount && added[a] < isbns[position]) {
+                    merged[count++] = added[a++];
+                }
+                merged[count++] = isbns[position];
+            }
+            while (a < addedCount) {
+                merged[count++] = added[a++];
+            }
+            isbns = merged;
+            size = count;
+            removed = null;
+            removedCount = 0;
+            added = NO_ISBNS;
+            addedCount = 0;
+        }
+
+        /**
+         * @return the position after any ISBNs which are no larger than the given one, among the first size
+         */
+        private static int insertionPoint(long[] isbns, int size, long isbn) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (isbns[middle] <= isbn) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Walks the distinct ISBNs of postings in ascending order, merging the main array and the ISBNs added out of
+     * order and skipping the removed ones, without copying any of them.
+     */
+    private static class DistinctIsbns {
+        private final Postings postings;
+        private int position = 0;
+        private int addedPosition = 0;
+        private boolean started = false;
+        private long last;
+
+        private DistinctIsbns(Postings postings) {
+            this.postings = postings;
+        }
+
+        /**
+         * @return whether there is another ISBN, which is then given by {@link #last}
+         */
+        private boolean advance() {
+            while (position < postings.size || addedPosition < postings.addedCount) {
+                long isbn;
+                if (addedPosition == postings.addedCount
+                        || (position < postings.size && postings.isbns[position] <= postings.added[addedPosition])) {
+                    if (postings.isRemoved(position)) {
+                        position++;
+                        continue;
+                    }
+                    isbn = postings.isbns[position++];
+                } else {
+                    isbn = postings.added[addedPosition++];
+                }
+                if (!started || isbn != last) {
+                    started = true;
+                    last = isbn;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+
+    /**
+     * Build an index of the books in a tree. The tree is iterated, not splayed.
+     *
+     * @param books the books to index, ideally in ISBN order
+     * @return the index
+     */
+    /*package*/ static TitleIndex of(Iterable<Book> books) {
+        TitleIndex index = new TitleIndex();
+        for (Book book : books) {
+            index.add(book);
+        }
+        return index;
+    }
+
+    /**
+     * Split text into terms: runs of letters and digits, in lower case.
+     *
+     * @param text the text to split, which may be null
+     * @return the terms, in the order they appear, possibly with repeats
+     */
+    /*package*/ static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /*package*/ void add(Book book) {
+        // A term repeated in a title is only posted once for the book
+        for (String term : new HashSet<>(terms(book.getTitle()))) {
+            postingsByTerm.computeIfAbsent(term, ignored -> new Postings()).add(book.getIsbn());
+        }
+    }
+
+    /**
+     * Remove a book from the index. Its ISBN stays in the postings of the terms of any other book with the ISBN.
+     *
+     * @param book the book to remove, which must have been added
+     */
+    /*package*/ void remove(Book book) {
+        for (String term : new HashSet<>(terms(book.getTitle()))) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null) {
+                postings.remove(book.getIsbn());
+                if (postings.count() == 0) {
+                    postingsByTerm.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param book a book
+     * @param terms terms as given by {@link #terms(String)}
+     * @return whether the title of the book contains every one of the terms
+     */
+    /*package*/ static boolean matches(Book book, List<String> terms) {
+        return terms(book.getTitle()).containsAll(terms);
+    }
+
+    /**
+     * Find the books whose titles contain every term of the query. Each book with the rarest term is looked for in
+     * the postings of the other terms in turn, stopping once enough books are found, so the cost depends on how rare
+     * the rarest term is and on the limit rather than on the size of the library.
+     *
+     * @param query the words to search for, split into terms as titles are
+     * @param limit the maximum number of ISBNs to return
+     * @return the distinct ISBNs of up to limit books which may match, in ascending order; empty if the query has no
+     * terms. Where books share an ISBN, see {@link #matches(Book, List)}
+     */
+    /*package*/ long[] search(String query, int limit) {
+        return search(query, limit, isbn -> true);
+    }
+
+    /**
+     * Find the books whose titles contain every term of the query, skipping those which aren't wanted, e.g. because
+     * they are borrowed. Books are skipped before counting them towards the limit.
+     *
+     * @param query the words to search for, split into terms as titles are
+     * @param limit the maximum number of ISBNs to return
+     * @param include whether to include a matching book, by ISBN
+     * @return the distinct ISBNs of up to limit books which may match and are included, in ascending order
+     */
+    /*package*/ long[] search(String query, int limit, LongPredicate include) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        List<Postings> postingsList = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null) {
+                return new long[0];
+            }
+            postingsList.add(postings);
+        }
+        postingsList.sort(Comparator.comparingInt(Postings::count));
+
+        Postings rarest = postingsList.get(0);
+        long[] matches = new long[Math.min(rarest.count(), limit)];
+        int matchCount = 0;
+        // Where to continue searching the main array of each of the other postings from, since the candidates come in
+        // ascending order
+        int[] positions = new int[postingsList.size()];
+        DistinctIsbns candidates = new DistinctIsbns(rarest);
+        candidates:
+        while (matchCount < matches.length && candidates.advance()) {
+            long isbn = candidates.last;
+            for (int p = 1; p < postingsList.size(); p++) {
+                Postings postings = postingsList.get(p);
+                int found = seek(postings, positions[p], isbn);
+                positions[p] = found >= 0 ? found + 1 : -(found + 1);
+                if (found >= 0 && postings.isLiveAround(found) || postings.isAddedOutOfOrder(isbn)) {
+                    continue;
+                }
+                if (positions[p] == postings.size && postings.addedCount == 0) {
+                    // No later candidate can be in these postings either
+                    break candidates;
+                }
+                continue candidates;
+            }
+            if (include.test(isbn)) {
+                matches[matchCount++] = isbn;
+            }
+        }
+        return matchCount == matches.length ? matches : Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     * Look for an ISBN in the main array of postings with an exponential search from the given position, since the
+     * postings are usually much longer than the candidates looked for in them. The ISBN found may have been removed.
+     *
+     * @param postings the postings to search
+     * @param from the position to search from; every ISBN before it is smaller than the one searched for
+     * @param isbn the ISBN to search for
+     * @return the position of the ISBN if found, otherwise (-(insertion point) - 1) as for
+     *     {@link Arrays#binarySearch(long[], int, int, long)}
+     */
+    private static int seek(Postings postings, int from, long isbn) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < postings.size && postings.isbns[high] < isbn) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(postings.isbns, low, Math.min(high + 1, postings.size), isbn);
+    }
+}
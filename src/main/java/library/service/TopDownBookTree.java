@@ -0,0 +1,409 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link BookTree} restructured by top-down splaying, as described by Sleator and Tarjan. On the way down to the
+ * book searched for, the nodes passed are rotated and split off into a left tree of smaller books and a right tree of
+ * larger ones, which are then reassembled under the book found. A search is therefore a single pass down the tree, and
+ * the nodes need no parent links, making each node three references instead of the four of a {@link SplayTreeNode}.
+ *
+ * As with bottom-up splaying, the book found, or the last book searched if there is no match, ends up at the root,
+ * although the rest of the tree may be shaped differently.
+ */
+/*package*/ class TopDownBookTree implements BookTree {
+
+    private static class Node {
+        private final Book book;
+        private Node left;
+        private Node right;
+
+        private Node(Book book) {
+            this.book = book;
+        }
+    }
+
+    private final boolean orderedByIsbn;
+    private Node root;
+
+    // Holds the left and right trees during a splay: its right child is the root of the left tree and its left child
+    // is the root of the right tree. Only used by splaying, which has exclusive access to the tree
+    private final Node header = new Node(null);
+
+    // Nodes rotated or linked into the left or right tree while splaying; each moves the book searched for up a level
+    private long rotationCount = 0;
+
+    /*package*/ TopDownBookTree(boolean orderedByIsbn) {
+        this.orderedByIsbn = orderedByIsbn;
+    }
+
+    /**
+     * Copy a tree of nodes into a tree without parent links. The books are linked into a balanced tree in their order
+     * in the original, whatever its shape.
+     *
+     * @param root the root of the tree to copy, which may be null
+     * @param orderedByIsbn whether the tree is ordered by ISBN rather than author
+     * @param bookSplayTreeService the service to walk the tree with
+     * @return the new tree
+     */
+    /*package*/ static TopDownBookTree copyOf(SplayTreeNode<Book> root, boolean orderedByIsbn,
+                                             BookSplayTreeService bookSplayTreeService) {
+        int count = 0;
+        for (SplayTreeNode<Book> node = bookSplayTreeService.locateMin(root); node != null;
+             node = bookSplayTreeService.locateSuccessor(node)) {
+            count++;
+        }
+
+        Book[] books = new Book[count];
+        int i = 0;
+        for (SplayTreeNode<Book> node = bookSplayTreeService.locateMin(root); node != null;
+             node = bookSplayTreeService.locateSuccessor(node)) {
+            books[i++] = node.data;
+        }
+
+        TopDownBookTree tree = new TopDownBookTree(orderedByIsbn);
+        tree.root = linkBalanced(books, 0, count);
+        return tree;
+    }
+
+    private static Node linkBalanced(Book[] books, int start, int count) {
+        if (count == 0) {
+            return null;
+        }
+        int leftCount = (count - 1) / 2;
+        Node node = new Node(books[start + leftCount]);
+        node.left = linkBalanced(books, start, leftCount);
+        node.right = linkBalanced(books, start + leftCount + 1, count - leftCount - 1);
+        return node;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Book getRoot() {
+        return root == null ? null : root.book;
+    }
+
+    @Override
+    public void search(Book searchKey) {
+        if (root != null) {
+            splay(searchKey, searchKey.getIsbn(), false, false);
+        }
+    }
+
+    @Override
+    public void searchByIsbn(long isbn) {
+        if (root != null) {
+            splay(null, isbn, false, false);
+        }
+    }
+
+    @Override
+    public void searchExactly(Book book) {
+        if (root != null) {
+            splay(book, book.getIsbn(), true, false);
+        }
+    }
+
+    @Override
+    public Book find(Book searchKey) {
+        Node current = root;
+        while (current != null) {
+            int comparison = compare(searchKey, searchKey.getIsbn(), current, false);
+            if (comparison < 0) {
+                current = current.left;
+            } else if (comparison > 0) {
+                current = current.right;
+            } else {
+                return current.book;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Book findByIsbn(long isbn) {
+        Node current = root;
+        while (current != null) {
+            long currentIsbn = current.book.getIsbn();
+            if (isbn < currentIsbn) {
+                current = current.left;
+            } else if (isbn > currentIsbn) {
+                current = current.right;
+            } else {
+                return current.book;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Book[] findAllByIsbn(long[] sortedIsbns) {
+        // The same finger search as BookSplayTreeService#findAllByIsbn, keeping the path from the root to the finger
+        // in place of parent links
+        Book[] found = new Book[sortedIsbns.length];
+        if (root == null) {
+            return found;
+        }
+        Node[] path = new Node[32];
+        path[0] = root;
+        int depth = 1;
+        for (int i = 0; i < sortedIsbns.length; i++) {
+            long isbn = sortedIsbns[i];
+
+            while (depth > 1
+                    && !(path[depth - 2].left == path[depth - 1] && path[depth - 2].book.getIsbn() > isbn)) {
+                depth--;
+            }
+
+            Node current = path[depth - 1];
+            while (true) {
+                long currentIsbn = current.book.getIsbn();
+                Node next;
+                if (isbn < currentIsbn) {
+                    next = current.left;
+                } else if (isbn > currentIsbn) {
+                    next = current.right;
+                } else {
+                    found[i] = current.book;
+                    break;
+                }
+                if (next == null) {
+                    break;
+                }
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = next;
+                current = next;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int searchDepth(Book searchKey) {
+        int depth = 0;
+        Node current = root;
+        while (current != null) {
+            depth++;
+            int comparison = compare(searchKey, searchKey.getIsbn(), current, false);
+            if (comparison == 0) {
+                break;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return depth;
+    }
+
+    @Override
+    public int searchDepthByIsbn(long isbn) {
+        int depth = 0;
+        Node current = root;
+        while (current != null) {
+            depth++;
+            long currentIsbn = current.book.getIsbn();
+            if (isbn == currentIsbn) {
+                break;
+            }
+            current = isbn < currentIsbn ? current.left : current.right;
+        }
+        return depth;
+    }
+
+    @Override
+    public void insert(Book book) {
+        Node node = new Node(book);
+        if (root != null) {
+            splay(book, book.getIsbn(), true, false);
+            // Split the tree around the new book, which becomes the root. Books equal to it stay on the left
+            if (compare(book, book.getIsbn(), root, true) < 0) {
+                node.left = root.left;
+                node.right = root;
+                root.left = null;
+            } else {
+                node.right = root.right;
+                node.left = root;
+                root.right = null;
+            }
+        }
+        root = node;
+    }
+
+    @Override
+    public void deleteRoot() {
+        if (root.left == null) {
+            root = root.right;
+        } else {
+            // Splay the max of the left subtree to its root, which leaves it without a right child to attach the
+            // right subtree to
+            Node rightSubtree = root.right;
+            root = root.left;
+            splay(null, 0, false, true);
+            root.right = rightSubtree;
+        }
+    }
+
+    @Override
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        Deque<Node> stack = new ArrayDeque<>();
+        for (Node current = root; current != null; current = current.left) {
+            stack.push(current);
+        }
+        return iterator(stack);
+    }
+
+    @Override
+    public Iterator<Book> iteratorFrom(Book searchKey) {
+        // Stack the nodes which don't come before the search key on the way down to it, i.e. those whose left subtree
+        // was entered, which are exactly the books still to come in order, apart from their right subtrees
+        Deque<Node> stack = new ArrayDeque<>();
+        Node current = root;
+        while (current != null) {
+            if (compare(searchKey, searchKey.getIsbn(), current, false) <= 0) {
+                stack.push(current);
+                current = current.left;
+            } else {
+                current = current.right;
+            }
+        }
+        return iterator(stack);
+    }
+
+    /**
+     * @param stack the nodes still to visit, with the next one on top, each followed by its right subtree
+     */
+    private Iterator<Book> iterator(Deque<Node> stack) {
+        return new Iterator<Book>() {
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Book next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = stack.pop();
+                pushLeftSpine(node.right);
+                return node.book;
+            }
+
+            private void pushLeftSpine(Node node) {
+                for (Node current = node; current != null; current = current.left) {
+                    stack.push(current);
+                }
+            }
+        };
+    }
+
+    /**
+     * Compare a search key to the book of a node in the order of the tree.
+     *
+     * @param searchKey the book to compare by author, unused if the tree is ordered by ISBN unless comparing exactly
+     * @param isbn the ISBN to compare, unused if the tree is ordered by author
+     * @param node the node to compare to
+     * @param exactly whether to compare books by the same author by ISBN, or books with the same ISBN by author, as
+     * they are inserted
+     * @return a negative number, zero or a positive number if the search key comes before, with or after the node
+     */
+    private int compare(Book searchKey, long isbn, Node node, boolean exactly) {
+        if (orderedByIsbn) {
+            int comparison = Long.compare(isbn, node.book.getIsbn());
+            return comparison != 0 || !exactly ? comparison : searchKey.compareByIsbnAndAuthor(node.book);
+        }
+        return exactly ? searchKey.compareByAuthorAndIsbn(node.book) : searchKey.compareByAuthor(node.book);
+    }
+
+    /**
+     * Splay the node matching the search key, or the last node on the way to it, to the root in a single pass down
+     * the tree. The tree must not be empty.
+     *
+     * @param searchKey the book to search for by author, unused if the tree is ordered by ISBN unless searching exactly
+     * @param isbn the ISBN to search for, unused if the tree is ordered by author
+     * @param exactly whether to compare books by the same author by ISBN, or books with the same ISBN by author, to
+     * find a particular book or insert one
+     * @param toMax whether to splay the largest book instead, ignoring the search key
+     */
+    private void splay(Book searchKey, long isbn, boolean exactly, boolean toMax) {
+        header.left = null;
+        header.right = null;
+        // The largest node of the left tree and the smallest node of the right tree, to link passed nodes onto
+        Node leftTreeMax = header;
+        Node rightTreeMin = header;
+
+        Node current = root;
+        int comparison = toMax ? 1 : compare(searchKey, isbn, current, exactly);
+        while (comparison != 0) {
+            if (comparison < 0) {
+                if (current.left == null) {
+                    break;
+                }
+                comparison = toMax ? 1 : compare(searchKey, isbn, current.left, exactly);
+                if (comparison < 0) {
+                    // zig-zig: rotate right before linking
+                    rotationCount++;
+                    Node child = current.left;
+                    current.left = child.right;
+                    child.right = current;
+                    current = child;
+                    if (current.left == null) {
+                        break;
+                    }
+                    comparison = toMax ? 1 : compare(searchKey, isbn, current.left, exactly);
+                }
+                // Link the current node into the right tree and move on to its left child
+                rotationCount++;
+                rightTreeMin.left = current;
+                rightTreeMin = current;
+                current = current.left;
+            } else {
+                if (current.right == null) {
+                    break;
+                }
+                comparison = toMax ? 1 : compare(searchKey, isbn, current.right, exactly);
+                if (comparison > 0) {
+                    // zig-zig: rotate left before linking
+                    rotationCount++;
+                    Node child = current.right;
+                    current.right = child.left;
+                    child.left = current;
+                    current = child;
+                    if (current.right == null) {
+                        break;
+                    }
+                    comparison = toMax ? 1 : compare(searchKey, isbn, current.right, exactly);
+                }
+                // Link the current node into the left tree and move on to its right child
+                rotationCount++;
+                leftTreeMax.right = current;
+                leftTreeMax = current;
+                current = current.right;
+            }
+        }
+
+        // Reassemble the left and right trees under the current node
+        leftTreeMax.right = current.left;
+        rightTreeMin.left = current.right;
+        current.left = header.right;
+        current.right = header.left;
+        root = current;
+    }
+}
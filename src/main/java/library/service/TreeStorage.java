@@ -0,0 +1,21 @@
+package library.service;
+
+/**
+ * How the library's splay trees store their nodes, configured with {@code library.tree-storage}.
+ */
+public enum TreeStorage {
+    /**
+     * One {@link library.model.SplayTreeNode} object per node, linked by references.
+     */
+    NODES,
+    /**
+     * Parallel arrays indexed by node, linked by int indices. Uses about half the memory of {@link #NODES} and gives
+     * the garbage collector a handful of arrays to trace instead of millions of nodes.
+     */
+    ARRAYS,
+    /**
+     * Parallel arrays as for {@link #ARRAYS}, with the books themselves stored outside the heap in direct buffers and
+     * read back when they are needed. The heap then holds only arrays of primitives, however large the library.
+     */
+    OFF_HEAP
+}
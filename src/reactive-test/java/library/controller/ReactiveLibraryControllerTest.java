@@ -0,0 +1,101 @@
+package library.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveLibraryControllerTest {
+
+    // The reactive stack's base path is the same as the servlet stack's context path
+    private final String PREFIX = "/api/library";
+
+    private final String davidHareBookJson = "{" +
+            "\"author\": \"David Hare\"," +
+            "\"title\": \"Algorithmics — The Spirit of Computing\"," +
+            "\"isbn\": 9783642272653" +
+            "}";
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Test
+    public void searchByAuthor() {
+        webClient.get().uri(PREFIX + "/searchByAuthor?authorName=Thomas H Cormen")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.author").isEqualTo("Thomas H Cormen");
+    }
+
+    @Test
+    public void searchAllByAuthor() {
+        webClient.get().uri(PREFIX + "/searchAllByAuthor?authorName=Peter Norvig")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].author").isEqualTo("Peter Norvig");
+    }
+
+    @Test
+    public void searchByIsbn_whenNotFound_returnsNoContent() {
+        webClient.get().uri(PREFIX + "/searchByISBN?isbn=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(0);
+    }
+
+    @Test
+    public void borrowAndReturn() {
+        performBorrow()
+                .expectStatus().isOk();
+
+        webClient.get().uri(PREFIX + "/searchByISBN?isbn=9783642272653")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(0);
+
+        performBorrow()
+                .expectStatus().isBadRequest();
+
+        performReturn()
+                .expectStatus().isOk();
+
+        webClient.get().uri(PREFIX + "/searchByISBN?isbn=9783642272653")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.author").isEqualTo("David Hare");
+    }
+
+    @Test
+    public void returnBook_whenNotBorrowed_isBadRequest() {
+        performReturn()
+                .expectStatus().isBadRequest();
+    }
+
+    private WebTestClient.ResponseSpec performBorrow() {
+        return webClient.post().uri(PREFIX + "/borrow")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(davidHareBookJson)
+                .exchange();
+    }
+
+    private WebTestClient.ResponseSpec performReturn() {
+        return webClient.post().uri(PREFIX + "/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(davidHareBookJson)
+                .exchange();
+    }
+}
@@ -0,0 +1,80 @@
+package library.service;
+
+import library.exception.BorrowingException;
+import library.model.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LibraryEventLoopTest {
+
+    private MockFileService mockFileService;
+    private LibraryService libraryService;
+    private LibraryEventLoop libraryEventLoop;
+
+    @Before
+    public void setUp() {
+        mockFileService = new MockFileService();
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        libraryService = new LibraryService(new BookSplayTreeService(), mockFileService);
+        libraryEventLoop = new LibraryEventLoop(libraryService);
+    }
+
+    @After
+    public void tearDown() {
+        libraryEventLoop.shutdown();
+    }
+
+    @Test
+    public void borrowBook_thenSearch_findsNothing() {
+        // Given
+        Book book = new Book(null, "David Hare", 9783642272653L);
+
+        // When
+        libraryEventLoop.borrowBook(book).block();
+
+        // Then
+        assertThat(libraryEventLoop.searchByIsbn(9783642272653L).block(), is(nullValue()));
+        assertThat(libraryEventLoop.searchByAuthor("David Hare").block(), is(nullValue()));
+    }
+
+    @Test(expected = BorrowingException.class)
+    public void returnBook_whenNotBorrowed_completesWithError() {
+        // Given
+        Book book = new Book(null, "David Hare", 9783642272653L);
+
+        // When
+        libraryEventLoop.returnBook(book).block();
+    }
+
+    @Test
+    public void concurrentRequests_runOnOneThread() {
+        // Given
+        List<Mono<String>> operations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            operations.add(libraryEventLoop.run(() -> {
+                libraryService.searchByAuthor("Steven Skiena");
+                return Thread.currentThread().getName();
+            }));
+        }
+
+        // When
+        List<String> threadNames = Flux.merge(operations).collectList().block();
+
+        // Then
+        assertThat(threadNames.size(), is(equalTo(100)));
+        assertThat(new HashSet<>(threadNames), contains(startsWith("library-event-loop")));
+    }
+}
@@ -0,0 +1,57 @@
+package library.controller;
+
+import library.model.Book;
+import library.service.LibraryEventLoop;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The search, borrow and return endpoints of {@link LibraryController} on the reactive stack, served from Netty's event
+ * loops by the single thread of {@link LibraryEventLoop}. Only built with the {@code reactive} Maven profile, and only
+ * used when the application is started with {@code spring.main.web-application-type=reactive}, to compare with the
+ * servlet stack under the same load.
+ *
+ * The reactive stack has no context path, and this version of Spring Boot doesn't apply
+ * {@code spring.webflux.base-path} itself, so the mappings are prefixed with it instead.
+ */
+@RestController
+@RequestMapping("${spring.webflux.base-path:}/library")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveLibraryController {
+
+    private final LibraryEventLoop libraryEventLoop;
+
+    @Autowired
+    public ReactiveLibraryController(LibraryEventLoop libraryEventLoop) {
+        this.libraryEventLoop = libraryEventLoop;
+    }
+
+    @RequestMapping("/searchByAuthor")
+    public Mono<Book> searchByAuthor(@RequestParam(value = "authorName") String authorName) {
+        return libraryEventLoop.searchByAuthor(authorName);
+    }
+
+    @RequestMapping("/searchAllByAuthor")
+    public Mono<List<Book>> searchAllByAuthor(@RequestParam(value = "authorName") String authorName) {
+        return libraryEventLoop.searchAllByAuthor(authorName);
+    }
+
+    @RequestMapping("/searchByISBN")
+    public Mono<Book> searchByIsbn(@RequestParam(value = "isbn") long isbn) {
+        return libraryEventLoop.searchByIsbn(isbn);
+    }
+
+    @PostMapping("/borrow")
+    public Mono<Void> borrowBook(@RequestBody Book book) {
+        return libraryEventLoop.borrowBook(book);
+    }
+
+    @PostMapping("/return")
+    public Mono<Void> returnBook(@RequestBody Book book) {
+        return libraryEventLoop.returnBook(book);
+    }
+}
@@ -0,0 +1,101 @@
+package library.service;
+
+import library.model.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Serves the library to the reactive API from a single thread which owns the splay trees: every search, borrow and
+ * return is queued to that thread and run in turn, so the trees are only ever touched by one thread. The locks of
+ * {@link LibraryService} are still taken but are never contended, so no request waits for a lock or parks a thread,
+ * and the server's event loop threads never block on the library.
+ *
+ * Results are handed back on Reactor's parallel scheduler, so that encoding the responses doesn't hold up the next
+ * request. With a journal, each borrow and return waits for its entry to be written before the next is run, so the
+ * journal is better left disabled when measuring.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class LibraryEventLoop {
+
+    private final LibraryService libraryService;
+    private final Scheduler owner = Schedulers.newSingle("library-event-loop");
+
+    @Autowired
+    public LibraryEventLoop(LibraryService libraryService) {
+        this.libraryService = libraryService;
+    }
+
+    /**
+     * @param authorName the author name to search for
+     * @return the book found by {@link LibraryService#searchByAuthor(String)}, or empty if there is none
+     */
+    public Mono<Book> searchByAuthor(String authorName) {
+        return run(() -> libraryService.searchByAuthor(authorName));
+    }
+
+    /**
+     * @param authorName the author name to search for
+     * @return the books found by {@link LibraryService#searchAllByAuthor(String)}
+     */
+    public Mono<List<Book>> searchAllByAuthor(String authorName) {
+        return run(() -> libraryService.searchAllByAuthor(authorName));
+    }
+
+    /**
+     * @param isbn the ISBN to search for
+     * @return the book found by {@link LibraryService#searchByIsbn(long)}, or empty if there is none
+     */
+    public Mono<Book> searchByIsbn(long isbn) {
+        return run(() -> libraryService.searchByIsbn(isbn));
+    }
+
+    /**
+     * @param book the book to borrow
+     * @return completes once the book is borrowed, or with a {@link library.exception.BorrowingException} if it can't
+     * be
+     */
+    public Mono<Void> borrowBook(Book book) {
+        return run(() -> {
+            libraryService.borrowBook(book);
+            return null;
+        });
+    }
+
+    /**
+     * @param book the book to return
+     * @return completes once the book is returned, or with a {@link library.exception.BorrowingException} if it can't
+     * be
+     */
+    public Mono<Void> returnBook(Book book) {
+        return run(() -> {
+            libraryService.returnBook(book);
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        owner.dispose();
+    }
+
+    /**
+     * Queue an operation on the library to the owning thread, which runs it once subscribed to.
+     *
+     * @param operation the operation, returning its result or null for none
+     * @return the result of the operation, or empty if it returned null
+     */
+    /*package*/ <T> Mono<T> run(Callable<T> operation) {
+        return Mono.fromCallable(operation)
+                .subscribeOn(owner)
+                .publishOn(Schedulers.parallel());
+    }
+}
@@ -12,6 +12,9 @@ import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -39,6 +42,59 @@ public class LibraryControllerTest {
                 .andExpect(jsonPath("$.author", equalTo("Thomas H Cormen")));
     }
 
+    @Test
+    public void searchAllByAuthor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchAllByAuthor?authorName=Peter Norvig")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].author", equalTo("Peter Norvig")));
+    }
+
+    @Test
+    public void searchByAuthorPrefix() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByAuthorPrefix?prefix=steve")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[2].author", equalTo("Steven Skiena")));
+    }
+
+    @Test
+    public void searchByAuthorFuzzy() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByAuthorFuzzy?author=Thomas H. Cormen")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].author", equalTo("Thomas H Cormen")));
+    }
+
+    @Test
+    public void metrics_publishesBookCounts() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/actuator/metrics/library.books?tag=state:available")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value", greaterThan(0.0)));
+    }
+
+    @Test
+    public void searchByTitle() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByTitle?query=programming language")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", equalTo("The Go Programming Language")));
+    }
+
+    @Test
+    public void searchByAuthorRange_withLimit() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByAuthorRange?from=S&to=T&limit=2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].author", equalTo("Sandi Metz")));
+    }
+
     @Test
     public void searchByIsbn() throws Exception {
         mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByISBN?isbn=9781133187790")
@@ -47,6 +103,16 @@ public class LibraryControllerTest {
                 .andExpect(jsonPath("$.isbn", equalTo(9781133187790L)));
     }
 
+    @Test
+    public void searchByIsbns() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/searchByISBNs?isbns=9783642272653,1,9781133187790")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].isbn", equalTo(9783642272653L)))
+                .andExpect(jsonPath("$[1]", nullValue()))
+                .andExpect(jsonPath("$[2].isbn", equalTo(9781133187790L)));
+    }
+
     @Test
     public void borrowBook() throws Exception {
         performBorrow()
@@ -83,6 +149,48 @@ public class LibraryControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void borrowBooks_reportsOutcomeOfEachBook() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post(PREFIX + "/borrow/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + davidHareBookJson + ", " + davidHareBookJson + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].successful", equalTo(true)))
+                .andExpect(jsonPath("$[0].book.isbn", equalTo(9783642272653L)))
+                .andExpect(jsonPath("$[1].successful", equalTo(false)));
+
+        // Clean up
+        performReturn();
+    }
+
+    @Test
+    public void listBorrowed_includesBorrowedBook() throws Exception {
+        performBorrow()
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.get(PREFIX + "/borrowed?limit=5")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].isbn", equalTo(9783642272653L)));
+
+        // Clean up
+        performReturn();
+    }
+
+    @Test
+    public void returnBooks_reportsOutcomeOfEachBook() throws Exception {
+        performBorrow()
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.post(PREFIX + "/return/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + davidHareBookJson + ", " + davidHareBookJson + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].successful", equalTo(true)))
+                .andExpect(jsonPath("$[1].successful", equalTo(false)));
+    }
+
     private ResultActions performBorrow() throws Exception {
         return mvc.perform(MockMvcRequestBuilders.post(PREFIX + "/borrow")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -88,6 +88,40 @@ public class BookTest {
         assertThat(order2, is(lessThan(0)));
     }
 
+    @Test
+    public void compareByIsbnAndAuthor_whenIsbnsEqual_sortsByAuthorIgnoringCase() {
+        // Given
+        Book book1 = new Book("Code Complete", "steve mcconnell", 9780735619678L);
+        Book book2 = new Book("Code Complete", "Charles Petzold", 9780735619678L);
+        Book book3 = new Book(null, "Steve McConnell", 9780735619678L);
+
+        // When
+        int order = book1.compareByIsbnAndAuthor(book2);
+        int sameAuthorOrder = book1.compareByIsbnAndAuthor(book3);
+
+        // Then
+        assertThat(order, is(greaterThan(0)));
+        assertThat(sameAuthorOrder, is(equalTo(0)));
+    }
+
+    @Test
+    public void compareByAuthorAndIsbn_whenAuthorAndIsbnEqual_sortsByTitleThenExactAuthor() {
+        // Given
+        Book shortTitle = new Book("Code Complete", "Steve Mcconnell", 9780735619678L);
+        Book longTitle = new Book("Code Complete: A Practical Handbook", "Steve McConnell", 9780735619678L);
+        Book otherCase = new Book("Code Complete", "Steve McConnell", 9780735619678L);
+
+        // When
+        int titleOrder = shortTitle.compareByAuthorAndIsbn(longTitle);
+        int authorOrder = shortTitle.compareByAuthorAndIsbn(otherCase);
+        int untitledOrder = new Book(null, "steve mcconnell", 9780735619678L).compareByAuthorAndIsbn(longTitle);
+
+        // Then
+        assertThat(titleOrder, is(lessThan(0)));
+        assertThat(authorOrder, is(greaterThan(0)));
+        assertThat(untitledOrder, is(equalTo(0)));
+    }
+
     @Test
     public void compareByISBN_returnsZeroIfEqual() {
         // Given
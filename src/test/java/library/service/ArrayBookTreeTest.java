@@ -0,0 +1,215 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ArrayBookTreeTest {
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+
+    private final Book skienaBook = new Book("The Algorithm Design Manual", "Steven Skiena", 9781849967204L);
+    private final Book christianBook = new Book("Algorithms to Live By", "Brian Christian", 9781250118363L);
+    private final Book hareBook = new Book("Algorithmics — The Spirit of Computing", "David Hare", 9783642272653L);
+
+    @Test
+    public void copyOf_givenEmptyTree_isEmpty() {
+        // Given
+        // When
+        ArrayBookTree tree = ArrayBookTree.copyOf(null, false, bookSplayTreeService);
+
+        // Then
+        assertThat(tree.isEmpty(), is(true));
+        assertThat(tree.getRoot(), is(nullValue()));
+        assertThat(tree.iterator().hasNext(), is(false));
+    }
+
+    @Test
+    public void copyOf_keepsBooksInOrderAndBalances() {
+        // Given
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByAuthor(
+                Arrays.asList(skienaBook, christianBook, hareBook));
+
+        // When
+        ArrayBookTree tree = ArrayBookTree.copyOf(root, false, bookSplayTreeService);
+
+        // Then
+        assertThat(tree.getRoot(), is(sameInstance(hareBook)));
+        assertThat(toList(tree), contains(christianBook, hareBook, skienaBook));
+    }
+
+    @Test
+    public void searchAndDeleteRoot_removesBook() {
+        // Given
+        ArrayBookTree tree = ArrayBookTree.copyOf(
+                bookSplayTreeService.buildByIsbn(Arrays.asList(skienaBook, christianBook, hareBook)),
+                true, bookSplayTreeService);
+
+        // When
+        tree.searchByIsbn(skienaBook.getIsbn());
+        tree.deleteRoot();
+
+        // Then
+        assertThat(toList(tree), contains(christianBook, hareBook));
+        assertThat(tree.findByIsbn(skienaBook.getIsbn()), is(nullValue()));
+        assertThat(tree.findByIsbn(hareBook.getIsbn()), is(sameInstance(hareBook)));
+    }
+
+    @Test
+    public void searchDepth_countsBooksVisited() {
+        // Given
+        ArrayBookTree tree = ArrayBookTree.copyOf(
+                bookSplayTreeService.buildByAuthor(Arrays.asList(skienaBook, christianBook, hareBook)),
+                false, bookSplayTreeService);
+
+        // When
+        // Then
+        assertThat(tree.searchDepth(hareBook), is(equalTo(1)));
+        assertThat(tree.searchDepth(skienaBook), is(equalTo(2)));
+        assertThat(tree.searchDepth(new Book(null, "Zadie Smith", 0)), is(equalTo(2)));
+        assertThat(new ArrayBookTree(false, 0).searchDepth(hareBook), is(equalTo(0)));
+    }
+
+    @Test
+    public void search_countsOneRotationPerLevelSplayed() {
+        // Given
+        Random random = new Random(42);
+        BookTree[] trees = {new NodeBookTree(bookSplayTreeService, false, null), new ArrayBookTree(false, 0)};
+        for (int i = 0; i < 500; i++) {
+            Book book = new Book(null, "Author " + random.nextInt(1000), i);
+            for (BookTree tree : trees) {
+                tree.insert(book);
+            }
+        }
+
+        // When
+        // Then
+        for (int i = 0; i < 2000; i++) {
+            Book searchKey = new Book(null, "Author " + random.nextInt(1000), 0);
+            for (BookTree tree : trees) {
+                int depth = tree.searchDepth(searchKey);
+                long rotationsBefore = tree.getRotationCount();
+                tree.search(searchKey);
+                assertThat(tree.getRotationCount() - rotationsBefore, is(equalTo((long) depth - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void randomOperations_matchNodeTree() {
+        // Given
+        Random random = new Random(42);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, false, null);
+        BookTree arrayTree = new ArrayBookTree(false, 0);
+
+        // When
+        // Then
+        for (int i = 0; i < 20_000; i++) {
+            Book book = new Book(null, "Author " + random.nextInt(500), i);
+            switch (random.nextInt(3)) {
+                case 0:
+                    nodeTree.insert(book);
+                    arrayTree.insert(book);
+                    break;
+                case 1:
+                    nodeTree.search(book);
+                    arrayTree.search(book);
+                    assertThat(arrayTree.find(book), is(sameInstance(nodeTree.find(book))));
+                    break;
+                default:
+                    if (!nodeTree.isEmpty()) {
+                        nodeTree.deleteRoot();
+                        arrayTree.deleteRoot();
+                    }
+                    break;
+            }
+            assertThat(arrayTree.getRoot(), is(sameInstance(nodeTree.getRoot())));
+        }
+        assertThat(toList(arrayTree), is(equalTo(toList(nodeTree))));
+    }
+
+    @Test
+    public void randomOperations_withOffHeapStore_matchNodeTree() {
+        // Given
+        Random random = new Random(42);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, false, null);
+        BookTree arrayTree = new ArrayBookTree(false, 0, new OffHeapBookStore(new BookRecordArena()));
+
+        // When
+        // Then
+        for (int i = 0; i < 20_000; i++) {
+            Book book = new Book(null, "Author " + random.nextInt(500), i);
+            switch (random.nextInt(3)) {
+                case 0:
+                    nodeTree.insert(book);
+                    arrayTree.insert(book);
+                    break;
+                case 1:
+                    nodeTree.search(book);
+                    arrayTree.search(book);
+                    assertThat(isbnOf(arrayTree.find(book)), is(equalTo(isbnOf(nodeTree.find(book)))));
+                    break;
+                default:
+                    if (!nodeTree.isEmpty()) {
+                        nodeTree.deleteRoot();
+                        arrayTree.deleteRoot();
+                    }
+                    break;
+            }
+            assertThat(isbnOf(arrayTree.getRoot()), is(equalTo(isbnOf(nodeTree.getRoot()))));
+        }
+        assertThat(toIsbnList(arrayTree), is(equalTo(toIsbnList(nodeTree))));
+    }
+
+    @Test
+    public void findAllByIsbn_findsSameBooksAsNodeTree() {
+        // Given
+        Random random = new Random(7);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, true, null);
+        BookTree arrayTree = new ArrayBookTree(true, 0);
+        for (int i = 0; i < 1000; i++) {
+            Book book = new Book(null, "Author", random.nextInt(5000));
+            nodeTree.insert(book);
+            arrayTree.insert(book);
+        }
+        long[] isbns = new long[500];
+        for (int i = 0; i < isbns.length; i++) {
+            isbns[i] = random.nextInt(5000);
+        }
+        Arrays.sort(isbns);
+
+        // When
+        Book[] found = arrayTree.findAllByIsbn(isbns);
+
+        // Then
+        assertThat(found, is(equalTo(nodeTree.findAllByIsbn(isbns))));
+    }
+
+    private static Long isbnOf(Book book) {
+        return book == null ? null : book.getIsbn();
+    }
+
+    private static List<Long> toIsbnList(BookTree tree) {
+        List<Long> isbns = new ArrayList<>();
+        for (Book book : tree) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+
+    private static List<Book> toList(BookTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (Book book : tree) {
+            books.add(book);
+        }
+        return books;
+    }
+}
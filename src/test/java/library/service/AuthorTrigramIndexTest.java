@@ -0,0 +1,151 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AuthorTrigramIndexTest {
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+
+    @Test
+    public void boundedDistance_countsEdits() {
+        assertThat(AuthorTrigramIndex.boundedDistance("thomas h. cormen", "thomas h cormen", 2), is(equalTo(1)));
+        assertThat(AuthorTrigramIndex.boundedDistance("kitten", "sitting", 3), is(equalTo(3)));
+        assertThat(AuthorTrigramIndex.boundedDistance("same", "same", 0), is(equalTo(0)));
+    }
+
+    @Test
+    public void boundedDistance_whenOverMax_returnsMaxPlusOne() {
+        assertThat(AuthorTrigramIndex.boundedDistance("kitten", "sitting", 2), is(equalTo(3)));
+        assertThat(AuthorTrigramIndex.boundedDistance("donald knuth", "dk", 1), is(equalTo(2)));
+    }
+
+    @Test
+    public void boundedDistance_givenRandomStrings_agreesWithFullMatrix() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            // Mostly short strings, compared bit-parallel, and some too long for that
+            String a = randomString(random, random.nextInt(10) == 0 ? 70 : 12);
+            String b = mutate(random, a, random.nextInt(5));
+            int maxDistance = random.nextInt(4);
+            int expected = Math.min(fullDistance(a, b), maxDistance + 1);
+            assertThat(a + " -> " + b, AuthorTrigramIndex.boundedDistance(a, b, maxDistance), is(equalTo(expected)));
+        }
+    }
+
+    @Test
+    public void trigrams_areDistinct() {
+        // "aaaa" padded has trigrams _aa, aaa, aaa, aa_
+        assertThat(AuthorTrigramIndex.trigrams("aaaa").length, is(equalTo(3)));
+        assertThat(AuthorTrigramIndex.trigrams("").length, is(equalTo(0)));
+    }
+
+    @Test
+    public void search_returnsAuthorsWithinDistance_closestFirst() {
+        // Given
+        AuthorTrigramIndex index = indexOf(
+                new Book("Introduction to Algorithms", "Thomas H. Cormen", 9780262033848L),
+                new Book("Algorithms Unlocked", "Thomas Cormen", 9780262518802L),
+                new Book("Code Complete", "Steve McConnell", 9780735619678L));
+
+        // When
+        List<AuthorTrigramIndex.Match> matches = index.search("Thomas H Cormen", 3);
+
+        // Then
+        assertThat(matches, hasSize(2));
+        assertThat(matches.get(0).getAuthorKey(), is(equalTo("thomas h. cormen")));
+        assertThat(matches.get(0).getDistance(), is(equalTo(1)));
+        assertThat(matches.get(1).getAuthorKey(), is(equalTo("thomas cormen")));
+        assertThat(matches.get(1).getDistance(), is(equalTo(2)));
+    }
+
+    @Test
+    public void search_whenNameTooShortForTrigrams_stillFindsAuthors() {
+        // Given
+        AuthorTrigramIndex index = indexOf(
+                new Book("The Art of Computer Programming", "Knuth", 9780201896831L),
+                new Book("Code Complete", "Steve McConnell", 9780735619678L));
+
+        // When
+        List<AuthorTrigramIndex.Match> matches = index.search("Kunth", 2);
+
+        // Then
+        assertThat(matches, hasSize(1));
+        assertThat(matches.get(0).getAuthorKey(), is(equalTo("knuth")));
+    }
+
+    @Test
+    public void search_whenNoAuthorClose_returnsNothing() {
+        // Given
+        AuthorTrigramIndex index = indexOf(new Book("Code Complete", "Steve McConnell", 9780735619678L));
+
+        // When
+        List<AuthorTrigramIndex.Match> matches = index.search("Thomas H Cormen", 2);
+
+        // Then
+        assertThat(matches, is(empty()));
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        char[] chars = new char[1 + random.nextInt(maxLength)];
+        for (int i = 0; i < chars.length; i++) {
+            // A small alphabet, with an accented letter, so that characters repeat
+            chars[i] = "abcé ".charAt(random.nextInt(5));
+        }
+        return new String(chars);
+    }
+
+    private static String mutate(Random random, String string, int edits) {
+        StringBuilder mutated = new StringBuilder(string);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(mutated.length() + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated.insert(position, 'b');
+                    break;
+                case 1:
+                    if (position < mutated.length()) {
+                        mutated.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (position < mutated.length()) {
+                        mutated.setCharAt(position, 'é');
+                    }
+                    break;
+            }
+        }
+        return mutated.toString();
+    }
+
+    private static int fullDistance(String a, String b) {
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    distances[i][j] = i + j;
+                } else {
+                    distances[i][j] = Math.min(distances[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                            Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+                }
+            }
+        }
+        return distances[a.length()][b.length()];
+    }
+
+    private AuthorTrigramIndex indexOf(Book... books) {
+        BookSplayTreeBuilder builder = bookSplayTreeService.authorTreeBuilder();
+        Arrays.sort(books, Book::compareByAuthorAndIsbn);
+        for (Book book : books) {
+            builder.add(book);
+        }
+        return AuthorTrigramIndex.of(bookSplayTreeService.authorTree(builder.build()));
+    }
+}
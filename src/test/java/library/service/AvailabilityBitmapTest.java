@@ -0,0 +1,133 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AvailabilityBitmapTest {
+
+    @Test
+    public void markBorrowed_onlySucceedsWhileAvailable() {
+        // Given
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(books(9780000000001L, 9780000000002L, 9780000000003L));
+
+        // When
+        boolean firstBorrow = bitmap.markBorrowed(book(9780000000002L));
+        boolean secondBorrow = bitmap.markBorrowed(book(9780000000002L));
+
+        // Then
+        assertThat(firstBorrow, is(true));
+        assertThat(secondBorrow, is(false));
+        assertThat(bitmap.isAvailable(9780000000002L), is(false));
+        assertThat(bitmap.isAvailable(9780000000001L), is(true));
+        assertThat(bitmap.borrowedCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void markReturned_onlySucceedsWhileBorrowed() {
+        // Given
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(books(9780000000001L, 9780000000002L));
+        bitmap.markBorrowed(book(9780000000001L));
+
+        // When
+        boolean firstReturn = bitmap.markReturned(book(9780000000001L));
+        boolean secondReturn = bitmap.markReturned(book(9780000000001L));
+
+        // Then
+        assertThat(firstReturn, is(true));
+        assertThat(secondReturn, is(false));
+        assertThat(bitmap.isAvailable(9780000000001L), is(true));
+        assertThat(bitmap.borrowedCount(), is(equalTo(0)));
+    }
+
+    @Test
+    public void whenIsbnNotInLibrary_isNeitherAvailableNorBorrowable() {
+        // Given
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(books(9780000000001L));
+
+        // When
+        // Then
+        assertThat(bitmap.isAvailable(9780000000002L), is(false));
+        assertThat(bitmap.markBorrowed(book(9780000000002L)), is(false));
+        assertThat(bitmap.markReturned(book(9780000000002L)), is(false));
+    }
+
+    @Test
+    public void withCopiesOfSameIsbn_lendsEachCopyOnce() {
+        // Given
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(books(9780000000001L, 9780000000002L, 9780000000002L));
+
+        // When
+        // Then
+        assertThat(bitmap.markBorrowed(book(9780000000002L)), is(true));
+        assertThat(bitmap.isAvailable(9780000000002L), is(true));
+        assertThat(bitmap.markBorrowed(book(9780000000002L)), is(true));
+        assertThat(bitmap.isAvailable(9780000000002L), is(false));
+        assertThat(bitmap.markBorrowed(book(9780000000002L)), is(false));
+        assertThat(bitmap.markReturned(book(9780000000002L)), is(true));
+        assertThat(bitmap.isAvailable(9780000000002L), is(true));
+        assertThat(bitmap.borrowedCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void withDifferentBooksOfSameIsbn_lendsOnlyTheBookAskedFor() {
+        // Given
+        Book cracking = new Book("Cracking the Coding Interview", "Gayle Laakmann McDowell", 9780984782857L);
+        Book elements = new Book("Elements of programming interviews", "Gayle McDowell", 9780984782857L);
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(Arrays.asList(cracking, elements));
+
+        // When
+        boolean borrowed = bitmap.markBorrowed(new Book(null, "Gayle McDowell", 9780984782857L));
+
+        // Then
+        assertThat(borrowed, is(true));
+        assertThat(bitmap.isAvailable(elements), is(false));
+        assertThat(bitmap.isAvailable(cracking), is(true));
+        assertThat(bitmap.isAvailable(9780984782857L), is(true));
+        assertThat(bitmap.markBorrowed(new Book(null, "Gayle McDowell", 9780984782857L)), is(false));
+        assertThat(bitmap.markReturned(cracking), is(false));
+    }
+
+    @Test
+    public void splitCopies_picksOutBorrowedBooksAcrossWords() {
+        // Given
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            books.add(new Book("Title " + i, "Author " + i, 9780000000000L + i));
+        }
+        AvailabilityBitmap bitmap = new AvailabilityBitmap(books);
+        for (int i : new int[]{0, 63, 64, 130, 199}) {
+            bitmap.markBorrowed(books.get(i));
+        }
+
+        // When
+        List<Book> available = new ArrayList<>();
+        List<Book> borrowed = new ArrayList<>();
+        bitmap.splitCopies(books, available::add, borrowed::add);
+
+        // Then
+        assertThat(borrowed, contains(books.get(0), books.get(63), books.get(64), books.get(130), books.get(199)));
+        assertThat(available, hasSize(195));
+        assertThat(available, not(hasItem(books.get(64))));
+        assertThat(bitmap.availableCount(), is(equalTo(195)));
+        assertThat(bitmap.borrowedCount(), is(equalTo(5)));
+    }
+
+    private static Book book(long isbn) {
+        return new Book("Title " + isbn, "Author " + isbn, isbn);
+    }
+
+    private static List<Book> books(long... isbns) {
+        List<Book> books = new ArrayList<>(isbns.length);
+        for (long isbn : isbns) {
+            books.add(book(isbn));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,79 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BookIsbnIndexTest {
+
+    @Test
+    public void find_matchesIsbnAndAuthor() {
+        // Given
+        BookIsbnIndex index = new BookIsbnIndex(4);
+        Book book = new Book("Title", "Author", 9780000000001L);
+        index.add(book);
+
+        // When
+        // Then
+        assertThat(index.find(9780000000001L, "author"), is(sameInstance(book)));
+        assertThat(index.find(9780000000001L, "another author"), is(nullValue()));
+        assertThat(index.find(9780000000002L, "author"), is(nullValue()));
+    }
+
+    @Test
+    public void remove_whenSeveralCopies_removesTheCopyWithTheSameContents() {
+        // Given
+        BookIsbnIndex index = new BookIsbnIndex(4);
+        Book copy1 = new Book("Title", "Author", 9780000000001L);
+        Book copy2 = new Book("Other Title", "author", 9780000000001L);
+        index.add(copy1);
+        index.add(copy2);
+
+        // When
+        boolean removed = index.remove(new Book("Other Title", "author", 9780000000001L));
+
+        // Then
+        assertThat(removed, is(true));
+        assertThat(index.size(), is(equalTo(1)));
+        assertThat(index.find(9780000000001L, "author"), is(sameInstance(copy1)));
+        assertThat(index.remove(copy2), is(false));
+        assertThat(index.remove(copy1), is(true));
+        assertThat(index.find(9780000000001L, "author"), is(nullValue()));
+    }
+
+    @Test
+    public void addAndRemove_inRandomOrder_keepsEveryRemainingBookFindable() {
+        // Given
+        BookIsbnIndex index = new BookIsbnIndex(1);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Book book = new Book("Title", "Author " + (i % 13), 9780000000000L + i * 3L);
+            books.add(book);
+            index.add(book);
+        }
+        Random random = new Random(42);
+
+        // When
+        List<Book> remaining = new ArrayList<>();
+        for (Book book : books) {
+            if (random.nextBoolean()) {
+                assertThat(index.remove(book), is(true));
+            } else {
+                remaining.add(book);
+            }
+        }
+
+        // Then
+        assertThat(index.size(), is(equalTo(remaining.size())));
+        for (Book book : remaining) {
+            assertThat(index.find(book.getIsbn(), book.getAuthorKey()), is(sameInstance(book)));
+        }
+        assertThat(index.find(9780000000002L, "author 0"), is(nullValue()));
+    }
+}
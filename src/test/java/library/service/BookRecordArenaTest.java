@@ -0,0 +1,70 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BookRecordArenaTest {
+
+    private final BookRecordArena arena = new BookRecordArena();
+
+    @Test
+    public void store_readsBackSameBook() {
+        // Given
+        Book book = new Book("Algorithmics — The Spirit of Computing", "David Hare", 9783642272653L);
+
+        // When
+        Book storedBook = arena.store(book);
+
+        // Then
+        assertThat(storedBook.getTitle(), is(equalTo(book.getTitle())));
+        assertThat(storedBook.getAuthor(), is(equalTo(book.getAuthor())));
+        assertThat(storedBook.getIsbn(), is(equalTo(book.getIsbn())));
+    }
+
+    @Test
+    public void store_givenNullTitle_readsBackNull() {
+        // Given
+        Book book = new Book(null, "Steven Skiena", 9781849967204L);
+
+        // When
+        Book storedBook = arena.store(book);
+
+        // Then
+        assertThat(storedBook.getTitle(), is(nullValue()));
+        assertThat(storedBook.getAuthor(), is(equalTo("Steven Skiena")));
+    }
+
+    @Test
+    public void offsetOf_givenStoredBook_reusesRecord() {
+        // Given
+        Book storedBook = arena.store(new Book("Algorithms to Live By", "Brian Christian", 9781250118363L));
+
+        // When
+        long offset = arena.offsetOf(storedBook);
+
+        // Then
+        assertThat(arena.offsetOf(storedBook), is(equalTo(offset)));
+        assertThat(arena.offsetOf(new BookRecordArena().store(storedBook)), is(not(equalTo(offset))));
+    }
+
+    @Test
+    public void compareAuthorKey_matchesCompareByAuthor() {
+        // Given
+        String[] authors = {"", "a", "A", "ab", "Ab", "b", "brian christian", "Brian Christian", "Brian", "Ω"};
+
+        // When
+        // Then
+        for (String author : authors) {
+            Book book = new Book(null, author, 0);
+            for (String otherAuthor : authors) {
+                Book otherBook = new Book(null, otherAuthor, 0);
+                long offset = arena.offsetOf(otherBook);
+                assertThat(Integer.signum(arena.compareAuthorKey(book.getAuthorKey(), offset)),
+                        is(equalTo(Integer.signum(book.compareByAuthor(otherBook)))));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package library.service;
+
+import library.model.Book;
+import library.model.SplayTreeNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BookSplayTreeBuilderTest {
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+
+    @Test
+    public void build_whenNothingAdded_returnsNull() {
+        // Given
+        BookSplayTreeBuilder builder = bookSplayTreeService.isbnTreeBuilder();
+
+        // When
+        SplayTreeNode<Book> root = builder.build();
+
+        // Then
+        assertThat(root, is(nullValue()));
+    }
+
+    @Test
+    public void build_givenBooksInOrder_buildsBalancedTree() {
+        // Given
+        BookSplayTreeBuilder builder = bookSplayTreeService.isbnTreeBuilder();
+        List<Book> books = books(1000);
+        books.forEach(builder::add);
+
+        // When
+        SplayTreeNode<Book> root = builder.build();
+
+        // Then
+        assertThat(inOrder(root), is(equalTo(books)));
+        assertThat(height(root), is(equalTo(10)));
+    }
+
+    @Test
+    public void build_givenShuffledBooks_buildsSortedBalancedTree() {
+        // Given
+        BookSplayTreeBuilder builder = bookSplayTreeService.isbnTreeBuilder();
+        List<Book> books = books(1000);
+        List<Book> shuffledBooks = new ArrayList<>(books);
+        Collections.shuffle(shuffledBooks, new Random(42));
+        shuffledBooks.forEach(builder::add);
+
+        // When
+        SplayTreeNode<Book> root = builder.build();
+
+        // Then
+        assertThat(inOrder(root), is(equalTo(books)));
+        assertThat(height(root), is(equalTo(10)));
+    }
+
+    @Test
+    public void build_givenEqualAuthors_keepsThemInOrderAdded() {
+        // Given
+        BookSplayTreeBuilder builder = bookSplayTreeService.authorTreeBuilder();
+        Book sedgewick1 = new Book("Algorithms", "Robert Sedgewick", 1);
+        Book knuth = new Book("The Art of Computer Programming", "Donald Knuth", 2);
+        Book sedgewick2 = new Book("Algorithms in C", "robert sedgewick", 3);
+        Book cormen = new Book("Introduction to Algorithms", "Thomas H Cormen", 4);
+        builder.add(sedgewick1);
+        builder.add(knuth);
+        builder.add(sedgewick2);
+        builder.add(cormen);
+
+        // When
+        SplayTreeNode<Book> root = builder.build();
+
+        // Then
+        assertThat(inOrder(root), contains(knuth, sedgewick1, sedgewick2, cormen));
+    }
+
+    @Test
+    public void build_leavesBuilderEmpty() {
+        // Given
+        BookSplayTreeBuilder builder = bookSplayTreeService.isbnTreeBuilder();
+        books(10).forEach(builder::add);
+        builder.build();
+
+        // When
+        SplayTreeNode<Book> root = builder.build();
+
+        // Then
+        assertThat(root, is(nullValue()));
+    }
+
+    private List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book("Title " + i, "Author " + i, 9780000000000L + i));
+        }
+        return books;
+    }
+
+    private List<Book> inOrder(SplayTreeNode<Book> node) {
+        List<Book> books = new ArrayList<>();
+        if (node != null) {
+            if (node.left != null) {
+                assertThat(node.left.parent, is(sameInstance(node)));
+            }
+            if (node.right != null) {
+                assertThat(node.right.parent, is(sameInstance(node)));
+            }
+            books.addAll(inOrder(node.left));
+            books.add(node.data);
+            books.addAll(inOrder(node.right));
+        }
+        return books;
+    }
+
+    private int height(SplayTreeNode<Book> node) {
+        return node == null ? 0 : 1 + Math.max(height(node.left), height(node.right));
+    }
+}
@@ -5,6 +5,10 @@ import library.model.SplayTreeNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class BookSplayTreeServiceTest {
@@ -588,6 +592,247 @@ public class BookSplayTreeServiceTest {
         assertNull(node2.right);
     }
 
+    @Test
+    public void search_whenSeekingRightChildOfRootByPrimitiveIsbn_splaysIt() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.searchByIsbn(node1byIsbn, andreBook.getIsbn());
+
+        // Then
+        assertSame(node3byIsbn, foundNode);
+        assertNull(node3byIsbn.parent);
+        assertSame(node1byIsbn, node3byIsbn.left);
+        assertNull(node3byIsbn.right);
+        assertSame(node3byIsbn, node1byIsbn.parent);
+        assertSame(node2byIsbn, node1byIsbn.left);
+        assertNull(node1byIsbn.right);
+    }
+
+    @Test
+    public void search_whenNotInTreeByPrimitiveIsbn_splaysLastNodeSearched() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.searchByIsbn(node1byIsbn, ellisBook.getIsbn() - 1);
+
+        // Then
+        assertSame(node2byIsbn, foundNode);
+        assertNull(node2byIsbn.parent);
+        assertSame(node1byIsbn, node2byIsbn.right);
+    }
+
+    @Test
+    public void find_givenEmptyTree_returnsNull() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.findByAuthor(null, antonellaBook);
+
+        // Then
+        assertNull(foundNode);
+    }
+
+    @Test
+    public void find_whenSeekingLeafByAuthor_doesNotChangeTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.findByAuthor(node1, shanshanBook);
+
+        // Then
+        assertSame(node6, foundNode);
+        assertNull(node1.parent);
+        assertSame(node2, node1.left);
+        assertSame(node3, node1.right);
+        assertSame(node3, node6.parent);
+        assertSame(node6, node3.left);
+    }
+
+    @Test
+    public void find_whenNotInTreeByAuthor_returnsNullWithoutChangingTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.findByAuthor(node1, tomBook);
+
+        // Then
+        assertNull(foundNode);
+        assertNull(node1.parent);
+        assertSame(node2, node1.left);
+        assertSame(node3, node1.right);
+    }
+
+    @Test
+    public void find_whenSeekingLeafByIsbn_doesNotChangeTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.findByIsbn(node1byIsbn, andreBook);
+
+        // Then
+        assertSame(node3byIsbn, foundNode);
+        assertNull(node1byIsbn.parent);
+        assertSame(node2byIsbn, node1byIsbn.left);
+        assertSame(node3byIsbn, node1byIsbn.right);
+    }
+
+    @Test
+    public void find_whenNotInTreeByPrimitiveIsbn_returnsNullWithoutChangingTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> foundNode = bookSplayTreeService.findByIsbn(node1byIsbn, andreBook.getIsbn() + 1);
+
+        // Then
+        assertNull(foundNode);
+        assertNull(node1byIsbn.parent);
+        assertSame(node2byIsbn, node1byIsbn.left);
+        assertSame(node3byIsbn, node1byIsbn.right);
+    }
+
+    @Test
+    public void build_givenNoBooks_returnsNull() {
+        // Given
+        // When
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByAuthor(Collections.emptyList());
+
+        // Then
+        assertNull(root);
+    }
+
+    @Test
+    public void build_givenUnsortedBooksByAuthor_buildsBalancedTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByAuthor(Arrays.asList(
+                micaelaBook, benBook, shuaiBook, andreBook, ellisBook, shanshanBook, tomBook));
+
+        // Then: sorted order is Andre, Ben, Ellis, Micaela, Shanshan, Shuai, Tom
+        assertSame(micaelaBook, root.data);
+        assertNull(root.parent);
+        assertSame(benBook, root.left.data);
+        assertSame(root, root.left.parent);
+        assertSame(andreBook, root.left.left.data);
+        assertSame(root.left, root.left.left.parent);
+        assertSame(ellisBook, root.left.right.data);
+        assertSame(root.left, root.left.right.parent);
+        assertSame(shuaiBook, root.right.data);
+        assertSame(root, root.right.parent);
+        assertSame(shanshanBook, root.right.left.data);
+        assertSame(root.right, root.right.left.parent);
+        assertSame(tomBook, root.right.right.data);
+        assertSame(root.right, root.right.right.parent);
+        assertNull(root.left.left.left);
+        assertNull(root.right.right.right);
+    }
+
+    @Test
+    public void build_givenUnsortedBooksByIsbn_buildsBalancedTree() {
+        // Given
+        // When
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByIsbn(Arrays.asList(andreBook, benBook, ellisBook));
+
+        // Then
+        assertSame(benBook, root.data);
+        assertNull(root.parent);
+        assertSame(ellisBook, root.left.data);
+        assertSame(root, root.left.parent);
+        assertSame(andreBook, root.right.data);
+        assertSame(root, root.right.parent);
+    }
+
+    @Test
+    public void build_thenSearch_findsEveryBook() {
+        // Given
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByAuthor(Arrays.asList(
+                micaelaBook, benBook, shuaiBook, andreBook, ellisBook, shanshanBook, tomBook));
+
+        // When
+        // Then
+        for (Book book : Arrays.asList(micaelaBook, benBook, shuaiBook, andreBook, ellisBook, shanshanBook, tomBook)) {
+            root = bookSplayTreeService.searchByAuthor(root, book);
+            assertSame(book, root.data);
+        }
+    }
+
+    @Test
+    public void locateMinThenSuccessors_walksTreeInOrderWithoutChangingIt() {
+        // Given
+        // When
+        StringBuilder authors = new StringBuilder();
+        for (SplayTreeNode<Book> node = bookSplayTreeService.locateMin(node1); node != null;
+             node = bookSplayTreeService.locateSuccessor(node)) {
+            authors.append(node.data.getAuthor()).append(' ');
+        }
+
+        // Then
+        assertEquals("Andre Ben Ellis Micaela Shanshan Shuai ", authors.toString());
+        assertNull(node1.parent);
+        assertSame(node2, node1.left);
+        assertSame(node3, node1.right);
+    }
+
+    @Test
+    public void findAllByIsbn_findsPresentIsbnsWithoutChangingTree() {
+        // Given
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByIsbn(Arrays.asList(
+                micaelaBook, benBook, shuaiBook, andreBook, ellisBook, shanshanBook, tomBook));
+        SplayTreeNode<Book> rootBefore = root;
+        long[] isbns = {1L, 12345678L, 83029539L, 83029539L, 84920452L, 85000000L, 87654312L, 90871234L, 99999999L};
+
+        // When
+        Book[] found = bookSplayTreeService.findAllByIsbn(root, isbns);
+
+        // Then
+        assertArrayEquals(new Book[]{null, micaelaBook, ellisBook, ellisBook, shanshanBook, null, benBook, shuaiBook, null},
+                found);
+        assertSame(rootBefore, root);
+        assertNull(root.parent);
+    }
+
+    @Test
+    public void findAllByIsbn_givenUnbalancedTree_findsSameBooksAsFindByIsbn() {
+        // Given
+        Random random = new Random(42);
+        SplayTreeNode<Book> root = null;
+        for (int i = 0; i < 500; i++) {
+            root = bookSplayTreeService.insertByISBN(root,
+                    new SplayTreeNode<>(new Book(null, "Author", random.nextInt(2000))));
+        }
+        long[] isbns = new long[300];
+        for (int i = 0; i < isbns.length; i++) {
+            isbns[i] = random.nextInt(2000);
+        }
+        Arrays.sort(isbns);
+
+        // When
+        Book[] found = bookSplayTreeService.findAllByIsbn(root, isbns);
+
+        // Then
+        for (int i = 0; i < isbns.length; i++) {
+            SplayTreeNode<Book> expected = bookSplayTreeService.findByIsbn(root, new Book(null, null, isbns[i]));
+            if (expected == null) {
+                assertNull(found[i]);
+            } else {
+                assertEquals(isbns[i], found[i].getIsbn());
+            }
+        }
+    }
+
+    @Test
+    public void findAllByIsbn_givenEmptyTree_findsNothing() {
+        // Given
+        // When
+        Book[] found = bookSplayTreeService.findAllByIsbn(null, new long[]{12345678L});
+
+        // Then
+        assertArrayEquals(new Book[]{null}, found);
+    }
+
+    @Test
+    public void locateMin_givenEmptyTree_returnsNull() {
+        // Given
+        // When
+        SplayTreeNode<Book> min = bookSplayTreeService.locateMin(null);
+
+        // Then
+        assertNull(min);
+    }
+
     @Test
     public void delete_whenDeletingLastNode_returnsNull() {
         // Given
@@ -709,4 +954,81 @@ public class BookSplayTreeServiceTest {
         assertNull(node5.left);
         assertNull(node5.right);
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_givenTopDownSplayingWithArrayStorage_throwsException() {
+        // Given
+        // When
+        // Then
+        new BookSplayTreeService(TreeStorage.ARRAYS, SplayEngine.TOP_DOWN);
+    }
+
+    @Test
+    public void shouldSplay_withDepthThresholdPolicy_splaysOnlyBelowThreshold() {
+        // Given
+        BookSplayTreeService service = new BookSplayTreeService(TreeStorage.NODES, SplayEngine.BOTTOM_UP,
+                SplayPolicy.DEPTH_THRESHOLD, 4, 1);
+
+        // When
+        // Then
+        assertFalse(service.shouldSplay(() -> 4));
+        assertTrue(service.shouldSplay(() -> 5));
+    }
+
+    @Test
+    public void shouldSplay_withProbabilisticPolicy_followsProbability() {
+        // Given
+        BookSplayTreeService neverSplaying = new BookSplayTreeService(TreeStorage.NODES, SplayEngine.BOTTOM_UP,
+                SplayPolicy.PROBABILISTIC, 0, 0);
+        BookSplayTreeService alwaysSplaying = new BookSplayTreeService(TreeStorage.NODES, SplayEngine.BOTTOM_UP,
+                SplayPolicy.PROBABILISTIC, 0, 1);
+
+        // When
+        // Then
+        for (int i = 0; i < 100; i++) {
+            assertFalse(neverSplaying.shouldSplay(() -> 100));
+            assertTrue(alwaysSplaying.shouldSplay(() -> 0));
+        }
+    }
+
+    @Test
+    public void insertByAuthor_keepsBooksBySameAuthorInIsbnOrder() {
+        // Given
+        Book first = new Book("First", "Micaela", 1);
+        Book second = new Book("Second", "Micaela", 2);
+        Book third = new Book("Third", "Micaela", 3);
+        SplayTreeNode<Book> root = null;
+
+        // When
+        root = bookSplayTreeService.insertByAuthor(root, new SplayTreeNode<>(third));
+        root = bookSplayTreeService.insertByAuthor(root, new SplayTreeNode<>(first));
+        root = bookSplayTreeService.insertByAuthor(root, new SplayTreeNode<>(benBook));
+        root = bookSplayTreeService.insertByAuthor(root, new SplayTreeNode<>(second));
+
+        // Then
+        SplayTreeNode<Book> node = bookSplayTreeService.locateMin(root);
+        assertSame(benBook, node.data);
+        node = bookSplayTreeService.locateSuccessor(node);
+        assertSame(first, node.data);
+        node = bookSplayTreeService.locateSuccessor(node);
+        assertSame(second, node.data);
+        node = bookSplayTreeService.locateSuccessor(node);
+        assertSame(third, node.data);
+    }
+
+    @Test
+    public void searchByAuthorAndIsbn_findsThatBookAmongBooksBySameAuthor() {
+        // Given
+        Book first = new Book("First", "Micaela", 1);
+        Book second = new Book("Second", "Micaela", 2);
+        Book third = new Book("Third", "Micaela", 3);
+        SplayTreeNode<Book> root = bookSplayTreeService.buildByAuthor(Arrays.asList(first, second, third, benBook));
+
+        // When
+        SplayTreeNode<Book> newRoot = bookSplayTreeService.searchByAuthorAndIsbn(root, new Book(null, "micaela", 3));
+
+        // Then
+        assertSame(third, newRoot.data);
+        assertNull(newRoot.parent);
+    }
+}
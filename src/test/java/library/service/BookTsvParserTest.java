@@ -0,0 +1,86 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BookTsvParserTest {
+
+    @Test
+    public void next_whenEmpty_returnsNull() throws IOException {
+        // Given
+        BookTsvParser parser = new BookTsvParser(new StringReader(""));
+
+        // When
+        Book book = parser.next();
+
+        // Then
+        assertThat(book, is(nullValue()));
+    }
+
+    @Test
+    public void next_readsBookFields() throws IOException {
+        // Given
+        BookTsvParser parser = new BookTsvParser(new StringReader("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204"));
+
+        // When
+        Book book = parser.next();
+
+        // Then
+        assertThat(book.getTitle(), is(equalTo("The Algorithm Design Manual")));
+        assertThat(book.getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(book.getIsbn(), is(equalTo(9781849967204L)));
+        assertThat(parser.next(), is(nullValue()));
+    }
+
+    @Test
+    public void next_matchesHeadersInAnyOrderAndCase() throws IOException {
+        // Given
+        BookTsvParser parser = new BookTsvParser(new StringReader("isbn\tauthor\ttitle\n" +
+                "9781849967204\tSteven Skiena\tThe Algorithm Design Manual\n"));
+
+        // When
+        Book book = parser.next();
+
+        // Then
+        assertThat(book.getTitle(), is(equalTo("The Algorithm Design Manual")));
+        assertThat(book.getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(book.getIsbn(), is(equalTo(9781849967204L)));
+    }
+
+    @Test
+    public void next_skipsInvalidAndBlankRows() throws IOException {
+        // Given
+        BookTsvParser parser = new BookTsvParser(new StringReader("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Engineering: A Compiler\t2nd Edition\tKeith Cooper & Linda Torczon\t9780120884780\n" +
+                "\n" +
+                "Pearls of Functional Algorithm Design\tRichard Bird\tnot an ISBN\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653\n"));
+
+        // When
+        List<Book> books = readAll(parser);
+
+        // Then
+        assertThat(books, hasSize(2));
+        assertThat(books.get(0).getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(books.get(1).getAuthor(), is(equalTo("David Hare")));
+    }
+
+    private List<Book> readAll(BookTsvParser parser) throws IOException {
+        List<Book> books = new ArrayList<>();
+        Book book;
+        while ((book = parser.next()) != null) {
+            books.add(book);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,149 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BorrowingJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replay_returnsDurableEntriesInOrder() throws IOException {
+        // Given
+        File journalFile = temporaryFolder.newFile("library.journal");
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) -> {});
+            journal.append(BorrowingJournal.EntryType.BORROW,
+                    new Book("The Algorithm Design Manual", "Steven Skiena", 9781849967204L));
+            long sequence = journal.append(BorrowingJournal.EntryType.RETURN, new Book(null, "Steven Skiena", 0));
+            journal.awaitDurable(sequence);
+        }
+
+        // When
+        List<String> entries = replay(journalFile);
+
+        // Then
+        assertThat(entries, contains("BORROW The Algorithm Design Manual Steven Skiena 9781849967204",
+                "RETURN null Steven Skiena 0"));
+    }
+
+    @Test
+    public void replay_whenLastEntryIncomplete_truncatesIt() throws IOException {
+        // Given
+        File journalFile = temporaryFolder.newFile("library.journal");
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) -> {});
+            journal.append(BorrowingJournal.EntryType.BORROW, new Book("Title 1", "Author 1", 1));
+            journal.awaitDurable(journal.append(BorrowingJournal.EntryType.BORROW, new Book("Title 2", "Author 2", 2)));
+        }
+        long completeLength = journalFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(completeLength - 3);
+        }
+
+        // When
+        List<String> entries = replay(journalFile);
+
+        // Then
+        assertThat(entries, contains("BORROW Title 1 Author 1 1"));
+        assertThat(journalFile.length(), is(lessThan(completeLength - 3)));
+    }
+
+    @Test
+    public void replay_whenEntryCorrupted_stopsBeforeIt() throws IOException {
+        // Given
+        File journalFile = temporaryFolder.newFile("library.journal");
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) -> {});
+            journal.append(BorrowingJournal.EntryType.BORROW, new Book("Title 1", "Author 1", 1));
+            journal.awaitDurable(journal.append(BorrowingJournal.EntryType.BORROW, new Book("Title 2", "Author 2", 2)));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(file.length() - 1);
+            file.write('x');
+        }
+
+        // When
+        List<String> entries = replay(journalFile);
+
+        // Then
+        assertThat(entries, contains("BORROW Title 1 Author 1 1"));
+    }
+
+    @Test
+    public void awaitDurable_fromManyThreads_writesEveryEntry() throws Exception {
+        // Given
+        File journalFile = temporaryFolder.newFile("library.journal");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) -> {});
+            for (int i = 0; i < 400; i++) {
+                long isbn = i;
+                futures.add(executor.submit(() -> {
+                    journal.awaitDurable(journal.append(BorrowingJournal.EntryType.BORROW,
+                            new Book("Title", "Author", isbn)));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(replay(journalFile), hasSize(400));
+    }
+
+    @Test
+    public void clear_discardsEntries() throws IOException {
+        // Given
+        File journalFile = temporaryFolder.newFile("library.journal");
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) -> {});
+            journal.awaitDurable(journal.append(BorrowingJournal.EntryType.BORROW, new Book("Title 1", "Author 1", 1)));
+
+            // When
+            journal.clear();
+            journal.awaitDurable(journal.append(BorrowingJournal.EntryType.RETURN, new Book("Title 2", "Author 2", 2)));
+        }
+
+        // Then
+        assertThat(replay(journalFile), contains("RETURN Title 2 Author 2 2"));
+    }
+
+    private static BorrowingJournal open(File journalFile) throws IOException {
+        return new BorrowingJournal(FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private static List<String> replay(File journalFile) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (BorrowingJournal journal = open(journalFile)) {
+            journal.replay((type, book) ->
+                    entries.add(type + " " + book.getTitle() + " " + book.getAuthor() + " " + book.getIsbn()));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,134 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CopyInventoryTest {
+
+    private static final Book TEXTBOOK = new Book("Introduction to Algorithms", "Thomas H. Cormen", 9780262033848L);
+    private static final Book NOVEL = new Book("Cryptonomicon", "Neal Stephenson", 9780060512804L);
+    private static final Book MISSING = new Book("Missing", "Nobody", 9780000000000L);
+
+    @Test
+    public void addCopy_returnsTrueOnlyForFirstCopyOfEachTitle() {
+        // Given
+        CopyInventory.Builder builder = new CopyInventory.Builder();
+
+        // When
+        boolean firstTextbook = builder.addCopy(TEXTBOOK, false);
+        boolean firstNovel = builder.addCopy(NOVEL, false);
+        boolean secondTextbook = builder.addCopy(copyOf(TEXTBOOK), true);
+        boolean thirdTextbook = builder.addCopy(copyOf(TEXTBOOK), false);
+        CopyInventory inventory = builder.build();
+
+        // Then
+        assertThat(firstTextbook, is(true));
+        assertThat(firstNovel, is(true));
+        assertThat(secondTextbook, is(false));
+        assertThat(thirdTextbook, is(false));
+        assertThat(inventory.totalCopies(TEXTBOOK), is(equalTo(3)));
+        assertThat(inventory.availableCopies(TEXTBOOK), is(equalTo(2)));
+        assertThat(inventory.availableCount(), is(equalTo(3)));
+        assertThat(inventory.borrowedCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void addCopy_whenBooksShareIsbnButNotAuthorOrTitle_countsThemAsDifferentTitles() {
+        // Given
+        Book cracking = new Book("Cracking the Coding Interview", "Gayle Laakmann McDowell", 9780984782857L);
+        Book elements = new Book("Elements of programming interviews", "Gayle McDowell", 9780984782857L);
+        Book codeComplete = new Book("Code Complete", "Steve Mcconnell", 9780735619678L);
+        Book secondEdition = new Book("Code Complete, Second Edition", "Steve McConnell", 9780735619678L);
+        CopyInventory.Builder builder = new CopyInventory.Builder();
+
+        // When
+        boolean[] firsts = {builder.addCopy(cracking, false), builder.addCopy(elements, false),
+                builder.addCopy(codeComplete, false), builder.addCopy(secondEdition, false),
+                builder.addCopy(copyOf(elements), false)};
+        CopyInventory inventory = builder.build();
+
+        // Then
+        assertThat(firsts, is(equalTo(new boolean[]{true, true, true, true, false})));
+        assertThat(inventory.totalCopies(cracking), is(equalTo(1)));
+        assertThat(inventory.totalCopies(elements), is(equalTo(2)));
+        assertThat(inventory.markBorrowed(cracking), is(true));
+        assertThat(inventory.isAvailable(cracking), is(false));
+        assertThat(inventory.isAvailable(elements), is(true));
+        assertThat(inventory.isAvailable(9780984782857L), is(true));
+        assertThat(inventory.markBorrowed(codeComplete), is(true));
+        assertThat(inventory.isAvailable(secondEdition), is(true));
+    }
+
+    @Test
+    public void markBorrowed_succeedsUntilNoCopiesLeft() {
+        // Given
+        CopyInventory inventory = inventory(TEXTBOOK, copyOf(TEXTBOOK), NOVEL);
+
+        // When
+        // Then
+        assertThat(inventory.markBorrowed(TEXTBOOK), is(true));
+        assertThat(inventory.isAvailable(TEXTBOOK.getIsbn()), is(true));
+        assertThat(inventory.markBorrowed(TEXTBOOK), is(true));
+        assertThat(inventory.isAvailable(TEXTBOOK.getIsbn()), is(false));
+        assertThat(inventory.markBorrowed(TEXTBOOK), is(false));
+        assertThat(inventory.isAvailable(NOVEL.getIsbn()), is(true));
+        assertThat(inventory.markBorrowed(MISSING), is(false));
+    }
+
+    @Test
+    public void markReturned_succeedsUntilAllCopiesBack() {
+        // Given
+        CopyInventory inventory = inventory(TEXTBOOK, copyOf(TEXTBOOK));
+        inventory.markBorrowed(TEXTBOOK);
+
+        // When
+        // Then
+        assertThat(inventory.markReturned(TEXTBOOK), is(true));
+        assertThat(inventory.markReturned(TEXTBOOK), is(false));
+        assertThat(inventory.availableCopies(TEXTBOOK), is(equalTo(2)));
+        assertThat(inventory.markReturned(MISSING), is(false));
+    }
+
+    @Test
+    public void splitCopies_returnsOneBookPerCopy() {
+        // Given
+        CopyInventory inventory = inventory(TEXTBOOK, copyOf(TEXTBOOK), copyOf(TEXTBOOK), NOVEL);
+        inventory.markBorrowed(TEXTBOOK);
+        inventory.markBorrowed(NOVEL);
+        List<Book> titlesInIsbnOrder = new ArrayList<>();
+        titlesInIsbnOrder.add(NOVEL);
+        titlesInIsbnOrder.add(TEXTBOOK);
+
+        // When
+        List<Book> available = new ArrayList<>();
+        List<Book> borrowed = new ArrayList<>();
+        inventory.splitCopies(titlesInIsbnOrder, available::add, borrowed::add);
+
+        // Then
+        assertThat(available, hasSize(2));
+        assertThat(available.get(0), is(sameInstance(TEXTBOOK)));
+        assertThat(available.get(1).getIsbn(), is(equalTo(TEXTBOOK.getIsbn())));
+        assertThat(available.get(1), is(not(sameInstance(TEXTBOOK))));
+        assertThat(borrowed, hasSize(2));
+        assertThat(borrowed.get(0), is(sameInstance(NOVEL)));
+        assertThat(borrowed.get(1).getTitle(), is(equalTo(TEXTBOOK.getTitle())));
+    }
+
+    private static CopyInventory inventory(Book... copies) {
+        CopyInventory.Builder builder = new CopyInventory.Builder();
+        for (Book copy : copies) {
+            builder.addCopy(copy, false);
+        }
+        return builder.build();
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getTitle(), book.getAuthor(), book.getIsbn());
+    }
+}
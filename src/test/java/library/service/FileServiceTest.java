@@ -0,0 +1,126 @@
+package library.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class FileServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getBaseLibraryReader_readsConfiguredFile() throws IOException {
+        // Given
+        String contents = "Title\tAuthor\tISBN\nAlgorithmics — The Spirit of Computing\tDavid Hare\t9783642272653\n";
+        File file = temporaryFolder.newFile("library.tsv");
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        FileService fileService = new FileService(file.getPath(), null, null);
+
+        // When
+        String read = readAll(fileService.getBaseLibraryReader());
+
+        // Then
+        assertThat(read, is(equalTo(contents)));
+    }
+
+    @Test
+    public void getBaseLibraryReader_whenFileMissing_returnsEmptyReader() throws IOException {
+        // Given
+        FileService fileService = new FileService(new File(temporaryFolder.getRoot(), "missing.tsv").getPath(), null, null);
+
+        // When
+        String read = readAll(fileService.getBaseLibraryReader());
+
+        // Then
+        assertThat(read, is(equalTo("")));
+    }
+
+    private String readAll(Reader reader) throws IOException {
+        try (BufferedReader bufferedReader = new BufferedReader(reader)) {
+            return bufferedReader.lines().map(line -> line + "\n").collect(Collectors.joining());
+        }
+    }
+
+    @Test
+    public void snapshotStreams_whenSnapshotsDisabled_returnNull() throws IOException {
+        // Given
+        FileService fileService = new FileService("library.tsv", "", "");
+
+        // When
+        // Then
+        assertThat(fileService.getSnapshotInputStream(), is(nullValue()));
+        assertThat(fileService.getSnapshotOutputStream(), is(nullValue()));
+    }
+
+    @Test
+    public void getSnapshotInputStream_whenNoSnapshotSaved_returnsNull() {
+        // Given
+        FileService fileService = new FileService("library.tsv",
+                new File(temporaryFolder.getRoot(), "library.snapshot").getPath(), null);
+
+        // When
+        InputStream snapshot = fileService.getSnapshotInputStream();
+
+        // Then
+        assertThat(snapshot, is(nullValue()));
+    }
+
+    @Test
+    public void commitSnapshot_replacesPreviousSnapshot() throws IOException {
+        // Given
+        File snapshotFile = new File(temporaryFolder.getRoot(), "library.snapshot");
+        Files.write(snapshotFile.toPath(), new byte[]{1, 2, 3});
+        FileService fileService = new FileService("library.tsv", snapshotFile.getPath(), null);
+
+        // When
+        try (OutputStream out = fileService.getSnapshotOutputStream()) {
+            out.write(new byte[]{4, 5});
+        }
+        fileService.commitSnapshot();
+
+        // Then
+        try (InputStream in = fileService.getSnapshotInputStream()) {
+            assertThat(in.read(), is(equalTo(4)));
+            assertThat(in.read(), is(equalTo(5)));
+            assertThat(in.read(), is(equalTo(-1)));
+        }
+        assertThat(new File(temporaryFolder.getRoot(), "library.snapshot.tmp").exists(), is(false));
+    }
+
+    @Test
+    public void commitSnapshot_whenNewSnapshotMissing_throwsAndKeepsPreviousSnapshot() throws IOException {
+        // Given
+        File snapshotFile = new File(temporaryFolder.getRoot(), "library.snapshot");
+        Files.write(snapshotFile.toPath(), new byte[]{1, 2, 3});
+        FileService fileService = new FileService("library.tsv", snapshotFile.getPath(), null);
+
+        // When
+        try {
+            fileService.commitSnapshot();
+            fail("Should have thrown an exception");
+        } catch (NoSuchFileException e) {
+            // Expected, as there is no new snapshot to force to disk
+        }
+
+        // Then
+        assertThat(Files.readAllBytes(snapshotFile.toPath()), is(equalTo(new byte[]{1, 2, 3})));
+    }
+}
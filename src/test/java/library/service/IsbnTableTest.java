@@ -0,0 +1,64 @@
+package library.service;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IsbnTableTest {
+
+    @Test
+    public void get_whenIsbnNotPut_returnsAbsent() {
+        // Given
+        IsbnTable table = new IsbnTable(4);
+        table.put(9780000000001L, 7);
+
+        // When
+        // Then
+        assertThat(table.get(9780000000002L), is(equalTo(IsbnTable.ABSENT)));
+        assertThat(table.get(0L), is(equalTo(IsbnTable.ABSENT)));
+    }
+
+    @Test
+    public void put_whenIsbnAlreadyPut_replacesValue() {
+        // Given
+        IsbnTable table = new IsbnTable(4);
+        table.put(9780000000001L, 7);
+
+        // When
+        int previous = table.put(9780000000001L, 8);
+
+        // Then
+        assertThat(previous, is(equalTo(7)));
+        assertThat(table.get(9780000000001L), is(equalTo(8)));
+        assertThat(table.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void put_beyondExpectedSize_growsAndKeepsEveryValue() {
+        // Given
+        IsbnTable table = new IsbnTable(1);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            table.put(9780000000000L + i * 7L, i);
+        }
+
+        // Then
+        assertThat(table.size(), is(equalTo(10_000)));
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(table.get(9780000000000L + i * 7L), is(equalTo(i)));
+        }
+        assertThat(table.get(9780000000001L), is(equalTo(IsbnTable.ABSENT)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_whenValueNegative_throws() {
+        // Given
+        IsbnTable table = new IsbnTable(4);
+
+        // When
+        // Then
+        table.put(9780000000001L, -1);
+    }
+}
@@ -0,0 +1,306 @@
+package library.service;
+
+import library.exception.BorrowingException;
+import library.model.Book;
+import library.model.SplayTreeNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LibraryServiceConcurrencyTest {
+
+    private static final int BOOK_COUNT = 200;
+    private static final int THREAD_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    private final List<Book> books = new ArrayList<>();
+    private String baseLibraryString;
+
+    @Before
+    public void setUp() {
+        StringBuilder baseLibrary = new StringBuilder("Title\tAuthor\tISBN\n");
+        for (int i = 0; i < BOOK_COUNT; i++) {
+            Book book = new Book("Title " + i, "Author " + i, 9780000000000L + i);
+            books.add(book);
+            baseLibrary.append(book.getTitle()).append('\t')
+                    .append(book.getAuthor()).append('\t')
+                    .append(book.getIsbn()).append('\n');
+        }
+
+        baseLibraryString = baseLibrary.toString();
+    }
+
+    @Test
+    public void concurrentSearchesBorrowsAndReturns_loseNoBooks() throws Exception {
+        // Given
+        LibraryService libraryService = createLibraryService(TreeStorage.NODES);
+
+        // When
+        runConcurrently(libraryService);
+
+        // Then
+        Set<Long> availableByAuthor = collectIsbns(rootNode(libraryService.getAuthorSplayTree()));
+        Set<Long> availableByIsbn = collectIsbns(rootNode(libraryService.getIsbnSplayTree()));
+        Set<Long> borrowed = collectIsbns(rootNode(libraryService.getBorrowedSplayTree()));
+        assertNoBooksLost(availableByAuthor, availableByIsbn, borrowed);
+    }
+
+    @Test
+    public void concurrentSearchesBorrowsAndReturns_withArrayStorage_loseNoBooks() throws Exception {
+        // Given
+        LibraryService libraryService = createLibraryService(TreeStorage.ARRAYS);
+
+        // When
+        runConcurrently(libraryService);
+
+        // Then
+        Set<Long> availableByAuthor = collectIsbns(libraryService.getAuthorSplayTree());
+        Set<Long> availableByIsbn = collectIsbns(libraryService.getIsbnSplayTree());
+        Set<Long> borrowed = collectIsbns(libraryService.getBorrowedSplayTree());
+        assertNoBooksLost(availableByAuthor, availableByIsbn, borrowed);
+    }
+
+    @Test
+    public void concurrentSearchesBorrowsAndReturns_withOffHeapStorage_loseNoBooks() throws Exception {
+        // Given
+        LibraryService libraryService = createLibraryService(TreeStorage.OFF_HEAP);
+
+        // When
+        runConcurrently(libraryService);
+
+        // Then
+        Set<Long> availableByAuthor = collectIsbns(libraryService.getAuthorSplayTree());
+        Set<Long> availableByIsbn = collectIsbns(libraryService.getIsbnSplayTree());
+        Set<Long> borrowed = collectIsbns(libraryService.getBorrowedSplayTree());
+        assertNoBooksLost(availableByAuthor, availableByIsbn, borrowed);
+    }
+
+    @Test
+    public void concurrentSearchesBorrowsAndReturns_withTopDownSplaying_loseNoBooks() throws Exception {
+        // Given
+        LibraryService libraryService = createLibraryService(
+                new BookSplayTreeService(TreeStorage.NODES, SplayEngine.TOP_DOWN));
+
+        // When
+        runConcurrently(libraryService);
+
+        // Then
+        Set<Long> availableByAuthor = collectIsbns(libraryService.getAuthorSplayTree());
+        Set<Long> availableByIsbn = collectIsbns(libraryService.getIsbnSplayTree());
+        Set<Long> borrowed = collectIsbns(libraryService.getBorrowedSplayTree());
+        assertNoBooksLost(availableByAuthor, availableByIsbn, borrowed);
+    }
+
+    @Test
+    public void concurrentSearchesBorrowsAndReturns_withShards_loseNoBooks() throws Exception {
+        // Given
+        MockFileService mockFileService = new MockFileService();
+        mockFileService.setBaseLibraryString(baseLibraryString);
+        LibraryService libraryService = new LibraryService(new BookSplayTreeService(), mockFileService,
+                new LibraryMetrics(), 4);
+
+        // When
+        runConcurrently(libraryService);
+
+        // Then
+        Set<Long> availableByAuthor = new HashSet<>();
+        Set<Long> availableByIsbn = new HashSet<>();
+        Set<Long> borrowed = new HashSet<>();
+        for (LibraryShard shard : libraryService.getShards()) {
+            addEachOnce(availableByAuthor, collectIsbns(rootNode(shard.authorTree)));
+            addEachOnce(availableByIsbn, collectIsbns(rootNode(shard.isbnTree)));
+            addEachOnce(borrowed, collectIsbns(rootNode(shard.borrowedTree)));
+        }
+        assertNoBooksLost(availableByAuthor, availableByIsbn, borrowed);
+    }
+
+    @Test
+    public void concurrentBorrowsAndReturns_withBitmap_loseNoBooks() throws Exception {
+        assertConcurrentBorrowsAndReturnsLoseNoBooks(AvailabilityTracking.BITMAP);
+    }
+
+    @Test
+    public void concurrentBorrowsAndReturns_withCopies_loseNoBooks() throws Exception {
+        assertConcurrentBorrowsAndReturnsLoseNoBooks(AvailabilityTracking.COPIES);
+    }
+
+    private void assertConcurrentBorrowsAndReturnsLoseNoBooks(AvailabilityTracking availabilityTracking)
+            throws Exception {
+        // Given
+        MockFileService mockFileService = new MockFileService();
+        mockFileService.setBaseLibraryString(baseLibraryString);
+        LibraryService libraryService = new LibraryService(new BookSplayTreeService(), mockFileService,
+                new LibraryMetrics(), 4, availabilityTracking);
+        AtomicIntegerArray lent = new AtomicIntegerArray(BOOK_COUNT);
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int index = random.nextInt(BOOK_COUNT);
+                    Book book = books.get(index);
+                    try {
+                        if (random.nextBoolean()) {
+                            libraryService.borrowBook(book);
+                            lent.incrementAndGet(index);
+                        } else {
+                            libraryService.returnBook(book);
+                            lent.decrementAndGet(index);
+                        }
+                    } catch (BorrowingException e) {
+                        // Expected whenever another thread got there first
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // Then
+        // Each book was borrowed once more than it was returned exactly when it is still borrowed
+        for (int i = 0; i < BOOK_COUNT; i++) {
+            Book book = books.get(i);
+            assertThat(lent.get(i), is(equalTo(libraryService.searchByIsbn(book.getIsbn()) == null ? 1 : 0)));
+        }
+    }
+
+    private LibraryService createLibraryService(TreeStorage treeStorage) {
+        return createLibraryService(new BookSplayTreeService(treeStorage));
+    }
+
+    private LibraryService createLibraryService(BookSplayTreeService bookSplayTreeService) {
+        MockFileService mockFileService = new MockFileService();
+        mockFileService.setBaseLibraryString(baseLibraryString);
+        return new LibraryService(bookSplayTreeService, mockFileService);
+    }
+
+    private void runConcurrently(LibraryService libraryService) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Book book = books.get(random.nextInt(BOOK_COUNT));
+                    try {
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                libraryService.borrowBook(book);
+                                break;
+                            case 1:
+                                libraryService.returnBook(book);
+                                break;
+                            case 2:
+                                assertFoundOrBorrowed(book, libraryService.searchByAuthor(book.getAuthor()));
+                                break;
+                            default:
+                                assertFoundOrBorrowed(book, libraryService.searchByIsbn(book.getIsbn()));
+                                break;
+                        }
+                    } catch (BorrowingException e) {
+                        // Expected whenever another thread got there first
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    private void assertNoBooksLost(Set<Long> availableByAuthor, Set<Long> availableByIsbn, Set<Long> borrowed) {
+        assertThat(availableByAuthor, is(equalTo(availableByIsbn)));
+        assertThat(availableByAuthor.size() + borrowed.size(), is(equalTo(BOOK_COUNT)));
+        for (Book book : books) {
+            assertThat(availableByAuthor.contains(book.getIsbn()) || borrowed.contains(book.getIsbn()), is(true));
+        }
+    }
+
+    /**
+     * Add the ISBNs of the books in one shard to those of the others, failing if any is in two shards.
+     */
+    private void addEachOnce(Set<Long> isbns, Set<Long> shardIsbns) {
+        for (Long isbn : shardIsbns) {
+            assertThat(isbns.add(isbn), is(true));
+        }
+    }
+
+    private void assertFoundOrBorrowed(Book expected, Book found) {
+        if (found != null) {
+            assertThat(found.getIsbn(), is(equalTo(expected.getIsbn())));
+        }
+    }
+
+    /**
+     * Collect the ISBNs of all the books in a tree, failing if any ISBN occurs twice.
+     */
+    private Set<Long> collectIsbns(BookTree tree) {
+        Set<Long> isbns = new HashSet<>();
+        for (Book book : tree) {
+            assertThat(isbns.add(book.getIsbn()), is(true));
+        }
+        return isbns;
+    }
+
+    /**
+     * Collect the ISBNs of all the books in a tree, failing if any ISBN occurs twice or any parent link is broken.
+     */
+    private Set<Long> collectIsbns(SplayTreeNode<Book> root) {
+        Set<Long> isbns = new HashSet<>();
+        if (root == null) {
+            return isbns;
+        }
+        assertThat(root.parent, is(nullValue()));
+
+        Deque<SplayTreeNode<Book>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SplayTreeNode<Book> node = stack.pop();
+            assertThat(isbns.add(node.data.getIsbn()), is(true));
+            if (node.left != null) {
+                assertThat(node.left.parent, is(sameInstance(node)));
+                stack.push(node.left);
+            }
+            if (node.right != null) {
+                assertThat(node.right.parent, is(sameInstance(node)));
+                stack.push(node.right);
+            }
+        }
+        return isbns;
+    }
+
+    private static SplayTreeNode<Book> rootNode(BookTree tree) {
+        return ((NodeBookTree) tree).getRootNode();
+    }
+}
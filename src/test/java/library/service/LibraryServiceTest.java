@@ -1,16 +1,35 @@
 package library.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import library.exception.BorrowingException;
 import library.model.Book;
+import library.model.BorrowingOutcome;
 import library.model.SplayTreeNode;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 public class LibraryServiceTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private MockFileService mockFileService;
     private BookSplayTreeService mockBookSplayTreeService = new BookSplayTreeService();
 
@@ -28,9 +47,9 @@ public class LibraryServiceTest {
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
         // Then
-        SplayTreeNode<Book> authorRoot = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> authorRoot = rootNode(libraryService.getAuthorSplayTree());
         assertThat(authorRoot, is(nullValue()));
-        SplayTreeNode<Book> isbnRoot = libraryService.getIsbnSplayTree();
+        SplayTreeNode<Book> isbnRoot = rootNode(libraryService.getIsbnSplayTree());
         assertThat(isbnRoot, is(nullValue()));
     }
 
@@ -44,7 +63,7 @@ public class LibraryServiceTest {
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
         // Then
-        SplayTreeNode<Book> authorRoot = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> authorRoot = rootNode(libraryService.getAuthorSplayTree());
         assertThat(authorRoot, is(not(nullValue())));
         Book book = authorRoot.data;
         assertThat(book.getTitle(), is(equalTo("The Algorithm Design Manual")));
@@ -64,7 +83,7 @@ public class LibraryServiceTest {
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
         // Then
-        SplayTreeNode<Book> root = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> root = rootNode(libraryService.getAuthorSplayTree());
         assertThat(root, is(not(nullValue())));
         assertThat(root.data.getAuthor(), is(equalTo("David Hare")));
         assertThat(root.parent, is(nullValue()));
@@ -100,25 +119,25 @@ public class LibraryServiceTest {
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
         // Then
-        SplayTreeNode<Book> root = libraryService.getIsbnSplayTree();
+        SplayTreeNode<Book> root = rootNode(libraryService.getIsbnSplayTree());
         // TODO migrate the rest of this file to Hamcrest matchers
         assertNotNull(root);
-        assertEquals(hareIsbn, root.data.getIsbn());
+        assertEquals(skienaIsbn, root.data.getIsbn());
         assertNull(root.parent);
-        assertNull(root.right);
 
         SplayTreeNode<Book> leftChild = root.left;
         assertNotNull(leftChild);
-        assertEquals(skienaIsbn, leftChild.data.getIsbn());
+        assertEquals(christianIsbn, leftChild.data.getIsbn());
         assertSame(root, leftChild.parent);
+        assertNull(leftChild.left);
         assertNull(leftChild.right);
 
-        SplayTreeNode<Book> leftleftChild = leftChild.left;
-        assertNotNull(leftleftChild);
-        assertEquals(christianIsbn, leftleftChild.data.getIsbn());
-        assertSame(leftChild, leftleftChild.parent);
-        assertNull(leftleftChild.left);
-        assertNull(leftleftChild.right);
+        SplayTreeNode<Book> rightChild = root.right;
+        assertNotNull(rightChild);
+        assertEquals(hareIsbn, rightChild.data.getIsbn());
+        assertSame(root, rightChild.parent);
+        assertNull(rightChild.left);
+        assertNull(rightChild.right);
     }
 
     @Test
@@ -134,7 +153,7 @@ public class LibraryServiceTest {
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
         // Then
-        SplayTreeNode<Book> root = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> root = rootNode(libraryService.getAuthorSplayTree());
         assertNotNull(root);
         assertEquals("David Hare", root.data.getAuthor());
         assertNull(root.parent);
@@ -175,13 +194,13 @@ public class LibraryServiceTest {
         String authorName = "Edmond Lau";
 
         // When
-        SplayTreeNode<Book> previousAuthorTree = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> previousAuthorTree = rootNode(libraryService.getAuthorSplayTree());
         Book foundBook = libraryService.searchByAuthor(authorName);
 
         // Then
         assertNotNull(foundBook);
         assertEquals(foundBook.getAuthor(), authorName);
-        SplayTreeNode<Book> newAuthorTree = libraryService.getAuthorSplayTree();
+        SplayTreeNode<Book> newAuthorTree = rootNode(libraryService.getAuthorSplayTree());
         assertEquals(newAuthorTree.data, foundBook);
         assertEquals(previousAuthorTree, newAuthorTree);
     }
@@ -203,7 +222,7 @@ public class LibraryServiceTest {
         // Then
         assertNotNull(foundBook);
         assertEquals(foundBook.getAuthor(), authorName);
-        assertEquals(libraryService.getAuthorSplayTree().data, foundBook);
+        assertEquals(libraryService.getAuthorSplayTree().getRoot(), foundBook);
     }
 
     @Test
@@ -222,7 +241,325 @@ public class LibraryServiceTest {
 
         // Then
         assertNull(foundBook);
-        assertEquals(libraryService.getAuthorSplayTree().data.getAuthor(), closestAuthorName);
+        assertEquals(libraryService.getAuthorSplayTree().getRoot().getAuthor(), closestAuthorName);
+    }
+
+    @Test
+    public void searchByAuthor_withDepthThresholdPolicy_whenBookNotDeeperThanThreshold_doesNotSplay() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(new BookSplayTreeService(TreeStorage.NODES,
+                SplayEngine.BOTTOM_UP, SplayPolicy.DEPTH_THRESHOLD, 2, 1), mockFileService);
+
+        // When
+        Book foundBook = libraryService.searchByAuthor("Brian Christian");
+
+        // Then
+        assertThat(foundBook.getAuthor(), is(equalTo("Brian Christian")));
+        assertThat(libraryService.getAuthorSplayTree().getRoot().getAuthor(), is(equalTo("David Hare")));
+    }
+
+    @Test
+    public void searchByAuthor_withDepthThresholdPolicy_whenBookDeeperThanThreshold_updatesTreeRoot() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(new BookSplayTreeService(TreeStorage.NODES,
+                SplayEngine.BOTTOM_UP, SplayPolicy.DEPTH_THRESHOLD, 1, 1), mockFileService);
+
+        // When
+        Book foundBook = libraryService.searchByAuthor("Brian Christian");
+
+        // Then
+        assertThat(foundBook.getAuthor(), is(equalTo("Brian Christian")));
+        assertThat(libraryService.getAuthorSplayTree().getRoot(), is(sameInstance(foundBook)));
+    }
+
+    @Test
+    public void searchAllByAuthor_returnsEveryBookByAuthorInIsbnOrder() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code: The Hidden Language of Computer Hardware and Software\tCharles Petzold\t9780735611313\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653\n" +
+                "The Annotated Turing\tCharles Petzold\t9780470229057\n" +
+                "Programming Windows\tCharles Petzold\t9781572319950\n" +
+                "Code Complete\tcharles petzold\t9780735619678");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchAllByAuthor("Charles Petzold");
+
+        // Then
+        assertThat(foundBooks, hasSize(3));
+        assertThat(foundBooks.get(0).getIsbn(), is(equalTo(9780470229057L)));
+        assertThat(foundBooks.get(1).getIsbn(), is(equalTo(9780735611313L)));
+        assertThat(foundBooks.get(2).getIsbn(), is(equalTo(9781572319950L)));
+    }
+
+    @Test
+    public void searchAllByAuthor_whenAuthorNotThere_returnsEmptyList() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchAllByAuthor("Charles Petzold");
+
+        // Then
+        assertThat(foundBooks, is(empty()));
+    }
+
+    @Test
+    public void searchByAuthorFuzzy_returnsBooksOfClosestAuthorsFirst() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Algorithms Unlocked\tThomas Cormen\t9780262518802\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848\n" +
+                "Code Complete\tSteve McConnell\t9780735619678");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchByAuthorFuzzy("Thomas H Cormen", 2, 10);
+
+        // Then
+        assertThat(foundBooks, hasSize(2));
+        assertThat(foundBooks.get(0).getAuthor(), is(equalTo("Thomas H. Cormen")));
+        assertThat(foundBooks.get(1).getAuthor(), is(equalTo("Thomas Cormen")));
+    }
+
+    @Test
+    public void searchByAuthorFuzzy_whenAuthorsBooksBorrowed_returnsNothingUntilReturned() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        Book book = new Book("Introduction to Algorithms", "Thomas H. Cormen", 9780262033848L);
+
+        // When
+        libraryService.borrowBook(book);
+
+        // Then
+        assertThat(libraryService.searchByAuthorFuzzy("Thomas H Cormen", 1, 10), is(empty()));
+
+        // When
+        libraryService.returnBook(book);
+
+        // Then
+        assertThat(libraryService.searchByAuthorFuzzy("Thomas H Cormen", 1, 10), hasSize(1));
+    }
+
+    @Test
+    public void search_withDepthThresholdPolicy_recordsDepthOfSearchesWhichDontSplay() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        LibraryService libraryService = new LibraryService(new BookSplayTreeService(TreeStorage.NODES,
+                SplayEngine.BOTTOM_UP, SplayPolicy.DEPTH_THRESHOLD, 16, 1), mockFileService,
+                new LibraryMetrics(registry));
+
+        // When
+        libraryService.searchByAuthor("David Hare");
+        libraryService.searchByAuthor("Steven Skiena");
+        libraryService.searchByIsbn(9781250118363L);
+
+        // Then
+        // Hare is at the root of the balanced author tree, Skiena and Christian's ISBN children of the roots, and no
+        // search splays
+        assertThat(registry.get("library.search.depth").tags("le", "1").functionCounter().count(), is(equalTo(1.0)));
+        assertThat(registry.get("library.search.depth").tags("le", "2").functionCounter().count(), is(equalTo(3.0)));
+        assertThat(registry.get("library.search.depth").tags("le", "+Inf").functionCounter().count(),
+                is(equalTo(3.0)));
+        assertThat(registry.get("library.splay.operations").tags("operation", "search").functionCounter().count(),
+                is(equalTo(0.0)));
+    }
+
+    @Test
+    public void borrowAndSearch_recordMetrics() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(registry));
+
+        // When
+        libraryService.searchByAuthor("Steven Skiena");
+        libraryService.searchByAuthor("Zadie Smith");
+        libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        try {
+            libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        } catch (BorrowingException e) {
+            // Expected, already borrowed
+        }
+
+        // Then
+        assertThat(registry.get("library.searches").tags("key", "author", "result", "hit").counter().count(),
+                is(equalTo(1.0)));
+        assertThat(registry.get("library.searches").tags("key", "author", "result", "miss").counter().count(),
+                is(equalTo(1.0)));
+        // Skiena is a child of the root of the balanced author tree, then at the root with no one after him
+        assertThat(registry.get("library.search.depth").tags("le", "1").functionCounter().count(), is(equalTo(1.0)));
+        assertThat(registry.get("library.search.depth").tags("le", "2").functionCounter().count(), is(equalTo(2.0)));
+        assertThat(registry.get("library.search.depth").tags("le", "+Inf").functionCounter().count(),
+                is(equalTo(2.0)));
+        assertThat(registry.get("library.splay.rotations").tags("operation", "search").functionCounter().count(),
+                is(equalTo(1.0)));
+        assertThat(registry.get("library.borrow").tags("outcome", "success").timer().count(), is(equalTo(1L)));
+        assertThat(registry.get("library.borrow").tags("outcome", "failure").timer().count(), is(equalTo(1L)));
+        assertThat(registry.get("library.splay.operations").tags("operation", "borrow").functionCounter().count(),
+                is(equalTo(2.0)));
+        assertThat(registry.get("library.books").tags("state", "available").gauge().value(), is(equalTo(2.0)));
+        assertThat(registry.get("library.books").tags("state", "borrowed").gauge().value(), is(equalTo(1.0)));
+    }
+
+    @Test
+    public void searchByTitle_returnsBooksWithAllWordsInTitle() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code: The Hidden Language of Computer Hardware and Software\tCharles Petzold\t9780735611313\n" +
+                "The Go Programming Language\tAlan A. A. Donovan\t9780134190440\n" +
+                "Code Complete\tSteve McConnell\t9780735619678");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchByTitle("language CODE", 10);
+
+        // Then
+        assertThat(foundBooks, hasSize(1));
+        assertThat(foundBooks.get(0).getAuthor(), is(equalTo("Charles Petzold")));
+    }
+
+    @Test
+    public void searchByTitle_afterBorrowAndReturn_findsOnlyAvailableBooks() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code: The Hidden Language of Computer Hardware and Software\tCharles Petzold\t9780735611313\n" +
+                "Code Complete\tSteve McConnell\t9780735619678");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        Book codeComplete = new Book("Code Complete", "Steve McConnell", 9780735619678L);
+
+        // When
+        libraryService.borrowBook(codeComplete);
+
+        // Then
+        List<Book> foundBooks = libraryService.searchByTitle("code", 10);
+        assertThat(foundBooks, hasSize(1));
+        assertThat(foundBooks.get(0).getAuthor(), is(equalTo("Charles Petzold")));
+        assertThat(libraryService.searchByTitle("complete", 10), is(empty()));
+
+        // When
+        libraryService.returnBook(codeComplete);
+
+        // Then
+        assertThat(libraryService.searchByTitle("code", 10), hasSize(2));
+        assertThat(libraryService.searchByTitle("complete", 10), hasSize(1));
+    }
+
+    @Test
+    public void searchByTitle_whenBooksShareIsbn_findsBooksByTheirOwnTitles() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code Complete: A Practical Handbook of Software Construction\tSteve McConnell\t9780735619678\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "Cracking the Coding Interview: 189 Programming Questions\tGayle Laakmann McDowell\t9780984782857\n" +
+                "Elements of programming interviews\tGayle McDowell\t9780984782857");
+        for (int shardCount : new int[]{1, 8}) {
+            LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                    new LibraryMetrics(), shardCount);
+
+            // When
+            List<Book> cracking = libraryService.searchByTitle("cracking coding interview", 10);
+            List<Book> programming = libraryService.searchByTitle("programming", 10);
+            List<Book> mixed = libraryService.searchByTitle("cracking elements", 10);
+
+            // Then
+            assertThat(cracking, hasSize(1));
+            assertThat(cracking.get(0).getAuthor(), is(equalTo("Gayle Laakmann McDowell")));
+            assertThat(programming, hasSize(2));
+            assertThat(mixed, is(empty()));
+            assertThat(libraryService.searchByTitle("code complete", 10), hasSize(2));
+
+            // When
+            libraryService.borrowBook(new Book(null, "Steve McConnell", 9780735619678L));
+
+            // Then
+            List<Book> codeComplete = libraryService.searchByTitle("code complete", 10);
+            assertThat(codeComplete, hasSize(1));
+            assertThat(codeComplete.get(0).getIsbn(), is(equalTo(9780735619678L)));
+
+            // When
+            libraryService.borrowBook(new Book(null, "Steve McConnell", 9780735619678L));
+
+            // Then
+            assertThat(libraryService.searchByTitle("code complete", 10), is(empty()));
+        }
+    }
+
+    @Test
+    public void searchByAuthorPrefix_returnsMatchingBooksInAuthorOrder() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Code Complete\tSteve McConnell\t9780735619678\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchByAuthorPrefix("steve", 10);
+
+        // Then
+        assertThat(foundBooks, hasSize(2));
+        assertThat(foundBooks.get(0).getAuthor(), is(equalTo("Steve McConnell")));
+        assertThat(foundBooks.get(1).getAuthor(), is(equalTo("Steven Skiena")));
+    }
+
+    @Test
+    public void searchByAuthorPrefix_whenNoAuthorMatches_returnsEmptyList() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> foundBooks = libraryService.searchByAuthorPrefix("Knuth", 10);
+
+        // Then
+        assertThat(foundBooks, is(empty()));
+    }
+
+    @Test
+    public void searchByAuthorRange_stopsAtEndOfRangeAndLimit() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Code Complete\tSteve McConnell\t9780735619678\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<Book> inRange = libraryService.searchByAuthorRange("brian christian", "Steven Skiena", 10);
+        List<Book> limited = libraryService.searchByAuthorRange("A", null, 3);
+
+        // Then
+        assertThat(inRange, hasSize(3));
+        assertThat(inRange.get(0).getAuthor(), is(equalTo("Brian Christian")));
+        assertThat(inRange.get(2).getAuthor(), is(equalTo("Steve McConnell")));
+        assertThat(limited, hasSize(3));
+        assertThat(limited.get(2).getAuthor(), is(equalTo("Steve McConnell")));
     }
 
     @Test
@@ -247,13 +584,13 @@ public class LibraryServiceTest {
         long isbn = 9780996128100L;
 
         // When
-        SplayTreeNode<Book> previousIsbnTree = libraryService.getIsbnSplayTree();
+        SplayTreeNode<Book> previousIsbnTree = rootNode(libraryService.getIsbnSplayTree());
         Book foundBook = libraryService.searchByIsbn(isbn);
 
         // Then
         assertNotNull(foundBook);
         assertEquals(foundBook.getIsbn(), isbn);
-        SplayTreeNode<Book> newIsbnTree = libraryService.getIsbnSplayTree();
+        SplayTreeNode<Book> newIsbnTree = rootNode(libraryService.getIsbnSplayTree());
         assertEquals(newIsbnTree.data, foundBook);
         assertEquals(previousIsbnTree, newIsbnTree);
     }
@@ -275,7 +612,7 @@ public class LibraryServiceTest {
         // Then
         assertNotNull(foundBook);
         assertEquals(foundBook.getIsbn(), isbn);
-        assertEquals(libraryService.getIsbnSplayTree().data, foundBook);
+        assertEquals(libraryService.getIsbnSplayTree().getRoot(), foundBook);
     }
 
     @Test
@@ -295,7 +632,7 @@ public class LibraryServiceTest {
 
         // Then
         assertNull(foundBook);
-        assertEquals(libraryService.getIsbnSplayTree().data.getIsbn(), closestIsbn);
+        assertEquals(libraryService.getIsbnSplayTree().getRoot().getIsbn(), closestIsbn);
     }
 
     @Test
@@ -305,15 +642,158 @@ public class LibraryServiceTest {
                 "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
-        Book bookToBorrow = libraryService.getAuthorSplayTree().data;
+        Book bookToBorrow = libraryService.getAuthorSplayTree().getRoot();
 
         // When
         libraryService.borrowBook(bookToBorrow);
 
         // Then
-        assertNotEquals(bookToBorrow.getAuthor(), libraryService.getAuthorSplayTree().data.getAuthor());
-        assertNotEquals(bookToBorrow.getAuthor(), libraryService.getIsbnSplayTree().data.getAuthor());
-        assertEquals(bookToBorrow.getAuthor(), libraryService.getBorrowedSplayTree().data.getAuthor());
+        assertNotEquals(bookToBorrow.getAuthor(), libraryService.getAuthorSplayTree().getRoot().getAuthor());
+        assertNotEquals(bookToBorrow.getAuthor(), libraryService.getIsbnSplayTree().getRoot().getAuthor());
+        assertEquals(bookToBorrow.getAuthor(), libraryService.getBorrowedSplayTree().getRoot().getAuthor());
+    }
+
+    @Test
+    public void borrowBook_whenAuthorHasSeveralBooks_borrowsThatBook() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Paradigms of Artificial Intelligence Programming\tPeter Norvig\t9781558601918\n" +
+                "Artificial Intelligence: A Modern Approach\tPeter Norvig\t9780136042594\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        libraryService.borrowBook(new Book(null, "Peter Norvig", 9781558601918L));
+
+        // Then
+        List<Book> available = libraryService.searchAllByAuthor("Peter Norvig");
+        assertThat(available, hasSize(1));
+        assertThat(available.get(0).getIsbn(), is(equalTo(9780136042594L)));
+        assertThat(libraryService.searchByIsbn(9780136042594L), is(not(nullValue())));
+        assertThat(libraryService.searchByIsbn(9781558601918L), is(nullValue()));
+    }
+
+    @Test
+    public void borrowBook_whenBooksShareIsbn_borrowsEachCopy() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "Code Complete\tCharles Petzold\t9780735619678\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        List<BookSplayTreeService> treeServices = Arrays.asList(mockBookSplayTreeService,
+                new BookSplayTreeService(TreeStorage.NODES, SplayEngine.TOP_DOWN),
+                new BookSplayTreeService(TreeStorage.ARRAYS),
+                new BookSplayTreeService(TreeStorage.OFF_HEAP));
+        for (BookSplayTreeService treeService : treeServices) {
+            for (int shardCount : new int[]{1, 8}) {
+                for (String firstAuthor : new String[]{"Steve Mcconnell", "Charles Petzold"}) {
+                    String secondAuthor = firstAuthor.equals("Steve Mcconnell") ? "Charles Petzold" : "Steve Mcconnell";
+                    LibraryService libraryService = new LibraryService(treeService, mockFileService,
+                            new LibraryMetrics(), shardCount);
+
+                    // When
+                    // Searching by ISBN may leave either copy at the root of the ISBN tree
+                    libraryService.searchByIsbn(9780735619678L);
+                    libraryService.borrowBook(new Book(null, firstAuthor, 9780735619678L));
+
+                    // Then
+                    assertThat(libraryService.searchByIsbn(9780735619678L).getAuthor(), is(equalTo(secondAuthor)));
+
+                    // When
+                    libraryService.borrowBook(new Book(null, secondAuthor, 9780735619678L));
+
+                    // Then
+                    assertThat(libraryService.searchByIsbn(9780735619678L), is(nullValue()));
+                    assertThat(libraryService.searchAllByAuthor(firstAuthor), is(empty()));
+                    assertThat(libraryService.searchAllByAuthor(secondAuthor), is(empty()));
+                    assertThat(isbns(libraryService.listBorrowed(10)),
+                            is(equalTo(Arrays.asList(9780735619678L, 9780735619678L))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void borrowAndReturn_whenBooksShareIsbnAndAuthorButNotTitle_keepTreesInStep() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Long Title\tSteve McConnell\t9780735619678\n" +
+                "Short\tSteve Mcconnell\t9780735619678\n" +
+                "Other\tSteve McConnell\t9780735619679\n" +
+                "Z\tZed Shaw\t9780321884916");
+        Book[] requests = {
+                new Book(null, "Steve McConnell", 9780735619678L),
+                new Book(null, "Steve McConnell", 9780735619679L),
+                new Book(null, "Zed Shaw", 9780321884916L)};
+        Random random = new Random(42);
+        for (TreeStorage storage : TreeStorage.values()) {
+            for (int trial = 0; trial < 200; trial++) {
+                LibraryService libraryService = new LibraryService(new BookSplayTreeService(storage), mockFileService);
+
+                // When
+                for (int step = 0; step < 20; step++) {
+                    Book request = requests[random.nextInt(requests.length)];
+                    List<BorrowingOutcome> outcomes;
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            outcomes = libraryService.borrowBooks(Arrays.asList(request));
+                            break;
+                        case 1:
+                            outcomes = libraryService.returnBooks(Arrays.asList(request));
+                            break;
+                        case 2:
+                            libraryService.searchByAuthor(request.getAuthor());
+                            continue;
+                        default:
+                            libraryService.searchByIsbn(request.getIsbn());
+                            continue;
+                    }
+
+                    // Then
+                    List<String> authorTree = contents(libraryService, shard -> shard.authorTree);
+                    assertThat(storage + " " + outcomes.get(0).getMessage(),
+                            contents(libraryService, shard -> shard.isbnTree), is(equalTo(authorTree)));
+                    List<String> every = new ArrayList<>(authorTree);
+                    every.addAll(contents(libraryService, shard -> shard.borrowedTree));
+                    every.sort(null);
+                    assertThat(every, is(equalTo(Arrays.asList(
+                            "Long Title, Steve McConnell, 9780735619678",
+                            "Other, Steve McConnell, 9780735619679",
+                            "Short, Steve Mcconnell, 9780735619678",
+                            "Z, Zed Shaw, 9780321884916"))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void borrowBook_whenAuthorCaseDiffers_borrowsBook() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code Complete\tSteve McConnell\t9780735619678\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        libraryService.borrowBook(new Book(null, "Steve Mcconnell", 9780735619678L));
+
+        // Then
+        assertThat(libraryService.searchByIsbn(9780735619678L), is(nullValue()));
+        assertThat(libraryService.getBorrowedSplayTree().getRoot().getAuthor(), is(equalTo("Steve McConnell")));
+    }
+
+    @Test(expected = BorrowingException.class)
+    public void borrowBook_whenAuthorDoesNotMatchIsbn_throws() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        // Then
+        libraryService.borrowBook(new Book(null, "David Hare", 9781849967204L));
     }
 
     @Test(expected = BorrowingException.class)
@@ -340,7 +820,7 @@ public class LibraryServiceTest {
                 "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
-        Book bookToReturn = libraryService.getAuthorSplayTree().data;
+        Book bookToReturn = libraryService.getAuthorSplayTree().getRoot();
 
         // When
         libraryService.returnBook(bookToReturn);
@@ -357,15 +837,765 @@ public class LibraryServiceTest {
                 "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
         LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
 
-        Book bookToReturn = libraryService.getAuthorSplayTree().data;
+        Book bookToReturn = libraryService.getAuthorSplayTree().getRoot();
         libraryService.borrowBook(bookToReturn);
 
         // When
         libraryService.returnBook(bookToReturn);
 
         // Then
-        assertEquals(bookToReturn.getAuthor(), libraryService.getAuthorSplayTree().data.getAuthor());
-        assertEquals(bookToReturn.getAuthor(), libraryService.getIsbnSplayTree().data.getAuthor());
-        assertNull(libraryService.getBorrowedSplayTree());
+        assertEquals(bookToReturn.getAuthor(), libraryService.getAuthorSplayTree().getRoot().getAuthor());
+        assertEquals(bookToReturn.getAuthor(), libraryService.getIsbnSplayTree().getRoot().getAuthor());
+        assertTrue(libraryService.getBorrowedSplayTree().isEmpty());
+    }
+
+    @Test
+    public void returnBook_whenAuthorHasSeveralBorrowedBooks_returnsThatBook() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Artificial Intelligence: A Modern Approach\tPeter Norvig\t9780136042594\n" +
+                "Paradigms of Artificial Intelligence Programming\tPeter Norvig\t9781558601918\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(new Book(null, "Peter Norvig", 9780136042594L));
+        libraryService.borrowBook(new Book(null, "Peter Norvig", 9781558601918L));
+
+        // When
+        libraryService.returnBook(new Book(null, "Peter Norvig", 9781558601918L));
+
+        // Then
+        assertThat(libraryService.searchByIsbn(9781558601918L).getAuthor(), is(equalTo("Peter Norvig")));
+        assertThat(libraryService.searchByIsbn(9780136042594L), is(nullValue()));
+        assertThat(libraryService.listBorrowed(10).get(0).getIsbn(), is(equalTo(9780136042594L)));
+    }
+
+    @Test
+    public void returnBook_whenCopiesDifferInTitle_movesOneCopyBack() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code Complete: A Practical Handbook of Software Construction\tSteve McConnell\t9780735619678\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        Book book = new Book(null, "Steve McConnell", 9780735619678L);
+        libraryService.borrowBook(book);
+        libraryService.borrowBook(book);
+
+        // When
+        libraryService.returnBook(book);
+
+        // Then
+        List<Book> available = libraryService.searchAllByAuthor("Steve McConnell");
+        available.addAll(libraryService.searchAllByAuthor("Steve Mcconnell"));
+        List<Book> borrowed = libraryService.listBorrowed(10);
+        assertThat(available, hasSize(1));
+        assertThat(borrowed, hasSize(1));
+        assertThat(borrowed.get(0).getTitle(), is(not(equalTo(available.get(0).getTitle()))));
+        assertThat(libraryService.searchByTitle("code complete", 10), hasSize(1));
+    }
+
+    @Test
+    public void returnBook_whenIsbnNotBorrowed_throwsAndKeepsBorrowedBooks() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Artificial Intelligence: A Modern Approach\tPeter Norvig\t9780136042594\n" +
+                "Paradigms of Artificial Intelligence Programming\tPeter Norvig\t9781558601918");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(new Book(null, "Peter Norvig", 9780136042594L));
+
+        // When
+        List<BorrowingOutcome> outcomes = libraryService.returnBooks(
+                Arrays.asList(new Book(null, "Peter Norvig", 9781558601918L)));
+
+        // Then
+        assertThat(outcomes.get(0).isSuccessful(), is(false));
+        assertThat(libraryService.listBorrowed(10).size(), is(equalTo(1)));
+        assertThat(libraryService.searchByIsbn(9780136042594L), is(nullValue()));
+    }
+
+    @Test
+    public void listBorrowed_acrossShards_listsBorrowedBooksInAuthorOrderUpToLimit() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 4);
+        libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        libraryService.borrowBook(new Book(null, "David Hare", 9783642272653L));
+        libraryService.borrowBook(new Book(null, "Brian Christian", 9781250118363L));
+
+        // When
+        List<Book> borrowed = libraryService.listBorrowed(2);
+
+        // Then
+        assertThat(borrowed.size(), is(equalTo(2)));
+        assertThat(borrowed.get(0).getAuthor(), is(equalTo("Brian Christian")));
+        assertThat(borrowed.get(1).getAuthor(), is(equalTo("David Hare")));
+        assertThat(libraryService.listBorrowed(10).size(), is(equalTo(3)));
+    }
+
+    @Test
+    public void withBitmap_listBorrowed_listsFirstBorrowedBooksInAuthorOrderUpToLimit() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(100));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 2, AvailabilityTracking.BITMAP);
+        for (int i = 99; i >= 0; i -= 7) {
+            libraryService.borrowBook(new Book(null, "Author " + (i % 17), 9780000000000L + i));
+        }
+
+        // When
+        List<Book> borrowed = libraryService.listBorrowed(5);
+
+        // Then
+        List<Book> allBorrowed = libraryService.listBorrowed(100);
+        assertThat(allBorrowed.size(), is(equalTo(15)));
+        assertThat(isbns(borrowed), is(equalTo(isbns(allBorrowed.subList(0, 5)))));
+        for (int i = 1; i < allBorrowed.size(); i++) {
+            assertThat(allBorrowed.get(i - 1).compareByAuthorAndIsbn(allBorrowed.get(i)), is(lessThan(0)));
+        }
+        assertThat(libraryService.listBorrowed(0), is(empty()));
+    }
+
+    @Test
+    public void withCopies_listBorrowed_listsEachBorrowedCopy() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.COPIES);
+        libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        libraryService.borrowBook(new Book(null, "David Hare", 9783642272653L));
+
+        // When
+        List<Book> borrowed = libraryService.listBorrowed(10);
+
+        // Then
+        assertThat(borrowed.size(), is(equalTo(3)));
+        assertThat(borrowed.get(0).getAuthor(), is(equalTo("David Hare")));
+        assertThat(borrowed.get(2).getIsbn(), is(equalTo(9781849967204L)));
+    }
+
+    @Test
+    public void saveSnapshot_thenInitialise_restoresAvailableAndBorrowedBooks() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(libraryService.searchByAuthor("Brian Christian"));
+
+        // When
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // Then
+        assertThat(restartedService.searchByAuthor("Brian Christian"), is(nullValue()));
+        assertThat(restartedService.searchByAuthor("David Hare").getIsbn(), is(equalTo(9783642272653L)));
+        assertThat(restartedService.searchByIsbn(9781849967204L).getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(restartedService.getBorrowedSplayTree().getRoot().getAuthor(), is(equalTo("Brian Christian")));
+    }
+
+    @Test
+    public void withOffHeapStorage_saveSnapshot_thenInitialise_restoresAvailableAndBorrowedBooks() {
+        // Given
+        BookSplayTreeService offHeapTreeService = new BookSplayTreeService(TreeStorage.OFF_HEAP);
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(offHeapTreeService, mockFileService);
+        libraryService.borrowBook(libraryService.searchByAuthor("Brian Christian"));
+
+        // When
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService restartedService = new LibraryService(offHeapTreeService, mockFileService);
+
+        // Then
+        assertThat(restartedService.searchByAuthor("Brian Christian"), is(nullValue()));
+        assertThat(restartedService.searchByAuthor("David Hare").getIsbn(), is(equalTo(9783642272653L)));
+        assertThat(restartedService.searchAllByAuthor("Steve Mcconnell").size(), is(equalTo(2)));
+        assertThat(restartedService.searchByIsbn(9781849967204L).getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(restartedService.listBorrowed(10).get(0).getAuthor(), is(equalTo("Brian Christian")));
+    }
+
+    @Test
+    public void initialise_whenSnapshotInvalid_loadsBaseLibrary() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100");
+        mockFileService.setSnapshot(new byte[]{1, 2, 3});
+
+        // When
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // Then
+        assertThat(libraryService.searchByAuthor("Edmond Lau"), is(not(nullValue())));
+    }
+
+    @Test
+    public void borrowAndReturn_thenInitialise_replaysJournal() throws IOException {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        mockFileService.setJournalFile(temporaryFolder.newFile("library.journal"));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(libraryService.searchByAuthor("Brian Christian"));
+        libraryService.borrowBook(libraryService.searchByAuthor("David Hare"));
+        libraryService.returnBook(new Book(null, "David Hare", 9783642272653L));
+
+        // When
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // Then
+        assertThat(restartedService.searchByAuthor("Brian Christian"), is(nullValue()));
+        assertThat(restartedService.searchByAuthor("David Hare").getIsbn(), is(equalTo(9783642272653L)));
+        assertThat(restartedService.searchByIsbn(9781849967204L).getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(restartedService.getBorrowedSplayTree().getRoot().getAuthor(), is(equalTo("Brian Christian")));
+    }
+
+    @Test
+    public void saveSnapshot_clearsJournal() throws IOException {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100");
+        File journalFile = temporaryFolder.newFile("library.journal");
+        mockFileService.setJournalFile(journalFile);
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(libraryService.searchByAuthor("Edmond Lau"));
+
+        // When
+        libraryService.saveSnapshot();
+
+        // Then
+        assertThat(journalFile.length(), is(equalTo(0L)));
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        assertThat(restartedService.searchByAuthor("Edmond Lau"), is(nullValue()));
+        assertThat(restartedService.getBorrowedSplayTree().getRoot().getAuthor(), is(equalTo("Edmond Lau")));
+    }
+
+    @Test
+    public void borrowBooks_returnsOutcomeForEachBookInRequestOrder() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        List<Book> books = Arrays.asList(
+                new Book(null, "Steven Skiena", 9781849967204L),
+                new Book(null, "Edmond Lau", 9780996128100L),
+                new Book(null, "Brian Christian", 9781250118363L),
+                new Book(null, "Steven Skiena", 9781849967204L));
+
+        // When
+        List<BorrowingOutcome> outcomes = libraryService.borrowBooks(books);
+
+        // Then
+        assertThat(outcomes, hasSize(4));
+        for (int i = 0; i < books.size(); i++) {
+            assertThat(outcomes.get(i).getBook(), is(sameInstance(books.get(i))));
+        }
+        assertThat(outcomes.get(0).isSuccessful(), is(true));
+        assertThat(outcomes.get(1).isSuccessful(), is(false));
+        assertThat(outcomes.get(1).getMessage(), is(equalTo("Oops! That book is not available to borrow.")));
+        assertThat(outcomes.get(2).isSuccessful(), is(true));
+        assertThat(outcomes.get(3).isSuccessful(), is(false));
+        assertThat(libraryService.searchByAuthor("Steven Skiena"), is(nullValue()));
+        assertThat(libraryService.searchByAuthor("Brian Christian"), is(nullValue()));
+        assertThat(libraryService.searchByAuthor("David Hare"), is(not(nullValue())));
+    }
+
+    @Test
+    public void borrowBooks_whenAuthorMissing_reportsFailure() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+
+        // When
+        List<BorrowingOutcome> outcomes = libraryService.borrowBooks(Arrays.asList(
+                new Book("The Effective Engineer", null, 9780996128100L),
+                new Book(null, "Edmond Lau", 9780996128100L)));
+
+        // Then
+        assertThat(outcomes.get(0).isSuccessful(), is(false));
+        assertThat(outcomes.get(1).isSuccessful(), is(true));
+    }
+
+    @Test
+    public void returnBooks_returnsOutcomeForEachBookInRequestOrder() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(new Book(null, "Steven Skiena", 9781849967204L));
+        libraryService.borrowBook(new Book(null, "David Hare", 9783642272653L));
+
+        // When
+        List<BorrowingOutcome> outcomes = libraryService.returnBooks(Arrays.asList(
+                new Book(null, "Steven Skiena", 9781849967204L),
+                new Book(null, "Brian Christian", 9781250118363L),
+                new Book(null, "David Hare", 9783642272653L)));
+
+        // Then
+        assertThat(outcomes.get(0).isSuccessful(), is(true));
+        assertThat(outcomes.get(1).isSuccessful(), is(false));
+        assertThat(outcomes.get(1).getMessage(), is(equalTo("Oops! That book hasn't been borrowed, so can't be returned.")));
+        assertThat(outcomes.get(2).isSuccessful(), is(true));
+        assertThat(libraryService.getBorrowedSplayTree().isEmpty(), is(true));
+        assertThat(libraryService.searchByIsbn(9781849967204L), is(not(nullValue())));
+    }
+
+    @Test
+    public void searchByIsbns_returnsBooksInRequestOrder() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        libraryService.borrowBook(new Book(null, "David Hare", 9783642272653L));
+
+        // When
+        List<Book> books = libraryService.searchByIsbns(Arrays.asList(
+                9781849967204L, 9783642272653L, null, 9780000000000L, 9781250118363L, 9781849967204L));
+
+        // Then
+        assertThat(books, hasSize(6));
+        assertThat(books.get(0).getAuthor(), is(equalTo("Steven Skiena")));
+        assertThat(books.get(1), is(nullValue()));
+        assertThat(books.get(2), is(nullValue()));
+        assertThat(books.get(3), is(nullValue()));
+        assertThat(books.get(4).getAuthor(), is(equalTo("Brian Christian")));
+        assertThat(books.get(5).getAuthor(), is(equalTo("Steven Skiena")));
+    }
+
+    @Test
+    public void withShards_searchesReturnSameBooksAsSingleShard() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(60));
+        LibraryService singleShard = new LibraryService(mockBookSplayTreeService, mockFileService);
+        LibraryService sharded = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 8);
+
+        // When
+        sharded.borrowBook(sharded.searchByIsbn(9780000000007L));
+        singleShard.borrowBook(singleShard.searchByIsbn(9780000000007L));
+
+        // Then
+        for (int i = 0; i < 60; i++) {
+            long isbn = 9780000000000L + i;
+            assertThat(isbns(Arrays.asList(sharded.searchByIsbn(isbn))),
+                    is(equalTo(isbns(Arrays.asList(singleShard.searchByIsbn(isbn))))));
+            String author = "Author " + (i % 17);
+            assertThat(isbns(sharded.searchAllByAuthor(author)),
+                    is(equalTo(isbns(singleShard.searchAllByAuthor(author)))));
+        }
+        assertThat(isbns(sharded.searchByAuthorPrefix("Author 1", 20)),
+                is(equalTo(isbns(singleShard.searchByAuthorPrefix("Author 1", 20)))));
+        assertThat(isbns(sharded.searchByAuthorRange("Author 12", "Author 5", 100)),
+                is(equalTo(isbns(singleShard.searchByAuthorRange("Author 12", "Author 5", 100)))));
+        assertThat(isbns(sharded.searchByTitle("algorithms", 10)),
+                is(equalTo(isbns(singleShard.searchByTitle("algorithms", 10)))));
+        assertThat(isbns(sharded.searchByAuthorFuzzy("Autor 3", 1, 100)),
+                is(equalTo(isbns(singleShard.searchByAuthorFuzzy("Autor 3", 1, 100)))));
+        List<Long> isbns = Arrays.asList(9780000000042L, 9780000000007L, 9780000000001L, 9780000000099L);
+        assertThat(isbns(sharded.searchByIsbns(isbns)), is(equalTo(isbns(singleShard.searchByIsbns(isbns)))));
+    }
+
+    @Test
+    public void withShards_borrowAndReturn_moveBooksBetweenTreesOfTheirShards() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(60));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 8);
+        Book book = libraryService.searchByIsbn(9780000000023L);
+
+        // When
+        libraryService.borrowBook(book);
+
+        // Then
+        assertThat(libraryService.searchByIsbn(book.getIsbn()), is(nullValue()));
+        assertThat(libraryService.searchAllByAuthor(book.getAuthor()), not(hasItem(book)));
+        assertThat(countBooks(libraryService, shard -> shard.borrowedTree), is(equalTo(1)));
+
+        // When
+        libraryService.returnBook(book);
+
+        // Then
+        assertThat(libraryService.searchByIsbn(book.getIsbn()), is(equalTo(book)));
+        assertThat(libraryService.searchAllByAuthor(book.getAuthor()), hasItem(book));
+        assertThat(countBooks(libraryService, shard -> shard.borrowedTree), is(equalTo(0)));
+        assertThat(countBooks(libraryService, shard -> shard.authorTree), is(equalTo(60)));
+        assertThat(countBooks(libraryService, shard -> shard.isbnTree), is(equalTo(60)));
+    }
+
+    @Test
+    public void withShards_saveSnapshot_thenInitialiseWithOtherShardCount_restoresBooks() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(60));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 8);
+        libraryService.borrowBooks(Arrays.asList(libraryService.searchByIsbn(9780000000005L),
+                libraryService.searchByIsbn(9780000000031L)));
+
+        // When
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 3);
+
+        // Then
+        assertThat(restartedService.searchByIsbn(9780000000005L), is(nullValue()));
+        assertThat(restartedService.searchByIsbn(9780000000031L), is(nullValue()));
+        assertThat(restartedService.searchByIsbn(9780000000032L).getAuthor(), is(equalTo("Author 15")));
+        assertThat(countBooks(restartedService, shard -> shard.authorTree), is(equalTo(58)));
+        assertThat(countBooks(restartedService, shard -> shard.isbnTree), is(equalTo(58)));
+        assertThat(countBooks(restartedService, shard -> shard.borrowedTree), is(equalTo(2)));
+    }
+
+    @Test
+    public void withBitmap_searchesReturnSameBooksAsWithTrees() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(60));
+        LibraryService trees = new LibraryService(mockBookSplayTreeService, mockFileService);
+        LibraryService bitmap = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 4, AvailabilityTracking.BITMAP);
+        List<Long> borrowedIsbns = Arrays.asList(9780000000007L, 9780000000003L, 9780000000020L, 9780000000037L);
+
+        // When
+        for (LibraryService libraryService : Arrays.asList(trees, bitmap)) {
+            List<Book> books = new ArrayList<>();
+            for (long isbn : borrowedIsbns) {
+                books.add(libraryService.searchByIsbn(isbn));
+            }
+            libraryService.borrowBooks(books);
+        }
+
+        // Then
+        for (int i = 0; i < 60; i++) {
+            long isbn = 9780000000000L + i;
+            assertThat(isbns(Arrays.asList(bitmap.searchByIsbn(isbn))),
+                    is(equalTo(isbns(Arrays.asList(trees.searchByIsbn(isbn))))));
+            String author = "Author " + (i % 17);
+            // Any available book by the author may be found
+            Book foundBook = bitmap.searchByAuthor(author);
+            assertThat(foundBook == null ? null : foundBook.getAuthor(), is(equalTo(author)));
+            assertThat(isbns(bitmap.searchAllByAuthor(author)), is(equalTo(isbns(trees.searchAllByAuthor(author)))));
+        }
+        assertThat(isbns(bitmap.searchByAuthorPrefix("Author 1", 20)),
+                is(equalTo(isbns(trees.searchByAuthorPrefix("Author 1", 20)))));
+        assertThat(isbns(bitmap.searchByAuthorRange("Author 12", "Author 5", 100)),
+                is(equalTo(isbns(trees.searchByAuthorRange("Author 12", "Author 5", 100)))));
+        assertThat(isbns(bitmap.searchByTitle("algorithms", 10)),
+                is(equalTo(isbns(trees.searchByTitle("algorithms", 10)))));
+        assertThat(isbns(bitmap.searchByAuthorFuzzy("Autor 3", 1, 100)),
+                is(equalTo(isbns(trees.searchByAuthorFuzzy("Autor 3", 1, 100)))));
+        List<Long> isbns = Arrays.asList(9780000000042L, 9780000000007L, 9780000000001L, 9780000000099L);
+        assertThat(isbns(bitmap.searchByIsbns(isbns)), is(equalTo(isbns(trees.searchByIsbns(isbns)))));
+    }
+
+    @Test
+    public void withBitmap_borrowAndReturn_leaveTreesUnchanged() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+        Book authorRoot = libraryService.getAuthorSplayTree().getRoot();
+        Book isbnRoot = libraryService.getIsbnSplayTree().getRoot();
+        Book book = new Book(null, "Steven Skiena", 9781849967204L);
+
+        // When
+        libraryService.borrowBook(book);
+
+        // Then
+        assertThat(libraryService.searchByAuthor("Steven Skiena"), is(nullValue()));
+        assertThat(libraryService.searchByIsbn(9781849967204L), is(nullValue()));
+        assertThat(libraryService.getAuthorSplayTree().getRoot(), is(sameInstance(authorRoot)));
+        assertThat(libraryService.getIsbnSplayTree().getRoot(), is(sameInstance(isbnRoot)));
+        assertThat(libraryService.getBorrowedSplayTree().isEmpty(), is(true));
+        assertThat(libraryService.borrowBooks(Arrays.asList(book)).get(0).isSuccessful(), is(false));
+        assertThat(libraryService.returnBooks(Arrays.asList(new Book(null, "Brian Christian", 9781849967204L)))
+                .get(0).isSuccessful(), is(false));
+
+        // When
+        libraryService.returnBook(book);
+
+        // Then
+        assertThat(libraryService.searchByAuthor("Steven Skiena").getIsbn(), is(equalTo(9781849967204L)));
+        assertThat(libraryService.getAuthorSplayTree().getRoot(), is(sameInstance(authorRoot)));
+        assertThat(libraryService.getIsbnSplayTree().getRoot(), is(sameInstance(isbnRoot)));
+        assertThat(libraryService.returnBooks(Arrays.asList(book)).get(0).isSuccessful(), is(false));
+    }
+
+    @Test
+    public void withBitmap_saveSnapshot_thenInitialiseWithTrees_restoresBooks() {
+        // Given
+        mockFileService.setBaseLibraryString(generatedBaseLibrary(60));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 4, AvailabilityTracking.BITMAP);
+        libraryService.borrowBook(libraryService.searchByIsbn(9780000000005L));
+        libraryService.borrowBook(libraryService.searchByIsbn(9780000000031L));
+
+        // When
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 3);
+
+        // Then
+        assertThat(restartedService.searchByIsbn(9780000000005L), is(nullValue()));
+        assertThat(restartedService.searchByIsbn(9780000000031L), is(nullValue()));
+        assertThat(countBooks(restartedService, shard -> shard.authorTree), is(equalTo(58)));
+        assertThat(countBooks(restartedService, shard -> shard.isbnTree), is(equalTo(58)));
+        assertThat(countBooks(restartedService, shard -> shard.borrowedTree), is(equalTo(2)));
+
+        // When
+        restartedService.returnBook(new Book(null, "Author 5", 9780000000005L));
+        restartedService.saveSnapshot();
+        LibraryService bitmapService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+
+        // Then
+        assertThat(bitmapService.searchByIsbn(9780000000005L).getAuthor(), is(equalTo("Author 5")));
+        assertThat(bitmapService.searchByIsbn(9780000000031L), is(nullValue()));
+        assertThat(countBooks(bitmapService, shard -> shard.isbnTree), is(equalTo(60)));
+        bitmapService.returnBook(new Book(null, "Author 14", 9780000000031L));
+        assertThat(bitmapService.searchByIsbn(9780000000031L).getAuthor(), is(equalTo("Author 14")));
+    }
+
+    @Test
+    public void withBitmap_borrowAndReturn_thenInitialise_replaysJournal() throws IOException {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" + "The Algorithm Design Manual\tSteven Skiena\t9781849967204\n" +
+                "Algorithms to Live By: The Computer Science of Human Decisions\tBrian Christian\t9781250118363\n" +
+                "Algorithmics — The Spirit of Computing\tDavid Hare\t9783642272653");
+        mockFileService.setJournalFile(temporaryFolder.newFile("library.journal"));
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+        libraryService.borrowBook(libraryService.searchByAuthor("Brian Christian"));
+        libraryService.borrowBook(libraryService.searchByAuthor("David Hare"));
+        libraryService.returnBook(new Book(null, "David Hare", 9783642272653L));
+
+        // When
+        LibraryService restartedService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+
+        // Then
+        assertThat(restartedService.searchByAuthor("Brian Christian"), is(nullValue()));
+        assertThat(restartedService.searchByAuthor("David Hare").getIsbn(), is(equalTo(9783642272653L)));
+        assertThat(restartedService.searchByIsbn(9781849967204L).getAuthor(), is(equalTo("Steven Skiena")));
+    }
+
+    @Test
+    public void withCopies_borrowBook_succeedsUntilEveryCopyBorrowed() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.COPIES);
+        Book book = new Book(null, "Thomas H. Cormen", 9780262033848L);
+
+        // When
+        libraryService.borrowBook(book);
+        libraryService.borrowBook(book);
+
+        // Then
+        assertThat(countBooks(libraryService, shard -> shard.authorTree), is(equalTo(2)));
+        assertThat(countBooks(libraryService, shard -> shard.isbnTree), is(equalTo(2)));
+        assertThat(libraryService.searchByAuthor("Thomas H. Cormen").getIsbn(), is(equalTo(9780262033848L)));
+        assertThat(libraryService.searchAllByAuthor("Thomas H. Cormen"), hasSize(1));
+
+        // When
+        libraryService.borrowBook(book);
+
+        // Then
+        assertThat(libraryService.searchByAuthor("Thomas H. Cormen"), is(nullValue()));
+        assertThat(libraryService.searchByTitle("algorithms", 10), is(empty()));
+        assertThat(libraryService.borrowBooks(Arrays.asList(book)).get(0).getMessage(),
+                is(equalTo("Oops! That book is not available to borrow.")));
+
+        // When
+        libraryService.returnBook(book);
+
+        // Then
+        assertThat(libraryService.searchByIsbn(9780262033848L).getTitle(), is(equalTo("Introduction to Algorithms")));
+    }
+
+    @Test
+    public void withBitmap_borrowBook_whenBooksShareIsbn_borrowsEachCopy() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678\n" +
+                "Code Complete\tCharles Petzold\t9780735619678\n" +
+                "The Algorithm Design Manual\tSteven Skiena\t9781849967204");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+
+        // When
+        libraryService.borrowBook(new Book(null, "Steve Mcconnell", 9780735619678L));
+        libraryService.borrowBook(new Book(null, "charles petzold", 9780735619678L));
+
+        // Then
+        assertThat(libraryService.searchByIsbn(9780735619678L), is(nullValue()));
+        assertThat(libraryService.borrowBooks(Arrays.asList(new Book(null, "David Hare", 9780735619678L))).get(0)
+                .isSuccessful(), is(false));
+    }
+
+    @Test
+    public void withBitmap_borrowBook_whenBooksShareIsbnButNotAuthor_borrowsOnlyThatBook() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Cracking the Coding Interview\tGayle Laakmann McDowell\t9780984782857\n" +
+                "Elements of programming interviews\tGayle McDowell\t9780984782857\n" +
+                "Code Complete, Second Edition\tSteve McConnell\t9780735619678\n" +
+                "Code Complete\tSteve Mcconnell\t9780735619678");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.BITMAP);
+
+        // When
+        libraryService.borrowBook(new Book(null, "Gayle McDowell", 9780984782857L));
+        libraryService.borrowBook(new Book(null, "Steve McConnell", 9780735619678L));
+
+        // Then
+        assertThat(libraryService.searchByAuthor("Gayle McDowell"), is(nullValue()));
+        assertThat(libraryService.searchByAuthor("Gayle Laakmann McDowell").getTitle(),
+                is(equalTo("Cracking the Coding Interview")));
+        assertThat(libraryService.searchByIsbn(9780984782857L).getAuthor(), is(equalTo("Gayle Laakmann McDowell")));
+        assertThat(libraryService.searchByTitle("interviews", 10), is(empty()));
+        assertThat(libraryService.searchAllByAuthor("Steve McConnell"), is(empty()));
+        assertThat(libraryService.searchAllByAuthor("Steve Mcconnell"), hasSize(1));
+        assertThat(libraryService.listBorrowed(10), hasItem(hasProperty("title",
+                equalTo("Elements of programming interviews"))));
+        assertThat(libraryService.borrowBooks(Arrays.asList(new Book(null, "Gayle McDowell", 9780984782857L)))
+                .get(0).isSuccessful(), is(false));
+        assertThat(libraryService.borrowBooks(Arrays.asList(new Book(null, "Gayle Laakmann McDowell",
+                9780984782857L))).get(0).isSuccessful(), is(true));
+        assertThat(libraryService.searchByIsbn(9780984782857L), is(nullValue()));
+    }
+
+    @Test
+    public void withCopies_saveSnapshot_thenInitialiseWithTrees_keepsEveryCopy() {
+        // Given
+        mockFileService.setBaseLibraryString("Title\tAuthor\tISBN\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848\n" +
+                "The Effective Engineer\tEdmond Lau\t9780996128100\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848\n" +
+                "Introduction to Algorithms\tThomas H. Cormen\t9780262033848");
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.COPIES);
+        libraryService.borrowBook(new Book(null, "Thomas H. Cormen", 9780262033848L));
+
+        // When
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService treesService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        LibraryService copiesService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 2, AvailabilityTracking.COPIES);
+
+        // Then
+        assertThat(countBooks(treesService, shard -> shard.authorTree), is(equalTo(3)));
+        assertThat(countBooks(treesService, shard -> shard.isbnTree), is(equalTo(3)));
+        assertThat(countBooks(treesService, shard -> shard.borrowedTree), is(equalTo(1)));
+        assertThat(countBooks(copiesService, shard -> shard.isbnTree), is(equalTo(2)));
+        copiesService.borrowBook(new Book(null, "Thomas H. Cormen", 9780262033848L));
+        copiesService.borrowBook(new Book(null, "Thomas H. Cormen", 9780262033848L));
+        assertThat(copiesService.searchByIsbn(9780262033848L), is(nullValue()));
+    }
+
+    @Test
+    public void withCopies_saveSnapshot_whenBooksShareIsbnButNotTitle_keepsEveryBook() throws IOException {
+        // Given
+        mockFileService.setBaseLibraryString(new String(
+                Files.readAllBytes(Paths.get("src/main/resources/static/base_library.tsv")), StandardCharsets.UTF_8));
+        List<String> baseLibrary = contents(new LibraryService(mockBookSplayTreeService, mockFileService),
+                shard -> shard.authorTree);
+        LibraryService libraryService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.COPIES);
+
+        // When
+        libraryService.borrowBook(new Book(null, "Gayle McDowell", 9780984782857L));
+        libraryService.borrowBook(new Book(null, "Steve Mcconnell", 9780735619678L));
+        libraryService.saveSnapshot();
+        mockFileService.setBaseLibraryString("");
+        LibraryService treesService = new LibraryService(mockBookSplayTreeService, mockFileService);
+        LibraryService copiesService = new LibraryService(mockBookSplayTreeService, mockFileService,
+                new LibraryMetrics(), 1, AvailabilityTracking.COPIES);
+
+        // Then
+        List<String> restoredLibrary = contents(treesService, shard -> shard.authorTree);
+        restoredLibrary.addAll(contents(treesService, shard -> shard.borrowedTree));
+        restoredLibrary.sort(null);
+        assertThat(restoredLibrary, is(equalTo(baseLibrary)));
+        assertThat(countBooks(treesService, shard -> shard.borrowedTree), is(equalTo(2)));
+        assertThat(contents(copiesService, shard -> shard.isbnTree), is(equalTo(baseLibrary)));
+        assertThat(copiesService.searchByAuthor("Gayle Laakmann McDowell"), is(notNullValue()));
+        assertThat(copiesService.searchByAuthor("Gayle McDowell"), is(nullValue()));
+        assertThat(copiesService.searchAllByAuthor("Steve McConnell"), hasSize(1));
+        copiesService.returnBook(new Book(null, "Gayle McDowell", 9780984782857L));
+        assertThat(copiesService.searchByAuthor("Gayle McDowell").getTitle(),
+                is(equalTo("Elements of programming interviews")));
+    }
+
+    /**
+     * A base library of books by 17 authors, every third of them with "Algorithms" in its title.
+     */
+    private static String generatedBaseLibrary(int bookCount) {
+        StringBuilder baseLibrary = new StringBuilder("Title\tAuthor\tISBN\n");
+        for (int i = 0; i < bookCount; i++) {
+            baseLibrary.append(i % 3 == 0 ? "Algorithms " : "Volume ").append(i).append('\t')
+                    .append("Author ").append(i % 17).append('\t')
+                    .append(9780000000000L + i).append('\n');
+        }
+        return baseLibrary.toString();
+    }
+
+    private static List<Long> isbns(List<Book> books) {
+        List<Long> isbns = new ArrayList<>(books.size());
+        for (Book book : books) {
+            isbns.add(book == null ? null : book.getIsbn());
+        }
+        return isbns;
+    }
+
+    private static int countBooks(LibraryService libraryService, Function<LibraryShard, BookTree> tree) {
+        int count = 0;
+        for (LibraryShard shard : libraryService.getShards()) {
+            for (Book ignored : tree.apply(shard)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the books of a tree of every shard, as strings in sorted order
+     */
+    private static List<String> contents(LibraryService libraryService, Function<LibraryShard, BookTree> tree) {
+        List<String> contents = new ArrayList<>();
+        for (LibraryShard shard : libraryService.getShards()) {
+            for (Book book : tree.apply(shard)) {
+                contents.add(book.toString());
+            }
+        }
+        contents.sort(null);
+        return contents;
+    }
+
+    private static SplayTreeNode<Book> rootNode(BookTree tree) {
+        return ((NodeBookTree) tree).getRootNode();
     }
-}
\ No newline at end of file
+}
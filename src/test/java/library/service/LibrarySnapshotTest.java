@@ -0,0 +1,107 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LibrarySnapshotTest {
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+
+    private final Book skienaBook = new Book("The Algorithm Design Manual", "Steven Skiena", 9781849967204L);
+    private final Book christianBook = new Book("Algorithms to Live By", "Brian Christian", 9781250118363L);
+    private final Book hareBook = new Book("Algorithmics — The Spirit of Computing", "David Hare", 9783642272653L);
+    private final Book untitledBook = new Book(null, "Anonymous", 9780000000001L);
+    private final Book birdBook = new Book("Pearls of Functional Algorithm Design", "Richard Bird", 9780521513388L);
+
+    @Test
+    public void writeThenRead_restoresAllThreeTrees() throws IOException {
+        // Given
+        List<Book> available = Arrays.asList(skienaBook, christianBook, hareBook, untitledBook);
+        LibrarySnapshot snapshot = new LibrarySnapshot(
+                bookSplayTreeService.authorTree(bookSplayTreeService.buildByAuthor(available)),
+                bookSplayTreeService.isbnTree(bookSplayTreeService.buildByIsbn(available)),
+                bookSplayTreeService.authorTree(bookSplayTreeService.buildByAuthor(Arrays.asList(birdBook))));
+
+        // When
+        LibrarySnapshot readSnapshot = roundTrip(snapshot);
+
+        // Then
+        assertThat(isbns(readSnapshot.getAuthorTree()), contains(
+                untitledBook.getIsbn(), christianBook.getIsbn(), hareBook.getIsbn(), skienaBook.getIsbn()));
+        assertThat(isbns(readSnapshot.getIsbnTree()), contains(
+                untitledBook.getIsbn(), christianBook.getIsbn(), skienaBook.getIsbn(), hareBook.getIsbn()));
+        assertThat(isbns(readSnapshot.getBorrowedTree()), contains(birdBook.getIsbn()));
+
+        Book readHareBook = readSnapshot.getIsbnTree().findByIsbn(hareBook.getIsbn());
+        assertThat(readHareBook.getTitle(), is(equalTo(hareBook.getTitle())));
+        assertThat(readHareBook.getAuthor(), is(equalTo(hareBook.getAuthor())));
+        Book readUntitledBook = readSnapshot.getIsbnTree().findByIsbn(untitledBook.getIsbn());
+        assertThat(readUntitledBook.getTitle(), is(nullValue()));
+    }
+
+    @Test
+    public void writeThenRead_sharesBooksBetweenAuthorAndIsbnTrees() throws IOException {
+        // Given
+        List<Book> available = Arrays.asList(skienaBook, christianBook, hareBook);
+        LibrarySnapshot snapshot = new LibrarySnapshot(
+                bookSplayTreeService.authorTree(bookSplayTreeService.buildByAuthor(available)),
+                bookSplayTreeService.isbnTree(bookSplayTreeService.buildByIsbn(available)),
+                bookSplayTreeService.authorTree(null));
+
+        // When
+        LibrarySnapshot readSnapshot = roundTrip(snapshot);
+
+        // Then
+        Book byAuthor = readSnapshot.getAuthorTree().find(skienaBook);
+        Book byIsbn = readSnapshot.getIsbnTree().findByIsbn(skienaBook.getIsbn());
+        assertThat(byAuthor, is(sameInstance(byIsbn)));
+        assertThat(readSnapshot.getBorrowedTree().isEmpty(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_whenNotASnapshot_throws() throws IOException {
+        // Given
+        byte[] bytes = "Title\tAuthor\tISBN\n".getBytes();
+
+        // When
+        LibrarySnapshot.readFrom(new ByteArrayInputStream(bytes), bookSplayTreeService);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_whenTruncated_throws() throws IOException {
+        // Given
+        List<Book> available = Arrays.asList(skienaBook, christianBook, hareBook);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LibrarySnapshot(bookSplayTreeService.authorTree(bookSplayTreeService.buildByAuthor(available)),
+                bookSplayTreeService.isbnTree(bookSplayTreeService.buildByIsbn(available)),
+                bookSplayTreeService.authorTree(null)).writeTo(out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+
+        // When
+        LibrarySnapshot.readFrom(new ByteArrayInputStream(truncated), bookSplayTreeService);
+    }
+
+    private LibrarySnapshot roundTrip(LibrarySnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out);
+        return LibrarySnapshot.readFrom(new ByteArrayInputStream(out.toByteArray()), bookSplayTreeService);
+    }
+
+    private List<Long> isbns(BookTree tree) {
+        List<Long> isbns = new ArrayList<>();
+        for (Book book : tree) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+}
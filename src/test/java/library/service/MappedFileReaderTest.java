@@ -0,0 +1,99 @@
+package library.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class MappedFileReaderTest {
+
+    // Mixes one, two, three and four byte characters in UTF-8
+    private static final String CONTENTS = "Algorithmics — The Spirit of Computing\tDavid Harel\tÉ 𝔸𝔹ℂ\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_whenFileEmpty_returnsEndOfFile() throws IOException {
+        // Given
+        File file = writeFile("");
+
+        // When
+        try (Reader reader = new MappedFileReader(file.toPath(), StandardCharsets.UTF_8)) {
+            // Then
+            assertThat(reader.read(new char[16], 0, 16), is(equalTo(-1)));
+        }
+    }
+
+    @Test
+    public void read_decodesWholeFile() throws IOException {
+        // Given
+        File file = writeFile(CONTENTS);
+
+        // When
+        String read;
+        try (Reader reader = new MappedFileReader(file.toPath(), StandardCharsets.UTF_8)) {
+            read = readAll(reader, 4096);
+        }
+
+        // Then
+        assertThat(read, is(equalTo(CONTENTS)));
+    }
+
+    @Test
+    public void read_whenCharactersStraddleWindows_decodesThemWhole() throws IOException {
+        // Given
+        File file = writeFile(CONTENTS);
+
+        // When
+        // Then
+        for (long windowSize = 4; windowSize <= 9; windowSize++) {
+            try (Reader reader = new MappedFileReader(file.toPath(), StandardCharsets.UTF_8, windowSize)) {
+                assertThat(readAll(reader, 7), is(equalTo(CONTENTS)));
+            }
+        }
+    }
+
+    @Test
+    public void read_oneCharAtATime_splitsSurrogatePairs() throws IOException {
+        // Given
+        File file = writeFile(CONTENTS);
+
+        // When
+        StringBuilder read = new StringBuilder();
+        try (Reader reader = new MappedFileReader(file.toPath(), StandardCharsets.UTF_8, 5)) {
+            int c;
+            while ((c = reader.read()) != -1) {
+                read.append((char) c);
+            }
+        }
+
+        // Then
+        assertThat(read.toString(), is(equalTo(CONTENTS)));
+    }
+
+    private File writeFile(String contents) throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String readAll(Reader reader, int bufferSize) throws IOException {
+        StringBuilder read = new StringBuilder();
+        char[] buffer = new char[bufferSize];
+        int count;
+        while ((count = reader.read(buffer, 0, bufferSize)) != -1) {
+            read.append(buffer, 0, count);
+        }
+        return read.toString();
+    }
+}
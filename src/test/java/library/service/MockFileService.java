@@ -1,18 +1,67 @@
 package library.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class MockFileService extends FileService {
 
     private String baseLibraryString = "";
+    private byte[] snapshot = null;
+    private ByteArrayOutputStream snapshotOutputStream = null;
+    private File journalFile = null;
+
+    public MockFileService() {
+        super(null, null, null);
+    }
 
     @Override
     public Reader getBaseLibraryReader() {
         return new StringReader(baseLibraryString);
     }
 
+    @Override
+    public InputStream getSnapshotInputStream() {
+        return snapshot == null ? null : new ByteArrayInputStream(snapshot);
+    }
+
+    @Override
+    public OutputStream getSnapshotOutputStream() {
+        snapshotOutputStream = new ByteArrayOutputStream();
+        return snapshotOutputStream;
+    }
+
+    @Override
+    public void commitSnapshot() {
+        snapshot = snapshotOutputStream.toByteArray();
+    }
+
+    @Override
+    public FileChannel getJournalChannel() throws IOException {
+        return journalFile == null ? null : FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
     public void setBaseLibraryString(String baseLibraryString) {
         this.baseLibraryString = baseLibraryString;
     }
+
+    public byte[] getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(byte[] snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public void setJournalFile(File journalFile) {
+        this.journalFile = journalFile;
+    }
 }
@@ -0,0 +1,171 @@
+package library.service;
+
+import library.model.Book;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TitleIndexTest {
+
+    private final Book codeComplete = new Book("Code Complete", "Steve McConnell", 9780735619678L);
+    private final Book code = new Book("Code: The Hidden Language of Computer Hardware and Software",
+            "Charles Petzold", 9780735611313L);
+    private final Book goProgrammingLanguage = new Book("The Go Programming Language", "Alan A. A. Donovan",
+            9780134190440L);
+
+    @Test
+    public void terms_splitsOnNonLetterOrDigitAndLowerCases() {
+        // When
+        String[] terms = TitleIndex.terms("Algorithms to Live By: The Computer Science of 2 Decisions").toArray(
+                new String[0]);
+
+        // Then
+        assertThat(terms, is(equalTo(new String[]{
+                "algorithms", "to", "live", "by", "the", "computer", "science", "of", "2", "decisions"})));
+    }
+
+    @Test
+    public void terms_givenNull_returnsNoTerms() {
+        assertThat(TitleIndex.terms(null), is(empty()));
+    }
+
+    @Test
+    public void search_returnsBooksWithAllTermsInIsbnOrder() {
+        // Given
+        TitleIndex index = TitleIndex.of(Arrays.asList(goProgrammingLanguage, code, codeComplete));
+
+        // When
+        long[] codeIsbns = index.search("CODE", 10);
+        long[] languageIsbns = index.search("language", 10);
+        long[] codeLanguageIsbns = index.search("code language", 10);
+
+        // Then
+        assertThat(codeIsbns, is(equalTo(new long[]{code.getIsbn(), codeComplete.getIsbn()})));
+        assertThat(languageIsbns, is(equalTo(new long[]{goProgrammingLanguage.getIsbn(), code.getIsbn()})));
+        assertThat(codeLanguageIsbns, is(equalTo(new long[]{code.getIsbn()})));
+    }
+
+    @Test
+    public void search_whenAnyTermMissing_returnsNothing() {
+        // Given
+        TitleIndex index = TitleIndex.of(Arrays.asList(goProgrammingLanguage, code, codeComplete));
+
+        // When
+        long[] isbns = index.search("code cobol", 10);
+
+        // Then
+        assertThat(isbns.length, is(equalTo(0)));
+    }
+
+    @Test
+    public void search_returnsAtMostLimitBooks() {
+        // Given
+        TitleIndex index = TitleIndex.of(Arrays.asList(goProgrammingLanguage, code, codeComplete));
+
+        // When
+        long[] isbns = index.search("code", 1);
+
+        // Then
+        assertThat(isbns, is(equalTo(new long[]{code.getIsbn()})));
+    }
+
+    @Test
+    public void remove_whenBooksShareIsbn_keepsIsbnUntilLastBookWithTermRemoved() {
+        // Given
+        Book copy = new Book("Code Complete", "Steve Mcconnell", codeComplete.getIsbn());
+        Book sameIsbn = new Book("Code Reading", "Diomidis Spinellis", codeComplete.getIsbn());
+        TitleIndex index = TitleIndex.of(Arrays.asList(code, codeComplete, copy, sameIsbn));
+
+        // When
+        index.remove(codeComplete);
+
+        // Then
+        assertThat(index.search("complete", 10), is(equalTo(new long[]{codeComplete.getIsbn()})));
+        assertThat(index.search("code", 10), is(equalTo(new long[]{code.getIsbn(), codeComplete.getIsbn()})));
+
+        // When
+        index.remove(copy);
+
+        // Then
+        assertThat(index.search("complete", 10).length, is(equalTo(0)));
+        assertThat(index.search("code", 10), is(equalTo(new long[]{code.getIsbn(), codeComplete.getIsbn()})));
+        assertThat(TitleIndex.matches(sameIsbn, TitleIndex.terms("code complete")), is(false));
+    }
+
+    @Test
+    public void remove_thenAdd_updatesPostings() {
+        // Given
+        TitleIndex index = TitleIndex.of(Arrays.asList(goProgrammingLanguage, code, codeComplete));
+
+        // When
+        index.remove(code);
+
+        // Then
+        assertThat(index.search("code", 10), is(equalTo(new long[]{codeComplete.getIsbn()})));
+        assertThat(index.search("hidden", 10).length, is(equalTo(0)));
+
+        // When
+        index.add(code);
+
+        // Then
+        assertThat(index.search("code", 10), is(equalTo(new long[]{code.getIsbn(), codeComplete.getIsbn()})));
+        assertThat(index.search("hidden", 10), is(equalTo(new long[]{code.getIsbn()})));
+    }
+
+    @Test
+    public void addAndRemove_inRandomOrder_matchesSearchingEveryBook() {
+        // Given
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Few ISBNs, so that books share them, and few words, so that postings are long
+            books.add(new Book((i % 3 == 0 ? "Algorithms " : "Volume ") + (i % 5 == 0 ? "in Java" : "in C"),
+                    "Author " + i, 9780000000000L + random.nextInt(200)));
+        }
+        TitleIndex index = TitleIndex.of(books.subList(0, 150));
+        List<Book> indexed = new ArrayList<>(books.subList(0, 150));
+
+        for (int step = 0; step < 2000; step++) {
+            // When
+            Book book = books.get(random.nextInt(books.size()));
+            if (indexed.remove(book)) {
+                index.remove(book);
+            } else {
+                index.add(book);
+                indexed.add(book);
+            }
+
+            // Then
+            // An ISBN is found if its books have every term between them
+            Map<Long, Set<String>> termsByIsbn = new TreeMap<>();
+            for (Book indexedBook : indexed) {
+                termsByIsbn.computeIfAbsent(indexedBook.getIsbn(), isbn -> new HashSet<>())
+                        .addAll(TitleIndex.terms(indexedBook.getTitle()));
+            }
+            for (String query : new String[]{"algorithms", "volume java", "in c", "algorithms java"}) {
+                List<String> terms = TitleIndex.terms(query);
+                List<Long> expected = new ArrayList<>();
+                termsByIsbn.forEach((isbn, isbnTerms) -> {
+                    if (isbnTerms.containsAll(terms)) {
+                        expected.add(isbn);
+                    }
+                });
+                long[] found = index.search(query, Integer.MAX_VALUE);
+                assertThat(query + " at step " + step, Arrays.stream(found).boxed().collect(Collectors.toList()),
+                        is(equalTo(expected)));
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package library.service;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TopDownBookTreeTest {
+
+    private final BookSplayTreeService bookSplayTreeService = new BookSplayTreeService();
+
+    private final Book skienaBook = new Book("The Algorithm Design Manual", "Steven Skiena", 9781849967204L);
+    private final Book christianBook = new Book("Algorithms to Live By", "Brian Christian", 9781250118363L);
+    private final Book hareBook = new Book("Algorithmics — The Spirit of Computing", "David Hare", 9783642272653L);
+
+    @Test
+    public void copyOf_keepsBooksInOrderAndBalances() {
+        // Given
+        // When
+        TopDownBookTree tree = TopDownBookTree.copyOf(
+                bookSplayTreeService.buildByAuthor(Arrays.asList(skienaBook, christianBook, hareBook)),
+                false, bookSplayTreeService);
+
+        // Then
+        assertThat(tree.getRoot(), is(sameInstance(hareBook)));
+        assertThat(toList(tree), contains(christianBook, hareBook, skienaBook));
+    }
+
+    @Test
+    public void search_givenMissingAuthor_splaysLastBookSearched() {
+        // Given
+        TopDownBookTree tree = TopDownBookTree.copyOf(
+                bookSplayTreeService.buildByAuthor(Arrays.asList(skienaBook, christianBook, hareBook)),
+                false, bookSplayTreeService);
+
+        // When
+        tree.search(new Book(null, "Zadie Smith", 0));
+
+        // Then
+        assertThat(tree.getRoot(), is(sameInstance(skienaBook)));
+        assertThat(toList(tree), contains(christianBook, hareBook, skienaBook));
+    }
+
+    @Test
+    public void searchAndDeleteRoot_removesBook() {
+        // Given
+        TopDownBookTree tree = TopDownBookTree.copyOf(
+                bookSplayTreeService.buildByIsbn(Arrays.asList(skienaBook, christianBook, hareBook)),
+                true, bookSplayTreeService);
+
+        // When
+        tree.searchByIsbn(skienaBook.getIsbn());
+        tree.deleteRoot();
+
+        // Then
+        assertThat(toList(tree), contains(christianBook, hareBook));
+        assertThat(tree.findByIsbn(skienaBook.getIsbn()), is(nullValue()));
+        assertThat(tree.findByIsbn(hareBook.getIsbn()), is(sameInstance(hareBook)));
+    }
+
+    @Test
+    public void search_countsOneRotationPerLevelSplayed() {
+        // Given
+        Random random = new Random(42);
+        BookTree[] trees = {new TopDownBookTree(false)};
+        for (int i = 0; i < 500; i++) {
+            Book book = new Book(null, "Author " + random.nextInt(1000), i);
+            for (BookTree tree : trees) {
+                tree.insert(book);
+            }
+        }
+
+        // When
+        // Then
+        for (int i = 0; i < 2000; i++) {
+            Book searchKey = new Book(null, "Author " + random.nextInt(1000), 0);
+            for (BookTree tree : trees) {
+                int depth = tree.searchDepth(searchKey);
+                long rotationsBefore = tree.getRotationCount();
+                tree.search(searchKey);
+                assertThat(tree.getRotationCount() - rotationsBefore, is(equalTo((long) depth - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void randomOperations_keepSameAuthorsAsNodeTree() {
+        // Given
+        Random random = new Random(42);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, false, null);
+        BookTree topDownTree = new TopDownBookTree(false);
+
+        // When
+        // Then
+        for (int i = 0; i < 20_000; i++) {
+            Book book = new Book(null, "Author " + random.nextInt(500), i);
+            if (random.nextInt(2) == 0) {
+                nodeTree.insert(book);
+                topDownTree.insert(book);
+                assertThat(topDownTree.getRoot(), is(sameInstance(book)));
+            } else if (!nodeTree.isEmpty()) {
+                nodeTree.search(book);
+                topDownTree.search(book);
+                // The trees may find different books by the same author, but both find one if there is one
+                boolean found = nodeTree.getRoot().getAuthor().equals(book.getAuthor());
+                assertThat(topDownTree.getRoot().getAuthor().equals(book.getAuthor()), is(found));
+                if (found && random.nextBoolean()) {
+                    nodeTree.deleteRoot();
+                    topDownTree.deleteRoot();
+                }
+            }
+        }
+        assertThat(toAuthorList(topDownTree), is(equalTo(toAuthorList(nodeTree))));
+    }
+
+    @Test
+    public void iteratorFrom_givesSameBooksAsNodeTree() {
+        // Given
+        Random random = new Random(3);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, true, null);
+        BookTree topDownTree = new TopDownBookTree(true);
+        for (int i = 0; i < 1000; i++) {
+            Book book = new Book(null, "Author", random.nextInt(5000));
+            nodeTree.insert(book);
+            topDownTree.insert(book);
+        }
+
+        // When
+        // Then
+        for (int i = 0; i < 100; i++) {
+            Book searchKey = new Book(null, null, random.nextInt(5200));
+            assertThat(toIsbnList(topDownTree.iteratorFrom(searchKey)),
+                    is(equalTo(toIsbnList(nodeTree.iteratorFrom(searchKey)))));
+        }
+    }
+
+    @Test
+    public void findAllByIsbn_findsSameBooksAsNodeTree() {
+        // Given
+        Random random = new Random(7);
+        BookTree nodeTree = new NodeBookTree(bookSplayTreeService, true, null);
+        BookTree topDownTree = new TopDownBookTree(true);
+        for (int i = 0; i < 1000; i++) {
+            Book book = new Book(null, "Author", random.nextInt(5000));
+            if (nodeTree.findByIsbn(book.getIsbn()) == null) {
+                nodeTree.insert(book);
+                topDownTree.insert(book);
+            }
+        }
+        long[] isbns = new long[500];
+        for (int i = 0; i < isbns.length; i++) {
+            isbns[i] = random.nextInt(5000);
+        }
+        Arrays.sort(isbns);
+
+        // When
+        Book[] found = topDownTree.findAllByIsbn(isbns);
+
+        // Then
+        assertThat(found, is(equalTo(nodeTree.findAllByIsbn(isbns))));
+    }
+
+    private static List<Long> toIsbnList(Iterator<Book> iterator) {
+        List<Long> isbns = new ArrayList<>();
+        while (iterator.hasNext()) {
+            isbns.add(iterator.next().getIsbn());
+        }
+        return isbns;
+    }
+
+    private static List<String> toAuthorList(BookTree tree) {
+        List<String> authors = new ArrayList<>();
+        for (Book book : tree) {
+            authors.add(book.getAuthor());
+        }
+        return authors;
+    }
+
+    private static List<Book> toList(BookTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (Book book : tree) {
+            books.add(book);
+        }
+        return books;
+    }
+}